@@ -1,50 +1,347 @@
 package org.example;
 
+import javafx.geometry.Insets;
 import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceDialog;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.control.TextInputDialog;
+import javafx.scene.layout.GridPane;
 import javafx.stage.*;
 import org.example.factories.FileFactory;
 import org.example.factories.TableReaderFactory;
 import org.example.factories.TemplateProcessorFactory;
+import org.example.interfaces.NamingScheme;
+import org.example.interfaces.OutputSink;
+import org.example.interfaces.PreparedTemplate;
 import org.example.interfaces.TableReader;
 import org.example.interfaces.TemplateProcessor;
+import org.example.pipeline.AdaptiveConcurrencyLimiter;
+import org.example.pipeline.Aggregate;
+import org.example.pipeline.DocumentPlan;
+import org.example.pipeline.EnrichingTableReader;
+import org.example.pipeline.FanOutPlan;
+import org.example.pipeline.GenerationPipeline;
+import org.example.pipeline.GroupBy;
+import org.example.pipeline.LookupIndex;
+import org.example.pipeline.RoutingPlan;
+import org.example.pipeline.SortingTableReader;
+import org.example.readers.ReadOptions;
+import org.example.sinks.DirectorySink;
+import org.example.sinks.ZipSink;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class DocumentGenerator {
     public static void generateDocuments(Stage stage, File template) {
+        generateDocuments(stage, template == null ? List.of() : List.of(template));
+    }
+
+    /**
+     * Заполняет все выбранные шаблоны (DOCX и ODT вперемешку) за один проход по таблице.
+     * При нескольких шаблонах результаты группируются по строкам или по шаблонам на выбор пользователя.
+     */
+    public static void generateDocuments(Stage stage, List<File> templates) {
+
+        File table = FileFactory.getTableFile(stage);
+        if (table == null) return;
+
+        if (templates.isEmpty()) {
+            alert(I18n.get("alert.templateNotChosen"));
+            return;
+        }
+
+        FanOutPlan.Grouping grouping = null;
+        if (templates.size() > 1) {
+            grouping = chooseGrouping();
+            if (grouping == null) return;
+        }
+
+        FanOutPlan.Grouping chosenGrouping = grouping;
+        generate(stage, table, (reader, naming) -> templates.size() == 1
+                ? DocumentPlan.single(prepare(templates.get(0), table), naming)
+                : new FanOutPlan(prepareAll(outputNames(templates), table), chosenGrouping, naming));
+    }
+
+    /**
+     * Шаблон для каждой строки выбирается по значению колонки-селектора среди шаблонов TemplateManager.
+     * До записи документов колонка-селектор читается отдельно: подготавливаются только шаблоны,
+     * на которые ссылаются её значения, а о значениях без шаблона пользователь узнаёт заранее.
+     */
+    public static void generateRoutedDocuments(Stage stage) {
 
         File table = FileFactory.getTableFile(stage);
         if (table == null) return;
 
-        if (template == null) {
+        List<File> templates = TemplateManager.listTemplates();
+        if (templates.isEmpty()) {
             alert(I18n.get("alert.templateNotChosen"));
             return;
         }
 
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle(I18n.get("dialog.selector.title"));
+        dialog.setHeaderText(I18n.get("dialog.selector.header"));
+        dialog.setContentText(I18n.get("label.selectorColumn"));
+        String selectorColumn = dialog.showAndWait().map(String::trim).orElse("");
+        if (selectorColumn.isEmpty()) return;
+
+        Map<String, File> byFileName = new LinkedHashMap<>();
+        templates.forEach(template -> byFileName.put(template.getName(), template));
+        generate(stage, table, (reader, naming) -> {
+            Set<String> values = RoutingPlan.selectorValues(reader, table, selectorColumn);
+            Map<String, File> referenced = RoutingPlan.select(byFileName, values);
+            if (referenced.isEmpty()) {
+                alert(I18n.get("alert.noRoutedTemplates"));
+                return null;
+            }
+            Set<String> unmatched = RoutingPlan.unmatched(byFileName.keySet(), values);
+            if (!unmatched.isEmpty() && !confirm(I18n.get("dialog.selector.title"),
+                    I18n.get("confirm.skipUnroutedRows") + String.join(", ", unmatched))) {
+                return null;
+            }
+            return new RoutingPlan(selectorColumn, prepareAll(referenced, table), naming);
+        });
+    }
+
+    /**
+     * Строит план документов; может прочитать таблицу, например чтобы выбрать нужные шаблоны.
+     */
+    @FunctionalInterface
+    private interface PlanFactory {
+        /**
+         * @param naming имена документов, выбранные пользователем
+         * @return план или null, если пользователь отменил генерацию
+         */
+        DocumentPlan create(TableReader reader, NamingScheme naming) throws Exception;
+    }
+
+    /**
+     * Как назвать документы и куда их сохранить.
+     *
+     * @param nameColumn колонка с именами файлов или null - имена по номеру строки
+     * @param zip        true - все документы в одном ZIP-архиве, false - файлы в папке
+     */
+    private record OutputOptions(String nameColumn, boolean zip) {
+
+        NamingScheme naming() {
+            NamingScheme numbered = NamingScheme.sequential(I18n.get("file.name.document"));
+            return nameColumn == null ? numbered : NamingScheme.column(nameColumn, numbered);
+        }
+
+        OutputSink open(File target) throws IOException {
+            return zip ? new ZipSink(target.toPath()) : new DirectorySink(target.toPath());
+        }
+    }
+
+    private static void generate(Stage stage, File table, PlanFactory planFactory) {
         File outputDir = FileFactory.getDirectoryToSave(stage, "fileChooser.title.save", table.getParentFile());
-        File targetDir = new File(outputDir, "Generated_" + System.currentTimeMillis());
-        if (!targetDir.mkdir()) {
+        if (outputDir == null) return;
+        OutputOptions output = askOutputOptions();
+        if (output == null) return;
+        File targetDir = new File(outputDir, "Generated_" + System.currentTimeMillis() + (output.zip() ? ".zip" : ""));
+        // архив создаёт приёмник при запуске генерации
+        if (!output.zip() && !targetDir.mkdir()) {
             alert(I18n.get("alert.cannotCreateResultFolder"));
             return;
         }
-        if (outputDir == null) return;
 
         // Загрузка таблицы
         try {
-            TableReader tableReader = TableReaderFactory.fromFile(table);
-            List<Map<String, String>> parsedTable = tableReader.read(table);
+            TableReader tableReader = TableReaderFactory.fromFileCached(table);
+            DocumentPlan plan = planFactory.create(tableReader, output.naming());
+            if (plan == null) {
+                targetDir.delete();
+                return;
+            }
+            Set<String> placeholders = plan.getColumns();
+
+            // шаблон с повторяющейся областью заполняется группой строк с одинаковым ключом
+            GroupBy groupBy = null;
+            Set<String> columns = new LinkedHashSet<>(Aggregate.sourceColumns(placeholders));
+            if (output.nameColumn() != null) columns.add(output.nameColumn());
+            if (plan.hasRepeatingRegions()) {
+                String keyColumn = askGroupKeyColumn();
+                if (keyColumn == null) {
+                    targetDir.delete();
+                    return;
+                }
+                groupBy = new GroupBy(List.of(keyColumn), Aggregate.parseAll(placeholders));
+                columns.addAll(groupBy.getColumns());
+            }
 
-            TemplateProcessor templateProcessor = TemplateProcessorFactory.fromFile(template);
-            templateProcessor.process(template, parsedTable, targetDir);
+            ReadOptions rowOptions;
+            try {
+                rowOptions = Utils.collectRowOptionsGUI(columns);
+            } catch (IllegalArgumentException e) {
+                alert(I18n.get("alert.invalidRowOptions") + e.getMessage());
+                targetDir.delete();
+                return;
+            }
+            if (rowOptions == null) {
+                targetDir.delete();
+                return;
+            }
+
+            // читаются только колонки, на которые ссылаются шаблоны
+            ReadOptions options = rowOptions.withColumns(columns);
+
+            Set<String> lookupColumns = new LinkedHashSet<>(columns);
+            rowOptions.getFilters().forEach(filter -> lookupColumns.add(filter.getColumn()));
+            List<LookupIndex> lookups = loadLookups(stage, table, lookupColumns);
+            if (!lookups.isEmpty()) {
+                tableReader = new EnrichingTableReader(tableReader, lookups);
+            }
+            if (groupBy != null) {
+                // группы собираются из идущих подряд строк, поэтому таблица сначала сортируется по ключу
+                tableReader = new SortingTableReader(tableReader, groupBy.getKeyColumns());
+            }
+
+            // лимит начинается с числа ядер и подбирается в пределах от одного до удвоенного числа ядер
+            int workers = Runtime.getRuntime().availableProcessors();
+            try (AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.forHeap(workers, workers * 2, true);
+                 OutputSink sink = output.open(targetDir)) {
+                new GenerationPipeline(workers, 64, limiter).run(tableReader, table, options, groupBy, plan, sink);
+            }
+            if (plan.getSkippedRows() > 0) {
+                alert(I18n.get("alert.skippedRows") + plan.getSkippedRows());
+            }
         } catch (Exception e) {
             alert(I18n.get("alert.cannotGenerateDocuments"));
         }
 
     }
 
+    /**
+     * Относительные пути изображений в таблице считаются от папки таблицы.
+     */
+    private static PreparedTemplate prepare(File template, File table) throws IOException {
+        return TemplateProcessorFactory.fromFile(template).prepare(template, table.getAbsoluteFile().toPath().getParent());
+    }
+
+    /**
+     * Имя шаблона без расширения становится именем файла или папки результатов;
+     * при совпадении имён (letter.docx и letter.odt) используется полное имя файла.
+     */
+    private static Map<String, File> outputNames(List<File> templates) {
+        Map<String, Long> baseNames = templates.stream()
+                .collect(Collectors.groupingBy(DocumentGenerator::baseName, Collectors.counting()));
+        Map<String, File> named = new LinkedHashMap<>();
+        for (File template : templates) {
+            named.put(baseNames.get(baseName(template)) > 1 ? template.getName() : baseName(template), template);
+        }
+        return named;
+    }
+
+    private static Map<String, PreparedTemplate> prepareAll(Map<String, File> templates, File table)
+            throws IOException {
+        Map<String, PreparedTemplate> prepared = new LinkedHashMap<>();
+        for (Map.Entry<String, File> template : templates.entrySet()) {
+            prepared.put(template.getKey(), prepare(template.getValue(), table));
+        }
+        return prepared;
+    }
+
+    private static String baseName(File file) {
+        return file.getName().replaceAll("\\.[^.]+$", "");
+    }
+
+    /**
+     * Предлагает присоединить справочники: для каждого выбираются файл и колонки ключа в обеих таблицах.
+     * Справочник целиком загружается в память до чтения основной таблицы.
+     */
+    private static List<LookupIndex> loadLookups(Stage stage, File table, Set<String> columns) {
+        List<LookupIndex> lookups = new ArrayList<>();
+        while (confirm(I18n.get("dialog.lookup.title"),
+                I18n.get(lookups.isEmpty() ? "confirm.addLookup" : "confirm.addAnotherLookup"))) {
+            File lookupFile = FileFactory.getTableFile(stage, table.getParentFile());
+            if (lookupFile == null) break;
+
+            TextField joinField = new TextField();
+            TextField keyField = new TextField();
+            GridPane grid = new GridPane();
+            grid.setHgap(10);
+            grid.setVgap(10);
+            grid.setPadding(new Insets(20, 150, 10, 10));
+            grid.addRow(0, new Label(I18n.get("label.lookupJoinColumn")), joinField);
+            grid.addRow(1, new Label(I18n.get("label.lookupKeyColumn")), keyField);
+            Dialog<ButtonType> dialog = new Dialog<>();
+            dialog.setTitle(I18n.get("dialog.lookup.title"));
+            dialog.setHeaderText(lookupFile.getName());
+            dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+            dialog.getDialogPane().setContent(grid);
+            if (dialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) break;
+
+            String joinColumn = joinField.getText().trim();
+            String keyColumn = keyField.getText().trim();
+            if (joinColumn.isEmpty()) continue;
+            lookups.add(LookupIndex.load(TableReaderFactory.fromFileCached(lookupFile), lookupFile, joinColumn,
+                    keyColumn.isEmpty() ? joinColumn : keyColumn, columns));
+        }
+        return lookups;
+    }
+
+    private static boolean confirm(String title, String message) {
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, message, ButtonType.YES, ButtonType.NO);
+        confirm.setTitle(title);
+        confirm.setHeaderText(null);
+        return confirm.showAndWait().orElse(ButtonType.NO) == ButtonType.YES;
+    }
+
+    /**
+     * @return параметры результатов или null, если пользователь отменил генерацию
+     */
+    private static OutputOptions askOutputOptions() {
+        TextField nameColumnField = new TextField();
+        CheckBox zipBox = new CheckBox(I18n.get("label.zipOutput"));
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20, 150, 10, 10));
+        grid.addRow(0, new Label(I18n.get("label.nameColumn")), nameColumnField);
+        grid.add(zipBox, 1, 1);
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle(I18n.get("dialog.output.title"));
+        dialog.setHeaderText(I18n.get("dialog.output.header"));
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        dialog.getDialogPane().setContent(grid);
+        if (dialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return null;
+
+        String nameColumn = nameColumnField.getText().trim();
+        return new OutputOptions(nameColumn.isEmpty() ? null : nameColumn, zipBox.isSelected());
+    }
+
+    private static String askGroupKeyColumn() {
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle(I18n.get("dialog.groupKey.title"));
+        dialog.setHeaderText(I18n.get("dialog.groupKey.header"));
+        dialog.setContentText(I18n.get("label.groupKeyColumn"));
+        String keyColumn = dialog.showAndWait().map(String::trim).orElse("");
+        return keyColumn.isEmpty() ? null : keyColumn;
+    }
+
+    private static FanOutPlan.Grouping chooseGrouping() {
+        String perRow = I18n.get("grouping.perRow");
+        String perTemplate = I18n.get("grouping.perTemplate");
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(perRow, perRow, perTemplate);
+        dialog.setTitle(I18n.get("dialog.grouping.title"));
+        dialog.setHeaderText(I18n.get("dialog.grouping.header"));
+        return dialog.showAndWait()
+                .map(choice -> choice.equals(perRow) ? FanOutPlan.Grouping.PER_ROW : FanOutPlan.Grouping.PER_TEMPLATE)
+                .orElse(null);
+    }
+
     public static void generateSingleDocument(File templateFile, File targetFile){
         TemplateProcessor templateProcessor = TemplateProcessorFactory.fromFile(templateFile);
         try {
@@ -25,6 +25,7 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -47,6 +48,8 @@ public class MainController {
     @FXML
     public void initialize() {
         templateListView.setItems(templates);
+        // несколько шаблонов заполняются за один проход по таблице
+        templateListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         loadTemplatesFromDisk();
         HBox.setHgrow(spacer, Priority.ALWAYS);
         ObservableList<Locale> locales = FXCollections.observableArrayList(
@@ -139,16 +142,23 @@ public class MainController {
 
     @FXML
     private void onGenerateDocuments() {
-        String selected = templateListView.getSelectionModel().getSelectedItem();
-        if (selected != null) {
-            File templateFile = TemplateManager.getTemplateDir().resolve(selected).toFile();
-            DocumentGenerator.generateDocuments(stage, templateFile);
-            alert(I18n.get("alert.documentGeneration") + selected);
+        List<String> selected = List.copyOf(templateListView.getSelectionModel().getSelectedItems());
+        if (!selected.isEmpty()) {
+            List<File> templateFiles = selected.stream()
+                    .map(name -> TemplateManager.getTemplateDir().resolve(name).toFile())
+                    .toList();
+            DocumentGenerator.generateDocuments(stage, templateFiles);
+            alert(I18n.get("alert.documentGeneration") + String.join(", ", selected));
         } else {
             alert(I18n.get("alert.templateNotChosen"));
         }
     }
 
+    @FXML
+    private void onGenerateRoutedDocuments() {
+        DocumentGenerator.generateRoutedDocuments(stage);
+    }
+
     @FXML
     private void onCreateTableFromTemplate() {
         File outputDir = FileFactory.getDirectoryToSave(stage);
@@ -10,6 +10,7 @@ import java.util.stream.Stream;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import org.example.factories.FileFactory;
+import org.example.factories.TemplateProcessorFactory;
 
 public class TemplateManager {
     private static final Path templateDir = Paths.get(System.getProperty("user.home"), "TemplateMaster", "templates");
@@ -41,7 +42,8 @@ public class TemplateManager {
                     }
                 }
 
-                Files.copy(selected.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+                // шаблон очищается один раз здесь, а не при рендеринге каждой строки
+                TemplateProcessorFactory.fromFile(selected).normalize(selected, target.toFile());
 
 
                 alert(I18n.get("alert.templateLoadedSuccessfully") + selected.getName());
@@ -53,17 +55,7 @@ public class TemplateManager {
     }
 
     public static File getTemplate(Stage stage) {
-        List<File> templates;
-        try (Stream<Path> files = Files.list(templateDir)) {
-            templates = files
-                    .filter(Files::isRegularFile)
-                    .map(Path::toFile)
-                    .sorted(Comparator.comparing(File::getName))
-                    .toList();
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to list templates", e);
-        }
-
+        List<File> templates = listTemplates();
         if (templates.isEmpty()) return null;
 
         ChoiceDialog<File> dialog = new ChoiceDialog<>(templates.get(0), templates);
@@ -75,6 +67,22 @@ public class TemplateManager {
         return result.orElse(null);
     }
 
+    /**
+     * @return сохранённые шаблоны DOCX и ODT, отсортированные по имени
+     */
+    public static List<File> listTemplates() {
+        try (Stream<Path> files = Files.list(templateDir)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase().matches(".*\\.(docx|odt)$"))
+                    .map(Path::toFile)
+                    .sorted(Comparator.comparing(File::getName))
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list templates", e);
+        }
+    }
+
     public static Path getTemplateDir() {
         return templateDir;
     }
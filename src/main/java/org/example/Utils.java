@@ -4,6 +4,8 @@ import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
+import org.example.readers.ReadOptions;
+import org.example.readers.RowFilter;
 
 import java.util.*;
 
@@ -76,5 +78,83 @@ public class Utils {
         Optional<Map<String, String>> result = dialog.showAndWait();
         return result.orElse(null);
     }
-}
 
+    /**
+     * Запрашивает у пользователя диапазон строк и фильтр по колонке для пакетной генерации
+     *
+     * @param columns колонки таблицы для выбора фильтра
+     * @return параметры чтения, ReadOptions.ALL если поля не заполнены, или null если пользователь отменил ввод
+     * @throws IllegalArgumentException если введённые значения некорректны
+     */
+    public static ReadOptions collectRowOptionsGUI(Collection<String> columns) {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle(I18n.get("dialog.rows.title"));
+        dialog.setHeaderText(I18n.get("dialog.rows.header"));
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        TextField firstRowField = new TextField();
+        TextField lastRowField = new TextField();
+        ComboBox<String> columnBox = new ComboBox<>();
+        columnBox.getItems().add("");
+        columnBox.getItems().addAll(columns);
+        columnBox.setEditable(true);
+        ComboBox<RowFilter.Kind> conditionBox = new ComboBox<>();
+        conditionBox.getItems().addAll(RowFilter.Kind.values());
+        conditionBox.setValue(RowFilter.Kind.EQUALS);
+        conditionBox.setConverter(new javafx.util.StringConverter<>() {
+            @Override
+            public String toString(RowFilter.Kind kind) {
+                return kind == null ? "" : I18n.get("filter." + kind.name().toLowerCase(Locale.ROOT));
+            }
+
+            @Override
+            public RowFilter.Kind fromString(String text) {
+                return null;
+            }
+        });
+        TextField valueField = new TextField();
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20, 150, 10, 10));
+        grid.addRow(0, new Label(I18n.get("label.firstRow")), firstRowField);
+        grid.addRow(1, new Label(I18n.get("label.lastRow")), lastRowField);
+        grid.addRow(2, new Label(I18n.get("label.filterColumn")), columnBox);
+        grid.addRow(3, new Label(I18n.get("label.filterCondition")), conditionBox);
+        grid.addRow(4, new Label(I18n.get("label.filterValue")), valueField);
+        dialog.getDialogPane().setContent(grid);
+
+        // Разбор введённых значений вне диалога, чтобы ошибка ввода дошла до вызывающего кода
+        if (dialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return null;
+        return toReadOptions(firstRowField.getText(), lastRowField.getText(), columnBox.getValue(),
+                conditionBox.getValue(), valueField.getText());
+    }
+
+    /**
+     * Собирает параметры чтения из введённых пользователем строк; пустые поля означают отсутствие ограничения.
+     *
+     * @throws IllegalArgumentException если номер строки или регулярное выражение некорректны
+     */
+    public static ReadOptions toReadOptions(String firstRow, String lastRow, String column,
+                                            RowFilter.Kind condition, String value) {
+        ReadOptions options = ReadOptions.ALL;
+        boolean hasFirst = firstRow != null && !firstRow.isBlank();
+        boolean hasLast = lastRow != null && !lastRow.isBlank();
+        if (hasFirst || hasLast) {
+            long first = hasFirst ? Long.parseLong(firstRow.trim()) : 1;
+            long last = hasLast ? Long.parseLong(lastRow.trim()) : Long.MAX_VALUE;
+            options = options.withRange(first, last);
+        }
+        if (column != null && !column.isBlank()) {
+            String text = value == null ? "" : value;
+            RowFilter filter = switch (condition == null ? RowFilter.Kind.EQUALS : condition) {
+                case EQUALS -> RowFilter.equalsTo(column, text);
+                case IN -> RowFilter.in(column, Arrays.stream(text.split(",")).map(String::trim).toList());
+                case REGEX -> RowFilter.regex(column, text);
+            };
+            options = options.where(filter);
+        }
+        return options;
+    }
+}
@@ -13,6 +13,10 @@ import java.util.Set;
 
 public class XlsxTemplateBuilder {
 
+    /**
+     * @param placeholders заголовки колонок; колонки идут в порядке множества, то есть в порядке
+     *                     появления плейсхолдеров в шаблоне
+     */
     public static void createTemplateFromPlaceholders(Set<String> placeholders, File outputFile) throws IOException {
         try (Workbook workbook = new XSSFWorkbook()) {
             Sheet sheet = workbook.createSheet("Template");
@@ -0,0 +1,99 @@
+package org.example.cache;
+
+import org.example.interfaces.TableReader;
+import org.example.readers.ReadOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Читатель, который при первом чтении файла сохраняет все его колонки в TableCache,
+ * а при повторных чтениях того же содержимого сканирует запись кэша вместо разбора исходного файла.
+ * Проекция, диапазон строк и фильтры применяются при сканировании,
+ * поэтому одна запись кэша обслуживает любые шаблоны.
+ * <p>
+ * Таблица для записи в кэш собирается в памяти, поэтому кэшируются только файлы не больше maxTableBytes.
+ * Файл большего размера читается с параметрами вызывающего, как без кэша; если собранная таблица
+ * превысила предел во время чтения, она отбрасывается, а строки продолжают выдаваться.
+ */
+public class CachingTableReader implements TableReader {
+
+    /**
+     * Версия правил преобразования ячеек в строки (CellFormats и разбор типов ячеек в читателях).
+     * Входит в ключ записи, поэтому после изменения правил старые записи кэша не используются
+     * и со временем вытесняются.
+     */
+    static final int VALUES_VERSION = 3;
+    private static final long DEFAULT_MAX_TABLE_BYTES = 256L * 1024 * 1024;
+    // размер таблицы пересчитывается не на каждой строке
+    private static final int SIZE_CHECK_ROWS = 1024;
+
+    private final TableReader delegate;
+    private final TableCache cache;
+    private final long maxTableBytes;
+
+    public CachingTableReader(TableReader delegate, TableCache cache) {
+        this(delegate, cache, DEFAULT_MAX_TABLE_BYTES);
+    }
+
+    /**
+     * @param maxTableBytes предел размера исходного файла и собираемой в памяти таблицы
+     */
+    public CachingTableReader(TableReader delegate, TableCache cache, long maxTableBytes) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.maxTableBytes = maxTableBytes;
+    }
+
+    @Override
+    public void forEachRow(File file, ReadOptions options, Consumer<Map<String, String>> consumer) {
+        TableCache.Key key;
+        try {
+            key = cache.key(file, delegate.getClass().getName() + "#v" + VALUES_VERSION);
+            if (cache.scan(key, options, consumer)) return;
+        } catch (IOException e) {
+            throw new RuntimeException("Table cache reading error", e);
+        }
+
+        if (!fits(file.length())) {
+            delegate.forEachRow(file, options, consumer);
+            return;
+        }
+
+        ColumnarTableWriter[] table = {new ColumnarTableWriter()};
+        long[] rowNumber = {0};
+        delegate.forEachRow(file, ReadOptions.ALL, row -> {
+            if (rowNumber[0]++ == 0) options.checkFilterColumns(row.keySet());
+            if (table[0] != null) {
+                table[0].add(row);
+                if (rowNumber[0] % SIZE_CHECK_ROWS == 0 && !fits(table[0].estimateSize())) table[0] = null;
+            }
+            if (options.inRange(rowNumber[0]) && options.accepts(row::get)) {
+                consumer.accept(project(row, options));
+            }
+        });
+
+        if (table[0] == null || !fits(table[0].estimateSize())) return;
+        try {
+            cache.store(key, table[0]);
+        } catch (IOException e) {
+            // таблица уже прочитана, без записи в кэш следующее чтение просто разберёт файл заново
+        }
+    }
+
+    private boolean fits(long bytes) {
+        return bytes <= maxTableBytes && cache.fits(bytes);
+    }
+
+    private static Map<String, String> project(Map<String, String> row, ReadOptions options) {
+        if (options.getColumns() == null) return row;
+        Map<String, String> projected = new LinkedHashMap<>();
+        for (Map.Entry<String, String> cell : row.entrySet()) {
+            if (options.includes(cell.getKey())) projected.put(cell.getKey(), cell.getValue());
+        }
+        return projected;
+    }
+}
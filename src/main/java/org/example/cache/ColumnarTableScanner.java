@@ -0,0 +1,126 @@
+package org.example.cache;
+
+import org.example.readers.ReadOptions;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Читает файл кэша, записанный ColumnarTableWriter, через отображение в память.
+ * Читаются только колонки проекции и фильтров, значения словаря декодируются при первом обращении.
+ */
+class ColumnarTableScanner {
+
+    private ColumnarTableScanner() {
+    }
+
+    /**
+     * @return SHA-256 исходного файла из заголовка или null, если он не записан
+     */
+    static byte[] digest(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            if (in.readInt() != ColumnarTableWriter.MAGIC) {
+                throw new IOException("Corrupted table cache file: " + path);
+            }
+            int length = in.readInt();
+            return length == 0 ? null : in.readNBytes(length);
+        }
+    }
+
+    /**
+     * @return количество выданных строк
+     */
+    static long scan(Path path, ReadOptions options, Consumer<Map<String, String>> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != ColumnarTableWriter.MAGIC) {
+                throw new IOException("Corrupted table cache file: " + path);
+            }
+            buffer.position(buffer.position() + 4 + buffer.getInt(buffer.position()));
+            int columnCount = buffer.getInt();
+            int rowCount = buffer.getInt();
+            int dictionarySize = buffer.getInt();
+            int width = buffer.getInt();
+
+            String[] columns = new String[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                columns[c] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            List<String> headers = Arrays.asList(columns);
+            options.checkFilterColumns(headers);
+
+            int offsetsStart = buffer.position();
+            int valuesStart = offsetsStart + 4 * (dictionarySize + 1);
+            int idsStart = valuesStart + buffer.getInt(offsetsStart + 4 * dictionarySize);
+            Dictionary dictionary = new Dictionary(buffer, offsetsStart, valuesStart, dictionarySize);
+
+            List<Integer> projected = new ArrayList<>();
+            for (int c = 0; c < columnCount; c++) {
+                if (options.includes(columns[c])) projected.add(c);
+            }
+
+            long emitted = 0;
+            for (int row = 0; row < rowCount && row < options.getLastRow(); row++) {
+                if (!options.inRange(row + 1)) continue;
+                int current = row;
+                if (options.hasFilters() && !options.accepts(column -> dictionary.get(
+                        id(buffer, idsStart, width, rowCount, headers.indexOf(column), current)))) {
+                    continue;
+                }
+                Map<String, String> result = new LinkedHashMap<>();
+                for (int c : projected) {
+                    result.put(columns[c], dictionary.get(id(buffer, idsStart, width, rowCount, c, row)));
+                }
+                consumer.accept(result);
+                emitted++;
+            }
+            return emitted;
+        }
+    }
+
+    private static int id(MappedByteBuffer buffer, int idsStart, int width, int rowCount, int column, int row) {
+        int position = idsStart + width * (column * rowCount + row);
+        return switch (width) {
+            case 1 -> buffer.get(position) & 0xFF;
+            case 2 -> buffer.getShort(position) & 0xFFFF;
+            default -> buffer.getInt(position);
+        };
+    }
+
+    private static class Dictionary {
+        private final MappedByteBuffer buffer;
+        private final int offsetsStart;
+        private final int valuesStart;
+        private final String[] decoded;
+
+        private Dictionary(MappedByteBuffer buffer, int offsetsStart, int valuesStart, int size) {
+            this.buffer = buffer;
+            this.offsetsStart = offsetsStart;
+            this.valuesStart = valuesStart;
+            this.decoded = new String[size];
+        }
+
+        String get(int id) {
+            String value = decoded[id];
+            if (value == null) {
+                int from = buffer.getInt(offsetsStart + 4 * id);
+                int to = buffer.getInt(offsetsStart + 4 * (id + 1));
+                byte[] bytes = new byte[to - from];
+                buffer.get(valuesStart + from, bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+                decoded[id] = value;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.cache;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Накапливает строки таблицы в колоночном виде со словарным кодированием и записывает их в файл кэша.
+ * Каждое уникальное значение хранится в словаре один раз, колонки хранят только номера значений
+ * шириной 1, 2 или 4 байта в зависимости от размера словаря.
+ * <p>
+ * Формат файла: заголовок (сигнатура, длина и байты SHA-256 исходного файла, если он записан, число колонок,
+ * строк и значений словаря, ширина номера), имена колонок, смещения и байты словаря в UTF-8,
+ * затем номера значений по колонкам.
+ */
+class ColumnarTableWriter {
+
+    static final int MAGIC = 0x544D4332; // "TMC2"
+
+    private final List<String> columns = new ArrayList<>();
+    private final Map<String, Integer> columnIndex = new HashMap<>();
+    private final List<int[]> columnIds = new ArrayList<>();
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private int rowCount;
+
+    ColumnarTableWriter() {
+        // номер 0 зарезервирован за пустым значением и отсутствующими ячейками
+        dictionary.put("", 0);
+        values.add("");
+    }
+
+    void add(Map<String, String> row) {
+        ensureCapacity(rowCount + 1);
+        for (Map.Entry<String, String> cell : row.entrySet()) {
+            Integer column = columnIndex.get(cell.getKey());
+            if (column == null) {
+                column = columns.size();
+                columns.add(cell.getKey());
+                columnIndex.put(cell.getKey(), column);
+                columnIds.add(new int[capacity()]);
+            }
+            String value = cell.getValue() == null ? "" : cell.getValue();
+            Integer id = dictionary.get(value);
+            if (id == null) {
+                id = values.size();
+                dictionary.put(value, id);
+                values.add(value);
+            }
+            columnIds.get(column)[rowCount] = id;
+        }
+        rowCount++;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return ожидаемый размер файла в байтах
+     */
+    long estimateSize() {
+        long size = 56;
+        for (String column : columns) size += 4 + 3L * column.length();
+        size += 4L * (values.size() + 1);
+        for (String value : values) size += 3L * value.length();
+        return size + (long) idWidth() * columns.size() * rowCount;
+    }
+
+    /**
+     * @param digest SHA-256 исходного файла для проверки при чтении или null
+     */
+    void write(Path target, byte[] digest) throws IOException {
+        int width = idWidth();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(digest == null ? 0 : digest.length);
+            if (digest != null) out.write(digest);
+            out.writeInt(columns.size());
+            out.writeInt(rowCount);
+            out.writeInt(values.size());
+            out.writeInt(width);
+
+            for (String column : columns) {
+                byte[] bytes = column.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            byte[][] encoded = new byte[values.size()][];
+            int offset = 0;
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(offset);
+                offset += encoded[i].length;
+            }
+            out.writeInt(offset);
+            for (byte[] bytes : encoded) out.write(bytes);
+
+            for (int[] ids : columnIds) {
+                for (int row = 0; row < rowCount; row++) {
+                    switch (width) {
+                        case 1 -> out.writeByte(ids[row]);
+                        case 2 -> out.writeShort(ids[row]);
+                        default -> out.writeInt(ids[row]);
+                    }
+                }
+            }
+        }
+    }
+
+    private int idWidth() {
+        if (values.size() <= 0xFF) return 1;
+        if (values.size() <= 0xFFFF) return 2;
+        return 4;
+    }
+
+    private int capacity() {
+        return columnIds.isEmpty() ? Math.max(16, rowCount + 1) : columnIds.get(0).length;
+    }
+
+    private void ensureCapacity(int rows) {
+        if (columnIds.isEmpty() || rows <= columnIds.get(0).length) return;
+        int capacity = Math.max(rows, columnIds.get(0).length * 2);
+        columnIds.replaceAll(ids -> Arrays.copyOf(ids, capacity));
+    }
+}
@@ -0,0 +1,180 @@
+package org.example.cache;
+
+import org.example.metrics.GenerationMetrics;
+import org.example.readers.ReadOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Локальный кэш разобранных таблиц в колоночном двоичном формате.
+ * Ключ - путь, размер и время изменения исходного файла и идентификатор читателя, поэтому для поиска
+ * записи файл не читается. Правку, которая не изменила ни размер, ни время изменения, можно пропустить
+ * только у файла, изменённого незадолго до чтения: для такого файла в запись сохраняется SHA-256 содержимого,
+ * и запись используется только после сверки с ним. Суммарный размер кэша на диске ограничен:
+ * при превышении удаляются записи, которые дольше всего не использовались.
+ */
+public class TableCache {
+
+    private static final String EXTENSION = ".tmc";
+    private static final long DEFAULT_MAX_BYTES = 2L * 1024 * 1024 * 1024;
+    // грубейшая точность времени изменения среди распространённых файловых систем (FAT)
+    private static final long MODIFIED_TIME_PRECISION_MILLIS = 2000;
+    private static volatile TableCache defaultCache;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public TableCache(Path directory, long maxBytes) {
+        if (maxBytes < 1) throw new IllegalArgumentException("Cache size must be positive");
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return кэш в ~/TemplateMaster/cache размером до 2 ГБ
+     */
+    public static TableCache getDefault() {
+        TableCache cache = defaultCache;
+        if (cache == null) {
+            synchronized (TableCache.class) {
+                cache = defaultCache;
+                if (cache == null) {
+                    cache = new TableCache(Paths.get(System.getProperty("user.home"), "TemplateMaster", "cache"),
+                            DEFAULT_MAX_BYTES);
+                    defaultCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Вычисляется до чтения файла. Содержимое читается только у файла, изменённого не раньше,
+     * чем за точность времени изменения до этого момента.
+     *
+     * @param readerId идентификатор читателя и его настроек, влияющих на значения ячеек
+     */
+    public Key key(File file, String readerId) throws IOException {
+        long checkedAt = System.currentTimeMillis();
+        Path path = file.toPath().toAbsolutePath().normalize();
+        long size = Files.size(path);
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        MessageDigest digest = sha256();
+        digest.update((path + "\n" + size + "\n" + modified + "\n" + readerId).getBytes(StandardCharsets.UTF_8));
+        String name = HexFormat.of().formatHex(digest.digest());
+        boolean recent = modified >= checkedAt - MODIFIED_TIME_PRECISION_MILLIS;
+        return new Key(name, path, recent ? contentDigest(path) : null);
+    }
+
+    /**
+     * @return true, если таблица такого размера может быть записана в кэш
+     */
+    public boolean fits(long tableBytes) {
+        return tableBytes <= Integer.MAX_VALUE && tableBytes <= maxBytes;
+    }
+
+    /**
+     * Выдаёт строки из записи кэша, если она есть и относится к текущему содержимому файла.
+     *
+     * @return false, если подходящей записи нет
+     */
+    public boolean scan(Key key, ReadOptions options, Consumer<Map<String, String>> consumer) throws IOException {
+        Path entry = directory.resolve(key.name() + EXTENSION);
+        if (!Files.isRegularFile(entry)) return false;
+        byte[] stored = ColumnarTableScanner.digest(entry);
+        if (stored != null) {
+            byte[] current = key.digest() != null ? key.digest() : contentDigest(key.source());
+            if (!MessageDigest.isEqual(stored, current)) return false;
+        }
+        // время изменения служит отметкой последнего использования для вытеснения
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        GenerationMetrics.get().rowsRead(ColumnarTableScanner.scan(entry, options, consumer));
+        return true;
+    }
+
+    /**
+     * Записывает таблицу в кэш и вытесняет старые записи. Таблицы больше 2 ГБ не кэшируются.
+     */
+    void store(Key key, ColumnarTableWriter table) throws IOException {
+        if (!fits(table.estimateSize())) return;
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, key.name(), ".tmp");
+        try {
+            table.write(temp, key.digest());
+            Files.move(temp, directory.resolve(key.name() + EXTENSION),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        evict();
+    }
+
+    /**
+     * Удаляет записи, которые дольше всего не использовались, пока размер кэша не станет меньше предела.
+     */
+    public void evict() throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(directory)) {
+            entries = files.filter(path -> path.getFileName().toString().endsWith(EXTENSION)).toList();
+        }
+
+        Map<Path, Long> lastUsed = new HashMap<>();
+        long total = 0;
+        for (Path entry : entries) {
+            total += Files.size(entry);
+            lastUsed.put(entry, Files.getLastModifiedTime(entry).toMillis());
+        }
+
+        List<Path> oldestFirst = new ArrayList<>(entries);
+        oldestFirst.sort(Comparator.comparing(lastUsed::get));
+        for (Path entry : oldestFirst) {
+            if (total <= maxBytes) break;
+            long size = Files.size(entry);
+            if (Files.deleteIfExists(entry)) total -= size;
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private static byte[] contentDigest(Path path) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Ключ записи кэша для исходного файла.
+     *
+     * @param name   имя записи по пути, размеру и времени изменения файла
+     * @param source исходный файл
+     * @param digest SHA-256 содержимого файла, изменённого незадолго до чтения, иначе null
+     */
+    public record Key(String name, Path source, byte[] digest) {}
+}
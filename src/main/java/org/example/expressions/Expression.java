@@ -0,0 +1,130 @@
+package org.example.expressions;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Вычисляемый плейсхолдер: [=PRICE*QTY], [=UPPER(NAME)], [=DATE+30d].
+ * Текст разбирается один раз при подготовке шаблона в дерево узлов,
+ * поэтому для каждой строки таблицы остаётся только обход дерева без разбора и рефлексии.
+ * Экземпляры неизменяемы и могут использоваться из нескольких потоков.
+ * <p>
+ * Синтаксис: числа, строки в кавычках, длительности 30d, 2w, 3m, 1y, колонки по имени
+ * (имя с пробелами - в обратных кавычках), операторы + - * / % &amp; = != &lt;&gt; &lt; &gt; &lt;= &gt;=,
+ * скобки и функции UPPER, LOWER, TRIM, LEN, LEFT, RIGHT, CONCAT, ROUND, ABS, IF, AND, OR, NOT, TODAY.
+ */
+public final class Expression {
+
+    private static final String MARKER = "=";
+
+    /**
+     * Узел дерева выражения.
+     */
+    interface Node {
+        Object evaluate(Map<String, String> row);
+    }
+
+    private final String text;
+    private final Node root;
+    private final Set<String> columns;
+
+    Expression(String text, Node root, Set<String> columns) {
+        this.text = text;
+        this.root = root;
+        this.columns = columns;
+    }
+
+    /**
+     * Текст без пометки = (условие блока или выражение после пометки) считается выражением,
+     * если он синтаксически корректен и не сводится к имени колонки или константе.
+     * Текст с некорректным синтаксисом остаётся обычным именем колонки (например, "Сумма (руб)").
+     *
+     * @return скомпилированное выражение или null, если текст - обычное имя колонки
+     * @throws IllegalArgumentException если выражение ссылается на неизвестную функцию
+     *                                  или передаёт ей неверное число аргументов
+     */
+    public static Expression compile(String placeholder) {
+        return new ExpressionParser(placeholder).parse();
+    }
+
+    /**
+     * Плейсхолдер шаблона вычисляется, только если помечен знаком = в начале: [=PRICE*QTY].
+     * Без пометки плейсхолдер всегда остаётся именем колонки, даже если в имени есть / + * или скобки,
+     * например [ИНН/КПП], и отсутствие такой колонки не превращает его в арифметику.
+     *
+     * @return скомпилированное выражение или null, если плейсхолдер не помечен
+     * @throws IllegalArgumentException если после = записано не выражение (имя колонки, константа
+     *                                  или синтаксическая ошибка), неизвестная функция или неверное число аргументов
+     */
+    public static Expression placeholder(String placeholder) {
+        String text = placeholder.strip();
+        if (!text.startsWith(MARKER)) return null;
+        String source = text.substring(MARKER.length()).strip();
+        Expression expression = compile(source);
+        if (expression == null) throw new IllegalArgumentException("Not a valid expression: " + source);
+        return expression;
+    }
+
+    /**
+     * Условие условного блока: помеченное знаком = выражение, как у плейсхолдеров ([#IF =DEBT > 0]),
+     * или имя колонки, непустое значение которой считается истиной ([#IF ИНН/КПП]).
+     * Ложью считаются пустая строка, 0, false и FALSE.
+     *
+     * @throws IllegalArgumentException если после = записано не выражение или неизвестная функция
+     */
+    public static Predicate<Map<String, String>> condition(String text) {
+        Expression expression = placeholder(text);
+        if (expression != null) return expression::test;
+        String column = text.trim();
+        return row -> Values.isTrue(row.getOrDefault(column, ""));
+    }
+
+    /**
+     * @return значение выражения для строки таблицы
+     * @throws IllegalArgumentException если значение нельзя вычислить, например, текст вместо числа
+     */
+    public String evaluate(Map<String, String> row) {
+        return Values.text(value(row));
+    }
+
+    /**
+     * Вычисленное число или дата форматируется напрямую, без преобразования в строку и обратно.
+     *
+     * @return значение выражения для строки таблицы в заданном формате
+     */
+    public String evaluate(Map<String, String> row, ValueFormat format) {
+        return format.format(value(row));
+    }
+
+    /**
+     * @return истинно ли значение выражения для строки таблицы
+     */
+    public boolean test(Map<String, String> row) {
+        return Values.isTrue(value(row));
+    }
+
+    private Object value(Map<String, String> row) {
+        try {
+            return root.evaluate(row);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            throw new IllegalArgumentException("Cannot evaluate [" + text + "]: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return колонки таблицы, на которые ссылается выражение
+     */
+    public Set<String> getColumns() {
+        return columns;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
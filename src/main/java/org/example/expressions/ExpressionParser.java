@@ -0,0 +1,314 @@
+package org.example.expressions;
+
+import org.example.expressions.Expression.Node;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Разбор текста плейсхолдера рекурсивным спуском в дерево узлов-лямбд.
+ * Приоритет операторов по возрастанию: сравнения, &amp;, + и -, * / %, унарный минус.
+ */
+final class ExpressionParser {
+
+    /**
+     * Синтаксическая ошибка: плейсхолдер не является выражением.
+     */
+    private static class SyntaxError extends RuntimeException {
+        SyntaxError() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final String text;
+    private final Set<String> columns = new LinkedHashSet<>();
+    private int position;
+    // выражение без операторов и вызовов функций - это просто имя колонки или константа
+    private boolean operatorSeen;
+
+    ExpressionParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @return выражение или null, если текст - имя колонки, константа или синтаксически некорректен
+     */
+    Expression parse() {
+        Node root;
+        try {
+            skipSpaces();
+            if (position == text.length()) return null;
+            root = comparison();
+            skipSpaces();
+            if (position != text.length()) return null;
+        } catch (SyntaxError e) {
+            return null;
+        }
+        if (!operatorSeen) return null;
+        return new Expression(text, root, Collections.unmodifiableSet(columns));
+    }
+
+    private Node comparison() {
+        Node left = concatenation();
+        skipSpaces();
+        String operator = null;
+        for (String candidate : List.of("<=", ">=", "<>", "!=", "==", "=", "<", ">")) {
+            if (text.startsWith(candidate, position)) {
+                operator = candidate;
+                break;
+            }
+        }
+        if (operator == null) return left;
+        position += operator.length();
+        operatorSeen = true;
+        Node right = concatenation();
+        return switch (operator) {
+            case "=", "==" -> row -> compare(left.evaluate(row), right.evaluate(row)) == 0;
+            case "!=", "<>" -> row -> compare(left.evaluate(row), right.evaluate(row)) != 0;
+            case "<" -> row -> compare(left.evaluate(row), right.evaluate(row)) < 0;
+            case ">" -> row -> compare(left.evaluate(row), right.evaluate(row)) > 0;
+            case "<=" -> row -> compare(left.evaluate(row), right.evaluate(row)) <= 0;
+            default -> row -> compare(left.evaluate(row), right.evaluate(row)) >= 0;
+        };
+    }
+
+    private Node concatenation() {
+        Node left = additive();
+        while (accept('&')) {
+            Node first = left;
+            Node second = additive();
+            left = row -> Values.text(first.evaluate(row)) + Values.text(second.evaluate(row));
+        }
+        return left;
+    }
+
+    private Node additive() {
+        Node left = term();
+        while (true) {
+            if (accept('+')) {
+                Node first = left;
+                Node second = term();
+                left = row -> add(first.evaluate(row), second.evaluate(row), false);
+            } else if (accept('-')) {
+                Node first = left;
+                Node second = term();
+                left = row -> add(first.evaluate(row), second.evaluate(row), true);
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node term() {
+        Node left = unary();
+        while (true) {
+            Node first = left;
+            if (accept('*')) {
+                Node second = unary();
+                left = row -> Values.number(first.evaluate(row)).multiply(Values.number(second.evaluate(row)));
+            } else if (accept('/')) {
+                Node second = unary();
+                left = row -> Values.number(first.evaluate(row))
+                        .divide(Values.number(second.evaluate(row)), MathContext.DECIMAL64);
+            } else if (accept('%')) {
+                Node second = unary();
+                left = row -> Values.number(first.evaluate(row)).remainder(Values.number(second.evaluate(row)));
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node unary() {
+        if (accept('-')) {
+            Node operand = unary();
+            return row -> Values.number(operand.evaluate(row)).negate();
+        }
+        return primary();
+    }
+
+    private Node primary() {
+        skipSpaces();
+        if (position == text.length()) throw new SyntaxError();
+        char c = text.charAt(position);
+
+        if (c == '(') {
+            position++;
+            operatorSeen = true;
+            Node inner = comparison();
+            expect(')');
+            return inner;
+        }
+        if (c == '"' || c == '\'') {
+            String literal = quoted(c);
+            return row -> literal;
+        }
+        if (c == '`') {
+            String column = quoted('`');
+            columns.add(column);
+            return row -> row.getOrDefault(column, "");
+        }
+        if (Character.isDigit(c)) return numberOrDuration();
+        if (isNameStart(c)) {
+            String name = name();
+            // функция - имя, сразу за которым идёт скобка
+            if (position < text.length() && text.charAt(position) == '(') {
+                position++;
+                operatorSeen = true;
+                Node call = Functions.call(name, arguments(), text);
+                // агрегат группировки подставляется готовым значением, как обычная колонка
+                if (call == null) throw new SyntaxError();
+                return call;
+            }
+            columns.add(name);
+            return row -> row.getOrDefault(name, "");
+        }
+        throw new SyntaxError();
+    }
+
+    private List<Node> arguments() {
+        List<Node> arguments = new ArrayList<>();
+        skipSpaces();
+        if (accept(')')) return arguments;
+        do {
+            arguments.add(comparison());
+        } while (accept(','));
+        expect(')');
+        return arguments;
+    }
+
+    private Node numberOrDuration() {
+        int start = position;
+        while (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+            position++;
+        }
+        String digits = text.substring(start, position);
+        if (position < text.length() && isNameStart(text.charAt(position))) {
+            // 30d, 2w, 3m, 1y - длительность; всё прочее (2024год) - не выражение
+            char unit = Character.toLowerCase(text.charAt(position));
+            boolean single = position + 1 == text.length() || !isNamePart(text.charAt(position + 1));
+            if (!single || digits.contains(".") || digits.length() > 9) throw new SyntaxError();
+            int amount = Integer.parseInt(digits);
+            Period period = switch (unit) {
+                case 'd' -> Period.ofDays(amount);
+                case 'w' -> Period.ofWeeks(amount);
+                case 'm' -> Period.ofMonths(amount);
+                case 'y' -> Period.ofYears(amount);
+                default -> throw new SyntaxError();
+            };
+            position++;
+            return row -> period;
+        }
+        BigDecimal number;
+        try {
+            number = new BigDecimal(digits);
+        } catch (NumberFormatException e) {
+            throw new SyntaxError();
+        }
+        return row -> number;
+    }
+
+    private String quoted(char quote) {
+        StringBuilder literal = new StringBuilder();
+        position++;
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c != quote) {
+                literal.append(c);
+            } else if (position < text.length() && text.charAt(position) == quote) {
+                // удвоенная кавычка внутри строки
+                literal.append(c);
+                position++;
+            } else {
+                return literal.toString();
+            }
+        }
+        throw new SyntaxError();
+    }
+
+    /**
+     * Дефис между буквами считается частью имени (Кол-во, e-mail), поэтому вычитание колонок
+     * записывается с пробелами: [PRICE - DISCOUNT].
+     */
+    private String name() {
+        int start = position;
+        while (position < text.length()) {
+            char c = text.charAt(position);
+            boolean hyphen = c == '-' && position + 1 < text.length() && Character.isLetter(text.charAt(position + 1));
+            if (!isNamePart(c) && !hyphen) break;
+            position++;
+        }
+        return text.substring(start, position);
+    }
+
+    private static boolean isNameStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isNamePart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+    }
+
+    private boolean accept(char expected) {
+        skipSpaces();
+        if (position < text.length() && text.charAt(position) == expected) {
+            position++;
+            operatorSeen = true;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char expected) {
+        if (!accept(expected)) throw new SyntaxError();
+    }
+
+    private void skipSpaces() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    /**
+     * Сложение и вычитание чисел, а также сдвиг даты на длительность или число дней.
+     * Разность двух дат - число дней между ними.
+     */
+    private static Object add(Object left, Object right, boolean subtract) {
+        LocalDate date = Values.date(left);
+        if (date != null) {
+            if (right instanceof Period period) return subtract ? date.minus(period) : date.plus(period);
+            LocalDate other = Values.date(right);
+            if (subtract && other != null) return BigDecimal.valueOf(ChronoUnit.DAYS.between(other, date));
+            long days = Values.number(right).longValueExact();
+            return subtract ? date.minusDays(days) : date.plusDays(days);
+        }
+        if (right instanceof Period || left instanceof Period) {
+            throw new IllegalArgumentException("'" + Values.text(left) + "' is not a date");
+        }
+        BigDecimal first = Values.number(left);
+        BigDecimal second = Values.number(right);
+        return subtract ? first.subtract(second) : first.add(second);
+    }
+
+    /**
+     * Числа сравниваются как числа, даты - как даты, остальное - как строки.
+     */
+    private static int compare(Object left, Object right) {
+        String leftText = Values.text(left);
+        String rightText = Values.text(right);
+        BigDecimal leftNumber = left instanceof BigDecimal number ? number : Values.toNumber(leftText);
+        BigDecimal rightNumber = right instanceof BigDecimal number ? number : Values.toNumber(rightText);
+        if (leftNumber != null && rightNumber != null) return leftNumber.compareTo(rightNumber);
+        LocalDate leftDate = Values.date(left);
+        LocalDate rightDate = Values.date(right);
+        if (leftDate != null && rightDate != null) return leftDate.compareTo(rightDate);
+        if (left instanceof Boolean || right instanceof Boolean) {
+            return Boolean.compare(Values.isTrue(left), Values.isTrue(right));
+        }
+        return leftText.compareTo(rightText);
+    }
+}
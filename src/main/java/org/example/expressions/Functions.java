@@ -0,0 +1,106 @@
+package org.example.expressions;
+
+import org.example.expressions.Expression.Node;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Встроенные функции выражений. Имя и число аргументов проверяются при компиляции шаблона,
+ * так что опечатка в имени функции обнаруживается до чтения таблицы.
+ */
+final class Functions {
+
+    /**
+     * Агрегаты считаются по группе строк при группировке, а не выражением по одной строке.
+     */
+    private static final Set<String> AGGREGATES = Set.of("SUM", "COUNT", "MIN", "MAX", "AVG");
+
+    private Functions() {}
+
+    /**
+     * @param expression текст всего выражения для сообщения об ошибке
+     * @return узел вызова функции или null, если это агрегат группировки
+     */
+    static Node call(String name, List<Node> arguments, String expression) {
+        String function = name.toUpperCase(Locale.ROOT);
+        if (AGGREGATES.contains(function)) return null;
+        return switch (function) {
+            case "UPPER" -> unary(function, arguments, expression,
+                    value -> Values.text(value).toUpperCase(Locale.ROOT));
+            case "LOWER" -> unary(function, arguments, expression,
+                    value -> Values.text(value).toLowerCase(Locale.ROOT));
+            case "TRIM" -> unary(function, arguments, expression, value -> Values.text(value).trim());
+            case "LEN" -> unary(function, arguments, expression,
+                    value -> BigDecimal.valueOf(Values.text(value).length()));
+            case "ABS" -> unary(function, arguments, expression, value -> Values.number(value).abs());
+            case "NOT" -> unary(function, arguments, expression, value -> !Values.isTrue(value));
+            case "LEFT", "RIGHT" -> {
+                checkArity(function, arguments, 2, 2, expression);
+                Node text = arguments.get(0);
+                Node count = arguments.get(1);
+                boolean left = function.equals("LEFT");
+                yield row -> {
+                    String value = Values.text(text.evaluate(row));
+                    int length = Math.max(0, Math.min(value.length(), Values.number(count.evaluate(row)).intValue()));
+                    return left ? value.substring(0, length) : value.substring(value.length() - length);
+                };
+            }
+            case "ROUND" -> {
+                checkArity(function, arguments, 1, 2, expression);
+                Node value = arguments.get(0);
+                Node scale = arguments.size() > 1 ? arguments.get(1) : row -> BigDecimal.ZERO;
+                yield row -> Values.number(value.evaluate(row))
+                        .setScale(Values.number(scale.evaluate(row)).intValue(), RoundingMode.HALF_UP);
+            }
+            case "CONCAT" -> {
+                checkArity(function, arguments, 1, Integer.MAX_VALUE, expression);
+                yield row -> {
+                    StringBuilder result = new StringBuilder();
+                    for (Node argument : arguments) {
+                        result.append(Values.text(argument.evaluate(row)));
+                    }
+                    return result.toString();
+                };
+            }
+            case "IF" -> {
+                checkArity(function, arguments, 2, 3, expression);
+                Node condition = arguments.get(0);
+                Node then = arguments.get(1);
+                Node otherwise = arguments.size() > 2 ? arguments.get(2) : row -> "";
+                yield row -> Values.isTrue(condition.evaluate(row)) ? then.evaluate(row) : otherwise.evaluate(row);
+            }
+            case "AND" -> {
+                checkArity(function, arguments, 1, Integer.MAX_VALUE, expression);
+                yield row -> arguments.stream().allMatch(argument -> Values.isTrue(argument.evaluate(row)));
+            }
+            case "OR" -> {
+                checkArity(function, arguments, 1, Integer.MAX_VALUE, expression);
+                yield row -> arguments.stream().anyMatch(argument -> Values.isTrue(argument.evaluate(row)));
+            }
+            case "TODAY" -> {
+                checkArity(function, arguments, 0, 0, expression);
+                yield row -> LocalDate.now();
+            }
+            default -> throw new IllegalArgumentException("Unknown function " + name + " in [" + expression + "]");
+        };
+    }
+
+    private static Node unary(String function, List<Node> arguments, String expression,
+                              Function<Object, Object> operation) {
+        checkArity(function, arguments, 1, 1, expression);
+        Node argument = arguments.get(0);
+        return row -> operation.apply(argument.evaluate(row));
+    }
+
+    private static void checkArity(String function, List<Node> arguments, int min, int max, String expression) {
+        if (arguments.size() < min || arguments.size() > max) {
+            throw new IllegalArgumentException("Wrong number of arguments for " + function + " in [" + expression + "]");
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.expressions;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Формат значения из директивы плейсхолдера: [AMOUNT|#,##0.00|ru], [DATE|d MMMM yyyy|it].
+ * Шаблон с символами 0 или # - числовой (DecimalFormat), шаблон из букв дня, месяца, года и времени -
+ * шаблон даты (DateTimeFormatter). Время выводится для ячеек с датой и временем, у даты без времени оно нулевое.
+ * Форматы компилируются один раз и кэшируются по шаблону и локали; экземпляры можно использовать
+ * из нескольких потоков.
+ * <p>
+ * Числа принимаются в каноническом виде читателей таблиц. Если локаль указана явно, принимаются также
+ * числа, записанные по её правилам: "1 000,50" для ru, "1,234.5" для en, "1.234,56" для de.
+ * Канонический вид проверяется первым, поэтому "1.234" остаётся числом 1.234 и для локали de.
+ */
+public final class ValueFormat {
+
+    private static final Map<String, ValueFormat> CACHE = new ConcurrentHashMap<>();
+    private static final Set<Character> DATE_LETTERS = Set.of('d', 'M', 'L', 'y', 'u', 'E', 'H', 'h', 'm', 's', 'a', 'S');
+    private static final Set<Character> REQUIRED_DATE_LETTERS = Set.of('d', 'M', 'y', 'H');
+
+    private final String pattern;
+    // DecimalFormat не потокобезопасен, поэтому у каждого потока своя копия
+    private final ThreadLocal<DecimalFormat> numberFormat;
+    private final DateTimeFormatter dateFormat;
+    // символы явно указанной локали для разбора чисел или null
+    private final DecimalFormatSymbols symbols;
+
+    private ValueFormat(String pattern, DecimalFormat numberFormat, DateTimeFormatter dateFormat,
+                        DecimalFormatSymbols symbols) {
+        this.pattern = pattern;
+        this.symbols = symbols;
+        this.numberFormat = numberFormat == null ? null
+                : ThreadLocal.withInitial(() -> (DecimalFormat) numberFormat.clone());
+        this.dateFormat = dateFormat;
+    }
+
+    /**
+     * Распознаёт шаблон формата, чтобы текст вида [Да|Нет] или [A|B] оставался обычным плейсхолдером:
+     * числовой шаблон содержит 0 или #, шаблон даты состоит из букв d M L y u E H h m s a S,
+     * текста в апострофах и знаков-разделителей и содержит хотя бы день, месяц, год или час.
+     */
+    public static boolean isPattern(String pattern) {
+        if (pattern.indexOf('0') >= 0 || pattern.indexOf('#') >= 0) return true;
+        boolean quoted = false;
+        boolean required = false;
+        for (char c : pattern.toCharArray()) {
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && Character.isLetter(c)) {
+                if (!DATE_LETTERS.contains(c)) return false;
+                required |= REQUIRED_DATE_LETTERS.contains(c);
+            }
+        }
+        return required && !quoted;
+    }
+
+    /**
+     * @param languageTag локаль вида ru, it, en-US или null для локали по умолчанию
+     * @throws IllegalArgumentException если шаблон или локаль некорректны
+     */
+    public static ValueFormat of(String pattern, String languageTag) {
+        String key = pattern + '|' + (languageTag == null ? "" : languageTag);
+        ValueFormat format = CACHE.get(key);
+        if (format == null) {
+            format = compile(pattern, locale(languageTag), languageTag != null && !languageTag.isBlank());
+            ValueFormat existing = CACHE.putIfAbsent(key, format);
+            if (existing != null) format = existing;
+        }
+        return format;
+    }
+
+    private static ValueFormat compile(String pattern, Locale locale, boolean explicitLocale) {
+        if (pattern.indexOf('0') >= 0 || pattern.indexOf('#') >= 0) {
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+            DecimalFormat format = new DecimalFormat(pattern, symbols);
+            format.setRoundingMode(RoundingMode.HALF_UP);
+            return new ValueFormat(pattern, format, null, explicitLocale ? symbols : null);
+        }
+        return new ValueFormat(pattern, null, DateTimeFormatter.ofPattern(pattern, locale), null);
+    }
+
+    private static Locale locale(String languageTag) {
+        if (languageTag == null || languageTag.isBlank()) return Locale.getDefault(Locale.Category.FORMAT);
+        Locale locale = Locale.forLanguageTag(languageTag.trim().replace('_', '-'));
+        if (locale.getLanguage().isEmpty()) throw new IllegalArgumentException("Unknown locale: " + languageTag);
+        return locale;
+    }
+
+    /**
+     * Разбирает значение ячейки один раз; результат передаётся в {@link #formatParsed(Object)}.
+     *
+     * @return число для числового шаблона, дата или дата со временем для шаблона даты или исходная строка,
+     * если значение не распознано
+     */
+    public Object parse(String value) {
+        if (numberFormat != null) {
+            BigDecimal number = Values.toNumber(value);
+            if (number == null && symbols != null) number = parseLocalized(value);
+            return number == null ? value : number;
+        }
+        LocalDateTime dateTime = Values.toDateTime(value);
+        if (dateTime != null) return dateTime;
+        LocalDate date = Values.toDate(value);
+        return date == null ? value : date;
+    }
+
+    /**
+     * Число или дата форматируется, значение другого типа и пустая строка выводятся как есть.
+     *
+     * @param value число, дата или строка в виде, который выдают читатели таблиц
+     */
+    public String format(Object value) {
+        return formatParsed(value instanceof String text ? parse(text) : value);
+    }
+
+    /**
+     * @param value результат {@link #parse(String)} или вычисленное значение; строка выводится как есть
+     */
+    public String formatParsed(Object value) {
+        if (numberFormat != null && value instanceof BigDecimal number) return numberFormat.get().format(number);
+        if (dateFormat != null && value instanceof LocalDateTime dateTime) return dateFormat.format(dateTime);
+        // поля времени шаблона для даты без времени выводятся как полночь
+        if (dateFormat != null && value instanceof LocalDate date) return dateFormat.format(date.atStartOfDay());
+        return Values.text(value);
+    }
+
+    /**
+     * Число по правилам явно указанной локали: разделители групп допускаются только до десятичного
+     * разделителя, для локалей с неразрывным пробелом в группах принимается и обычный пробел.
+     */
+    private BigDecimal parseLocalized(String value) {
+        char grouping = symbols.getGroupingSeparator();
+        char decimal = symbols.getDecimalSeparator();
+        boolean spaceGrouping = Character.isSpaceChar(grouping);
+        StringBuilder canonical = new StringBuilder(value.length());
+        boolean fraction = false;
+        for (char c : value.trim().toCharArray()) {
+            if (c == decimal) {
+                if (fraction) return null;
+                fraction = true;
+                canonical.append('.');
+            } else if (c == grouping || (spaceGrouping && Character.isSpaceChar(c))) {
+                if (fraction) return null;
+            } else if (c == symbols.getMinusSign()) {
+                canonical.append('-');
+            } else {
+                canonical.append(c);
+            }
+        }
+        return Values.toNumber(canonical.toString());
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+}
@@ -0,0 +1,119 @@
+package org.example.expressions;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Преобразования значений выражений. Значения ячеек приходят строками,
+ * числа и даты распознаются в тех же форматах, в которых их выдают читатели таблиц.
+ */
+public final class Values {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
+
+    private Values() {}
+
+    /**
+     * Понимает только канонический вид, который выдают читатели таблиц: 1500.5, -7, 0.125.
+     * Запятая и пробелы не угадываются: "1,234" может означать и 1234, и 1.234, поэтому значения
+     * в виде локали распознаёт только директива формата с явной локалью ({@link ValueFormat#parse}).
+     *
+     * @return число или null, если значение не является числом
+     */
+    public static BigDecimal toNumber(String value) {
+        String trimmed = value.trim();
+        int length = trimmed.length();
+        int start = length > 0 && trimmed.charAt(0) == '-' ? 1 : 0;
+        int digits = 0;
+        int dot = -1;
+        for (int i = start; i < length; i++) {
+            char c = trimmed.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && dot < 0 && digits > 0) {
+                dot = i;
+            } else {
+                return null;
+            }
+        }
+        // проверка выше исключает исключение NumberFormatException на каждой текстовой ячейке
+        if (digits == 0 || dot == length - 1) return null;
+        return new BigDecimal(trimmed);
+    }
+
+    /**
+     * Понимает даты вида 31.12.2024 и 2024-12-31; у даты со временем берётся только дата,
+     * поэтому арифметика и сравнения дат работают и для таких ячеек.
+     *
+     * @return дата или null, если значение не является датой
+     */
+    public static LocalDate toDate(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() > 10) {
+            LocalDateTime dateTime = toDateTime(trimmed);
+            return dateTime == null ? null : dateTime.toLocalDate();
+        }
+        try {
+            return trimmed.indexOf('-') > 0 ? LocalDate.parse(trimmed) : LocalDate.parse(trimmed, DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Понимает дату со временем вида 31.12.2024 18:30:00 и 2024-12-31T18:30:00.
+     *
+     * @return дата со временем или null, если в значении нет времени
+     */
+    public static LocalDateTime toDateTime(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() <= 10) return null;
+        try {
+            return trimmed.indexOf('T') > 0 ? LocalDateTime.parse(trimmed) : LocalDateTime.parse(trimmed, DATE_TIME_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    static BigDecimal number(Object value) {
+        if (value instanceof BigDecimal number) return number;
+        if (value instanceof Boolean flag) return flag ? BigDecimal.ONE : BigDecimal.ZERO;
+        String text = text(value);
+        // пустая ячейка в арифметике считается нулём, как в Excel
+        if (text.isBlank()) return BigDecimal.ZERO;
+        BigDecimal number = toNumber(text);
+        if (number == null) throw new IllegalArgumentException("'" + text + "' is not a number");
+        return number;
+    }
+
+    static LocalDate date(Object value) {
+        if (value instanceof LocalDate date) return date;
+        return value instanceof String text ? toDate(text) : null;
+    }
+
+    static String text(Object value) {
+        if (value == null) return "";
+        if (value instanceof String text) return text;
+        if (value instanceof BigDecimal number) {
+            return number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString();
+        }
+        if (value instanceof LocalDate date) return DATE_FORMAT.format(date);
+        if (value instanceof LocalDateTime dateTime) return DATE_TIME_FORMAT.format(dateTime);
+        if (value instanceof Boolean flag) return flag ? "TRUE" : "FALSE";
+        return value.toString();
+    }
+
+    /**
+     * Ложью считаются false, ноль, пустая строка и строки "false" и "0".
+     */
+    static boolean isTrue(Object value) {
+        if (value instanceof Boolean flag) return flag;
+        if (value instanceof BigDecimal number) return number.signum() != 0;
+        String text = text(value).trim();
+        return !text.isEmpty() && !text.equalsIgnoreCase("false") && !text.equals("0");
+    }
+}
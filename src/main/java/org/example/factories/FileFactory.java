@@ -11,7 +11,7 @@ public class FileFactory {
 
     private static final String userDesktop = System.getProperty("user.home") + File.separator + "Desktop";
     private static final FileChooser.ExtensionFilter extensionFilterDocx = new FileChooser.ExtensionFilter("DOCX файлы (*.docx)", "*.docx");
-    private static final FileChooser.ExtensionFilter extensionFilterTable = new FileChooser.ExtensionFilter("XLSX or ODS", "*.xlsx", "*.ods");
+    private static final FileChooser.ExtensionFilter extensionFilterTable = new FileChooser.ExtensionFilter("XLSX, ODS, CSV, TSV, JSON or JDBC", "*.xlsx", "*.ods", "*.csv", "*.tsv", "*.json", "*.ndjson", "*.jsonl", "*.jdbc");
 
     private static final FileChooser.ExtensionFilter extensionFilterDocument = new FileChooser.ExtensionFilter("DOCX or ODT", "*.docx", "*.odt");
 
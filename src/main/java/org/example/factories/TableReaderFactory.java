@@ -1,6 +1,11 @@
 package org.example.factories;
 
+import org.example.cache.CachingTableReader;
+import org.example.cache.TableCache;
 import org.example.interfaces.TableReader;
+import org.example.readers.CsvTableReader;
+import org.example.readers.JdbcTableReader;
+import org.example.readers.JsonTableReader;
 import org.example.readers.OdsTableReader;
 import org.example.readers.XlsxTableReader;
 
@@ -10,6 +15,22 @@ public class TableReaderFactory {
     public static TableReader fromFile(File file) {
         if (file.getName().toLowerCase().endsWith(".ods")) return new OdsTableReader();
         if (file.getName().toLowerCase().endsWith(".xlsx")) return new XlsxTableReader();
+        if (file.getName().toLowerCase().endsWith(".csv")) return new CsvTableReader();
+        if (file.getName().toLowerCase().endsWith(".tsv")) return CsvTableReader.tsv();
+        if (file.getName().toLowerCase().endsWith(".jdbc")) return new JdbcTableReader();
+        if (file.getName().toLowerCase().matches(".*\\.(json|ndjson|jsonl)$")) return new JsonTableReader();
         throw new IllegalArgumentException("Unsupported table format");
     }
+
+    /**
+     * Как fromFile, но разобранные электронные таблицы (XLSX, ODS) сохраняются в локальный кэш,
+     * и повторное чтение того же файла не требует повторного разбора.
+     */
+    public static TableReader fromFileCached(File file) {
+        TableReader reader = fromFile(file);
+        if (reader instanceof XlsxTableReader || reader instanceof OdsTableReader) {
+            return new CachingTableReader(reader, TableCache.getDefault());
+        }
+        return reader;
+    }
 }
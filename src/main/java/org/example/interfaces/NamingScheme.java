@@ -0,0 +1,51 @@
+package org.example.interfaces;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Имя документа без расширения по строке таблицы. Вызывается по порядку строк: конвейер генерации
+ * строит пути документов в потоке чтения таблицы, а не в потоках рендеринга, поэтому имена
+ * не зависят от того, какой поток рендеринга первым закончил работу.
+ */
+public interface NamingScheme {
+
+    /**
+     * @param index номер строки таблицы, начиная с 0
+     */
+    String name(int index, Map<String, String> row);
+
+    /**
+     * Имена по номеру строки: document_1, document_2, ...
+     */
+    static NamingScheme sequential(String prefix) {
+        return (index, row) -> prefix + (index + 1);
+    }
+
+    /**
+     * Имена по значению колонки, например по фамилии или номеру договора. Символы, недопустимые
+     * в именах файлов, заменяются на '_'; пустое значение заменяется именем из fallback.
+     * Имя, уже выданное раньше (без учёта регистра), получает суффикс " (2)", " (3)", ...
+     * Суффикс проверяется по всем выданным именам, поэтому значение "Иванов (2)" в таблице
+     * не совпадёт с именем второго Иванова. Схема хранит выданные имена и предназначена для одного пакета.
+     */
+    static NamingScheme column(String column, NamingScheme fallback) {
+        Set<String> used = new HashSet<>();
+        return (index, row) -> {
+            String value = row.get(column);
+            String name = value == null ? "" : value.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").strip();
+            if (name.length() > 100) name = name.substring(0, 100).strip();
+            // имена вида "." и ".." указывают на служебные записи каталога
+            if (name.isEmpty() || name.chars().allMatch(c -> c == '.')) name = fallback.name(index, row);
+            synchronized (used) {
+                String unique = name;
+                for (int n = 2; !used.add(unique.toLowerCase(Locale.ROOT)); n++) {
+                    unique = name + " (" + n + ")";
+                }
+                return unique;
+            }
+        };
+    }
+}
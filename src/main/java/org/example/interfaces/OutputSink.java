@@ -0,0 +1,24 @@
+package org.example.interfaces;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Место назначения готовых документов: папка, архив, память или пустой приёмник для замеров.
+ * Процессоры и конвейер генерации пишут документы только через приёмник.
+ * Реализации должны допускать вызов write из нескольких потоков.
+ */
+public interface OutputSink extends Closeable {
+
+    /**
+     * @param path    путь документа относительно корня приёмника, разделитель - '/'
+     * @param content содержимое документа целиком
+     */
+    void write(String path, byte[] content) throws IOException;
+
+    /**
+     * Завершает запись: сбрасывает буферы и отложенные fsync, дописывает оглавление архива.
+     */
+    @Override
+    void close() throws IOException;
+}
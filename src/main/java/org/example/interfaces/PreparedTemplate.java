@@ -0,0 +1,45 @@
+package org.example.interfaces;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Шаблон, подготовленный процессором один раз на всю пакетную генерацию.
+ * Реализации должны допускать вызов render из нескольких потоков одновременно.
+ */
+public interface PreparedTemplate {
+    String getExtension();
+    void render(Map<String, String> row, OutputStream out) throws IOException;
+
+    /**
+     * Рендеринг документа группы: повторяющиеся области шаблона ([#EACH] ... [/EACH])
+     * размножаются по строкам details, остальные плейсхолдеры берутся из строки-мастера.
+     */
+    default void render(Map<String, String> master, List<Map<String, String>> details, OutputStream out)
+            throws IOException {
+        render(master, out);
+    }
+
+    /**
+     * @return true, если в шаблоне есть повторяющиеся области и ему нужны группы строк
+     */
+    default boolean hasRepeatingRegions() throws IOException {
+        return false;
+    }
+
+    /**
+     * @return тексты плейсхолдеров шаблона без служебных маркеров
+     */
+    Set<String> getPlaceholders() throws IOException;
+
+    /**
+     * @return колонки таблицы, которые нужны шаблону, включая колонки внутри выражений;
+     * по ним читатель таблицы строит проекцию
+     */
+    default Set<String> getColumns() throws IOException {
+        return getPlaceholders();
+    }
+}
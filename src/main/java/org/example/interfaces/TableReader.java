@@ -1,10 +1,27 @@
 package org.example.interfaces;
 
+import org.example.readers.ReadOptions;
+
 import java.io.File;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface TableReader {
-    List<Map<String, String>> read(File file);
+    void forEachRow(File file, ReadOptions options, Consumer<Map<String, String>> consumer);
+
+    default void forEachRow(File file, Consumer<Map<String, String>> consumer) {
+        forEachRow(file, ReadOptions.ALL, consumer);
+    }
+
+    default List<Map<String, String>> read(File file, ReadOptions options) {
+        List<Map<String, String>> result = new ArrayList<>();
+        forEachRow(file, options, result::add);
+        return result;
+    }
+
+    default List<Map<String, String>> read(File file) {
+        return read(file, ReadOptions.ALL);
+    }
 }
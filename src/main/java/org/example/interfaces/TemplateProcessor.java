@@ -2,12 +2,41 @@ package org.example.interfaces;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public interface TemplateProcessor {
     void process(File templateFile, List<Map<String, String>> tableData, File targetDir) throws IOException;
+
+    /**
+     * Генерирует документ для каждой строки и записывает его в приёмник. Приёмник не закрывается.
+     */
+    void process(File templateFile, List<Map<String, String>> tableData, OutputSink sink) throws IOException;
+
+    /**
+     * Относительные пути изображений считаются от папки шаблона.
+     */
+    default PreparedTemplate prepare(File templateFile) throws IOException {
+        return prepare(templateFile, templateFile.getAbsoluteFile().toPath().getParent());
+    }
+
+    /**
+     * @param resourceDir папка, от которой считаются относительные пути изображений, обычно папка таблицы данных
+     */
+    PreparedTemplate prepare(File templateFile, Path resourceDir) throws IOException;
+
     Set<String> extractPlaceholders(File templateFile) throws IOException;
     void generateSingleDocument(File templateFile, File targetFile) throws IOException;
+
+    /**
+     * Сохраняет шаблон в библиотеку, один раз приводя его к виду, удобному для рендеринга.
+     * По умолчанию файл копируется без изменений.
+     */
+    default void normalize(File templateFile, File targetFile) throws IOException {
+        Files.copy(templateFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
 }
@@ -0,0 +1,186 @@
+package org.example.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики генерации, публикуемые через платформенный MBeanServer.
+ * Все операции записи неблокирующие и безопасны для вызова из параллельных потоков.
+ */
+public class GenerationMetrics implements GenerationMetricsMBean {
+
+    public static final String OBJECT_NAME = "org.example:type=GenerationMetrics";
+
+    private static final GenerationMetrics INSTANCE = register(new GenerationMetrics());
+
+    private final LongAdder documentsGenerated = new LongAdder();
+    private final LongAdder documentsFailed = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder activeJobs = new LongAdder();
+    private final LongAdder templatesPrepared = new LongAdder();
+    private final LatencyHistogram prepareLatency = new LatencyHistogram();
+    private final LatencyHistogram renderLatency = new LatencyHistogram();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final Set<Collection<?>> renderQueues = ConcurrentHashMap.newKeySet();
+    private final Set<Collection<?>> writeQueues = ConcurrentHashMap.newKeySet();
+
+    GenerationMetrics() {}
+
+    public static GenerationMetrics get() {
+        return INSTANCE;
+    }
+
+    private static GenerationMetrics register(GenerationMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException | SecurityException e) {
+            // Метрики не должны мешать генерации, если JMX недоступен
+        }
+        return metrics;
+    }
+
+    public void jobStarted() {
+        activeJobs.increment();
+    }
+
+    public void jobFinished() {
+        activeJobs.decrement();
+    }
+
+    public void queuesOpened(Collection<?> renderQueue, Collection<?> writeQueue) {
+        renderQueues.add(renderQueue);
+        writeQueues.add(writeQueue);
+    }
+
+    public void queuesClosed(Collection<?> renderQueue, Collection<?> writeQueue) {
+        renderQueues.remove(renderQueue);
+        writeQueues.remove(writeQueue);
+    }
+
+    public void documentGenerated(long renderNanos, long writeNanos, long bytes) {
+        renderLatency.recordNanos(renderNanos);
+        writeLatency.recordNanos(writeNanos);
+        bytesWritten.add(bytes);
+        documentsGenerated.increment();
+    }
+
+    /**
+     * Время подготовки шаблона (чтение и разбор) учитывается отдельно от рендеринга документов:
+     * оно тратится один раз на задание, а не на каждую строку.
+     */
+    public void templatePrepared(long prepareNanos) {
+        prepareLatency.recordNanos(prepareNanos);
+        templatesPrepared.increment();
+    }
+
+    public void documentFailed() {
+        documentsFailed.increment();
+    }
+
+    public void rowsRead(long count) {
+        rowsRead.add(count);
+    }
+
+    @Override
+    public long getDocumentsGenerated() {
+        return documentsGenerated.sum();
+    }
+
+    @Override
+    public long getDocumentsFailed() {
+        return documentsFailed.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead.sum();
+    }
+
+    @Override
+    public long getActiveJobs() {
+        return activeJobs.sum();
+    }
+
+    @Override
+    public long getTemplatesPrepared() {
+        return templatesPrepared.sum();
+    }
+
+    @Override
+    public long getRenderQueueDepth() {
+        return renderQueues.stream().mapToLong(Collection::size).sum();
+    }
+
+    @Override
+    public long getWriteQueueDepth() {
+        return writeQueues.stream().mapToLong(Collection::size).sum();
+    }
+
+    @Override
+    public double getPrepareLatencyP50Millis() {
+        return prepareLatency.percentileMillis(0.50);
+    }
+
+    @Override
+    public double getPrepareLatencyP99Millis() {
+        return prepareLatency.percentileMillis(0.99);
+    }
+
+    @Override
+    public double getRenderLatencyP50Millis() {
+        return renderLatency.percentileMillis(0.50);
+    }
+
+    @Override
+    public double getRenderLatencyP95Millis() {
+        return renderLatency.percentileMillis(0.95);
+    }
+
+    @Override
+    public double getRenderLatencyP99Millis() {
+        return renderLatency.percentileMillis(0.99);
+    }
+
+    @Override
+    public double getWriteLatencyP50Millis() {
+        return writeLatency.percentileMillis(0.50);
+    }
+
+    @Override
+    public double getWriteLatencyP95Millis() {
+        return writeLatency.percentileMillis(0.95);
+    }
+
+    @Override
+    public double getWriteLatencyP99Millis() {
+        return writeLatency.percentileMillis(0.99);
+    }
+
+    @Override
+    public void reset() {
+        documentsGenerated.reset();
+        documentsFailed.reset();
+        bytesWritten.reset();
+        rowsRead.reset();
+        templatesPrepared.reset();
+        prepareLatency.reset();
+        renderLatency.reset();
+        writeLatency.reset();
+    }
+}
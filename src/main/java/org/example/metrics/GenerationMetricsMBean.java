@@ -0,0 +1,28 @@
+package org.example.metrics;
+
+/**
+ * JMX-интерфейс счётчиков генерации документов (org.example:type=GenerationMetrics).
+ */
+public interface GenerationMetricsMBean {
+    long getDocumentsGenerated();
+    long getDocumentsFailed();
+    long getBytesWritten();
+    long getRowsRead();
+    long getActiveJobs();
+    long getTemplatesPrepared();
+    long getRenderQueueDepth();
+    long getWriteQueueDepth();
+
+    double getPrepareLatencyP50Millis();
+    double getPrepareLatencyP99Millis();
+
+    double getRenderLatencyP50Millis();
+    double getRenderLatencyP95Millis();
+    double getRenderLatencyP99Millis();
+
+    double getWriteLatencyP50Millis();
+    double getWriteLatencyP95Millis();
+    double getWriteLatencyP99Millis();
+
+    void reset();
+}
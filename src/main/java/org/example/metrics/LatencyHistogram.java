@@ -0,0 +1,76 @@
+package org.example.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Неблокирующая гистограмма задержек с логарифмическими корзинами.
+ * Значения хранятся в микросекундах, погрешность перцентилей не превышает 1/8 (12.5%).
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (Long.SIZE - SUB_BUCKET_BITS - 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        buckets.incrementAndGet(indexOf(micros));
+    }
+
+    /**
+     * @param quantile значение от 0 до 1, например 0.95
+     * @return верхняя граница корзины, в которую попадает перцентиль, в миллисекундах; 0 если данных нет
+     */
+    public double percentileMillis(double quantile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(rank, 1)) {
+                return upperBoundOf(i) / 1_000.0;
+            }
+        }
+        return upperBoundOf(BUCKET_COUNT - 1) / 1_000.0;
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.get(i);
+        }
+        return total;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < LINEAR_LIMIT) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < LINEAR_LIMIT) return index;
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int sub = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        long base = 1L << exponent;
+        long step = 1L << (exponent - SUB_BUCKET_BITS);
+        return base + (sub + 1) * step - 1;
+    }
+}
@@ -0,0 +1,237 @@
+package org.example.pipeline;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Ограничивает число документов, одновременно находящихся в работе (рендеринг и ожидание записи),
+ * подстраивая лимит под заполненность кучи после сборок мусора.
+ * При нехватке памяти лимит уменьшается вдвое, при запасе памяти растёт на единицу.
+ * В режиме подбора производительности лимит дополнительно ищет максимум документов в секунду.
+ * Лимит начинается с начального значения и может как снижаться до минимума, так и расти до максимума,
+ * поэтому потоков рендеринга должно быть не меньше максимума: лишние потоки ждут разрешения.
+ */
+public class AdaptiveConcurrencyLimiter implements AutoCloseable {
+
+    private static final double HIGH_WATERMARK = 0.85;
+    private static final double LOW_WATERMARK = 0.60;
+    private static final long SAMPLE_PERIOD_MILLIS = 500;
+    private static final double THROUGHPUT_TOLERANCE = 0.95;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final boolean tuneThroughput;
+    private final DoubleSupplier heapUsage;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private int limit;
+    private int inFlight;
+
+    private final LongAdder completed = new LongAdder();
+    private long lastCompleted;
+    private long lastSampleNanos = System.nanoTime();
+    private double lastThroughput;
+    private int direction = 1;
+
+    private final List<Runnable> unsubscribers = new ArrayList<>();
+    private ScheduledExecutorService sampler;
+
+    /**
+     * Ограничитель, начинающий с максимального лимита.
+     *
+     * @param heapUsage доля занятой кучи от 0 до 1
+     */
+    public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, boolean tuneThroughput, DoubleSupplier heapUsage) {
+        this(minLimit, maxLimit, maxLimit, tuneThroughput, heapUsage);
+    }
+
+    /**
+     * @param initialLimit лимит до первой подстройки, между минимальным и максимальным
+     * @param heapUsage    доля занятой кучи от 0 до 1
+     */
+    public AdaptiveConcurrencyLimiter(int minLimit, int initialLimit, int maxLimit, boolean tuneThroughput,
+                                      DoubleSupplier heapUsage) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limits");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tuneThroughput = tuneThroughput;
+        this.heapUsage = heapUsage;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Создаёт ограничитель, следящий за кучей текущей JVM, и подписывает его на уведомления о сборках мусора.
+     *
+     * @param initialLimit начальное число документов в работе, например число ядер
+     * @param maxLimit     потолок, до которого лимит может вырасти при подборе производительности
+     */
+    public static AdaptiveConcurrencyLimiter forHeap(int initialLimit, int maxLimit, boolean tuneThroughput) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, initialLimit, maxLimit, tuneThroughput,
+                AdaptiveConcurrencyLimiter::heapUsageAfterGc);
+        limiter.start();
+        return limiter;
+    }
+
+    public void start() {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                NotificationListener listener = (notification, handback) -> adjust();
+                emitter.addNotificationListener(listener, null, null);
+                unsubscribers.add(() -> {
+                    try {
+                        emitter.removeNotificationListener(listener);
+                    } catch (ListenerNotFoundException ignored) {
+                        // уже отписан
+                    }
+                });
+            }
+        }
+
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "concurrency-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, SAMPLE_PERIOD_MILLIS, SAMPLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit) {
+                permitReleased.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        completed.increment();
+        lock.lock();
+        try {
+            inFlight--;
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Пересчитывает лимит по текущей заполненности кучи.
+     * Вызывается после каждой сборки мусора и периодически.
+     */
+    public void adjust() {
+        double usage = heapUsage.getAsDouble();
+        if (usage >= HIGH_WATERMARK) {
+            changeLimit(current -> current / 2);
+        } else if (!tuneThroughput && usage < LOW_WATERMARK) {
+            changeLimit(current -> current + 1);
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    @Override
+    public void close() {
+        unsubscribers.forEach(Runnable::run);
+        unsubscribers.clear();
+        if (sampler != null) sampler.shutdownNow();
+    }
+
+    private void sample() {
+        adjust();
+        if (tuneThroughput) climb();
+    }
+
+    /**
+     * Шаг поиска максимума производительности: пока число документов в секунду растёт, лимит меняется
+     * в том же направлении, при падении направление меняется на противоположное.
+     */
+    private void climb() {
+        long now = System.nanoTime();
+        long done = completed.sum();
+        long finished = done - lastCompleted;
+        double seconds = (now - lastSampleNanos) / 1e9;
+        lastCompleted = done;
+        lastSampleNanos = now;
+        if (finished == 0 || seconds <= 0) return;
+
+        double throughput = finished / seconds;
+        if (throughput < lastThroughput * THROUGHPUT_TOLERANCE) {
+            direction = -direction;
+        }
+        lastThroughput = throughput;
+
+        if (direction > 0 && heapUsage.getAsDouble() >= LOW_WATERMARK) return;
+        int step = direction;
+        changeLimit(current -> current + step);
+    }
+
+    private void changeLimit(IntUnaryOperator change) {
+        lock.lock();
+        try {
+            limit = Math.max(minLimit, Math.min(maxLimit, change.applyAsInt(limit)));
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Доля кучи, занятая после последних сборок мусора, относительно максимального размера кучи.
+     */
+    static double heapUsageAfterGc() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+        if (max <= 0) return 0;
+
+        long used = 0;
+        boolean collected = false;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP) continue;
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null) continue;
+            used += usage.getUsed();
+            collected = true;
+        }
+        if (!collected) used = heap.getUsed();
+        return (double) used / max;
+    }
+}
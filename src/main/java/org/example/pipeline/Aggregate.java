@@ -0,0 +1,139 @@
+package org.example.pipeline;
+
+import org.example.expressions.Values;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Агрегат по строкам группы, записанный в шаблоне как плейсхолдер: [SUM(AMOUNT)], [COUNT()], [AVG(PRICE)].
+ * Значение подставляется в строку-мастер группы под ключом, совпадающим с текстом плейсхолдера.
+ */
+public final class Aggregate {
+
+    public enum Function { SUM, COUNT, MIN, MAX, AVG }
+
+    private static final Pattern SYNTAX = Pattern.compile("(?i)\\s*(SUM|COUNT|MIN|MAX|AVG)\\(\\s*([^()]*?)\\s*\\)\\s*");
+
+    private final String placeholder;
+    private final Function function;
+    private final String column;
+
+    private Aggregate(String placeholder, Function function, String column) {
+        this.placeholder = placeholder;
+        this.function = function;
+        this.column = column;
+    }
+
+    /**
+     * @return агрегат или null, если плейсхолдер не является агрегатом
+     */
+    public static Aggregate parse(String placeholder) {
+        Matcher matcher = SYNTAX.matcher(placeholder);
+        if (!matcher.matches()) return null;
+        Function function = Function.valueOf(matcher.group(1).toUpperCase(Locale.ROOT));
+        String column = matcher.group(2).isEmpty() ? null : matcher.group(2);
+        if (column == null && function != Function.COUNT) return null;
+        return new Aggregate(placeholder, function, column);
+    }
+
+    /**
+     * @return агрегаты среди плейсхолдеров шаблона
+     */
+    public static List<Aggregate> parseAll(Collection<String> placeholders) {
+        List<Aggregate> aggregates = new ArrayList<>();
+        for (String placeholder : placeholders) {
+            Aggregate aggregate = parse(placeholder);
+            if (aggregate != null) aggregates.add(aggregate);
+        }
+        return aggregates;
+    }
+
+    /**
+     * Заменяет агрегаты колонками, по которым они считаются, - так получается проекция для чтения таблицы.
+     */
+    public static Set<String> sourceColumns(Collection<String> placeholders) {
+        Set<String> columns = new LinkedHashSet<>();
+        for (String placeholder : placeholders) {
+            Aggregate aggregate = parse(placeholder);
+            if (aggregate == null) {
+                columns.add(placeholder);
+            } else if (aggregate.column != null) {
+                columns.add(aggregate.column);
+            }
+        }
+        return columns;
+    }
+
+    public String getPlaceholder() {
+        return placeholder;
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    /**
+     * @return колонка или null для COUNT()
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    Accumulator newAccumulator() {
+        return new Accumulator();
+    }
+
+    /**
+     * Накапливает значение агрегата по строкам одной группы. Пустые и нечисловые значения пропускаются,
+     * COUNT(X) считает непустые значения, COUNT() - все строки.
+     */
+    class Accumulator {
+        private BigDecimal total = BigDecimal.ZERO;
+        private BigDecimal extreme;
+        private long count;
+
+        void add(Map<String, String> row) {
+            if (column == null) {
+                count++;
+                return;
+            }
+            String value = row.get(column);
+            if (value == null || value.isBlank()) return;
+            if (function == Function.COUNT) {
+                count++;
+                return;
+            }
+            BigDecimal number = Values.toNumber(value);
+            if (number == null) return;
+            count++;
+            total = total.add(number);
+            if (extreme == null
+                    || (function == Function.MIN && number.compareTo(extreme) < 0)
+                    || (function == Function.MAX && number.compareTo(extreme) > 0)) {
+                extreme = number;
+            }
+        }
+
+        String result() {
+            return switch (function) {
+                case COUNT -> Long.toString(count);
+                case SUM -> format(total);
+                case MIN, MAX -> extreme == null ? "" : format(extreme);
+                case AVG -> count == 0 ? "" : format(total.divide(BigDecimal.valueOf(count), MathContext.DECIMAL64));
+            };
+        }
+    }
+
+    private static String format(BigDecimal value) {
+        return value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString();
+    }
+
+    @Override
+    public String toString() {
+        return placeholder;
+    }
+}
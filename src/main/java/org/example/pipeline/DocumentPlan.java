@@ -0,0 +1,77 @@
+package org.example.pipeline;
+
+import org.example.I18n;
+import org.example.interfaces.NamingScheme;
+import org.example.interfaces.PreparedTemplate;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Определяет, какие документы строятся из каждой строки таблицы и куда они записываются.
+ * Конвейер вызывает {@link #plan} по порядку строк из потока чтения таблицы.
+ */
+public interface DocumentPlan {
+
+    /**
+     * @param index номер строки таблицы, начиная с 0
+     */
+    List<PlannedDocument> plan(int index, Map<String, String> row) throws IOException;
+
+    /**
+     * @return все шаблоны, которые может использовать план
+     */
+    Collection<PreparedTemplate> getTemplates();
+
+    /**
+     * @return колонки таблицы, которые нужны плану и его шаблонам
+     */
+    default Set<String> getColumns() throws IOException {
+        Set<String> columns = new LinkedHashSet<>();
+        for (PreparedTemplate template : getTemplates()) {
+            columns.addAll(template.getColumns());
+        }
+        return columns;
+    }
+
+    /**
+     * @return true, если хотя бы одному шаблону нужны группы строк
+     */
+    default boolean hasRepeatingRegions() throws IOException {
+        for (PreparedTemplate template : getTemplates()) {
+            if (template.hasRepeatingRegions()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return число строк, для которых план не построил ни одного документа
+     */
+    default long getSkippedRows() {
+        return 0;
+    }
+
+    /**
+     * Один шаблон, документы document_N в целевой директории.
+     */
+    static DocumentPlan single(PreparedTemplate template) {
+        return single(template, NamingScheme.sequential(I18n.get("file.name.document")));
+    }
+
+    /**
+     * Один шаблон, имена документов задаёт схема именования.
+     */
+    static DocumentPlan single(PreparedTemplate template, NamingScheme naming) {
+        return new DocumentPlan() {
+            @Override
+            public List<PlannedDocument> plan(int index, Map<String, String> row) {
+                return List.of(new PlannedDocument(template, naming.name(index, row) + template.getExtension()));
+            }
+
+            @Override
+            public Collection<PreparedTemplate> getTemplates() {
+                return List.of(template);
+            }
+        };
+    }
+}
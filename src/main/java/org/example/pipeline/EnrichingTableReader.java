@@ -0,0 +1,63 @@
+package org.example.pipeline;
+
+import org.example.interfaces.TableReader;
+import org.example.readers.ReadOptions;
+import org.example.readers.RowFilter;
+
+import java.io.File;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Читатель, дополняющий каждую строку основной таблицы колонками справочников по ключу.
+ * Колонка справочника заменяет одноимённую колонку основной таблицы только для найденного ключа,
+ * иначе остаётся значение основной таблицы, поэтому такие колонки читаются из обеих таблиц.
+ * Фильтры по ним проверяются после соединения, остальные - самим читателем основной таблицы.
+ * Строки читателя основной таблицы не изменяются: дополняется их копия.
+ */
+public class EnrichingTableReader implements TableReader {
+
+    private final TableReader delegate;
+    private final List<LookupIndex> lookups;
+
+    public EnrichingTableReader(TableReader delegate, List<LookupIndex> lookups) {
+        this.delegate = delegate;
+        this.lookups = List.copyOf(lookups);
+    }
+
+    @Override
+    public void forEachRow(File file, ReadOptions options, Consumer<Map<String, String>> consumer) {
+        Set<String> joined = new HashSet<>();
+        for (LookupIndex lookup : lookups) {
+            joined.addAll(lookup.getColumns());
+        }
+
+        ReadOptions mainOptions = ReadOptions.ALL.withRange(options.getFirstRow(), options.getLastRow());
+        if (options.getColumns() != null) {
+            Set<String> columns = new LinkedHashSet<>(options.getColumns());
+            for (LookupIndex lookup : lookups) {
+                columns.add(lookup.getJoinColumn());
+            }
+            mainOptions = mainOptions.withColumns(columns);
+        }
+        List<RowFilter> joinedFilters = new ArrayList<>();
+        for (RowFilter filter : options.getFilters()) {
+            if (joined.contains(filter.getColumn())) {
+                joinedFilters.add(filter);
+            } else {
+                mainOptions = mainOptions.where(filter);
+            }
+        }
+
+        delegate.forEachRow(file, mainOptions, row -> {
+            Map<String, String> enriched = new LinkedHashMap<>(row);
+            for (LookupIndex lookup : lookups) {
+                lookup.enrich(enriched);
+            }
+            for (RowFilter filter : joinedFilters) {
+                if (!filter.test(enriched.getOrDefault(filter.getColumn(), ""))) return;
+            }
+            consumer.accept(enriched);
+        });
+    }
+}
@@ -0,0 +1,273 @@
+package org.example.pipeline;
+
+import org.example.readers.ValueInterner;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Внешняя сортировка строк таблицы по колонкам ключа.
+ * Строки накапливаются в памяти, пока их оценочный размер не превысит бюджет; тогда порция сортируется
+ * и сбрасывается во временный файл. В конце отсортированные порции сливаются через очередь с приоритетом,
+ * так что в памяти одновременно находится не больше бюджета и по одной строке из каждой порции.
+ * Сортировка устойчива: строки с одинаковым ключом выдаются в порядке поступления.
+ */
+public class ExternalSorter implements Consumer<Map<String, String>>, AutoCloseable {
+
+    /**
+     * Больше порций за одно слияние не открывается; если порций больше,
+     * они сливаются группами за несколько проходов.
+     */
+    static final int MAX_MERGE_WIDTH = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long ROW_OVERHEAD = 64;
+    private static final long CELL_OVERHEAD = 48;
+
+    private final List<String> keyColumns;
+    private final long memoryBudget;
+    private final Path tempDirectory;
+    private final Comparator<Map<String, String>> order;
+
+    private List<Map<String, String>> buffer = new ArrayList<>();
+    private long bufferedBytes;
+    private final List<Path> runs = new ArrayList<>();
+    private Path runDirectory;
+
+    /**
+     * @param memoryBudget примерный объём памяти под строки в байтах
+     * @param tempDirectory каталог для временных файлов порций
+     */
+    public ExternalSorter(List<String> keyColumns, long memoryBudget, Path tempDirectory) {
+        if (keyColumns.isEmpty()) throw new IllegalArgumentException("At least one key column is required");
+        if (memoryBudget < 1) throw new IllegalArgumentException("Memory budget must be positive");
+        this.keyColumns = List.copyOf(keyColumns);
+        this.memoryBudget = memoryBudget;
+        this.tempDirectory = tempDirectory;
+        this.order = (left, right) -> {
+            for (String column : this.keyColumns) {
+                int result = keyValue(left, column).compareTo(keyValue(right, column));
+                if (result != 0) return result;
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * @return четверть максимального размера кучи
+     */
+    public static long defaultMemoryBudget() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    @Override
+    public void accept(Map<String, String> row) {
+        buffer.add(row);
+        bufferedBytes += estimateSize(row);
+        if (bufferedBytes >= memoryBudget) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new RuntimeException("Sort run writing error", e);
+            }
+        }
+    }
+
+    /**
+     * Выдаёт все принятые строки в порядке ключа. Вызывается один раз после окончания входа.
+     */
+    public void forEachSorted(Consumer<Map<String, String>> consumer) throws IOException {
+        if (runs.isEmpty()) {
+            // всё поместилось в бюджет, временные файлы не нужны
+            buffer.sort(order);
+            buffer.forEach(consumer);
+            buffer = new ArrayList<>();
+            return;
+        }
+
+        spill();
+        while (runs.size() > MAX_MERGE_WIDTH) {
+            mergePass();
+        }
+        merge(runs, consumer);
+    }
+
+    /**
+     * Один проход слияния: каждая группа из MAX_MERGE_WIDTH соседних порций сливается в одну порцию,
+     * которая занимает место группы. Порядок порций сохраняется, поэтому сортировка остаётся устойчивой,
+     * а каждая строка переписывается один раз за проход.
+     */
+    private void mergePass() throws IOException {
+        int position = 0;
+        while (position < runs.size()) {
+            List<Path> group = runs.subList(position, Math.min(position + MAX_MERGE_WIDTH, runs.size()));
+            if (group.size() > 1) {
+                Path merged = newRunFile();
+                try (DataOutputStream out = openRun(merged)) {
+                    merge(group, row -> writeRow(out, row));
+                }
+                for (Path run : group) {
+                    Files.deleteIfExists(run);
+                }
+                group.clear();
+                runs.add(position, merged);
+            }
+            position++;
+        }
+    }
+
+    /**
+     * @return число временных файлов, записанных на данный момент
+     */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = new ArrayList<>();
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        if (runDirectory != null) {
+            Files.deleteIfExists(runDirectory);
+            runDirectory = null;
+        }
+    }
+
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) return;
+        buffer.sort(order);
+        Path run = newRunFile();
+        try (DataOutputStream out = openRun(run)) {
+            for (Map<String, String> row : buffer) {
+                writeRow(out, row);
+            }
+        }
+        runs.add(run);
+        buffer = new ArrayList<>();
+        bufferedBytes = 0;
+    }
+
+    private void merge(List<Path> sources, Consumer<Map<String, String>> consumer) throws IOException {
+        ValueInterner interner = new ValueInterner();
+        List<RunCursor> cursors = new ArrayList<>();
+        // при равных ключах первой идёт более ранняя порция
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(Math.max(1, sources.size()),
+                Comparator.comparing((RunCursor cursor) -> cursor.current, order)
+                        .thenComparingInt(cursor -> cursor.index));
+        try {
+            for (Path source : sources) {
+                RunCursor cursor = new RunCursor(cursors.size(), source, interner);
+                cursors.add(cursor);
+                if (cursor.advance()) queue.add(cursor);
+            }
+            while (!queue.isEmpty()) {
+                RunCursor cursor = queue.poll();
+                consumer.accept(cursor.current);
+                if (cursor.advance()) queue.add(cursor);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.in.close();
+            }
+        }
+    }
+
+    private static String keyValue(Map<String, String> row, String column) {
+        String value = row.get(column);
+        return value == null ? "" : value;
+    }
+
+    private Path newRunFile() throws IOException {
+        if (runDirectory == null) {
+            runDirectory = Files.createTempDirectory(tempDirectory, "sort");
+        }
+        return Files.createTempFile(runDirectory, "run", ".bin");
+    }
+
+    private static DataOutputStream openRun(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE));
+    }
+
+    private static void writeRow(DataOutputStream out, Map<String, String> row) {
+        try {
+            out.writeInt(row.size());
+            for (Map.Entry<String, String> cell : row.entrySet()) {
+                writeString(out, cell.getKey());
+                writeString(out, cell.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Оценка занимаемой строкой памяти: строки по два байта на символ плюс накладные расходы карты.
+     * Имена колонок обычно разделяются между строками и не учитываются.
+     */
+    private static long estimateSize(Map<String, String> row) {
+        long size = ROW_OVERHEAD;
+        for (String value : row.values()) {
+            size += CELL_OVERHEAD + (value == null ? 0 : 2L * value.length());
+        }
+        return size;
+    }
+
+    /**
+     * Текущая строка одной порции при слиянии.
+     */
+    private static class RunCursor {
+        private final int index;
+        private final DataInputStream in;
+        private final ValueInterner interner;
+        private byte[] bytes = new byte[256];
+        private Map<String, String> current;
+
+        private RunCursor(int index, Path run, ValueInterner interner) throws IOException {
+            this.index = index;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+            this.interner = interner;
+        }
+
+        private boolean advance() {
+            try {
+                int size;
+                try {
+                    size = in.readInt();
+                } catch (EOFException e) {
+                    current = null;
+                    return false;
+                }
+                Map<String, String> row = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    String column = readString();
+                    row.put(column, readString());
+                }
+                current = row;
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private String readString() throws IOException {
+            int length = in.readInt();
+            if (bytes.length < length) bytes = new byte[Math.max(length, bytes.length * 2)];
+            in.readFully(bytes, 0, length);
+            return interner.intern(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.pipeline;
+
+import org.example.I18n;
+import org.example.interfaces.NamingScheme;
+import org.example.interfaces.PreparedTemplate;
+
+import java.util.*;
+
+/**
+ * Строит по документу каждого шаблона из каждой строки за один проход по таблице,
+ * например письмо, акт и счёт для каждого договора.
+ */
+public class FanOutPlan implements DocumentPlan {
+
+    /**
+     * Группировка результатов: по папке на строку (document_N/letter.docx)
+     * или по папке на шаблон (letter/document_N.docx).
+     */
+    public enum Grouping { PER_ROW, PER_TEMPLATE }
+
+    private final Map<String, PreparedTemplate> templates;
+    private final Grouping grouping;
+    private final NamingScheme naming;
+
+    /**
+     * @param templates подготовленные шаблоны по имени, используемому в путях результатов
+     */
+    public FanOutPlan(Map<String, PreparedTemplate> templates, Grouping grouping) {
+        this(templates, grouping, NamingScheme.sequential(I18n.get("file.name.document")));
+    }
+
+    /**
+     * @param naming имя папки или документа для строки таблицы
+     */
+    public FanOutPlan(Map<String, PreparedTemplate> templates, Grouping grouping, NamingScheme naming) {
+        if (templates.isEmpty()) throw new IllegalArgumentException("At least one template is required");
+        this.templates = new LinkedHashMap<>(templates);
+        this.grouping = grouping;
+        this.naming = naming;
+    }
+
+    @Override
+    public List<PlannedDocument> plan(int index, Map<String, String> row) {
+        List<PlannedDocument> documents = new ArrayList<>(templates.size());
+        String document = naming.name(index, row);
+        for (Map.Entry<String, PreparedTemplate> entry : templates.entrySet()) {
+            PreparedTemplate template = entry.getValue();
+            String path = grouping == Grouping.PER_ROW
+                    ? document + "/" + entry.getKey() + template.getExtension()
+                    : entry.getKey() + "/" + document + template.getExtension();
+            documents.add(new PlannedDocument(template, path));
+        }
+        return documents;
+    }
+
+    @Override
+    public Collection<PreparedTemplate> getTemplates() {
+        return templates.values();
+    }
+}
@@ -0,0 +1,287 @@
+package org.example.pipeline;
+
+import org.example.interfaces.OutputSink;
+import org.example.interfaces.PreparedTemplate;
+import org.example.interfaces.TableReader;
+import org.example.metrics.GenerationMetrics;
+import org.example.readers.ReadOptions;
+import org.example.sinks.DirectorySink;
+
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Конвейер пакетной генерации: поток чтения таблицы, N потоков рендеринга и поток записи,
+ * связанные ограниченными очередями. Чтение, подстановка и запись на диск идут параллельно,
+ * а объём памяти ограничен ёмкостью очередей.
+ */
+public class GenerationPipeline {
+
+    private static final RowTask END_OF_ROWS = new RowTask(null, null, List.of());
+    private static final RenderedDocument END_OF_DOCUMENTS = new RenderedDocument(null, null, 0);
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+
+    private final int renderWorkers;
+    private final int queueCapacity;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    private volatile BlockingQueue<RowTask> renderQueue = new ArrayBlockingQueue<>(1);
+    private volatile BlockingQueue<RenderedDocument> writeQueue = new ArrayBlockingQueue<>(1);
+
+    public GenerationPipeline() {
+        this(Runtime.getRuntime().availableProcessors(), 64);
+    }
+
+    public GenerationPipeline(int renderWorkers, int queueCapacity) {
+        this(renderWorkers, queueCapacity, null);
+    }
+
+    /**
+     * С ограничителем потоков рендеринга запускается не меньше его максимального лимита,
+     * и число одновременно работающих потоков определяет текущий лимит: он может вырасти выше renderWorkers.
+     *
+     * @param limiter ограничитель числа документов в работе; null - ограничение только числом потоков
+     */
+    public GenerationPipeline(int renderWorkers, int queueCapacity, AdaptiveConcurrencyLimiter limiter) {
+        if (renderWorkers < 1) throw new IllegalArgumentException("At least one render worker is required");
+        if (queueCapacity < 1) throw new IllegalArgumentException("Queue capacity must be positive");
+        this.renderWorkers = limiter == null ? renderWorkers : Math.max(renderWorkers, limiter.getMaxLimit());
+        this.queueCapacity = queueCapacity;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Читает таблицу и генерирует по документу на каждую строку.
+     *
+     * @return количество записанных документов
+     */
+    public int run(TableReader reader, File table, PreparedTemplate template, File targetDir) throws IOException {
+        return run(reader, table, ReadOptions.ALL, template, targetDir);
+    }
+
+    /**
+     * @param options параметры чтения таблицы, например проекция на колонки шаблона
+     * @return количество записанных документов
+     */
+    public int run(TableReader reader, File table, ReadOptions options, PreparedTemplate template,
+                   File targetDir) throws IOException {
+        return run(reader, table, options, DocumentPlan.single(template), targetDir);
+    }
+
+    /**
+     * Читает таблицу один раз и строит для каждой строки все документы плана.
+     *
+     * @return количество записанных документов
+     */
+    public int run(TableReader reader, File table, ReadOptions options, DocumentPlan plan,
+                   File targetDir) throws IOException {
+        return run(reader, table, options, null, plan, targetDir);
+    }
+
+    /**
+     * Строки, идущие подряд с одинаковым ключом, объединяются в группу, и каждая группа даёт один документ
+     * с размноженными повторяющимися областями шаблона.
+     *
+     * @param groupBy группировка строк или null - документ на каждую строку
+     * @return количество записанных документов
+     */
+    public int run(TableReader reader, File table, ReadOptions options, GroupBy groupBy, DocumentPlan plan,
+                   File targetDir) throws IOException {
+        try (DirectorySink sink = new DirectorySink(targetDir.toPath())) {
+            return run(reader, table, options, groupBy, plan, sink);
+        }
+    }
+
+    /**
+     * Записывает документы в приёмник. Приёмник не закрывается: им управляет вызывающий код.
+     *
+     * @param groupBy группировка строк или null - документ на каждую строку
+     * @return количество записанных документов
+     */
+    public int run(TableReader reader, File table, ReadOptions options, GroupBy groupBy, DocumentPlan plan,
+                   OutputSink sink) throws IOException {
+        BlockingQueue<RowTask> rows = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<RenderedDocument> documents = new ArrayBlockingQueue<>(queueCapacity);
+        renderQueue = rows;
+        writeQueue = documents;
+
+        GenerationMetrics metrics = GenerationMetrics.get();
+        AtomicInteger workersLeft = new AtomicInteger(renderWorkers);
+        AtomicInteger written = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(renderWorkers + 2, runnable -> {
+            Thread thread = new Thread(runnable, "generation-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+
+        metrics.jobStarted();
+        metrics.queuesOpened(rows, documents);
+        try {
+            completion.submit(() -> {
+                readRows(reader, table, options, groupBy, plan, rows);
+                return null;
+            });
+            for (int i = 0; i < renderWorkers; i++) {
+                completion.submit(() -> {
+                    renderDocuments(rows, documents, workersLeft);
+                    return null;
+                });
+            }
+            completion.submit(() -> {
+                writeDocuments(documents, sink, written);
+                return null;
+            });
+
+            for (int i = 0; i < renderWorkers + 2; i++) {
+                completion.take().get();
+            }
+            return written.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException unchecked) throw unchecked.getCause();
+            if (cause instanceof IOException ioException) throw ioException;
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IOException("Document generation failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Document generation interrupted");
+        } finally {
+            stop(executor);
+            metrics.queuesClosed(rows, documents);
+            metrics.jobFinished();
+        }
+    }
+
+    /**
+     * Прерывает потоки конвейера и дожидается их остановки, чтобы после возврата из run никто не писал в приёмник.
+     * Прерывание вызывающего потока не обрывает ожидание и восстанавливается после него.
+     */
+    private static void stop(ExecutorService executor) {
+        executor.shutdownNow();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STOP_TIMEOUT_SECONDS);
+        boolean interrupted = Thread.interrupted();
+        try {
+            while (true) {
+                try {
+                    executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return текущая глубина очереди каждой стадии: полная очередь указывает на узкое место в следующей стадии
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        depths.put("render", renderQueue.size());
+        depths.put("write", writeQueue.size());
+        return depths;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Документы строки планируются здесь, в потоке чтения, по порядку строк: имена документов
+     * не зависят от того, в каком порядке потоки рендеринга разбирают очередь.
+     */
+    private void readRows(TableReader reader, File table, ReadOptions options, GroupBy groupBy, DocumentPlan plan,
+                          BlockingQueue<RowTask> rows) throws InterruptedException {
+        int[] index = {0};
+        BiConsumer<Map<String, String>, List<Map<String, String>>> enqueue = (row, details) -> {
+            try {
+                rows.put(new RowTask(row, details, plan.plan(index[0]++, row)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Table reading interrupted");
+            }
+        };
+        if (groupBy == null) {
+            reader.forEachRow(table, options, row -> enqueue.accept(row, null));
+        } else {
+            RowGrouper grouper = new RowGrouper(groupBy, enqueue);
+            reader.forEachRow(table, options, grouper);
+            grouper.finish();
+        }
+        for (int i = 0; i < renderWorkers; i++) {
+            rows.put(END_OF_ROWS);
+        }
+    }
+
+    private void renderDocuments(BlockingQueue<RowTask> rows, BlockingQueue<RenderedDocument> documents,
+                                 AtomicInteger workersLeft) throws IOException, InterruptedException {
+        while (true) {
+            RowTask task = rows.take();
+            if (task == END_OF_ROWS) {
+                if (workersLeft.decrementAndGet() == 0) {
+                    documents.put(END_OF_DOCUMENTS);
+                }
+                return;
+            }
+
+            for (PlannedDocument planned : task.documents()) {
+                if (limiter != null) limiter.acquire();
+                long renderStart = System.nanoTime();
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                try {
+                    if (task.details() == null) {
+                        planned.template().render(task.row(), buffer);
+                    } else {
+                        planned.template().render(task.row(), task.details(), buffer);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (limiter != null) limiter.release();
+                    GenerationMetrics.get().documentFailed();
+                    throw e;
+                }
+                documents.put(new RenderedDocument(planned.path(), buffer.toByteArray(), System.nanoTime() - renderStart));
+            }
+        }
+    }
+
+    private void writeDocuments(BlockingQueue<RenderedDocument> documents, OutputSink sink, AtomicInteger written)
+            throws IOException, InterruptedException {
+        GenerationMetrics metrics = GenerationMetrics.get();
+        while (true) {
+            RenderedDocument document = documents.take();
+            if (document == END_OF_DOCUMENTS) return;
+
+            long writeStart = System.nanoTime();
+            try {
+                sink.write(document.path(), document.content());
+            } catch (IOException e) {
+                metrics.documentFailed();
+                throw e;
+            } finally {
+                if (limiter != null) limiter.release();
+            }
+            metrics.documentGenerated(document.renderNanos(), System.nanoTime() - writeStart, document.content().length);
+            written.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param details   строки группы или null без группировки
+     * @param documents документы, которые нужно построить из строки
+     */
+    private record RowTask(Map<String, String> row, List<Map<String, String>> details,
+                           List<PlannedDocument> documents) {}
+
+    private record RenderedDocument(String path, byte[] content, long renderNanos) {}
+}
@@ -0,0 +1,41 @@
+package org.example.pipeline;
+
+import java.util.*;
+
+/**
+ * Группировка строк таблицы по ключу: одна группа - один документ со строкой-мастером и строками-деталями.
+ */
+public final class GroupBy {
+
+    private final List<String> keyColumns;
+    private final List<Aggregate> aggregates;
+
+    public GroupBy(List<String> keyColumns, Collection<Aggregate> aggregates) {
+        if (keyColumns.isEmpty()) throw new IllegalArgumentException("At least one key column is required");
+        this.keyColumns = List.copyOf(keyColumns);
+        this.aggregates = List.copyOf(aggregates);
+    }
+
+    public static GroupBy of(String... keyColumns) {
+        return new GroupBy(Arrays.asList(keyColumns), List.of());
+    }
+
+    public List<String> getKeyColumns() {
+        return keyColumns;
+    }
+
+    public List<Aggregate> getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * @return колонки ключа и колонки, по которым считаются агрегаты
+     */
+    public Set<String> getColumns() {
+        Set<String> columns = new LinkedHashSet<>(keyColumns);
+        for (Aggregate aggregate : aggregates) {
+            if (aggregate.getColumn() != null) columns.add(aggregate.getColumn());
+        }
+        return columns;
+    }
+}
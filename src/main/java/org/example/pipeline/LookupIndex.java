@@ -0,0 +1,184 @@
+package org.example.pipeline;
+
+import org.example.interfaces.TableReader;
+import org.example.readers.ReadOptions;
+import org.example.readers.ValueInterner;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Справочная таблица, загруженная в память для соединения по ключу (аналог ВПР в Excel).
+ * Значения хранятся одним плоским массивом по строкам, повторяющиеся значения разделяют один экземпляр,
+ * а ключи индексируются хеш-таблицей с открытой адресацией без объектов-обёрток.
+ * При повторяющихся ключах используется первая строка, как и в ВПР.
+ * Колонки справочника - объединение колонок всех строк: в JSON и NDJSON колонка может впервые
+ * появиться в любой строке, и у строк без неё значение пустое.
+ */
+public final class LookupIndex {
+
+    private final String joinColumn;
+    private final String keyColumn;
+    private List<String> columns = new ArrayList<>();
+    private final Set<String> known = new HashSet<>();
+
+    private String[] keys = new String[16];
+    private String[] cells = new String[16];
+    private int[] slots = new int[32];
+    private int rowCount;
+
+    private LookupIndex(String joinColumn, String keyColumn) {
+        this.joinColumn = joinColumn;
+        this.keyColumn = keyColumn;
+    }
+
+    /**
+     * Читает справочник любым читателем таблиц.
+     *
+     * @param joinColumn колонка основной таблицы со значением ключа
+     * @param keyColumn  колонка справочника с ключом
+     * @param projection колонки, которые нужны шаблонам, или null - все колонки справочника
+     */
+    public static LookupIndex load(TableReader reader, File file, String joinColumn, String keyColumn,
+                                   Collection<String> projection) {
+        ValueInterner interner = new ValueInterner();
+        LookupIndex index = new LookupIndex(joinColumn, keyColumn);
+        boolean[] read = {false, false};
+        ReadOptions options = projection == null ? ReadOptions.ALL : ReadOptions.columns(withKey(projection, keyColumn));
+        reader.forEachRow(file, options, row -> {
+            read[0] = true;
+            read[1] |= row.containsKey(keyColumn);
+            index.add(row, interner);
+        });
+        if (read[0] && !read[1]) {
+            throw new IllegalArgumentException("Unknown lookup key column: " + keyColumn);
+        }
+        index.columns = List.copyOf(index.columns);
+        return index;
+    }
+
+    /**
+     * Записывает в строку колонки найденной строки справочника, заменяя одноимённые значения.
+     * Если ключ не найден, строка остаётся без изменений. Карта изменяется на месте,
+     * поэтому передаётся изменяемая карта, которой владеет вызывающий.
+     */
+    public void enrich(Map<String, String> row) {
+        int found = find(normalize(row.get(joinColumn)));
+        if (found < 0) return;
+        int offset = found * columns.size();
+        for (int i = 0; i < columns.size(); i++) {
+            row.put(columns.get(i), cells[offset + i]);
+        }
+    }
+
+    /**
+     * @return значение колонки справочника для ключа или null, если ключ не найден
+     */
+    public String get(String key, String column) {
+        int found = find(normalize(key));
+        int position = columns.indexOf(column);
+        if (found < 0 || position < 0) return null;
+        return cells[found * columns.size() + position];
+    }
+
+    public String getJoinColumn() {
+        return joinColumn;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    /**
+     * @return колонки, которые справочник добавляет в строки
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    private void add(Map<String, String> row, ValueInterner interner) {
+        addColumns(row);
+        String key = normalize(row.get(keyColumn));
+        if (key.isEmpty() || find(key) >= 0) return;
+
+        if (rowCount == keys.length) {
+            keys = Arrays.copyOf(keys, rowCount * 2);
+            cells = Arrays.copyOf(cells, keys.length * Math.max(1, columns.size()));
+        }
+        keys[rowCount] = key;
+        int offset = rowCount * columns.size();
+        for (int i = 0; i < columns.size(); i++) {
+            String value = row.get(columns.get(i));
+            cells[offset + i] = value == null ? "" : interner.intern(value);
+        }
+        rowCount++;
+
+        // заполненность хеш-таблицы не выше половины
+        if (rowCount * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int i = 0; i < rowCount; i++) {
+                place(i);
+            }
+        } else {
+            place(rowCount - 1);
+        }
+    }
+
+    /**
+     * Добавляет колонки, которых ещё не было, и перекладывает уже загруженные строки под новую ширину.
+     */
+    private void addColumns(Map<String, String> row) {
+        int width = columns.size();
+        for (String column : row.keySet()) {
+            if (!column.equals(keyColumn) && known.add(column)) {
+                columns.add(column);
+            }
+        }
+        if (columns.size() == width) return;
+
+        String[] widened = new String[keys.length * columns.size()];
+        for (int i = 0; i < rowCount; i++) {
+            System.arraycopy(cells, i * width, widened, i * columns.size(), width);
+            Arrays.fill(widened, i * columns.size() + width, (i + 1) * columns.size(), "");
+        }
+        cells = widened;
+    }
+
+    private void place(int rowIndex) {
+        int mask = slots.length - 1;
+        int slot = hash(keys[rowIndex]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = rowIndex + 1;
+    }
+
+    private int find(String key) {
+        if (key.isEmpty()) return -1;
+        int mask = slots.length - 1;
+        for (int slot = hash(key) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int rowIndex = slots[slot] - 1;
+            if (keys[rowIndex].equals(key)) return rowIndex;
+        }
+        return -1;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static String normalize(String key) {
+        return key == null ? "" : key.trim();
+    }
+
+    private static Set<String> withKey(Collection<String> projection, String keyColumn) {
+        Set<String> columns = new LinkedHashSet<>(projection);
+        columns.add(keyColumn);
+        return columns;
+    }
+}
@@ -0,0 +1,11 @@
+package org.example.pipeline;
+
+import org.example.interfaces.PreparedTemplate;
+
+/**
+ * Документ, который нужно построить из строки таблицы.
+ *
+ * @param path путь результата относительно целевой директории, разделитель - '/'
+ */
+public record PlannedDocument(PreparedTemplate template, String path) {
+}
@@ -0,0 +1,151 @@
+package org.example.pipeline;
+
+import org.example.I18n;
+import org.example.interfaces.NamingScheme;
+import org.example.interfaces.PreparedTemplate;
+import org.example.interfaces.TableReader;
+import org.example.readers.ReadOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Выбирает шаблон для каждой строки по значению колонки-селектора, например LANG = ru/en/it.
+ * Значение сравнивается с именем шаблона без учёта регистра, с расширением или без него.
+ * Шаблоны подготавливаются заранее, поэтому смешанный пакет строится за один проход по таблице;
+ * чтобы не подготавливать всю библиотеку, значения селектора можно сначала собрать
+ * {@link #selectorValues} и оставить только нужные шаблоны {@link #select}.
+ * Строка без подходящего шаблона пропускается и учитывается в {@link #getSkippedRows()},
+ * поэтому одна опечатка не останавливает рассылку на середине.
+ */
+public class RoutingPlan implements DocumentPlan {
+
+    private final String selectorColumn;
+    private final Map<String, PreparedTemplate> templates;
+    private final Map<String, PreparedTemplate> byName = new HashMap<>();
+    private final NamingScheme naming;
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * @param templates подготовленные шаблоны по имени файла
+     */
+    public RoutingPlan(String selectorColumn, Map<String, PreparedTemplate> templates) {
+        this(selectorColumn, templates, NamingScheme.sequential(I18n.get("file.name.document")));
+    }
+
+    /**
+     * @param naming имя документа для строки таблицы
+     */
+    public RoutingPlan(String selectorColumn, Map<String, PreparedTemplate> templates, NamingScheme naming) {
+        if (templates.isEmpty()) throw new IllegalArgumentException("At least one template is required");
+        this.selectorColumn = selectorColumn;
+        this.templates = new LinkedHashMap<>(templates);
+        this.naming = naming;
+
+        for (Map.Entry<String, String> entry : index(templates.keySet()).entrySet()) {
+            byName.put(entry.getKey(), templates.get(entry.getValue()));
+        }
+    }
+
+    /**
+     * Строка без шаблона для значения селектора не даёт документов.
+     */
+    @Override
+    public List<PlannedDocument> plan(int index, Map<String, String> row) {
+        String selector = row.get(selectorColumn);
+        PreparedTemplate template = selector == null ? null : byName.get(normalize(selector));
+        if (template == null) {
+            skipped.increment();
+            return List.of();
+        }
+        return List.of(new PlannedDocument(template, naming.name(index, row) + template.getExtension()));
+    }
+
+    @Override
+    public long getSkippedRows() {
+        return skipped.sum();
+    }
+
+    /**
+     * Читает только колонку-селектор и собирает её различные значения.
+     *
+     * @return значения селектора в порядке первого появления
+     */
+    public static Set<String> selectorValues(TableReader reader, File table, String selectorColumn) {
+        Set<String> values = new LinkedHashSet<>();
+        reader.forEachRow(table, ReadOptions.ALL.withColumns(Set.of(selectorColumn)),
+                row -> values.add(row.getOrDefault(selectorColumn, "")));
+        return values;
+    }
+
+    /**
+     * @param templates шаблоны по имени файла
+     * @return шаблоны, выбранные хотя бы одним значением селектора, в исходном порядке
+     */
+    public static <T> Map<String, T> select(Map<String, T> templates, Collection<String> selectorValues) {
+        Map<String, String> names = index(templates.keySet());
+        Set<String> referenced = new HashSet<>();
+        for (String value : selectorValues) {
+            String name = names.get(normalize(value));
+            if (name != null) referenced.add(name);
+        }
+        Map<String, T> selected = new LinkedHashMap<>();
+        for (Map.Entry<String, T> entry : templates.entrySet()) {
+            if (referenced.contains(entry.getKey())) selected.put(entry.getKey(), entry.getValue());
+        }
+        return selected;
+    }
+
+    /**
+     * @return значения селектора, для которых нет шаблона
+     */
+    public static Set<String> unmatched(Collection<String> templateNames, Collection<String> selectorValues) {
+        Map<String, String> names = index(templateNames);
+        Set<String> unmatched = new LinkedHashSet<>();
+        for (String value : selectorValues) {
+            if (!names.containsKey(normalize(value))) unmatched.add(value);
+        }
+        return unmatched;
+    }
+
+    /**
+     * Значение селектора в нормализованном виде → имя шаблона. Имя без расширения однозначно,
+     * только если нет шаблонов с тем же именем в другом формате.
+     */
+    private static Map<String, String> index(Collection<String> templateNames) {
+        Map<String, Integer> baseNames = new HashMap<>();
+        for (String name : templateNames) {
+            baseNames.merge(normalize(baseName(name)), 1, Integer::sum);
+        }
+        Map<String, String> index = new HashMap<>();
+        for (String name : templateNames) {
+            index.put(normalize(name), name);
+            String baseName = normalize(baseName(name));
+            if (baseNames.get(baseName) == 1) index.putIfAbsent(baseName, name);
+        }
+        return index;
+    }
+
+    @Override
+    public Collection<PreparedTemplate> getTemplates() {
+        return templates.values();
+    }
+
+    @Override
+    public Set<String> getColumns() throws IOException {
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add(selectorColumn);
+        columns.addAll(DocumentPlan.super.getColumns());
+        return columns;
+    }
+
+    private static String baseName(String name) {
+        return name.replaceAll("\\.[^.]+$", "");
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.pipeline;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Потоковая группировка строк, отсортированных по ключу: группа закрывается, как только ключ меняется,
+ * поэтому в памяти находится только текущая группа. Агрегаты считаются в том же проходе.
+ * Ключ сравнивается только с предыдущим в том же порядке, что и при сортировке: если он оказался меньше,
+ * вход не отсортирован и группировка прерывается.
+ */
+public class RowGrouper implements Consumer<Map<String, String>> {
+
+    private final GroupBy groupBy;
+    private final BiConsumer<Map<String, String>, List<Map<String, String>>> groups;
+
+    private List<String> currentKey;
+    private List<String> previousKey;
+    private List<Map<String, String>> details = new ArrayList<>();
+    private List<Aggregate.Accumulator> accumulators;
+
+    /**
+     * @param groups получает строку-мастер (первая строка группы и значения агрегатов) и строки группы
+     */
+    public RowGrouper(GroupBy groupBy, BiConsumer<Map<String, String>, List<Map<String, String>>> groups) {
+        this.groupBy = groupBy;
+        this.groups = groups;
+    }
+
+    @Override
+    public void accept(Map<String, String> row) {
+        List<String> key = new ArrayList<>(groupBy.getKeyColumns().size());
+        for (String column : groupBy.getKeyColumns()) {
+            String value = row.get(column);
+            key.add(value == null ? "" : value);
+        }
+
+        if (!key.equals(currentKey)) {
+            finish();
+            if (previousKey != null && compare(key, previousKey) < 0) {
+                throw new IllegalStateException("Input is not sorted by " + String.join(", ", groupBy.getKeyColumns())
+                        + ": key " + key + " follows " + previousKey);
+            }
+            currentKey = key;
+            previousKey = key;
+            accumulators = new ArrayList<>();
+            for (Aggregate aggregate : groupBy.getAggregates()) {
+                accumulators.add(aggregate.newAccumulator());
+            }
+        }
+
+        details.add(row);
+        for (Aggregate.Accumulator accumulator : accumulators) {
+            accumulator.add(row);
+        }
+    }
+
+    /**
+     * Отдаёт последнюю группу; вызывается после окончания входа.
+     */
+    public void finish() {
+        if (currentKey == null) return;
+        Map<String, String> master = new LinkedHashMap<>(details.get(0));
+        for (int i = 0; i < accumulators.size(); i++) {
+            master.put(groupBy.getAggregates().get(i).getPlaceholder(), accumulators.get(i).result());
+        }
+        List<Map<String, String>> group = details;
+        currentKey = null;
+        details = new ArrayList<>();
+        groups.accept(master, group);
+    }
+
+    private static int compare(List<String> left, List<String> right) {
+        for (int i = 0; i < left.size(); i++) {
+            int result = left.get(i).compareTo(right.get(i));
+            if (result != 0) return result;
+        }
+        return 0;
+    }
+}
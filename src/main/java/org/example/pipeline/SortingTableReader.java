@@ -0,0 +1,45 @@
+package org.example.pipeline;
+
+import org.example.interfaces.TableReader;
+import org.example.readers.ReadOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Читатель, выдающий строки другого читателя в порядке колонок ключа.
+ * Диапазон строк и фильтры применяются до сортировки, к исходному порядку таблицы.
+ * Таблицы, не помещающиеся в бюджет памяти, сортируются через временные файлы (см. ExternalSorter).
+ */
+public class SortingTableReader implements TableReader {
+
+    private final TableReader delegate;
+    private final List<String> keyColumns;
+    private final long memoryBudget;
+    private final Path tempDirectory;
+
+    public SortingTableReader(TableReader delegate, List<String> keyColumns) {
+        this(delegate, keyColumns, ExternalSorter.defaultMemoryBudget(), Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    public SortingTableReader(TableReader delegate, List<String> keyColumns, long memoryBudget, Path tempDirectory) {
+        this.delegate = delegate;
+        this.keyColumns = List.copyOf(keyColumns);
+        this.memoryBudget = memoryBudget;
+        this.tempDirectory = tempDirectory;
+    }
+
+    @Override
+    public void forEachRow(File file, ReadOptions options, Consumer<Map<String, String>> consumer) {
+        try (ExternalSorter sorter = new ExternalSorter(keyColumns, memoryBudget, tempDirectory)) {
+            delegate.forEachRow(file, options, sorter);
+            sorter.forEachSorted(consumer);
+        } catch (IOException e) {
+            throw new RuntimeException("Row sorting error", e);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.example.processors;
+
+import org.example.expressions.Expression;
+import org.example.expressions.ValueFormat;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Плейсхолдеры шаблона с выражениями и директивами формата, скомпилированными один раз
+ * при подготовке шаблона. Выражением считается только плейсхолдер, помеченный знаком =, например [=PRICE*QTY];
+ * остальные плейсхолдеры - имена колонок, даже с символами / + * в имени, например [ИНН/КПП].
+ */
+final class CompiledPlaceholders {
+
+    /**
+     * Директива формата [источник|шаблон|локаль]: источник - колонка или помеченное выражение [=PRICE*QTY|#,##0.00].
+     * Значение колонки разбирается в число или дату один раз: разобранные значения кэшируются
+     * на время жизни подготовленного шаблона, поэтому повторяющиеся даты, суммы и коды
+     * не разбираются заново в каждой строке.
+     */
+    private static final class Directive {
+        private static final int PARSED_LIMIT = 65_536;
+
+        private final String source;
+        // выражение источника или null, если источник - колонка
+        private final Expression expression;
+        private final ValueFormat format;
+        private final Map<String, Object> parsed = new ConcurrentHashMap<>();
+
+        private Directive(String source, Expression expression, ValueFormat format) {
+            this.source = source;
+            this.expression = expression;
+            this.format = format;
+        }
+
+        String apply(Map<String, String> row) {
+            if (expression != null) return expression.evaluate(row, format);
+            String value = row.get(source);
+            return format.formatParsed(parse(value == null ? "" : value));
+        }
+
+        private Object parse(String value) {
+            Object result = parsed.get(value);
+            if (result == null) {
+                result = format.parse(value);
+                // уникальные значения сверх предела разбираются без кэширования
+                if (parsed.size() < PARSED_LIMIT) parsed.putIfAbsent(value, result);
+            }
+            return result;
+        }
+    }
+
+    private final Map<String, Expression> expressions;
+    private final Map<String, Directive> directives;
+    private final Set<String> inputs;
+    private final Set<String> columns;
+
+    private CompiledPlaceholders(Map<String, Expression> expressions, Map<String, Directive> directives,
+                                 Set<String> inputs, Set<String> columns) {
+        this.expressions = expressions;
+        this.directives = directives;
+        this.inputs = inputs;
+        this.columns = columns;
+    }
+
+    /**
+     * @param conditions условия блоков [#IF ...]; их колонки тоже нужно прочитать
+     * @throws IOException если в выражении неизвестная функция или неверное число аргументов,
+     *                     или в директиве некорректный шаблон формата или локаль
+     */
+    static CompiledPlaceholders compile(Collection<String> placeholders, Collection<String> conditions)
+            throws IOException {
+        Map<String, Expression> expressions = new HashMap<>();
+        Map<String, Directive> directives = new HashMap<>();
+        Set<String> inputs = new LinkedHashSet<>();
+        Set<String> columns = new LinkedHashSet<>();
+        for (String placeholder : placeholders) {
+            if (TemplateImages.isImage(placeholder)) {
+                // изображение вставляет процессор, из строки нужен только путь к файлу
+                inputs.add(TemplateImages.column(placeholder));
+                columns.add(TemplateImages.column(placeholder));
+                continue;
+            }
+            Directive directive = directive(placeholder);
+            if (directive != null) {
+                directives.put(placeholder, directive);
+                columns.add(placeholder);
+                if (directive.expression == null) {
+                    inputs.add(directive.source);
+                    columns.add(directive.source);
+                } else {
+                    inputs.addAll(directive.expression.getColumns());
+                    columns.addAll(directive.expression.getColumns());
+                }
+                continue;
+            }
+            Expression expression = expression(placeholder);
+            if (expression == null) {
+                inputs.add(placeholder);
+                columns.add(placeholder);
+            } else {
+                expressions.put(placeholder, expression);
+                inputs.addAll(expression.getColumns());
+                columns.addAll(expression.getColumns());
+            }
+        }
+        for (String condition : conditions) {
+            Expression expression = expression(condition);
+            Collection<String> referenced = expression == null ? List.of(condition.trim()) : expression.getColumns();
+            inputs.addAll(referenced);
+            columns.addAll(referenced);
+        }
+        return new CompiledPlaceholders(Map.copyOf(expressions), Map.copyOf(directives),
+                Collections.unmodifiableSet(inputs), Collections.unmodifiableSet(columns));
+    }
+
+    /**
+     * @return выражение, если текст помечен знаком =, иначе null
+     */
+    private static Expression expression(String text) throws IOException {
+        try {
+            return Expression.placeholder(text);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid template expression: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return директива или null, если после разделителя | нет распознаваемого шаблона числа или даты:
+     * такой плейсхолдер, например [Да|Нет], остаётся именем колонки
+     */
+    private static Directive directive(String placeholder) throws IOException {
+        String[] parts = placeholder.split("\\|", 3);
+        if (parts.length < 2 || parts[0].isBlank() || !ValueFormat.isPattern(parts[1].trim())) return null;
+        String source = parts[0].trim();
+        ValueFormat format;
+        try {
+            format = ValueFormat.of(parts[1].trim(), parts.length > 2 ? parts[2].trim() : null);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid format directive [" + placeholder + "]: " + e.getMessage(), e);
+        }
+        return new Directive(source, expression(source), format);
+    }
+
+    /**
+     * @return значения, которые нужно ввести для заполнения шаблона: колонки без текста выражений
+     */
+    Set<String> getInputs() {
+        return inputs;
+    }
+
+    /**
+     * @return колонки таблицы для проекции при чтении
+     */
+    Set<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return строка, в которой плейсхолдеры-выражения вычисляются при обращении
+     */
+    Map<String, String> bind(Map<String, String> row) {
+        if (expressions.isEmpty() && directives.isEmpty()) return row;
+        return new AbstractMap<>() {
+            @Override
+            public String get(Object key) {
+                String value = row.get(key);
+                if (value != null) return value;
+                Expression expression = expressions.get(key);
+                if (expression != null) return expression.evaluate(row);
+                Directive directive = directives.get(key);
+                return directive == null ? null : directive.apply(row);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return row.containsKey(key) || expressions.containsKey(key) || directives.containsKey(key);
+            }
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return row.entrySet();
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.processors;
+
+import org.example.expressions.Expression;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Условные блоки [#IF условие] ... [#ELSE] ... [/IF] в последовательности элементов шаблона
+ * (абзацев тела документа или строк одной таблицы). Каждый маркер занимает отдельный элемент.
+ * Структура блоков и условия компилируются один раз при подготовке шаблона,
+ * для строки таблицы остаётся только выбрать номера элементов, которые не попадут в документ.
+ */
+final class ConditionalBlocks {
+
+    static final ConditionalBlocks NONE = new ConditionalBlocks(List.of());
+
+    /**
+     * @param otherwise номер элемента [#ELSE] или -1
+     */
+    private record Block(int start, int otherwise, int end, Predicate<Map<String, String>> condition,
+                         List<Block> children) {}
+
+    private final List<Block> blocks;
+
+    private ConditionalBlocks(List<Block> blocks) {
+        this.blocks = blocks;
+    }
+
+    /**
+     * @param texts тексты элементов по порядку
+     * @throws IOException если маркеры не сбалансированы, стоят внутри текста или условие некорректно
+     */
+    static ConditionalBlocks parse(List<String> texts) throws IOException {
+        String ifTag = "[" + TemplateMarkers.IF;
+        String elseTag = TemplateMarkers.tag(TemplateMarkers.ELSE);
+        String endTag = TemplateMarkers.tag(TemplateMarkers.END_IF);
+
+        List<Block> roots = new ArrayList<>();
+        Deque<int[]> open = new ArrayDeque<>();
+        Deque<List<Block>> children = new ArrayDeque<>();
+        Deque<Predicate<Map<String, String>>> conditions = new ArrayDeque<>();
+        children.push(roots);
+
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i).trim();
+            if (text.startsWith(ifTag + " ") && text.endsWith("]") && text.indexOf(']') == text.length() - 1) {
+                conditions.push(condition(text.substring(ifTag.length() + 1, text.length() - 1)));
+                open.push(new int[]{i, -1});
+                children.push(new ArrayList<>());
+            } else if (text.equals(elseTag)) {
+                if (open.isEmpty() || open.peek()[1] >= 0) throw new IOException("Unexpected " + elseTag);
+                open.peek()[1] = i;
+            } else if (text.equals(endTag)) {
+                if (open.isEmpty()) throw new IOException("Unexpected " + endTag);
+                int[] start = open.pop();
+                Block block = new Block(start[0], start[1], i, conditions.pop(), List.copyOf(children.pop()));
+                children.peek().add(block);
+            } else if (text.contains(ifTag) || text.contains(elseTag) || text.contains(endTag)) {
+                throw new IOException("Conditional marker must be alone in its paragraph or table row: " + text);
+            }
+        }
+        if (!open.isEmpty()) throw new IOException("Missing " + endTag);
+        return roots.isEmpty() ? NONE : new ConditionalBlocks(List.copyOf(roots));
+    }
+
+    boolean isEmpty() {
+        return blocks.isEmpty();
+    }
+
+    /**
+     * @return номера элементов, которые нужно убрать для строки: маркеры и невыбранные ветви
+     */
+    BitSet dropped(Map<String, String> row) {
+        BitSet dropped = new BitSet();
+        for (Block block : blocks) {
+            drop(block, row, dropped);
+        }
+        return dropped;
+    }
+
+    private static void drop(Block block, Map<String, String> row, BitSet dropped) {
+        dropped.set(block.start());
+        dropped.set(block.end());
+        int middle = block.otherwise() >= 0 ? block.otherwise() : block.end();
+        dropped.set(middle);
+        boolean then = block.condition().test(row);
+        if (then) {
+            dropped.set(middle, block.end());
+        } else {
+            dropped.set(block.start(), middle);
+        }
+        for (Block child : block.children()) {
+            // вложенные блоки невыбранной ветви уже убраны целиком
+            boolean inThen = child.start() < middle;
+            if (inThen == then) drop(child, row, dropped);
+        }
+    }
+
+    private static Predicate<Map<String, String>> condition(String text) throws IOException {
+        try {
+            return Expression.condition(text);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid template expression: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return условия всех блоков для построения проекции
+     */
+    static List<String> conditionTexts(Collection<String> placeholders) {
+        List<String> texts = new ArrayList<>();
+        for (String placeholder : placeholders) {
+            if (placeholder.startsWith(TemplateMarkers.IF + " ")) {
+                texts.add(placeholder.substring(TemplateMarkers.IF.length() + 1).trim());
+            }
+        }
+        return texts;
+    }
+}
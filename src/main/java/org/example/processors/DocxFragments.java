@@ -0,0 +1,238 @@
+package org.example.processors;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Границы элементов тела документа и строк таблиц верхнего уровня в XML основной части DOCX,
+ * найденные один раз при подготовке шаблона. Номера элементов совпадают с номерами POI:
+ * элементы тела - это абзацы, таблицы и блоки элементов управления содержимым, строки - прямые w:tr таблицы.
+ * Вариант шаблона без убранных условными блоками элементов собирается копированием байтов части
+ * с пропуском их диапазонов, дерево документа при этом не строится и не изменяется.
+ */
+final class DocxFragments {
+
+    private static final Set<String> BODY_ELEMENTS = Set.of("p", "tbl", "sdt");
+
+    private final byte[] templateBytes;
+    private final String entryName;
+    private final byte[] xml;
+    private final List<int[]> body;
+    private final List<List<int[]>> tables;
+
+    private DocxFragments(byte[] templateBytes, String entryName, byte[] xml, List<int[]> body,
+                          List<List<int[]>> tables) {
+        this.templateBytes = templateBytes;
+        this.entryName = entryName;
+        this.xml = xml;
+        this.body = body;
+        this.tables = tables;
+    }
+
+    /**
+     * @param partName   имя основной части пакета, например /word/document.xml
+     * @param bodyCount  число элементов тела по данным POI
+     * @param tableRows  число строк каждой таблицы верхнего уровня по данным POI
+     * @throws IOException если части нет или её разметка не совпадает с разобранным документом
+     */
+    static DocxFragments scan(byte[] templateBytes, String partName, int bodyCount, List<Integer> tableRows)
+            throws IOException {
+        String entryName = partName.startsWith("/") ? partName.substring(1) : partName;
+        byte[] xml = read(templateBytes, entryName);
+        if (xml == null) throw new IOException("Document part not found: " + entryName);
+
+        List<int[]> body = new ArrayList<>();
+        List<List<int[]>> tables = new ArrayList<>();
+        List<int[]> rows = null;
+        String prefix = null;
+        boolean inBody = false;
+        int depth = 0;
+        int elementStart = -1;
+        int rowStart = -1;
+
+        int position = 0;
+        while ((position = indexOf(xml, position, "<")) >= 0) {
+            int start = position;
+            if (startsWith(xml, position, "<?")) {
+                position = skip(xml, position, "?>");
+                continue;
+            }
+            if (startsWith(xml, position, "<!--")) {
+                position = skip(xml, position, "-->");
+                continue;
+            }
+            if (startsWith(xml, position, "<![CDATA[")) {
+                position = skip(xml, position, "]]>");
+                continue;
+            }
+            if (startsWith(xml, position, "<!")) {
+                position = skip(xml, position, ">");
+                continue;
+            }
+
+            int end = tagEnd(xml, position);
+            if (xml[position + 1] == '/') {
+                if (depth == 4 && rowStart >= 0) {
+                    rows.add(new int[]{rowStart, end});
+                    rowStart = -1;
+                } else if (depth == 3 && elementStart >= 0) {
+                    body.add(new int[]{elementStart, end});
+                    elementStart = -1;
+                    rows = null;
+                } else if (depth == 2) {
+                    inBody = false;
+                }
+                depth--;
+            } else {
+                boolean empty = xml[end - 2] == '/';
+                String name = name(xml, position + 1);
+                int colon = name.indexOf(':');
+                String namePrefix = colon < 0 ? "" : name.substring(0, colon);
+                String localName = name.substring(colon + 1);
+                int level = depth + 1;
+                if (level == 2 && localName.equals("body")) {
+                    inBody = !empty;
+                    prefix = namePrefix;
+                } else if (level == 3 && inBody && namePrefix.equals(prefix) && BODY_ELEMENTS.contains(localName)) {
+                    if (empty) {
+                        body.add(new int[]{start, end});
+                    } else {
+                        elementStart = start;
+                        if (localName.equals("tbl")) {
+                            rows = new ArrayList<>();
+                            tables.add(rows);
+                        }
+                    }
+                } else if (level == 4 && rows != null && namePrefix.equals(prefix) && localName.equals("tr")) {
+                    if (empty) {
+                        rows.add(new int[]{start, end});
+                    } else {
+                        rowStart = start;
+                    }
+                }
+                if (!empty) depth++;
+            }
+            position = end;
+        }
+
+        boolean matches = body.size() == bodyCount && tables.size() == tableRows.size();
+        for (int i = 0; matches && i < tables.size(); i++) {
+            matches = tables.get(i).size() == tableRows.get(i);
+        }
+        if (!matches) throw new IOException("Unsupported document structure in " + entryName);
+        return new DocxFragments(templateBytes, entryName, xml, body, tables);
+    }
+
+    /**
+     * @param droppedBody   номера убираемых элементов тела
+     * @param droppedRows   номера убираемых строк каждой таблицы верхнего уровня
+     * @return байты шаблона без убранных элементов
+     */
+    byte[] variant(BitSet droppedBody, List<BitSet> droppedRows) throws IOException {
+        List<int[]> skipped = new ArrayList<>();
+        for (int i = droppedBody.nextSetBit(0); i >= 0; i = droppedBody.nextSetBit(i + 1)) {
+            skipped.add(body.get(i));
+        }
+        for (int t = 0; t < droppedRows.size(); t++) {
+            BitSet dropped = droppedRows.get(t);
+            for (int i = dropped.nextSetBit(0); i >= 0; i = dropped.nextSetBit(i + 1)) {
+                skipped.add(tables.get(t).get(i));
+            }
+        }
+        skipped.sort(Comparator.comparingInt(range -> range[0]));
+
+        ByteArrayOutputStream part = new ByteArrayOutputStream(xml.length);
+        int position = 0;
+        for (int[] range : skipped) {
+            // строки таблицы, убранной целиком, уже пропущены вместе с ней
+            if (range[0] < position) continue;
+            part.write(xml, position, range[0] - position);
+            position = range[1];
+        }
+        part.write(xml, position, xml.length - position);
+        return repack(part.toByteArray());
+    }
+
+    /**
+     * Копирует пакет шаблона, заменяя основную часть.
+     */
+    private byte[] repack(byte[] document) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(templateBytes.length);
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(templateBytes));
+             ZipOutputStream out = new ZipOutputStream(buffer)) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                if (entry.getName().equals(entryName)) {
+                    out.write(document);
+                } else {
+                    in.transferTo(out);
+                }
+                out.closeEntry();
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private static byte[] read(byte[] packageBytes, String entryName) throws IOException {
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(packageBytes))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (entry.getName().equals(entryName)) return in.readAllBytes();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return позиция после закрывающей скобки тега; скобки внутри значений атрибутов пропускаются
+     */
+    private static int tagEnd(byte[] xml, int start) throws IOException {
+        byte quote = 0;
+        for (int i = start + 1; i < xml.length; i++) {
+            byte b = xml[i];
+            if (quote != 0) {
+                if (b == quote) quote = 0;
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i + 1;
+            }
+        }
+        throw new IOException("Unterminated XML tag");
+    }
+
+    private static String name(byte[] xml, int start) {
+        int end = start;
+        while (end < xml.length && xml[end] != '>' && xml[end] != '/' && xml[end] > ' ') {
+            end++;
+        }
+        return new String(xml, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static int skip(byte[] xml, int start, String terminator) {
+        int found = indexOf(xml, start, terminator);
+        return found < 0 ? xml.length : found + terminator.length();
+    }
+
+    private static int indexOf(byte[] xml, int start, String text) {
+        for (int i = start; i <= xml.length - text.length(); i++) {
+            if (startsWith(xml, i, text)) return i;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] xml, int start, String text) {
+        if (start + text.length() > xml.length) return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (xml[start + i] != text.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.processors;
+
+import org.apache.poi.xwpf.usermodel.*;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.impl.xb.xmlschema.SpaceAttribute;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTText;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Однократная очистка шаблона DOCX при добавлении в библиотеку шаблонов.
+ * Word разбивает [FULL_NAME] на несколько прогонов из-за отметок проверки правописания (w:proofErr)
+ * и идентификаторов правок (w:rsid*). Очистка убирает этот шум и склеивает соседние текстовые прогоны
+ * с одинаковым оформлением в параграфах с плейсхолдерами, после чего плейсхолдер обычно лежит
+ * в одном прогоне и при рендеринге заменяется без пересборки параграфа.
+ */
+final class DocxNormalizer {
+
+    private static final String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final QName PROOF_ERROR = new QName(W_NS, "proofErr");
+    private static final QName RUN_PROPERTIES = new QName(W_NS, "rPr");
+    private static final QName TEXT = new QName(W_NS, "t");
+
+    private DocxNormalizer() {
+    }
+
+    static void normalize(XWPFDocument document) {
+        clean(document.getDocument());
+        List<IBody> parts = new ArrayList<>();
+        parts.addAll(document.getHeaderList());
+        parts.addAll(document.getFooterList());
+        parts.addAll(document.getFootnotes());
+        parts.addAll(document.getEndnotes());
+        for (IBody part : parts) {
+            if (part instanceof XWPFHeaderFooter headerFooter) clean(headerFooter._getHdrFtr());
+            if (part instanceof XWPFAbstractFootnoteEndnote note) clean(note.getCTFtnEdn());
+        }
+
+        for (IBodyElement element : document.getBodyElements()) {
+            DocxParts.<RuntimeException>walk(element, Set.of(), DocxNormalizer::mergeRuns);
+        }
+        for (IBody part : parts) {
+            for (IBodyElement element : part.getBodyElements()) {
+                DocxParts.<RuntimeException>walk(element, Set.of(), DocxNormalizer::mergeRuns);
+            }
+        }
+    }
+
+    /**
+     * Удаляет отметки проверки правописания и атрибуты w:rsid* во всём фрагменте XML.
+     */
+    private static void clean(XmlObject root) {
+        try (XmlCursor cursor = root.newCursor()) {
+            XmlCursor.TokenType token = cursor.toNextToken();
+            while (!token.isNone()) {
+                if (token.isStart() && PROOF_ERROR.equals(cursor.getName())) {
+                    // после удаления курсор уже стоит на следующем элементе
+                    cursor.removeXml();
+                    token = cursor.currentTokenType();
+                    continue;
+                }
+                if (token.isAttr()) {
+                    QName name = cursor.getName();
+                    if (W_NS.equals(name.getNamespaceURI()) && name.getLocalPart().startsWith("rsid")) {
+                        cursor.removeXml();
+                        token = cursor.currentTokenType();
+                        continue;
+                    }
+                }
+                token = cursor.toNextToken();
+            }
+        }
+    }
+
+    /**
+     * Склеивает соседние прогоны из одного w:t с одинаковым w:rPr. Параграфы без плейсхолдеров не меняются.
+     */
+    private static void mergeRuns(XWPFParagraph paragraph) {
+        CTP ctp = paragraph.getCTP();
+        if (paragraph.getText().indexOf('[') < 0) return;
+
+        List<XmlObject> children = new ArrayList<>();
+        try (XmlCursor cursor = ctp.newCursor()) {
+            if (!cursor.toFirstChild()) return;
+            do {
+                children.add(cursor.getObject());
+            } while (cursor.toNextSibling());
+        }
+
+        List<CTR> merged = new ArrayList<>();
+        CTR previous = null;
+        for (XmlObject child : children) {
+            if (!(child instanceof CTR run) || !isPlainText(run)) {
+                previous = null;
+                continue;
+            }
+            if (previous != null && sameFormatting(previous, run)) {
+                CTText text = previous.getTArray(0);
+                text.setStringValue(text.getStringValue() + run.getTArray(0).getStringValue());
+                text.setSpace(SpaceAttribute.Space.PRESERVE);
+                merged.add(run);
+            } else {
+                previous = run;
+            }
+        }
+        for (CTR run : merged) {
+            try (XmlCursor cursor = run.newCursor()) {
+                cursor.removeXml();
+            }
+        }
+    }
+
+    /**
+     * @return true, если прогон содержит только оформление и один текстовый элемент
+     */
+    private static boolean isPlainText(CTR run) {
+        int texts = 0;
+        try (XmlCursor cursor = run.newCursor()) {
+            if (!cursor.toFirstChild()) return false;
+            do {
+                QName name = cursor.getName();
+                if (TEXT.equals(name)) {
+                    texts++;
+                } else if (!RUN_PROPERTIES.equals(name)) {
+                    return false;
+                }
+            } while (cursor.toNextSibling());
+        }
+        return texts == 1;
+    }
+
+    private static boolean sameFormatting(CTR first, CTR second) {
+        if (!first.isSetRPr() || !second.isSetRPr()) return first.isSetRPr() == second.isSetRPr();
+        return first.getRPr().xmlText().equals(second.getRPr().xmlText());
+    }
+}
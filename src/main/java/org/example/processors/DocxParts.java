@@ -0,0 +1,178 @@
+package org.example.processors;
+
+import org.apache.poi.xwpf.usermodel.*;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRow;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Индекс частей DOCX с плейсхолдерами: элементы тела документа, колонтитулы и сноски.
+ * Внутри части учитываются вложенные таблицы и надписи (текстовые поля).
+ * Индекс строится один раз при подготовке шаблона; при рендеринге обходятся только отмеченные части
+ * и элементы тела, остальные сохраняются без изменений.
+ */
+final class DocxParts {
+
+    private static final String TEXT_BOX_PARAGRAPHS =
+            "declare namespace w='http://schemas.openxmlformats.org/wordprocessingml/2006/main' .//w:txbxContent/w:p";
+
+    /**
+     * Обработчик параграфа при обходе.
+     */
+    interface ParagraphVisitor<E extends Exception> {
+        void visit(XWPFParagraph paragraph) throws E;
+    }
+
+    private final int[] body;
+    private final int[] headers;
+    private final int[] footers;
+    private final int[] footnotes;
+    private final int[] endnotes;
+
+    private DocxParts(int[] body, int[] headers, int[] footers, int[] footnotes, int[] endnotes) {
+        this.body = body;
+        this.headers = headers;
+        this.footers = footers;
+        this.footnotes = footnotes;
+        this.endnotes = endnotes;
+    }
+
+    /**
+     * Обходит все части документа, собирает плейсхолдеры и запоминает, где они встречаются.
+     *
+     * @param extractor    добавляет плейсхолдеры параграфа в переданное множество
+     * @param placeholders найденные плейсхолдеры
+     */
+    static DocxParts scan(XWPFDocument document, BiConsumer<XWPFParagraph, Set<String>> extractor,
+                          Set<String> placeholders) {
+        List<IBodyElement> elements = document.getBodyElements();
+        int[] body = marked(elements.size(), i -> collect(elements.get(i), extractor, placeholders));
+        return new DocxParts(body,
+                markedBodies(document.getHeaderList(), extractor, placeholders),
+                markedBodies(document.getFooterList(), extractor, placeholders),
+                markedBodies(document.getFootnotes(), extractor, placeholders),
+                markedBodies(document.getEndnotes(), extractor, placeholders));
+    }
+
+    /**
+     * @param droppedBody элементы тела, которых нет в варианте шаблона
+     * @return индекс для варианта шаблона: номера оставшихся элементов тела сдвинуты, убранные исключены
+     */
+    DocxParts without(BitSet droppedBody) {
+        if (droppedBody.isEmpty()) return this;
+        int[] remaining = Arrays.stream(body)
+                .filter(i -> !droppedBody.get(i))
+                .map(i -> i - droppedBody.get(0, i).cardinality())
+                .toArray();
+        return new DocxParts(remaining, headers, footers, footnotes, endnotes);
+    }
+
+    /**
+     * Находит отмеченные части в копии документа. Вызывается до изменения документа: ссылки
+     * на элементы тела не зависят от сдвига номеров после удаления условных блоков.
+     */
+    Targets targets(XWPFDocument document) {
+        List<IBodyElement> elements = document.getBodyElements();
+        List<IBodyElement> bodyTargets = new ArrayList<>(body.length);
+        for (int i : body) {
+            bodyTargets.add(elements.get(i));
+        }
+        List<IBody> parts = new ArrayList<>();
+        addAll(parts, document.getHeaderList(), headers);
+        addAll(parts, document.getFooterList(), footers);
+        addAll(parts, document.getFootnotes(), footnotes);
+        addAll(parts, document.getEndnotes(), endnotes);
+        return new Targets(document, bodyTargets, parts);
+    }
+
+    /**
+     * Элементы документа с плейсхолдерами, найденные по индексу в конкретной копии документа.
+     */
+    static final class Targets {
+        private final XWPFDocument document;
+        private final List<IBodyElement> body;
+        private final List<IBody> parts;
+
+        private Targets(XWPFDocument document, List<IBodyElement> body, List<IBody> parts) {
+            this.document = document;
+            this.body = body;
+            this.parts = parts;
+        }
+
+        /**
+         * Обходит параграфы отмеченных частей; удалённые из документа элементы тела пропускаются.
+         *
+         * @param expanded строки таблиц, уже заполненные при размножении повторяющихся областей
+         */
+        <E extends Exception> void forEachParagraph(Set<CTRow> expanded, ParagraphVisitor<E> visitor) throws E {
+            Set<IBodyElement> present = Collections.newSetFromMap(new IdentityHashMap<>());
+            present.addAll(document.getBodyElements());
+            for (IBodyElement element : body) {
+                if (present.contains(element)) walk(element, expanded, visitor);
+            }
+            for (IBody part : parts) {
+                for (IBodyElement element : part.getBodyElements()) {
+                    walk(element, expanded, visitor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Обходит параграф с его надписями или таблицу со всеми вложенными таблицами.
+     */
+    static <E extends Exception> void walk(IBodyElement element, Set<CTRow> expanded, ParagraphVisitor<E> visitor)
+            throws E {
+        if (element instanceof XWPFParagraph paragraph) {
+            // надписи лежат внутри прогонов параграфа и не видны через его API
+            for (XmlObject item : paragraph.getCTP().selectPath(TEXT_BOX_PARAGRAPHS)) {
+                if (item instanceof CTP ctp) visitor.visit(new XWPFParagraph(ctp, paragraph.getBody()));
+            }
+            visitor.visit(paragraph);
+        } else if (element instanceof XWPFTable table) {
+            for (XWPFTableRow row : table.getRows()) {
+                if (expanded.contains(row.getCtRow())) continue;
+                for (XWPFTableCell cell : row.getTableCells()) {
+                    for (IBodyElement child : cell.getBodyElements()) {
+                        walk(child, expanded, visitor);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean collect(IBodyElement element, BiConsumer<XWPFParagraph, Set<String>> extractor,
+                                   Set<String> placeholders) {
+        Set<String> found = new LinkedHashSet<>();
+        DocxParts.<RuntimeException>walk(element, Set.of(), paragraph -> extractor.accept(paragraph, found));
+        placeholders.addAll(found);
+        return !found.isEmpty();
+    }
+
+    private static int[] markedBodies(List<? extends IBody> bodies,
+                                      BiConsumer<XWPFParagraph, Set<String>> extractor,
+                                      Set<String> placeholders) {
+        return marked(bodies.size(), i -> {
+            boolean found = false;
+            for (IBodyElement element : bodies.get(i).getBodyElements()) {
+                found |= collect(element, extractor, placeholders);
+            }
+            return found;
+        });
+    }
+
+    private static int[] marked(int size, IntPredicate predicate) {
+        return IntStream.range(0, size).filter(predicate).toArray();
+    }
+
+    private static void addAll(List<IBody> target, List<? extends IBody> bodies, int[] indexes) {
+        for (int i : indexes) {
+            if (i < bodies.size()) target.add(bodies.get(i));
+        }
+    }
+}
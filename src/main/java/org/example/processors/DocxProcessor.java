@@ -1,14 +1,23 @@
 package org.example.processors;
 
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.xwpf.usermodel.*;
 import org.example.I18n;
 import org.example.Utils;
+import org.example.interfaces.NamingScheme;
+import org.example.interfaces.OutputSink;
+import org.example.interfaces.PreparedTemplate;
 import org.example.interfaces.TemplateProcessor;
+import org.example.metrics.GenerationMetrics;
+import org.example.sinks.DirectorySink;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.*;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,45 +25,205 @@ public class DocxProcessor implements TemplateProcessor {
 
     private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\[(.+?)]");
 
+    /**
+     * Временная отметка места рисунка в тексте абзаца при его пересборке.
+     */
+    private static final String PICTURE = "\uFFFC";
+
     @Override
     public void process(File templateFile, List<Map<String, String>> tableData, File targetDir) throws IOException {
-        if (!targetDir.exists()) Files.createDirectories(targetDir.toPath());
+        try (DirectorySink sink = new DirectorySink(targetDir.toPath())) {
+            process(templateFile, tableData, sink);
+        }
+    }
 
-        byte[] templateBytes = Files.readAllBytes(templateFile.toPath());
+    @Override
+    public void process(File templateFile, List<Map<String, String>> tableData, OutputSink sink) throws IOException {
+        PreparedTemplate template = prepare(templateFile);
+        NamingScheme naming = NamingScheme.sequential(I18n.get("file.name.document"));
+
+        GenerationMetrics metrics = GenerationMetrics.get();
+        metrics.jobStarted();
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            for (int i = 0; i < tableData.size(); i++) {
+                try {
+                    long renderStart = System.nanoTime();
+                    buffer.reset();
+                    template.render(tableData.get(i), buffer);
+                    long writeStart = System.nanoTime();
+
+                    sink.write(naming.name(i, tableData.get(i)) + template.getExtension(), buffer.toByteArray());
+                    long writeEnd = System.nanoTime();
+                    metrics.documentGenerated(writeStart - renderStart, writeEnd - writeStart, buffer.size());
+                } catch (IOException | RuntimeException e) {
+                    metrics.documentFailed();
+                    throw e;
+                }
+            }
+        } finally {
+            metrics.jobFinished();
+        }
+    }
 
-        for (int i = 0; i < tableData.size(); i++) {
-            Map<String, String> row = tableData.get(i);
+    /**
+     * Шаблон читается и разбирается сразу, а время подготовки попадает в метрики отдельно от рендеринга.
+     */
+    @Override
+    public PreparedTemplate prepare(File templateFile, Path resourceDir) throws IOException {
+        long prepareStart = System.nanoTime();
+        PreparedDocx template = new PreparedDocx(Files.readAllBytes(templateFile.toPath()), resourceDir);
+        template.getPlaceholders();
+        GenerationMetrics.get().templatePrepared(System.nanoTime() - prepareStart);
+        return template;
+    }
 
-            try (ByteArrayInputStream bais = new ByteArrayInputStream(templateBytes);
-                 XWPFDocument document = new XWPFDocument(bais)) {
+    /**
+     * Убирает из шаблона отметки правописания и идентификаторы правок, склеивает разбитые плейсхолдеры.
+     */
+    @Override
+    public void normalize(File templateFile, File targetFile) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (FileInputStream fis = new FileInputStream(templateFile);
+             XWPFDocument document = new XWPFDocument(fis)) {
+            DocxNormalizer.normalize(document);
+            document.write(buffer);
+        }
+        // файл библиотеки перезаписывается только целиком сохранённым документом
+        Files.write(targetFile.toPath(), buffer.toByteArray());
+    }
+
+    private static Path baseDir(File templateFile) {
+        return templateFile.getAbsoluteFile().toPath().getParent();
+    }
+
+    private void replacePlaceholders(DocxParts.Targets targets, Map<String, String> data, TemplateImages images)
+            throws IOException {
+        replacePlaceholders(targets, data, images, Set.of());
+    }
 
-                replacePlaceholders(document, row);
+    /**
+     * Обходит только части и элементы, в которых при подготовке шаблона найдены плейсхолдеры:
+     * тело документа, колонтитулы, сноски, вложенные таблицы и надписи.
+     *
+     * @param expanded строки таблиц, уже заполненные при размножении повторяющихся областей
+     */
+    private void replacePlaceholders(DocxParts.Targets targets, Map<String, String> data, TemplateImages images,
+                                     Set<CTRow> expanded) throws IOException {
+        targets.forEachParagraph(expanded, paragraph -> replaceInParagraph(paragraph, data, images));
+    }
+
+    /**
+     * Размножает повторяющиеся области таблиц: строки от строки с [#EACH] до строки с [/EACH]
+     * (или одна строка, если конца нет) копируются для каждой строки группы и заполняются её значениями.
+     * Копируется уже разобранный фрагмент XML строки, документ повторно не разбирается.
+     *
+     * @return заполненные строки, которые не нужно обрабатывать при подстановке значений мастера
+     */
+    private Set<CTRow> expandRegions(XWPFDocument document, Map<String, String> master,
+                                     List<Map<String, String>> details, CompiledPlaceholders compiled,
+                                     TemplateImages images) throws IOException {
+        Set<CTRow> expanded = Collections.newSetFromMap(new IdentityHashMap<>());
+        String start = TemplateMarkers.tag(TemplateMarkers.EACH);
+        String end = TemplateMarkers.tag(TemplateMarkers.END_EACH);
 
-                File outputFile = new File(targetDir, I18n.get("file.name.document") + (i + 1) + ".docx");
-                try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                    document.write(fos);
+        for (XWPFTable table : document.getTables()) {
+            for (int i = 0; i < table.getRows().size(); i++) {
+                if (!rowText(table.getRow(i)).contains(start)) continue;
+                int last = i;
+                for (int j = i; j < table.getRows().size(); j++) {
+                    if (rowText(table.getRow(j)).contains(end)) {
+                        last = j;
+                        break;
+                    }
+                }
+
+                List<CTRow> region = new ArrayList<>();
+                for (int j = i; j <= last; j++) {
+                    region.add((CTRow) table.getRow(j).getCtRow().copy());
+                }
+                for (int j = last; j >= i; j--) {
+                    table.removeRow(j);
+                }
+
+                int position = i;
+                for (Map<String, String> detail : details) {
+                    Map<String, String> merged = new HashMap<>(master);
+                    merged.putAll(detail);
+                    Map<String, String> values = compiled.bind(merged);
+                    for (CTRow fragment : region) {
+                        CTRow ctRow = table.insertNewTableRow(position++).getCtRow();
+                        ctRow.set(fragment);
+                        // новая обёртка видит ячейки, скопированные в строку
+                        for (XWPFTableCell cell : new XWPFTableRow(ctRow, table).getTableCells()) {
+                            for (XWPFParagraph paragraph : cell.getParagraphs()) {
+                                replaceInParagraph(paragraph, values, images);
+                            }
+                        }
+                        expanded.add(ctRow);
+                    }
                 }
+                i = position - 1;
             }
         }
+        return expanded;
     }
 
-    private void replacePlaceholders(XWPFDocument document, Map<String, String> data) {
-        for (XWPFParagraph paragraph : document.getParagraphs()) {
-            replaceInParagraph(paragraph, data);
+    private static String rowText(XWPFTableRow row) {
+        StringBuilder text = new StringBuilder();
+        for (XWPFTableCell cell : row.getTableCells()) {
+            text.append(cell.getText());
         }
+        return text.toString();
+    }
 
-        for (XWPFTable table : document.getTables()) {
-            for (XWPFTableRow row : table.getRows()) {
-                for (XWPFTableCell cell : row.getTableCells()) {
-                    for (XWPFParagraph paragraph : cell.getParagraphs()) {
-                        replaceInParagraph(paragraph, data);
-                    }
-                }
+    /**
+     * Быстрая замена для параграфа, где каждый плейсхолдер целиком лежит в одном текстовом прогоне
+     * (так обычно бывает после {@link #normalize}): текст меняется внутри прогонов, оформление
+     * остальных прогонов сохраняется.
+     *
+     * @param matcher сопоставитель текста параграфа, уже нашедший первый плейсхолдер
+     * @return false, если параграф нужно пересобрать
+     */
+    private static boolean replaceInRuns(List<XWPFRun> runs, Matcher matcher, Map<String, String> data) {
+        List<Integer> starts = new ArrayList<>();
+        do {
+            if (TemplateImages.isImage(matcher.group(1))) return false;
+            starts.add(matcher.start());
+        } while (matcher.find());
+
+        int offset = 0;
+        int found = 0;
+        Map<XWPFRun, String> replaced = new LinkedHashMap<>();
+        for (XWPFRun run : runs) {
+            CTR ctr = run.getCTR();
+            // параграф с табуляцией или несколькими w:t в прогоне собирается заново
+            if (!ctr.getTabList().isEmpty() || ctr.sizeOfTArray() > 1) return false;
+            String text = run.getText(0);
+            if (text == null) continue;
+            Matcher inRun = PLACEHOLDER_PATTERN.matcher(text);
+            StringBuffer result = new StringBuffer();
+            boolean changed = false;
+            while (inRun.find()) {
+                if (found == starts.size() || starts.get(found) != offset + inRun.start()) return false;
+                found++;
+                changed = true;
+                inRun.appendReplacement(result, Matcher.quoteReplacement(data.getOrDefault(inRun.group(1), "")));
             }
+            inRun.appendTail(result);
+            if (changed) replaced.put(run, result.toString());
+            offset += text.length();
         }
+        if (found != starts.size()) return false;
+        replaced.forEach((run, text) -> run.setText(text, 0));
+        return true;
     }
 
-    private void replaceInParagraph(XWPFParagraph paragraph, Map<String, String> data) {
+    /**
+     * Плейсхолдеры изображений заменяются отдельными прогонами с рисунком.
+     */
+    private void replaceInParagraph(XWPFParagraph paragraph, Map<String, String> data, TemplateImages images)
+            throws IOException {
         List<XWPFRun> runs = paragraph.getRuns();
         if (runs == null || runs.isEmpty()) return;
 
@@ -70,10 +239,22 @@ public class DocxProcessor implements TemplateProcessor {
         }
 
         Matcher matcher = PLACEHOLDER_PATTERN.matcher(paragraphText.toString());
+        // параграф без плейсхолдеров не пересобирается, его рисунки и разметка остаются как есть
+        if (!matcher.find()) return;
+        if (replaceInRuns(runs, matcher, data)) return;
+        matcher.reset();
         StringBuffer replacedText = new StringBuffer();
+        Deque<MediaCache.Image> pictures = new ArrayDeque<>();
         while (matcher.find()) {
             String key = matcher.group(1);
-            String replacement = data.getOrDefault(key, "");
+            String replacement;
+            MediaCache.Image picture = images.get(key, data);
+            if (picture != null) {
+                pictures.add(picture);
+                replacement = PICTURE;
+            } else {
+                replacement = data.getOrDefault(key, "");
+            }
             matcher.appendReplacement(replacedText, Matcher.quoteReplacement(replacement));
         }
         matcher.appendTail(replacedText);
@@ -85,16 +266,23 @@ public class DocxProcessor implements TemplateProcessor {
             formatting.set(referenceRun.getCTR().getRPr());
         }
 
+        // прогоны с рисунками и надписями сохраняются, текст собирается на месте первого текстового прогона
+        int position = runs.size();
         for (int i = runs.size() - 1; i >= 0; i--) {
+            CTR run = runs.get(i).getCTR();
+            if (!run.getDrawingList().isEmpty() || !run.getPictList().isEmpty()) continue;
             paragraph.removeRun(i);
+            position = i;
         }
 
-        String[] parts = replacedText.toString().split("(?<=\t)|(?=\t)");
+        String[] parts = replacedText.toString().split("(?<=[\t" + PICTURE + "])|(?=[\t" + PICTURE + "])");
         for (String part : parts) {
+            XWPFRun newRun = paragraph.insertNewRun(position++);
             if (part.equals("\t")) {
-                paragraph.createRun().addTab();
+                newRun.addTab();
+            } else if (part.equals(PICTURE) && !pictures.isEmpty()) {
+                addPicture(newRun, pictures.poll());
             } else {
-                XWPFRun newRun = paragraph.createRun();
                 if (formatting != null) {
                     newRun.getCTR().setRPr(formatting);
                 }
@@ -103,30 +291,36 @@ public class DocxProcessor implements TemplateProcessor {
         }
     }
 
-    public Set<String> extractPlaceholders(File templateFile) throws IOException {
-        Set<String> placeholders = new HashSet<>();
-
-        try (FileInputStream fis = new FileInputStream(templateFile);
-             XWPFDocument document = new XWPFDocument(fis)) {
-
-            for (XWPFParagraph paragraph : document.getParagraphs()) {
-                extractFromParagraph(paragraph, placeholders);
-            }
-
-            for (XWPFTable table : document.getTables()) {
-                for (XWPFTableRow row : table.getRows()) {
-                    for (XWPFTableCell cell : row.getTableCells()) {
-                        for (XWPFParagraph paragraph : cell.getParagraphs()) {
-                            extractFromParagraph(paragraph, placeholders);
-                        }
-                    }
-                }
-            }
+    private static void addPicture(XWPFRun run, MediaCache.Image picture) throws IOException {
+        try (InputStream data = new ByteArrayInputStream(picture.data())) {
+            run.addPicture(data, picture.png() ? Document.PICTURE_TYPE_PNG : Document.PICTURE_TYPE_JPEG,
+                    picture.name(), Math.toIntExact(picture.widthEmu()), Math.toIntExact(picture.heightEmu()));
+        } catch (InvalidFormatException e) {
+            throw new IOException("Image insertion error: " + picture.name(), e);
         }
+    }
 
+    @Override
+    public Set<String> extractPlaceholders(File templateFile) throws IOException {
+        Set<String> placeholders = extractRawPlaceholders(templateFile);
+        TemplateMarkers.stripMarkers(placeholders);
         return placeholders;
     }
 
+    /**
+     * @return плейсхолдеры вместе со служебными маркерами в порядке появления в документе
+     */
+    private Set<String> extractRawPlaceholders(File templateFile) throws IOException {
+        return PlaceholderScanner.scanDocx(templateFile);
+    }
+
+    /**
+     * @return индекс частей документа, в которых встречаются плейсхолдеры
+     */
+    private DocxParts extractPlaceholders(XWPFDocument document, Set<String> placeholders) {
+        return DocxParts.scan(document, this::extractFromParagraph, placeholders);
+    }
+
     private void extractFromParagraph(XWPFParagraph paragraph, Set<String> placeholders) {
         List<XWPFRun> runs = paragraph.getRuns();
         if (runs == null || runs.isEmpty()) return;
@@ -156,40 +350,224 @@ public class DocxProcessor implements TemplateProcessor {
      * @throws IOException если произошла ошибка при работе с файлами
      */
     public void generateSingleDocument(File templateFile, File targetFile) throws IOException {
-        // Извлекаем плейсхолдеры из шаблона
-        Set<String> placeholders = extractPlaceholders(templateFile);
+        byte[] templateBytes = Files.readAllBytes(templateFile.toPath());
+        PreparedDocx template = new PreparedDocx(templateBytes, baseDir(templateFile));
 
-        if (placeholders.isEmpty()) {
+        if (template.isStatic()) {
             // Просто копируем исходный файл, если плейсхолдеры не найдены
             Files.copy(templateFile.toPath(), targetFile.toPath());
             return;
         }
 
-        // Собираем значения от пользователя через GUI
-        Map<String, String> values = Utils.collectUserInputGUI(placeholders);
+        // Собираем значения от пользователя через GUI; выражения вычисляются из введённых колонок
+        Map<String, String> values = Utils.collectUserInputGUI(template.compiled().getInputs());
 
         // Если пользователь отменил ввод, выходим
         if (values == null) {
             return;
         }
 
-        // Создаем документ и заменяем плейсхолдеры
-        try (FileInputStream fis = new FileInputStream(templateFile);
-             XWPFDocument document = new XWPFDocument(fis)) {
+        // Создаем директорию для целевого файла, если она не существует
+        File parentDir = targetFile.getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            Files.createDirectories(parentDir.toPath());
+        }
+
+        // Сохраняем результат
+        try (FileOutputStream fos = new FileOutputStream(targetFile)) {
+            template.render(values, fos);
+        }
+    }
 
-            replacePlaceholders(document, values);
+    /**
+     * Условные блоки тела документа и строк таблиц верхнего уровня, найденные в шаблоне.
+     */
+    private record Conditions(ConditionalBlocks body, List<ConditionalBlocks> tables) {
 
-            // Создаем директорию для целевого файла, если она не существует
-            File parentDir = targetFile.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                Files.createDirectories(parentDir.toPath());
+        static Conditions scan(XWPFDocument document) throws IOException {
+            List<String> texts = new ArrayList<>();
+            for (IBodyElement element : document.getBodyElements()) {
+                texts.add(element instanceof XWPFParagraph paragraph ? paragraph.getText() : "");
             }
+            List<ConditionalBlocks> tables = new ArrayList<>();
+            for (XWPFTable table : document.getTables()) {
+                List<String> rows = new ArrayList<>();
+                for (XWPFTableRow row : table.getRows()) {
+                    rows.add(rowText(row));
+                }
+                tables.add(ConditionalBlocks.parse(rows));
+            }
+            return new Conditions(ConditionalBlocks.parse(texts), tables);
+        }
 
-            // Сохраняем результат
-            try (FileOutputStream fos = new FileOutputStream(targetFile)) {
-                document.write(fos);
+        boolean isEmpty() {
+            return body.isEmpty() && tables.stream().allMatch(ConditionalBlocks::isEmpty);
+        }
+
+        /**
+         * @return маркеры и невыбранные ветви для строки: элементы тела и строки каждой таблицы
+         */
+        Selection select(Map<String, String> row) {
+            List<BitSet> rows = new ArrayList<>(tables.size());
+            for (ConditionalBlocks table : tables) {
+                rows.add(table.isEmpty() ? new BitSet() : table.dropped(row));
             }
+            return new Selection(body.isEmpty() ? new BitSet() : body.dropped(row), rows);
         }
     }
 
+    /**
+     * Выбор ветвей условных блоков; строки с одинаковым выбором используют один вариант шаблона.
+     */
+    private record Selection(BitSet body, List<BitSet> tables) {}
+
+    /**
+     * Байты шаблона (или его варианта без убранных ветвей) и индекс частей с плейсхолдерами в нём.
+     */
+    private record Variant(byte[] bytes, DocxParts parts) {}
+
+    /**
+     * Байты шаблона читаются один раз, документ POI создаётся заново для каждой строки,
+     * поэтому рендеринг можно вызывать из нескольких потоков.
+     * Условные блоки не меняют дерево документа: строка только выбирает вариант шаблона,
+     * собранный из байтов без убранных ветвей. Варианты кэшируются в пределах бюджета памяти.
+     */
+    private class PreparedDocx implements PreparedTemplate {
+        private static final long VARIANTS_BUDGET = 64L * 1024 * 1024;
+
+        private final byte[] templateBytes;
+        private final Path baseDir;
+        private volatile Set<String> placeholders;
+        private volatile boolean regions;
+        private volatile boolean conditional;
+        private volatile CompiledPlaceholders compiled;
+        private volatile Conditions conditions;
+        private volatile TemplateImages images;
+        private volatile DocxParts parts;
+        private volatile DocxFragments fragments;
+        private final Map<Selection, Variant> variants = new ConcurrentHashMap<>();
+        private final AtomicLong variantBytes = new AtomicLong();
+
+        private PreparedDocx(byte[] templateBytes, Path baseDir) {
+            this.templateBytes = templateBytes;
+            this.baseDir = baseDir;
+        }
+
+        @Override
+        public String getExtension() {
+            return ".docx";
+        }
+
+        @Override
+        public void render(Map<String, String> row, OutputStream out) throws IOException {
+            Map<String, String> values = compiled().bind(row);
+            Variant variant = variant(values);
+            try (ByteArrayInputStream bais = new ByteArrayInputStream(variant.bytes());
+                 XWPFDocument document = new XWPFDocument(bais)) {
+                replacePlaceholders(variant.parts().targets(document), values, images);
+                document.write(out);
+            }
+        }
+
+        @Override
+        public void render(Map<String, String> master, List<Map<String, String>> details, OutputStream out)
+                throws IOException {
+            CompiledPlaceholders compiled = compiled();
+            // условия вычисляются по строке-мастеру до размножения областей
+            Map<String, String> values = compiled.bind(master);
+            Variant variant = variant(values);
+            try (ByteArrayInputStream bais = new ByteArrayInputStream(variant.bytes());
+                 XWPFDocument document = new XWPFDocument(bais)) {
+                DocxParts.Targets targets = variant.parts().targets(document);
+                Set<CTRow> expanded = expandRegions(document, master, details, compiled, images);
+                replacePlaceholders(targets, values, images, expanded);
+                document.write(out);
+            }
+        }
+
+        /**
+         * @return шаблон без ветвей условных блоков, не выбранных для строки
+         */
+        private Variant variant(Map<String, String> values) throws IOException {
+            if (fragments == null) return new Variant(templateBytes, parts);
+            Selection selection = conditions.select(values);
+            Variant variant = variants.get(selection);
+            if (variant == null) {
+                variant = new Variant(fragments.variant(selection.body(), selection.tables()),
+                        parts.without(selection.body()));
+                // варианты сверх бюджета собираются для строки без кэширования
+                if (variantBytes.get() + variant.bytes().length <= VARIANTS_BUDGET
+                        && variants.putIfAbsent(selection, variant) == null) {
+                    variantBytes.addAndGet(variant.bytes().length);
+                }
+            }
+            return variant;
+        }
+
+        @Override
+        public Set<String> getPlaceholders() throws IOException {
+            Set<String> result = placeholders;
+            if (result == null) {
+                try (ByteArrayInputStream bais = new ByteArrayInputStream(templateBytes);
+                     XWPFDocument document = new XWPFDocument(bais)) {
+                    result = index(document);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Извлекает плейсхолдеры и условные блоки из разобранной копии шаблона, не изменяя её,
+         * и для шаблона с условными блоками находит границы элементов в XML.
+         */
+        private Set<String> index(XWPFDocument document) throws IOException {
+            Set<String> result = new LinkedHashSet<>();
+            DocxParts index = extractPlaceholders(document, result);
+            Conditions blocks = Conditions.scan(document);
+            if (!blocks.isEmpty()) {
+                List<Integer> tableRows = new ArrayList<>();
+                for (XWPFTable table : document.getTables()) {
+                    tableRows.add(table.getRows().size());
+                }
+                fragments = DocxFragments.scan(templateBytes, document.getPackagePart().getPartName().getName(),
+                        document.getBodyElements().size(), tableRows);
+            }
+            List<String> conditionTexts = ConditionalBlocks.conditionTexts(result);
+            regions = TemplateMarkers.stripMarkers(result);
+            conditional = !conditionTexts.isEmpty();
+            compiled = CompiledPlaceholders.compile(result, conditionTexts);
+            images = TemplateImages.of(result, baseDir);
+            conditions = blocks;
+            parts = index;
+            result = Collections.unmodifiableSet(result);
+            placeholders = result;
+            return result;
+        }
+
+        /**
+         * @return true, если в шаблоне нет ни плейсхолдеров, ни условных блоков
+         */
+        private boolean isStatic() throws IOException {
+            return getPlaceholders().isEmpty() && !conditional;
+        }
+
+        @Override
+        public Set<String> getColumns() throws IOException {
+            return compiled().getColumns();
+        }
+
+        @Override
+        public boolean hasRepeatingRegions() throws IOException {
+            getPlaceholders();
+            return regions;
+        }
+
+        /**
+         * Выражения компилируются вместе с первым извлечением плейсхолдеров.
+         */
+        private CompiledPlaceholders compiled() throws IOException {
+            getPlaceholders();
+            return compiled;
+        }
+    }
 }
@@ -0,0 +1,207 @@
+package org.example.processors;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий кэш изображений для вставки в документы. Одна и та же подпись или логотип в тысячах строк
+ * читается, измеряется и сжимается один раз: готовые байты хранятся по пути, времени изменения
+ * файла и размеру вставки. Кэш ограничен суммарным объёмом байтов и вытесняет давно не использованные
+ * изображения. Безопасен для использования из нескольких потоков: если изображение запросили
+ * несколько потоков одновременно, его загружает первый, а остальные ждут результата.
+ */
+final class MediaCache {
+
+    /**
+     * Плотность, до которой уменьшаются крупные изображения: достаточно для печати и не раздувает документ.
+     */
+    private static final int TARGET_DPI = 150;
+    private static final int SCREEN_DPI = 96;
+    private static final double MAX_WIDTH_MM = 160;
+    private static final double MM_PER_INCH = 25.4;
+    private static final long EMU_PER_MM = 36_000;
+
+    private static final MediaCache SHARED = new MediaCache(64L * 1024 * 1024);
+    private static final AtomicLong NAMES = new AtomicLong();
+
+    /**
+     * Изображение, готовое к вставке.
+     *
+     * @param name имя файла внутри документа, уникальное для каждого загруженного изображения
+     */
+    record Image(byte[] data, boolean png, double widthMm, double heightMm, String name) {
+
+        long widthEmu() {
+            return Math.round(widthMm * EMU_PER_MM);
+        }
+
+        long heightEmu() {
+            return Math.round(heightMm * EMU_PER_MM);
+        }
+
+        String contentType() {
+            return png ? "image/png" : "image/jpeg";
+        }
+    }
+
+    private record Key(Path path, long modified, long length, double widthMm, double heightMm) {}
+
+    private final long budget;
+    private final Map<Key, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+    // изображения, которые загружаются прямо сейчас
+    private final Map<Key, CompletableFuture<Image>> loading = new ConcurrentHashMap<>();
+    private long size;
+
+    MediaCache(long budget) {
+        this.budget = budget;
+    }
+
+    static MediaCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param widthMm  ширина вставки в миллиметрах или 0
+     * @param heightMm высота вставки в миллиметрах или 0; если не задано ни одно измерение,
+     *                 используется собственный размер изображения, но не шире страницы
+     * @throws IOException если файл не найден или формат изображения не поддерживается
+     */
+    Image get(Path path, double widthMm, double heightMm) throws IOException {
+        Path file = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new IOException("Image not found: " + path, e);
+        }
+        Key key = new Key(file, attributes.lastModifiedTime().toMillis(), attributes.size(), widthMm, heightMm);
+        Image cached = cached(key);
+        if (cached != null) return cached;
+
+        CompletableFuture<Image> created = new CompletableFuture<>();
+        CompletableFuture<Image> future = loading.computeIfAbsent(key, k -> created);
+        if (future != created) return await(future);
+        try {
+            // изображение могло быть загружено и убрано из loading между проверкой кэша и захватом загрузки
+            Image image = cached(key);
+            if (image == null) {
+                image = load(file, widthMm, heightMm);
+                synchronized (this) {
+                    images.put(key, image);
+                    size += image.data().length;
+                    evict();
+                }
+            }
+            created.complete(image);
+            return image;
+        } catch (IOException | RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, created);
+        }
+    }
+
+    private synchronized Image cached(Key key) {
+        return images.get(key);
+    }
+
+    private static Image await(CompletableFuture<Image> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Image loading interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) throw cause;
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IOException("Image loading error", e.getCause());
+        }
+    }
+
+    private void evict() {
+        Iterator<Image> iterator = images.values().iterator();
+        // последнее добавленное изображение остаётся, даже если оно одно больше бюджета
+        while (size > budget && images.size() > 1 && iterator.hasNext()) {
+            size -= iterator.next().data().length;
+            iterator.remove();
+        }
+    }
+
+    synchronized int size() {
+        return images.size();
+    }
+
+    private static Image load(Path file, double widthMm, double heightMm) throws IOException {
+        byte[] original = Files.readAllBytes(file);
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(original));
+        if (source == null) throw new IOException("Unsupported image format: " + file);
+
+        double aspect = (double) source.getHeight() / source.getWidth();
+        if (widthMm <= 0 && heightMm <= 0) {
+            widthMm = Math.min(MAX_WIDTH_MM, source.getWidth() * MM_PER_INCH / SCREEN_DPI);
+            heightMm = widthMm * aspect;
+        } else if (heightMm <= 0) {
+            heightMm = widthMm * aspect;
+        } else if (widthMm <= 0) {
+            widthMm = heightMm / aspect;
+        } else {
+            // изображение вписывается в заданную рамку без искажения пропорций
+            double fitted = Math.min(widthMm, heightMm / aspect);
+            widthMm = fitted;
+            heightMm = fitted * aspect;
+        }
+
+        int targetWidth = (int) Math.ceil(widthMm / MM_PER_INCH * TARGET_DPI);
+        boolean alpha = source.getColorModel().hasAlpha();
+        String name = "image" + NAMES.incrementAndGet();
+        if (source.getWidth() <= targetWidth && (isPng(original) || isJpeg(original))) {
+            // уменьшать нечего, исходные байты вставляются без перекодирования
+            boolean png = isPng(original);
+            return new Image(original, png, widthMm, heightMm, name + (png ? ".png" : ".jpg"));
+        }
+
+        int width = Math.min(source.getWidth(), targetWidth);
+        int height = Math.max(1, (int) Math.round(width * aspect));
+        BufferedImage scaled = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        // прозрачность сохраняется только в PNG, фотографии компактнее в JPEG
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(scaled, alpha ? "png" : "jpeg", encoded);
+        return new Image(encoded.toByteArray(), alpha, widthMm, heightMm, name + (alpha ? ".png" : ".jpg"));
+    }
+
+    private static boolean isPng(byte[] data) {
+        return data.length > 4 && (data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G';
+    }
+
+    private static boolean isJpeg(byte[] data) {
+        return data.length > 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8;
+    }
+}
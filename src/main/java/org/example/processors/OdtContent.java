@@ -0,0 +1,408 @@
+package org.example.processors;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.*;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * content.xml шаблона ODT, разобранный один раз в неизменяемый список событий StAX.
+ * Для строки таблицы события воспроизводятся в выходной поток: без DOM и без повторного разбора XML.
+ * <p>
+ * Плейсхолдеры ищутся в тексте параграфа целиком, поэтому находятся и тогда, когда разбиты
+ * на несколько text:span. Значение записывается в текстовый узел, где начинается плейсхолдер,
+ * остаток плейсхолдера убирается из следующих узлов, а сами span и их оформление сохраняются.
+ * Каждый текстовый узел обрабатывается ровно один раз.
+ */
+final class OdtContent {
+
+    static final String OFFICE_NS = "urn:oasis:names:tc:opendocument:xmlns:office:1.0";
+    static final String TEXT_NS = "urn:oasis:names:tc:opendocument:xmlns:text:1.0";
+    static final String TABLE_NS = "urn:oasis:names:tc:opendocument:xmlns:table:1.0";
+    static final String DRAW_NS = "urn:oasis:names:tc:opendocument:xmlns:drawing:1.0";
+    static final String SVG_NS = "urn:oasis:names:tc:opendocument:xmlns:svg-compatible:1.0";
+    static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\[(.+?)]");
+
+    private static final QName TEXT = new QName(OFFICE_NS, "text");
+    private static final QName PARAGRAPH = new QName(TEXT_NS, "p");
+    private static final QName HEADING = new QName(TEXT_NS, "h");
+    private static final QName TABLE = new QName(TABLE_NS, "table");
+    private static final QName ROW = new QName(TABLE_NS, "table-row");
+
+    private static final XMLInputFactory INPUT = inputFactory();
+    // фабрики StAX не обязаны быть потокобезопасными, поэтому у каждого потока свои
+    private static final ThreadLocal<XMLOutputFactory> OUTPUT = ThreadLocal.withInitial(XMLOutputFactory::newFactory);
+    private static final ThreadLocal<XMLEventFactory> EVENTS = ThreadLocal.withInitial(XMLEventFactory::newFactory);
+
+    /**
+     * Часть текстового узла: постоянный текст или значение плейсхолдера.
+     */
+    private record Segment(String literal, String key) {}
+
+    private final List<XMLEvent> events;
+    // номер закрывающего события для каждого открывающего элемента
+    private final int[] ends;
+    // текстовые узлы с плейсхолдерами; у остальных узлов null
+    private final Segment[][] segments;
+    private final Set<String> placeholders;
+    // элементы office:text и строки таблиц верхнего уровня для условных блоков
+    private final int[] bodyElements;
+    private final List<int[]> tableRows;
+    private final ConditionalBlocks bodyBlocks;
+    private final List<ConditionalBlocks> tableBlocks;
+    // повторяющиеся области: первая строка -> последнее событие последней строки
+    private final Map<Integer, Integer> regions;
+
+    private OdtContent(List<XMLEvent> events, int[] ends, Segment[][] segments, Set<String> placeholders,
+                       int[] bodyElements, List<int[]> tableRows, ConditionalBlocks bodyBlocks,
+                       List<ConditionalBlocks> tableBlocks, Map<Integer, Integer> regions) {
+        this.events = events;
+        this.ends = ends;
+        this.segments = segments;
+        this.placeholders = placeholders;
+        this.bodyElements = bodyElements;
+        this.tableRows = tableRows;
+        this.bodyBlocks = bodyBlocks;
+        this.tableBlocks = tableBlocks;
+        this.regions = regions;
+    }
+
+    /**
+     * @throws IOException если XML повреждён или условные блоки записаны неверно
+     */
+    static OdtContent parse(byte[] contentXml) throws IOException {
+        List<XMLEvent> events = new ArrayList<>();
+        try {
+            XMLEventReader reader = INPUT.createXMLEventReader(new ByteArrayInputStream(contentXml));
+            while (reader.hasNext()) {
+                events.add(reader.nextEvent());
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("ODT content parsing error", e);
+        }
+
+        int[] ends = new int[events.size()];
+        Deque<Integer> open = new ArrayDeque<>();
+        for (int i = 0; i < events.size(); i++) {
+            XMLEvent event = events.get(i);
+            if (event.isStartElement()) {
+                open.push(i);
+            } else if (event.isEndElement()) {
+                ends[open.pop()] = i;
+            }
+        }
+
+        Segment[][] segments = new Segment[events.size()][];
+        Set<String> placeholders = new LinkedHashSet<>();
+        // вложенные параграфы (например, в текстовых полях) индексируются отдельно от внешнего
+        for (int i = 0; i < events.size(); i++) {
+            if (isParagraph(events.get(i))) {
+                indexParagraph(events, i, ends, segments, placeholders);
+            }
+        }
+
+        List<Integer> body = new ArrayList<>();
+        List<String> bodyTexts = new ArrayList<>();
+        List<int[]> tableRows = new ArrayList<>();
+        List<ConditionalBlocks> tableBlocks = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            if (!isElement(events.get(i), TEXT)) continue;
+            for (int child : children(events, ends, i)) {
+                body.add(child);
+                if (isElement(events.get(child), TABLE)) {
+                    bodyTexts.add("");
+                    int[] rows = children(events, ends, child).stream()
+                            .filter(row -> isElement(events.get(row), ROW)).mapToInt(Integer::intValue).toArray();
+                    List<String> rowTexts = new ArrayList<>();
+                    for (int row : rows) {
+                        rowTexts.add(text(events, row, ends[row]));
+                    }
+                    tableRows.add(rows);
+                    tableBlocks.add(ConditionalBlocks.parse(rowTexts));
+                } else {
+                    bodyTexts.add(text(events, child, ends[child]));
+                }
+            }
+            break;
+        }
+
+        return new OdtContent(List.copyOf(events), ends, segments, Collections.unmodifiableSet(placeholders),
+                body.stream().mapToInt(Integer::intValue).toArray(), tableRows, ConditionalBlocks.parse(bodyTexts),
+                tableBlocks, regions(events, ends));
+    }
+
+    /**
+     * Раскладывает текстовые узлы параграфа на постоянный текст и плейсхолдеры.
+     * Текст вложенных параграфов к тексту параграфа не добавляется.
+     */
+    private static void indexParagraph(List<XMLEvent> events, int start, int[] ends, Segment[][] segments,
+                                       Set<String> placeholders) {
+        List<Integer> nodes = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = start; i <= ends[start]; i++) {
+            if (i > start && isParagraph(events.get(i))) {
+                i = ends[i];
+            } else if (events.get(i).isCharacters()) {
+                nodes.add(i);
+                text.append(events.get(i).asCharacters().getData());
+            }
+        }
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(text);
+        List<int[]> matches = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        while (matcher.find()) {
+            matches.add(new int[]{matcher.start(), matcher.end()});
+            keys.add(matcher.group(1));
+            placeholders.add(matcher.group(1));
+        }
+        if (matches.isEmpty()) return;
+
+        int offset = 0;
+        for (int node : nodes) {
+            String data = events.get(node).asCharacters().getData();
+            int from = offset;
+            int to = offset + data.length();
+            offset = to;
+            List<Segment> parts = new ArrayList<>();
+            int position = from;
+            boolean touched = false;
+            for (int m = 0; m < matches.size(); m++) {
+                int matchStart = matches.get(m)[0];
+                int matchEnd = matches.get(m)[1];
+                if (matchEnd <= from || matchStart >= to) continue;
+                touched = true;
+                if (matchStart > position) parts.add(new Segment(text.substring(position, matchStart), null));
+                // значение попадает в узел, где начинается плейсхолдер
+                if (matchStart >= from) parts.add(new Segment(null, keys.get(m)));
+                position = Math.min(matchEnd, to);
+            }
+            if (!touched) continue;
+            if (position < to) parts.add(new Segment(text.substring(position, to), null));
+            segments[node] = parts.toArray(new Segment[0]);
+        }
+    }
+
+    /**
+     * Находит повторяющиеся области: строки таблицы от строки с [#EACH] до строки с [/EACH]
+     * среди строк того же родителя или одну строку, если конца нет.
+     */
+    private static Map<Integer, Integer> regions(List<XMLEvent> events, int[] ends) {
+        String start = TemplateMarkers.tag(TemplateMarkers.EACH);
+        String end = TemplateMarkers.tag(TemplateMarkers.END_EACH);
+        Map<Integer, Integer> regions = new HashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            if (!isElement(events.get(i), ROW) || !text(events, i, ends[i]).contains(start)) continue;
+            int last = i;
+            for (int row = i; row < events.size() && isElement(events.get(row), ROW); row = next(events, ends[row])) {
+                if (text(events, row, ends[row]).contains(end)) {
+                    last = row;
+                    break;
+                }
+            }
+            regions.put(i, ends[last]);
+            i = ends[last];
+        }
+        return regions;
+    }
+
+    /**
+     * @return номер следующего элемента-соседа после закрывающего события или размер списка, если соседа нет
+     */
+    private static int next(List<XMLEvent> events, int end) {
+        for (int i = end + 1; i < events.size(); i++) {
+            XMLEvent event = events.get(i);
+            if (event.isStartElement()) return i;
+            if (event.isEndElement()) return events.size();
+        }
+        return events.size();
+    }
+
+    private static List<Integer> children(List<XMLEvent> events, int[] ends, int parent) {
+        List<Integer> children = new ArrayList<>();
+        for (int i = parent + 1; i < ends[parent]; i++) {
+            if (events.get(i).isStartElement()) {
+                children.add(i);
+                i = ends[i];
+            }
+        }
+        return children;
+    }
+
+    private static String text(List<XMLEvent> events, int start, int end) {
+        StringBuilder text = new StringBuilder();
+        for (int i = start; i <= end; i++) {
+            if (events.get(i).isCharacters()) text.append(events.get(i).asCharacters().getData());
+        }
+        return text.toString();
+    }
+
+    private static boolean isParagraph(XMLEvent event) {
+        return isElement(event, PARAGRAPH) || isElement(event, HEADING);
+    }
+
+    private static boolean isElement(XMLEvent event, QName name) {
+        return event.isStartElement() && event.asStartElement().getName().equals(name);
+    }
+
+    /**
+     * @return плейсхолдеры параграфов вместе со служебными маркерами
+     */
+    Set<String> getPlaceholders() {
+        return placeholders;
+    }
+
+    /**
+     * Записывает content.xml для строки таблицы.
+     *
+     * @param details  строки группы для повторяющихся областей или null, если области не размножаются
+     * @param parts    имена частей пакета шаблона: вставленные изображения получают имена, не совпадающие с ними
+     * @param pictures сюда добавляются изображения по пути в пакете, которые нужно положить в документ
+     */
+    void render(Map<String, String> master, List<Map<String, String>> details, CompiledPlaceholders compiled,
+                TemplateImages images, OutputStream out, Set<String> parts,
+                Map<String, MediaCache.Image> pictures) throws IOException {
+        Map<String, String> values = compiled.bind(master);
+        BitSet dropped = dropped(values);
+        try {
+            XMLEventWriter writer = OUTPUT.get().createXMLEventWriter(out, "UTF-8");
+            Output context = new Output(writer, EVENTS.get(), images, parts, pictures);
+            for (int i = 0; i < events.size(); i++) {
+                if (dropped.get(i)) {
+                    i = ends[i];
+                    continue;
+                }
+                Integer regionEnd = details == null ? null : regions.get(i);
+                if (regionEnd != null) {
+                    for (Map<String, String> detail : details) {
+                        Map<String, String> merged = new HashMap<>(master);
+                        merged.putAll(detail);
+                        Map<String, String> rowValues = compiled.bind(merged);
+                        for (int j = i; j <= regionEnd; j++) {
+                            if (dropped.get(j)) {
+                                j = ends[j];
+                                continue;
+                            }
+                            write(j, rowValues, context);
+                        }
+                    }
+                    i = regionEnd;
+                    continue;
+                }
+                write(i, values, context);
+            }
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("ODT content writing error", e);
+        }
+    }
+
+    /**
+     * @return номера открывающих событий элементов, которые не попадут в документ
+     */
+    private BitSet dropped(Map<String, String> values) {
+        BitSet dropped = new BitSet();
+        if (!bodyBlocks.isEmpty()) {
+            BitSet elements = bodyBlocks.dropped(values);
+            for (int i = elements.nextSetBit(0); i >= 0; i = elements.nextSetBit(i + 1)) {
+                dropped.set(bodyElements[i]);
+            }
+        }
+        for (int t = 0; t < tableBlocks.size(); t++) {
+            if (tableBlocks.get(t).isEmpty()) continue;
+            BitSet rows = tableBlocks.get(t).dropped(values);
+            for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+                dropped.set(tableRows.get(t)[i]);
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Поток событий и изображения документа, который записывается сейчас.
+     */
+    private record Output(XMLEventWriter events, XMLEventFactory factory, TemplateImages images,
+                          Set<String> parts, Map<String, MediaCache.Image> pictures) {
+
+        /**
+         * Путь изображения в пакете. Шаблон, сохранённый из ранее созданного документа, может уже содержать
+         * Pictures/image1.png, поэтому при совпадении с частью шаблона к имени добавляется номер.
+         */
+        String path(MediaCache.Image picture) {
+            String path = "Pictures/" + picture.name();
+            for (int n = 2; ; n++) {
+                MediaCache.Image existing = pictures.get(path);
+                if (existing == picture) return path;
+                if (existing == null && !parts.contains(path)) {
+                    pictures.put(path, picture);
+                    return path;
+                }
+                path = "Pictures/" + n + "_" + picture.name();
+            }
+        }
+    }
+
+    private void write(int index, Map<String, String> values, Output writer) throws XMLStreamException, IOException {
+        Segment[] parts = segments[index];
+        if (parts == null) {
+            writer.events().add(events.get(index));
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (Segment part : parts) {
+            if (part.key() == null) {
+                text.append(part.literal());
+                continue;
+            }
+            MediaCache.Image picture = writer.images().get(part.key(), values);
+            if (picture == null) {
+                text.append(values.getOrDefault(part.key(), ""));
+                continue;
+            }
+            if (!text.isEmpty()) writer.events().add(writer.factory().createCharacters(text.toString()));
+            text.setLength(0);
+            writeFrame(writer, picture, writer.path(picture));
+        }
+        if (!text.isEmpty()) writer.events().add(writer.factory().createCharacters(text.toString()));
+    }
+
+    private static void writeFrame(Output writer, MediaCache.Image picture, String path) throws XMLStreamException {
+        XMLEventFactory factory = writer.factory();
+        XMLEventWriter events = writer.events();
+        events.add(factory.createStartElement("draw", DRAW_NS, "frame"));
+        // объявления повторяются на рамке, чтобы она не зависела от префиксов корня документа
+        events.add(factory.createNamespace("draw", DRAW_NS));
+        events.add(factory.createNamespace("svg", SVG_NS));
+        events.add(factory.createNamespace("text", TEXT_NS));
+        events.add(factory.createNamespace("xlink", XLINK_NS));
+        events.add(factory.createAttribute("text", TEXT_NS, "anchor-type", "as-char"));
+        events.add(factory.createAttribute("svg", SVG_NS, "width", String.format(Locale.ROOT, "%.2fmm", picture.widthMm())));
+        events.add(factory.createAttribute("svg", SVG_NS, "height", String.format(Locale.ROOT, "%.2fmm", picture.heightMm())));
+        events.add(factory.createStartElement("draw", DRAW_NS, "image"));
+        events.add(factory.createAttribute("xlink", XLINK_NS, "href", path));
+        events.add(factory.createAttribute("xlink", XLINK_NS, "type", "simple"));
+        events.add(factory.createAttribute("xlink", XLINK_NS, "show", "embed"));
+        events.add(factory.createAttribute("xlink", XLINK_NS, "actuate", "onLoad"));
+        events.add(factory.createEndElement("draw", DRAW_NS, "image"));
+        events.add(factory.createEndElement("draw", DRAW_NS, "frame"));
+    }
+
+    private static XMLInputFactory inputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // соседние фрагменты текста объединяются, чтобы узел текста был одним событием
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -1,159 +1,303 @@
 package org.example.processors;
 
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.example.I18n;
 import org.example.Utils;
+import org.example.interfaces.NamingScheme;
+import org.example.interfaces.OutputSink;
+import org.example.interfaces.PreparedTemplate;
 import org.example.interfaces.TemplateProcessor;
-import org.odftoolkit.odfdom.doc.OdfTextDocument;
-import org.odftoolkit.odfdom.pkg.OdfFileDom;
+import org.example.metrics.GenerationMetrics;
+import org.example.sinks.DirectorySink;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.*;
-import org.w3c.dom.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 public class OdtProcessor implements TemplateProcessor {
 
-    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\[(.+?)]");
-
     @Override
     public void process(File templateFile, List<Map<String, String>> tableData, File targetDir) throws IOException {
-        if (!targetDir.exists()) targetDir.mkdirs();
+        try (DirectorySink sink = new DirectorySink(targetDir.toPath())) {
+            process(templateFile, tableData, sink);
+        }
+    }
 
-        for (int i = 0; i < tableData.size(); i++) {
-            Map<String, String> row = tableData.get(i);
-            try (OdfTextDocument document = OdfTextDocument.loadDocument(templateFile)) {
-                OdfFileDom contentDom = document.getContentDom();
+    @Override
+    public void process(File templateFile, List<Map<String, String>> tableData, OutputSink sink) throws IOException {
+        PreparedTemplate template = prepare(templateFile);
+        NamingScheme naming = NamingScheme.sequential(I18n.get("file.name.document"));
 
-                NodeList paragraphs = contentDom.getElementsByTagName("text:p");
-                for (int j = 0; j < paragraphs.getLength(); j++) {
-                    Node p = paragraphs.item(j);
-                    replaceInNode(p, row);
-                }
+        GenerationMetrics metrics = GenerationMetrics.get();
+        metrics.jobStarted();
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            for (int i = 0; i < tableData.size(); i++) {
+                try {
+                    long renderStart = System.nanoTime();
+                    buffer.reset();
+                    template.render(tableData.get(i), buffer);
+                    long writeStart = System.nanoTime();
 
-                NodeList cells = contentDom.getElementsByTagName("table:table-cell");
-                for (int j = 0; j < cells.getLength(); j++) {
-                    Node cell = cells.item(j);
-                    NodeList children = cell.getChildNodes();
-                    for (int k = 0; k < children.getLength(); k++) {
-                        Node item = children.item(k);
-                        if (item.getNodeType() == Node.ELEMENT_NODE && "text:p".equals(item.getNodeName())) {
-                            replaceInNode(item, row);
-                        }
-                    }
+                    sink.write(naming.name(i, tableData.get(i)) + template.getExtension(), buffer.toByteArray());
+                    long writeEnd = System.nanoTime();
+                    metrics.documentGenerated(writeStart - renderStart, writeEnd - writeStart, buffer.size());
+                } catch (IOException | RuntimeException e) {
+                    metrics.documentFailed();
+                    throw e;
                 }
-
-                File outputFile = new File(targetDir, I18n.get("file.name.document") + (i + 1) + ".odt");
-                document.save(outputFile);
-            } catch (Exception e) {
-                throw new IOException("ODT document processing error", e);
             }
+        } finally {
+            metrics.jobFinished();
         }
     }
 
-    private void replaceInNode(Node node, Map<String, String> data) {
-        String text = node.getTextContent();
-        Matcher matcher = PLACEHOLDER_PATTERN.matcher(text);
-        StringBuffer result = new StringBuffer();
-        while (matcher.find()) {
-            String key = matcher.group(1);
-            String replacement = data.getOrDefault(key, "");
-            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
-        }
-        matcher.appendTail(result);
-        node.setTextContent(result.toString());
+    @Override
+    public PreparedTemplate prepare(File templateFile, Path resourceDir) {
+        return new PreparedOdt(templateFile, resourceDir);
     }
 
     @Override
     public Set<String> extractPlaceholders(File templateFile) throws IOException {
-        Set<String> placeholders = new HashSet<>();
-        try {
-            OdfTextDocument document = OdfTextDocument.loadDocument(templateFile);
-            OdfFileDom contentDom = document.getContentDom();
-
-            // Параграфы
-            NodeList paragraphs = contentDom.getElementsByTagName("text:p");
-            for (int i = 0; i < paragraphs.getLength(); i++) {
-                Node p = paragraphs.item(i);
-                extractFromText(p.getTextContent(), placeholders);
-            }
-
-            // Ячейки таблиц
-            NodeList cells = contentDom.getElementsByTagName("table:table-cell");
-            for (int i = 0; i < cells.getLength(); i++) {
-                Node cell = cells.item(i);
-                NodeList children = cell.getChildNodes();
-                for (int j = 0; j < children.getLength(); j++) {
-                    Node item = children.item(j);
-                    if (item.getNodeType() == Node.ELEMENT_NODE && "text:p".equals(item.getNodeName())) {
-                        extractFromText(item.getTextContent(), placeholders);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            throw new IOException("Placeholders extraction error", e);
-        }
+        Set<String> placeholders = extractRawPlaceholders(templateFile);
+        TemplateMarkers.stripMarkers(placeholders);
         return placeholders;
     }
 
-    private void extractFromText(String text, Set<String> placeholders) {
-        Matcher matcher = PLACEHOLDER_PATTERN.matcher(text);
-        while (matcher.find()) {
-            placeholders.add(matcher.group(1));
-        }
+    /**
+     * @return плейсхолдеры вместе со служебными маркерами в порядке появления в документе
+     */
+    private Set<String> extractRawPlaceholders(File templateFile) throws IOException {
+        return PlaceholderScanner.scanOdt(templateFile);
     }
 
     @Override
     public void generateSingleDocument(File templateFile, File targetFile) throws IOException {
-        // Извлекаем плейсхолдеры
-        Set<String> placeholders = extractPlaceholders(templateFile);
+        // Шаблон разбирается один раз: список полей и рендеринг берутся из одной подготовленной формы
+        PreparedOdt template = new PreparedOdt(templateFile, templateFile.getAbsoluteFile().toPath().getParent());
+        PreparedOdt.Parsed parsed = template.parsed();
 
-        if (placeholders.isEmpty()) {
+        if (parsed.placeholders().isEmpty() && !parsed.conditional()) {
             // Просто копируем исходный файл
             Files.copy(templateFile.toPath(), targetFile.toPath());
             return;
         }
 
-        // Запрашиваем у пользователя значения
-        Map<String, String> values = Utils.collectUserInputGUI(placeholders);
+        // Запрашиваем у пользователя значения; выражения вычисляются из введённых колонок
+        Map<String, String> values = Utils.collectUserInputGUI(parsed.compiled().getInputs());
         if (values == null) {
             // Пользователь отменил
             return;
         }
 
-        try (OdfTextDocument document = OdfTextDocument.loadDocument(templateFile)) {
-            OdfFileDom contentDom = document.getContentDom();
+        // Создаем директорию, если нужно
+        File parentDir = targetFile.getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            Files.createDirectories(parentDir.toPath());
+        }
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(targetFile))) {
+            template.render(values, out);
+        }
+    }
+
+    /**
+     * Пакет шаблона читается один раз: content.xml разбирается в {@link OdtContent}, остальные части
+     * сжимаются при разборе и копируются в архив каждой строки без повторного сжатия. Для строки таблицы
+     * заново сжимаются только content.xml и, если вставлены изображения, манифест; документ ODF не создаётся,
+     * поэтому рендеринг можно вызывать из нескольких потоков. Шаблон читается при первом обращении.
+     */
+    private static class PreparedOdt implements PreparedTemplate {
+        private static final String MIMETYPE = "mimetype";
+        private static final String CONTENT = "content.xml";
+        private static final String MANIFEST = "META-INF/manifest.xml";
+        private static final String MANIFEST_END = "</manifest:manifest>";
+
+        /**
+         * Разобранный шаблон; публикуется целиком, чтобы потоки не видели его частично.
+         */
+        private record Parsed(Map<String, StaticPart> parts, byte[] manifest, OdtContent content,
+                              Set<String> placeholders, boolean regions, boolean conditional,
+                              CompiledPlaceholders compiled, TemplateImages images) {}
+
+        /**
+         * Часть пакета шаблона в том виде, в каком она хранится в архиве: mimetype без сжатия, остальное в DEFLATE.
+         */
+        private record StaticPart(String name, byte[] stored, int method, long size, long crc) {
+            static StaticPart of(String name, byte[] data) {
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                if (name.equals(MIMETYPE)) return new StaticPart(name, data, ZipEntry.STORED, data.length, crc.getValue());
+
+                Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+                try {
+                    deflater.setInput(data);
+                    deflater.finish();
+                    byte[] buffer = new byte[8192];
+                    while (!deflater.finished()) {
+                        compressed.write(buffer, 0, deflater.deflate(buffer));
+                    }
+                } finally {
+                    deflater.end();
+                }
+                return new StaticPart(name, compressed.toByteArray(), ZipEntry.DEFLATED, data.length, crc.getValue());
+            }
+
+            void writeTo(ZipArchiveOutputStream zip) throws IOException {
+                ZipArchiveEntry entry = new ZipArchiveEntry(name);
+                entry.setMethod(method);
+                entry.setSize(size);
+                entry.setCompressedSize(stored.length);
+                entry.setCrc(crc);
+                zip.addRawArchiveEntry(entry, new ByteArrayInputStream(stored));
+            }
+        }
+
+        private final File templateFile;
+        // папка для относительных путей изображений
+        private final Path resourceDir;
+        private volatile Parsed parsed;
+
+        private PreparedOdt(File templateFile, Path resourceDir) {
+            this.templateFile = templateFile;
+            this.resourceDir = resourceDir;
+        }
+
+        @Override
+        public String getExtension() {
+            return ".odt";
+        }
+
+        @Override
+        public void render(Map<String, String> row, OutputStream out) throws IOException {
+            write(parsed(), row, null, out);
+        }
+
+        @Override
+        public void render(Map<String, String> master, List<Map<String, String>> details, OutputStream out)
+                throws IOException {
+            write(parsed(), master, details, out);
+        }
+
+        /**
+         * mimetype записывается первым и без сжатия, как требует ODF; затем content.xml для строки,
+         * остальные части шаблона и вставленные изображения.
+         */
+        private void write(Parsed template, Map<String, String> master, List<Map<String, String>> details,
+                           OutputStream out) throws IOException {
+            ZipArchiveOutputStream zip = new ZipArchiveOutputStream(out);
+            // расширения ZIP64 в записях не нужны и не должны попасть в mimetype
+            zip.setUseZip64(Zip64Mode.Never);
+            StaticPart mimetype = template.parts().get(MIMETYPE);
+            if (mimetype != null) mimetype.writeTo(zip);
+
+            Map<String, MediaCache.Image> pictures = new LinkedHashMap<>();
+            zip.putArchiveEntry(new ZipArchiveEntry(CONTENT));
+            template.content().render(master, details, template.compiled(), template.images(), zip,
+                    template.parts().keySet(), pictures);
+            zip.closeArchiveEntry();
+
+            for (StaticPart part : template.parts().values()) {
+                if (part.name().equals(MIMETYPE)) continue;
+                if (part.name().equals(MANIFEST) && !pictures.isEmpty()) {
+                    zip.putArchiveEntry(new ZipArchiveEntry(MANIFEST));
+                    zip.write(manifest(template.manifest(), pictures));
+                    zip.closeArchiveEntry();
+                } else {
+                    part.writeTo(zip);
+                }
+            }
+            for (Map.Entry<String, MediaCache.Image> picture : pictures.entrySet()) {
+                zip.putArchiveEntry(new ZipArchiveEntry(picture.getKey()));
+                zip.write(picture.getValue().data());
+                zip.closeArchiveEntry();
+            }
+            // поток вызывающего кода не закрывается
+            zip.finish();
+        }
+
+        /**
+         * Добавляет вставленные изображения в список частей пакета.
+         */
+        private static byte[] manifest(byte[] manifest, Map<String, MediaCache.Image> pictures) {
+            String xml = new String(manifest, StandardCharsets.UTF_8);
+            int end = xml.lastIndexOf(MANIFEST_END);
+            if (end < 0) return manifest;
+            StringBuilder entries = new StringBuilder();
+            for (Map.Entry<String, MediaCache.Image> picture : pictures.entrySet()) {
+                entries.append("<manifest:file-entry manifest:full-path=\"").append(picture.getKey())
+                        .append("\" manifest:media-type=\"").append(picture.getValue().contentType()).append("\"/>");
+            }
+            return (xml.substring(0, end) + entries + xml.substring(end)).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Set<String> getPlaceholders() throws IOException {
+            return parsed().placeholders();
+        }
 
-            // Замена в параграфах
-            NodeList paragraphs = contentDom.getElementsByTagName("text:p");
-            for (int i = 0; i < paragraphs.getLength(); i++) {
-                replaceInNode(paragraphs.item(i), values);
+        @Override
+        public Set<String> getColumns() throws IOException {
+            return parsed().compiled().getColumns();
+        }
+
+        @Override
+        public boolean hasRepeatingRegions() throws IOException {
+            return parsed().regions();
+        }
+
+        private Parsed parsed() throws IOException {
+            Parsed result = parsed;
+            if (result == null) {
+                result = parse();
+                parsed = result;
             }
+            return result;
+        }
 
-            // Замена в ячейках таблиц
-            NodeList cells = contentDom.getElementsByTagName("table:table-cell");
-            for (int i = 0; i < cells.getLength(); i++) {
-                Node cell = cells.item(i);
-                NodeList children = cell.getChildNodes();
-                for (int j = 0; j < children.getLength(); j++) {
-                    Node item = children.item(j);
-                    if (item.getNodeType() == Node.ELEMENT_NODE && "text:p".equals(item.getNodeName())) {
-                        replaceInNode(item, values);
+        /**
+         * Выражения и изображения компилируются вместе с первым разбором шаблона.
+         */
+        private Parsed parse() throws IOException {
+            Map<String, byte[]> data = new LinkedHashMap<>();
+            OdtContent content;
+            try (ZipFile zip = new ZipFile(templateFile)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.isDirectory()) continue;
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        data.put(entry.getName(), in.readAllBytes());
                     }
                 }
+                byte[] xml = data.remove(CONTENT);
+                if (xml == null) throw new IOException("ODT document has no " + CONTENT);
+                content = OdtContent.parse(xml);
+            } catch (IOException e) {
+                throw new IOException("ODT document processing error", e);
             }
 
-            // Создаем директорию, если нужно
-            File parentDir = targetFile.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                Files.createDirectories(parentDir.toPath());
+            Map<String, StaticPart> parts = new LinkedHashMap<>();
+            for (Map.Entry<String, byte[]> part : data.entrySet()) {
+                parts.put(part.getKey(), StaticPart.of(part.getKey(), part.getValue()));
             }
 
-            document.save(targetFile);
-        } catch (Exception e) {
-            throw new IOException("ODT document generation error", e);
+            Set<String> placeholders = new LinkedHashSet<>(content.getPlaceholders());
+            List<String> conditionTexts = ConditionalBlocks.conditionTexts(placeholders);
+            boolean regions = TemplateMarkers.stripMarkers(placeholders);
+            return new Parsed(parts, data.get(MANIFEST), content, Collections.unmodifiableSet(placeholders), regions,
+                    !conditionTexts.isEmpty(),
+                    CompiledPlaceholders.compile(placeholders, conditionTexts),
+                    TemplateImages.of(placeholders, resourceDir));
         }
     }
 }
-
@@ -0,0 +1,228 @@
+package org.example.processors;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Быстрое извлечение плейсхолдеров без построения модели документа POI или ODFDOM.
+ * Нужные части архива читаются потоково через StAX, поэтому список колонок даже для большого шаблона
+ * готов за миллисекунды и почти без памяти. Плейсхолдеры возвращаются в порядке появления в документе.
+ */
+final class PlaceholderScanner {
+
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\[(.+?)]");
+
+    private static final String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String CONTENT_TYPES = "[Content_Types].xml";
+    private static final String CONTENT_TYPES_NS = "http://schemas.openxmlformats.org/package/2006/content-types";
+    private static final String WORDML_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.";
+
+    /**
+     * Части DOCX в порядке обхода {@link DocxParts}: тело, верхние и нижние колонтитулы, сноски.
+     */
+    private static final List<String> DOCX_PARTS = List.of("document.main+xml", "template.main+xml", "header+xml",
+            "footer+xml", "footnotes+xml", "endnotes+xml");
+
+    private static final XMLInputFactory INPUT = inputFactory();
+
+    private PlaceholderScanner() {
+    }
+
+    /**
+     * @return плейсхолдеры DOCX вместе со служебными маркерами
+     * @throws IOException если файл не является документом DOCX
+     */
+    static Set<String> scanDocx(File templateFile) throws IOException {
+        Set<String> placeholders = new LinkedHashSet<>();
+        try (ZipFile zip = new ZipFile(templateFile)) {
+            for (String part : docxParts(zip)) {
+                ZipEntry entry = zip.getEntry(part);
+                if (entry == null) continue;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    scanWordprocessingMl(in, text -> collect(text, placeholders));
+                }
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new IOException("Placeholders extraction error", e);
+        }
+        return placeholders;
+    }
+
+    /**
+     * @return плейсхолдеры content.xml шаблона ODT вместе со служебными маркерами
+     * @throws IOException если файл не является документом ODT
+     */
+    static Set<String> scanOdt(File templateFile) throws IOException {
+        Set<String> placeholders = new LinkedHashSet<>();
+        try (ZipFile zip = new ZipFile(templateFile)) {
+            ZipEntry entry = zip.getEntry("content.xml");
+            if (entry == null) throw new IOException("ODT document has no content.xml");
+            try (InputStream in = zip.getInputStream(entry)) {
+                scanOpenDocument(in, text -> collect(text, placeholders));
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new IOException("Placeholders extraction error", e);
+        }
+        return placeholders;
+    }
+
+    /**
+     * Имена частей с текстом по [Content_Types].xml: основная часть может называться не только document.xml.
+     */
+    private static List<String> docxParts(ZipFile zip) throws IOException, XMLStreamException {
+        ZipEntry entry = zip.getEntry(CONTENT_TYPES);
+        if (entry == null) throw new IOException("DOCX document has no " + CONTENT_TYPES);
+        Map<String, List<String>> byType = new HashMap<>();
+        try (InputStream in = zip.getInputStream(entry)) {
+            XMLStreamReader reader = INPUT.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT
+                            || !"Override".equals(reader.getLocalName())
+                            || !CONTENT_TYPES_NS.equals(reader.getNamespaceURI())) continue;
+                    String type = reader.getAttributeValue(null, "ContentType");
+                    String name = reader.getAttributeValue(null, "PartName");
+                    if (type == null || name == null || !type.startsWith(WORDML_TYPE)) continue;
+                    byType.computeIfAbsent(type.substring(WORDML_TYPE.length()), key -> new ArrayList<>())
+                            .add(name.startsWith("/") ? name.substring(1) : name);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        List<String> parts = new ArrayList<>();
+        for (String type : DOCX_PARTS) {
+            List<String> names = byType.getOrDefault(type, new ArrayList<>());
+            // header1.xml, header2.xml, ..., header10.xml
+            names.sort(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+            parts.addAll(names);
+        }
+        return parts;
+    }
+
+    /**
+     * Передаёт текст каждого параграфа w:p так же, как его собирает DocxProcessor: первый w:t прогона,
+     * перед которым стоит табуляция, если она есть в прогоне. Параграфы надписей передаются отдельно,
+     * раньше параграфа, в котором лежит надпись.
+     */
+    private static void scanWordprocessingMl(InputStream in, Consumer<String> paragraphs) throws XMLStreamException {
+        XMLStreamReader reader = INPUT.createXMLStreamReader(in);
+        try {
+            Deque<StringBuilder> texts = new ArrayDeque<>();
+            Deque<Run> runs = new ArrayDeque<>();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) continue;
+                if (!W_NS.equals(reader.getNamespaceURI())) continue;
+                String name = reader.getLocalName();
+                boolean start = event == XMLStreamConstants.START_ELEMENT;
+                switch (name) {
+                    case "p" -> {
+                        if (start) {
+                            texts.push(new StringBuilder());
+                        } else if (!texts.isEmpty()) {
+                            paragraphs.accept(texts.pop().toString());
+                        }
+                    }
+                    case "r" -> {
+                        if (start) {
+                            runs.push(new Run(texts.size()));
+                        } else if (!runs.isEmpty()) {
+                            Run run = runs.pop();
+                            if (!texts.isEmpty() && run.depth == texts.size()) run.appendTo(texts.peek());
+                        }
+                    }
+                    case "tab" -> {
+                        if (start && !runs.isEmpty() && runs.peek().depth == texts.size()) runs.peek().tab = true;
+                    }
+                    case "t" -> {
+                        if (start && !runs.isEmpty() && runs.peek().depth == texts.size()) {
+                            String text = reader.getElementText();
+                            if (runs.peek().text == null) runs.peek().text = text;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Текст прогона, собираемый при потоковом чтении.
+     */
+    private static final class Run {
+        // число открытых параграфов: прогон надписи не относится к внешнему параграфу
+        private final int depth;
+        private boolean tab;
+        private String text;
+
+        private Run(int depth) {
+            this.depth = depth;
+        }
+
+        private void appendTo(StringBuilder paragraph) {
+            if (tab) paragraph.append('\t');
+            if (text != null) paragraph.append(text);
+        }
+    }
+
+    /**
+     * Передаёт полный текст внешних параграфов text:p и заголовков text:h, как их видит {@link OdtContent}.
+     */
+    private static void scanOpenDocument(InputStream in, Consumer<String> paragraphs) throws XMLStreamException {
+        XMLStreamReader reader = INPUT.createXMLStreamReader(in);
+        try {
+            StringBuilder text = new StringBuilder();
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (depth > 0 || isParagraph(reader)) depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth > 0 && --depth == 0) {
+                        paragraphs.accept(text.toString());
+                        text.setLength(0);
+                    }
+                } else if (depth > 0 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                        || event == XMLStreamConstants.SPACE)) {
+                    text.append(reader.getText());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static boolean isParagraph(XMLStreamReader reader) {
+        return OdtContent.TEXT_NS.equals(reader.getNamespaceURI())
+                && ("p".equals(reader.getLocalName()) || "h".equals(reader.getLocalName()));
+    }
+
+    private static void collect(String text, Set<String> placeholders) {
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(text);
+        while (matcher.find()) {
+            placeholders.add(matcher.group(1));
+        }
+    }
+
+    private static XMLInputFactory inputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
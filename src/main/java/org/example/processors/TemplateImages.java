@@ -0,0 +1,96 @@
+package org.example.processors;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Плейсхолдеры изображений шаблона: [IMG:PHOTO] вставляет файл, путь к которому записан в колонке PHOTO.
+ * Размер вставки в миллиметрах задаётся после черты: [IMG:PHOTO|40x30], [IMG:PHOTO|40] или [IMG:PHOTO|x30].
+ * Относительные пути считаются от папки ресурсов, заданной при подготовке шаблона: при пакетной генерации
+ * это папка таблицы данных, ведь шаблон к этому времени лежит в библиотеке шаблонов.
+ * Изображения берутся из общего {@link MediaCache}.
+ */
+final class TemplateImages {
+
+    static final String PREFIX = "IMG:";
+
+    private static final Pattern SIZE = Pattern.compile("\\s*(\\d+(?:[.,]\\d+)?)?\\s*(?:[xх]\\s*(\\d+(?:[.,]\\d+)?))?\\s*");
+
+    static final TemplateImages NONE = new TemplateImages(Map.of(), null);
+
+    private record Spec(String column, double widthMm, double heightMm) {}
+
+    private final Map<String, Spec> specs;
+    private final Path baseDir;
+
+    private TemplateImages(Map<String, Spec> specs, Path baseDir) {
+        this.specs = specs;
+        this.baseDir = baseDir;
+    }
+
+    /**
+     * @param baseDir папка для относительных путей или null - текущая папка
+     * @throws IOException если размер изображения записан неверно
+     */
+    static TemplateImages of(Collection<String> placeholders, Path baseDir) throws IOException {
+        Map<String, Spec> specs = new HashMap<>();
+        for (String placeholder : placeholders) {
+            if (!isImage(placeholder)) continue;
+            String[] parts = placeholder.substring(PREFIX.length()).split("\\|", 2);
+            double width = 0;
+            double height = 0;
+            if (parts.length > 1) {
+                Matcher matcher = SIZE.matcher(parts[1]);
+                if (!matcher.matches()) throw new IOException("Invalid image size: [" + placeholder + "]");
+                width = size(matcher.group(1));
+                height = size(matcher.group(2));
+            }
+            specs.put(placeholder, new Spec(parts[0].trim(), width, height));
+        }
+        return specs.isEmpty() ? NONE : new TemplateImages(Map.copyOf(specs), baseDir);
+    }
+
+    static boolean isImage(String placeholder) {
+        return placeholder.startsWith(PREFIX);
+    }
+
+    /**
+     * @return колонка с путём к изображению
+     */
+    static String column(String placeholder) {
+        return placeholder.substring(PREFIX.length()).split("\\|", 2)[0].trim();
+    }
+
+    boolean isEmpty() {
+        return specs.isEmpty();
+    }
+
+    /**
+     * @return изображение для плейсхолдера или null, если плейсхолдер не изображение или путь пуст
+     * @throws IOException если файл не найден или не является изображением
+     */
+    MediaCache.Image get(String placeholder, Map<String, String> row) throws IOException {
+        Spec spec = specs.get(placeholder);
+        if (spec == null) return null;
+        String value = row.get(spec.column());
+        if (value == null || value.isBlank()) return null;
+        Path path;
+        try {
+            path = Path.of(value.trim());
+        } catch (InvalidPathException e) {
+            throw new IOException("Invalid image path: " + value, e);
+        }
+        if (!path.isAbsolute() && baseDir != null) path = baseDir.resolve(path);
+        return MediaCache.shared().get(path, spec.widthMm(), spec.heightMm());
+    }
+
+    private static double size(String value) {
+        return value == null ? 0 : Double.parseDouble(value.replace(',', '.'));
+    }
+}
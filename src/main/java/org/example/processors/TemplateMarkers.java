@@ -0,0 +1,56 @@
+package org.example.processors;
+
+import java.util.Set;
+
+/**
+ * Служебные плейсхолдеры разметки шаблона. В таблицу данных они не попадают.
+ */
+final class TemplateMarkers {
+
+    /**
+     * Начало повторяющейся области: строка таблицы с этим маркером размножается по строкам группы.
+     */
+    static final String EACH = "#EACH";
+
+    /**
+     * Конец повторяющейся области из нескольких строк таблицы.
+     */
+    static final String END_EACH = "/EACH";
+
+    /**
+     * Начало условного блока: [#IF условие], где условие - имя колонки или выражение с пометкой =, например [#IF =DEBT > 0].
+     */
+    static final String IF = "#IF";
+
+    /**
+     * Необязательная ветвь условного блока, которая выводится при ложном условии.
+     */
+    static final String ELSE = "#ELSE";
+
+    /**
+     * Конец условного блока.
+     */
+    static final String END_IF = "/IF";
+
+    private TemplateMarkers() {
+    }
+
+    static boolean isMarker(String placeholder) {
+        return placeholder.startsWith("#") || placeholder.startsWith("/");
+    }
+
+    /**
+     * Убирает маркеры из найденных плейсхолдеров.
+     *
+     * @return true, если среди плейсхолдеров была повторяющаяся область
+     */
+    static boolean stripMarkers(Set<String> placeholders) {
+        boolean regions = placeholders.contains(EACH);
+        placeholders.removeIf(TemplateMarkers::isMarker);
+        return regions;
+    }
+
+    static String tag(String marker) {
+        return "[" + marker + "]";
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.readers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+/**
+ * Единые правила преобразования значений ячеек в строки для всех читателей таблиц.
+ * Значения записываются в каноническом виде, не зависящем от формата ячейки и локали:
+ * числа без разделителей групп и экспоненты, даты как dd.MM.yyyy, даты со временем как dd.MM.yyyy HH:mm:ss
+ * (доли секунды отбрасываются). Оформление задаётся в шаблоне директивой формата, например [AMOUNT|#,##0.00|ru].
+ * При изменении этих правил нужно увеличить CachingTableReader.VALUES_VERSION.
+ */
+final class CellFormats {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
+
+    private CellFormats() {}
+
+    static String formatDate(LocalDate date) {
+        return DATE_FORMAT.format(date);
+    }
+
+    /**
+     * Время в полночь не выводится: такая ячейка обычно хранит дату без времени.
+     */
+    static String formatDate(LocalDateTime dateTime) {
+        if (dateTime.toLocalTime().truncatedTo(ChronoUnit.SECONDS).equals(LocalTime.MIDNIGHT)) {
+            return formatDate(dateTime.toLocalDate());
+        }
+        return DATE_TIME_FORMAT.format(dateTime);
+    }
+
+    static String formatDate(Date date) {
+        return formatDate(date.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
+    }
+
+    static String formatNumber(double value) {
+        if (!Double.isFinite(value)) return Double.toString(value);
+        // Double.toString даёт 1.2345E7 для больших чисел, а (long) обрезает всё, что больше Long.MAX_VALUE
+        return formatNumber(BigDecimal.valueOf(value));
+    }
+
+    static String formatNumber(BigDecimal value) {
+        return value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,429 @@
+package org.example.readers;
+
+import org.example.interfaces.TableReader;
+import org.example.metrics.GenerationMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Читает CSV/TSV (RFC 4180) через отображённый в память файл.
+ * Большие файлы делятся на сегменты примерно по SEGMENT_SIZE байт и разбираются параллельно,
+ * строки при этом выдаются потребителю в исходном порядке. Начало первой записи сегмента каждый поток
+ * находит сам, не читая файл до сегмента; найденное начало сверяется с концом предыдущего сегмента,
+ * и при расхождении сегмент разбирается заново.
+ * Поддерживаются только кодировки, совместимые с ASCII (UTF-8, windows-1251 и т.п.).
+ */
+public class CsvTableReader implements TableReader {
+
+    private static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final char AUTO_DETECT = 0;
+    private static final char[] DETECTED_DELIMITERS = {',', ';', '\t'};
+
+    private final char delimiter;
+    private final Charset charset;
+    private final int parallelism;
+
+    /**
+     * Разделитель определяется по строке заголовков (запятая, точка с запятой или табуляция), кодировка UTF-8.
+     */
+    public CsvTableReader() {
+        this(AUTO_DETECT, StandardCharsets.UTF_8);
+    }
+
+    public CsvTableReader(char delimiter, Charset charset) {
+        this(delimiter, charset, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CsvTableReader(char delimiter, Charset charset, int parallelism) {
+        if (delimiter == QUOTE || delimiter == CR || delimiter == LF || delimiter > 0x7F) {
+            throw new IllegalArgumentException("Unsupported CSV delimiter");
+        }
+        if (!"\",;\t\r\n".equals(new String("\",;\t\r\n".getBytes(charset), StandardCharsets.US_ASCII))) {
+            throw new IllegalArgumentException("CSV charset must be ASCII-compatible: " + charset);
+        }
+        this.delimiter = delimiter;
+        this.charset = charset;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public static CsvTableReader tsv() {
+        return new CsvTableReader('\t', StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void forEachRow(File file, ReadOptions options, Consumer<Map<String, String>> consumer) {
+        long rowsRead = 0;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) return;
+
+            // заголовки
+            MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, SEGMENT_SIZE));
+            int offset = hasBom(head) ? 3 : 0;
+            byte separator = (byte) (delimiter == AUTO_DETECT ? detectDelimiter(head, offset) : delimiter);
+            Parser headerParser = new Parser(separator, charset);
+            List<String[]> headerRecord = new ArrayList<>(1);
+            long dataStart = offset + headerParser.parse(head, offset, head.limit(), head.limit(), 1, null,
+                    headerRecord::add);
+            if (headerRecord.isEmpty()) return;
+            String[] headers = headerRecord.get(0);
+
+            // проекция: значения остальных колонок не декодируются в строки
+            options.checkFilterColumns(Arrays.asList(headers));
+            boolean[] needed = new boolean[headers.length];
+            boolean[] included = new boolean[headers.length];
+            Map<String, Integer> indexes = new HashMap<>();
+            for (int i = 0; i < headers.length; i++) {
+                needed[i] = options.needs(headers[i]);
+                included[i] = options.includes(headers[i]);
+                indexes.putIfAbsent(headers[i], i);
+            }
+            Columns columns = new Columns(headers, needed, included, indexes, options, size);
+
+            // строки
+            RowNumbering numbering = new RowNumbering(options, consumer);
+            if (parallelism == 1 || size - dataStart <= SEGMENT_SIZE) {
+                Parser parser = new Parser(separator, charset);
+                long position = dataStart;
+                for (long nominal = dataStart; nominal < size; nominal += SEGMENT_SIZE) {
+                    ParsedSegment parsed = parseSegment(channel, position, Math.min(size, nominal + SEGMENT_SIZE),
+                            parser, columns);
+                    if (!numbering.accept(parsed)) break;
+                    position = parsed.end;
+                }
+            } else {
+                parseInParallel(channel, dataStart, separator, columns, numbering);
+            }
+            rowsRead = numbering.emitted;
+        } catch (Exception e) {
+            throw new RuntimeException("CSV reading error", e);
+        } finally {
+            GenerationMetrics.get().rowsRead(rowsRead);
+        }
+    }
+
+    /**
+     * Сегменты разбираются в пуле потоков с опережением не более чем на parallelism сегментов,
+     * поэтому в памяти одновременно находится ограниченное число разобранных строк.
+     * Сегмент, начало которого угадано неверно (внутри многострочного поля в кавычках), разбирается заново
+     * в вызывающем потоке от конца предыдущего сегмента.
+     */
+    private void parseInParallel(FileChannel channel, long dataStart, byte separator, Columns columns,
+                                 RowNumbering numbering) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "csv-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ThreadLocal<Parser> parsers = ThreadLocal.withInitial(() -> new Parser(separator, charset));
+        Deque<PendingSegment> pending = new ArrayDeque<>();
+        try {
+            long nextSegment = dataStart;
+            long position = dataStart;
+            while (nextSegment < columns.size || !pending.isEmpty()) {
+                while (nextSegment < columns.size && pending.size() < parallelism) {
+                    long nominal = nextSegment;
+                    long stop = Math.min(columns.size, nominal + SEGMENT_SIZE);
+                    pending.add(new PendingSegment(stop, executor.submit(() -> {
+                        long start = nominal == dataStart ? nominal : recordStart(channel, nominal, stop, separator);
+                        return parseSegment(channel, start, stop, parsers.get(), columns);
+                    })));
+                    nextSegment = stop;
+                }
+                PendingSegment next = pending.removeFirst();
+                ParsedSegment parsed;
+                try {
+                    parsed = next.future().get();
+                } catch (ExecutionException e) {
+                    // разбор от неверно угаданного начала может упасть; настоящая ошибка повторится ниже
+                    parsed = null;
+                }
+                if (parsed == null || parsed.start != position) {
+                    parsed = parseSegment(channel, position, next.stop(), parsers.get(), columns);
+                }
+                if (!numbering.accept(parsed)) break;
+                position = parsed.end;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Угадывает начало первой записи не раньше nominal, не читая файл до этой позиции. Находится ли nominal
+     * внутри поля в кавычках, определяется по первой кавычке, которая однозначно открывает поле
+     * (стоит после разделителя или перевода строки) или закрывает его (стоит перед ними).
+     *
+     * @return позиция после первого перевода строки вне кавычек или stop, если его нет
+     */
+    private static long recordStart(FileChannel channel, long nominal, long stop, byte separator) throws IOException {
+        // окно начинается с байта перед nominal: перевод строки в нём тоже даёт границу
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, nominal - 1, stop - nominal + 1);
+        boolean inQuotes = startsInQuotes(window, separator);
+        for (int i = 0; i < window.limit(); i++) {
+            byte b = window.get(i);
+            if (b == QUOTE && i > 0) {
+                inQuotes = !inQuotes;
+            } else if (b == LF && !inQuotes) {
+                return nominal + i;
+            }
+        }
+        return stop;
+    }
+
+    /**
+     * @param window байты начиная с байта перед угадываемой позицией
+     * @return true, если позиция, по-видимому, внутри поля в кавычках
+     */
+    private static boolean startsInQuotes(ByteBuffer window, byte separator) {
+        int quotes = 0;
+        for (int i = 1; i < window.limit(); i++) {
+            if (window.get(i) != QUOTE) continue;
+            byte previous = window.get(i - 1);
+            byte next = i + 1 < window.limit() ? window.get(i + 1) : LF;
+            if (next == QUOTE) {
+                // экранированная кавычка или пустое поле не меняют чётность
+                i++;
+            } else if (previous == separator || previous == LF || previous == CR) {
+                return quotes % 2 != 0;
+            } else if (next == separator || next == LF || next == CR) {
+                return quotes % 2 == 0;
+            } else {
+                quotes++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Разбирает записи, начинающиеся в [start, stop), и собирает строки только для записей, прошедших фильтры.
+     * Последняя запись дочитывается за stop, конец сегмента - первая граница записей не раньше stop.
+     * Номера записей внутри сегмента сохраняются, чтобы потом применить диапазон строк.
+     */
+    private ParsedSegment parseSegment(FileChannel channel, long start, long stop, Parser parser,
+                                       Columns columns) throws IOException {
+        ParsedSegment parsed = new ParsedSegment(start);
+        if (start >= stop) return parsed;
+        int length = (int) Math.min(columns.size - start, Integer.MAX_VALUE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        int consumed = parser.parse(buffer, 0, length, (int) (stop - start), Integer.MAX_VALUE, columns.needed,
+                record -> {
+                    int ordinal = parsed.records++;
+                    if (columns.options.hasFilters()
+                            && !columns.options.accepts(column -> columns.value(record, column))) {
+                        return;
+                    }
+                    Map<String, String> row = new LinkedHashMap<>();
+                    for (int i = 0; i < columns.headers.length; i++) {
+                        if (!columns.included[i]) continue;
+                        row.put(columns.headers[i], i < record.length ? record[i] : "");
+                    }
+                    parsed.add(ordinal, row);
+                });
+        if (consumed == length && start + length < columns.size) {
+            throw new IOException("CSV record is too large at offset " + start);
+        }
+        parsed.end = start + consumed;
+        return parsed;
+    }
+
+    private static boolean hasBom(ByteBuffer buffer) {
+        return buffer.limit() >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB
+                && buffer.get(2) == (byte) 0xBF;
+    }
+
+    /**
+     * Выбирает самый частый из типичных разделителей в первой записи (вне кавычек).
+     */
+    private static char detectDelimiter(ByteBuffer buffer, int offset) {
+        int[] counts = new int[DETECTED_DELIMITERS.length];
+        boolean inQuotes = false;
+        for (int i = offset; i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (b == QUOTE) inQuotes = !inQuotes;
+            if (inQuotes) continue;
+            if (b == LF || b == CR) break;
+            for (int d = 0; d < DETECTED_DELIMITERS.length; d++) {
+                if (b == DETECTED_DELIMITERS[d]) counts[d]++;
+            }
+        }
+        int best = 0;
+        for (int d = 1; d < DETECTED_DELIMITERS.length; d++) {
+            if (counts[d] > counts[best]) best = d;
+        }
+        return DETECTED_DELIMITERS[best];
+    }
+
+    /**
+     * Заголовки и параметры чтения, общие для всех сегментов файла.
+     *
+     * @param needed   колонки, значения которых декодируются в строки
+     * @param included колонки проекции
+     * @param indexes  номер колонки по заголовку для фильтров
+     * @param size     размер файла
+     */
+    private record Columns(String[] headers, boolean[] needed, boolean[] included, Map<String, Integer> indexes,
+                           ReadOptions options, long size) {
+        String value(String[] record, String column) {
+            int index = indexes.get(column);
+            return index < record.length ? record[index] : "";
+        }
+    }
+
+    private record PendingSegment(long stop, Future<ParsedSegment> future) {}
+
+    /**
+     * Строки сегмента, прошедшие фильтры, с номерами записей внутри сегмента.
+     */
+    private static class ParsedSegment {
+        private final List<Map<String, String>> rows = new ArrayList<>();
+        private final long start;
+        private long end;
+        private int[] ordinals = new int[64];
+        private int records;
+
+        private ParsedSegment(long start) {
+            this.start = start;
+            this.end = start;
+        }
+
+        void add(int ordinal, Map<String, String> row) {
+            if (rows.size() == ordinals.length) ordinals = Arrays.copyOf(ordinals, ordinals.length * 2);
+            ordinals[rows.size()] = ordinal;
+            rows.add(row);
+        }
+    }
+
+    /**
+     * Выдаёт строки сегментов потребителю по порядку, применяя диапазон строк к сквозной нумерации записей.
+     */
+    private static class RowNumbering {
+        private final ReadOptions options;
+        private final Consumer<Map<String, String>> consumer;
+        private long recordsBefore;
+        private long emitted;
+
+        private RowNumbering(ReadOptions options, Consumer<Map<String, String>> consumer) {
+            this.options = options;
+            this.consumer = consumer;
+        }
+
+        /**
+         * @return false, если диапазон строк исчерпан и дальнейшие сегменты не нужны
+         */
+        boolean accept(ParsedSegment segment) {
+            for (int i = 0; i < segment.rows.size(); i++) {
+                long rowNumber = recordsBefore + segment.ordinals[i] + 1;
+                if (rowNumber > options.getLastRow()) return false;
+                if (!options.inRange(rowNumber)) continue;
+                consumer.accept(segment.rows.get(i));
+                emitted++;
+            }
+            recordsBefore += segment.records;
+            return recordsBefore < options.getLastRow();
+        }
+    }
+
+    /**
+     * Конечный автомат разбора записей RFC 4180 над байтовым буфером.
+     * Повторяющиеся значения полей декодируются один раз и разделяют экземпляр строки.
+     * Экземпляр не потокобезопасен: буфер поля и таблица значений переиспользуются между вызовами.
+     */
+    private static class Parser {
+        private final byte delimiter;
+        private final Charset charset;
+        private final ValueInterner interner = new ValueInterner();
+        private byte[] field = new byte[256];
+        private int fieldLength;
+
+        private Parser(byte delimiter, Charset charset) {
+            this.delimiter = delimiter;
+            this.charset = charset;
+        }
+
+        /**
+         * @param to        конец данных; пустая строка в самом конце не считается записью
+         * @param stop      записи, начинающиеся с этой позиции, не разбираются
+         * @param projected поля, которые нужно декодировать в строки; остальные поля записи остаются null.
+         *                  null - декодируются все поля
+         * @return число разобранных байт начиная с from
+         */
+        int parse(ByteBuffer buffer, int from, int to, int stop, int maxRecords, boolean[] projected,
+                  Consumer<String[]> records) {
+            List<String> record = new ArrayList<>();
+            int pos = from;
+            int emitted = 0;
+            while (pos < stop && emitted < maxRecords) {
+                int recordStart = pos;
+                fieldLength = 0;
+                if (buffer.get(pos) == QUOTE) {
+                    pos = readQuoted(buffer, pos + 1, to);
+                }
+                while (pos < to) {
+                    byte b = buffer.get(pos);
+                    if (b == delimiter || b == LF || b == CR) break;
+                    append(b);
+                    pos++;
+                }
+                int index = record.size();
+                boolean decode = projected == null || (index < projected.length && projected[index]);
+                record.add(decode ? interner.intern(field, 0, fieldLength, charset) : null);
+
+                if (pos < to && buffer.get(pos) == delimiter) {
+                    pos++;
+                    if (pos < to) continue;
+                    record.add("");
+                }
+                if (pos < to && buffer.get(pos) == CR) pos++;
+                if (pos < to && buffer.get(pos) == LF) pos++;
+
+                byte first = buffer.get(recordStart);
+                boolean blankLine = record.size() == 1 && (first == CR || first == LF);
+                if (!blankLine || pos < to) {
+                    records.accept(record.toArray(new String[0]));
+                    emitted++;
+                }
+                record.clear();
+            }
+            return pos - from;
+        }
+
+        private int readQuoted(ByteBuffer buffer, int pos, int to) {
+            while (pos < to) {
+                byte b = buffer.get(pos);
+                if (b == QUOTE) {
+                    if (pos + 1 < to && buffer.get(pos + 1) == QUOTE) {
+                        append(QUOTE);
+                        pos += 2;
+                        continue;
+                    }
+                    return pos + 1;
+                }
+                append(b);
+                pos++;
+            }
+            return pos;
+        }
+
+        private void append(byte b) {
+            if (fieldLength == field.length) {
+                field = Arrays.copyOf(field, field.length * 2);
+            }
+            field[fieldLength++] = b;
+        }
+    }
+}
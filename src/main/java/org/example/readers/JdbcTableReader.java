@@ -0,0 +1,165 @@
+package org.example.readers;
+
+import org.example.interfaces.TableReader;
+import org.example.metrics.GenerationMetrics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * Построчно читает результат SQL-запроса, не загружая его в память целиком.
+ * Метки колонок результата становятся ключами плейсхолдеров.
+ * <p>
+ * Подключение задаётся либо в конструкторе (тогда аргумент file в forEachRow не используется),
+ * либо файлом-описанием *.jdbc в формате properties с ключами url, user, password, query и fetchSize.
+ */
+public class JdbcTableReader implements TableReader {
+
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private final String url;
+    private final Properties connectionProperties;
+    private final String query;
+    private final int fetchSize;
+
+    /**
+     * Параметры подключения будут прочитаны из файла-описания, переданного в forEachRow.
+     */
+    public JdbcTableReader() {
+        this(null, new Properties(), null, DEFAULT_FETCH_SIZE);
+    }
+
+    public JdbcTableReader(String url, String query) {
+        this(url, new Properties(), query, DEFAULT_FETCH_SIZE);
+    }
+
+    public JdbcTableReader(String url, Properties connectionProperties, String query, int fetchSize) {
+        this.url = url;
+        this.connectionProperties = connectionProperties;
+        this.query = query;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void forEachRow(File file, ReadOptions options, Consumer<Map<String, String>> consumer) {
+        long rowsRead = 0;
+
+        try {
+            String jdbcUrl = url;
+            Properties properties = connectionProperties;
+            String sql = query;
+            int rowsPerFetch = fetchSize;
+            if (jdbcUrl == null) {
+                Properties descriptor = loadDescriptor(file);
+                jdbcUrl = descriptor.getProperty("url");
+                sql = descriptor.getProperty("query");
+                rowsPerFetch = Integer.parseInt(descriptor.getProperty("fetchSize", Integer.toString(DEFAULT_FETCH_SIZE)));
+                properties = new Properties();
+                copyIfPresent(descriptor, properties, "user");
+                copyIfPresent(descriptor, properties, "password");
+                if (jdbcUrl == null || sql == null) {
+                    throw new IllegalArgumentException("JDBC descriptor must define url and query");
+                }
+            }
+
+            try (Connection connection = DriverManager.getConnection(jdbcUrl, properties)) {
+                // Некоторые драйверы (PostgreSQL) учитывают fetchSize только вне режима автокоммита
+                connection.setAutoCommit(false);
+                connection.setReadOnly(true);
+                try (PreparedStatement statement = connection.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    statement.setFetchSize(rowsPerFetch);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        ResultSetMetaData metaData = resultSet.getMetaData();
+                        int columnCount = metaData.getColumnCount();
+                        String[] headers = new String[columnCount];
+                        List<Integer> columns = new ArrayList<>();
+                        for (int i = 0; i < columnCount; i++) {
+                            headers[i] = metaData.getColumnLabel(i + 1);
+                            if (options.includes(headers[i])) columns.add(i);
+                        }
+                        List<String> labels = Arrays.asList(headers);
+                        options.checkFilterColumns(labels);
+                        ValueInterner interner = new ValueInterner();
+
+                        long rowNumber = 0;
+                        while (resultSet.next()) {
+                            rowNumber++;
+                            if (rowNumber > options.getLastRow()) break;
+                            if (!options.inRange(rowNumber)) continue;
+                            if (options.hasFilters()
+                                    && !options.accepts(column -> readValue(resultSet, labels.indexOf(column)))) {
+                                continue;
+                            }
+
+                            Map<String, String> row = new LinkedHashMap<>();
+                            for (int i : columns) {
+                                row.put(headers[i], interner.intern(getValueAsString(resultSet.getObject(i + 1))));
+                            }
+                            consumer.accept(row);
+                            rowsRead++;
+                        }
+                    }
+                } finally {
+                    connection.rollback();
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("JDBC reading error", e);
+        } finally {
+            GenerationMetrics.get().rowsRead(rowsRead);
+        }
+    }
+
+    private static Properties loadDescriptor(File file) throws IOException {
+        Properties descriptor = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            descriptor.load(reader);
+        }
+        return descriptor;
+    }
+
+    private static void copyIfPresent(Properties from, Properties to, String key) {
+        String value = from.getProperty(key);
+        if (value != null) to.setProperty(key, value);
+    }
+
+    private String readValue(ResultSet resultSet, int column) {
+        try {
+            return getValueAsString(resultSet.getObject(column + 1));
+        } catch (SQLException e) {
+            throw new IllegalStateException("JDBC value reading error", e);
+        }
+    }
+
+    private String getValueAsString(Object value) throws SQLException {
+        if (value == null) return "";
+        if (value instanceof Date date) return CellFormats.formatDate(date.toLocalDate());
+        if (value instanceof Timestamp timestamp) return CellFormats.formatDate(timestamp.toLocalDateTime());
+        if (value instanceof LocalDate date) return CellFormats.formatDate(date);
+        if (value instanceof LocalDateTime dateTime) return CellFormats.formatDate(dateTime);
+        if (value instanceof OffsetDateTime dateTime) return CellFormats.formatDate(dateTime.toLocalDateTime());
+        if (value instanceof BigDecimal decimal) return CellFormats.formatNumber(decimal);
+        if (value instanceof Double number) return CellFormats.formatNumber(number);
+        // float через double дал бы 0.10000000149011612 вместо 0.1
+        if (value instanceof Float number) return CellFormats.formatNumber(new BigDecimal(number.toString()));
+        if (value instanceof Clob clob) return clob.getSubString(1, (int) clob.length());
+        return value.toString();
+    }
+}
@@ -0,0 +1,256 @@
+package org.example.readers;
+
+import org.example.interfaces.TableReader;
+import org.example.metrics.GenerationMetrics;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Потоково читает NDJSON (по объекту в строке) или JSON-массив объектов верхнего уровня.
+ * Каждый объект становится строкой таблицы, вложенные поля разворачиваются в ключи через точку
+ * ({"customer": {"name": ...}} даёт плейсхолдер [customer.name]), элементы массивов - через индекс.
+ * В памяти одновременно находится только текущий объект, поэтому размер файла не ограничен.
+ * Повторяющиеся имена полей и значения разделяют один экземпляр строки.
+ */
+public class JsonTableReader implements TableReader {
+
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9]\\d*)(\\.\\d+)?([eE][+-]?\\d+)?");
+
+    @Override
+    public void forEachRow(File file, ReadOptions options, Consumer<Map<String, String>> consumer) {
+        long rowsRead = 0;
+
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            JsonParser parser = new JsonParser(reader, options);
+            parser.skipBom();
+
+            int first = parser.peekSignificant();
+            if (first == -1) return;
+
+            long rowNumber = 0;
+            if (first == '[') {
+                // JSON-массив объектов
+                parser.expect('[');
+                if (parser.peekSignificant() == ']') return;
+                while (++rowNumber <= options.getLastRow()) {
+                    Map<String, String> row = parser.readRow(options.inRange(rowNumber));
+                    if (row != null) {
+                        consumer.accept(row);
+                        rowsRead++;
+                    }
+                    int next = parser.nextSignificant();
+                    if (next == ']') break;
+                    if (next != ',') throw parser.error("',' or ']' expected");
+                }
+            } else {
+                // NDJSON: объекты, разделённые переводами строк
+                while (parser.peekSignificant() != -1 && ++rowNumber <= options.getLastRow()) {
+                    Map<String, String> row = parser.readRow(options.inRange(rowNumber));
+                    if (row != null) {
+                        consumer.accept(row);
+                        rowsRead++;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("JSON reading error", e);
+        } finally {
+            GenerationMetrics.get().rowsRead(rowsRead);
+        }
+    }
+
+    /**
+     * Минимальный потоковый разборщик JSON с собственным буфером символов.
+     * Строковые значения полей вне проекции пропускаются без сборки строки.
+     */
+    private static class JsonParser {
+        private final Reader reader;
+        private final ReadOptions options;
+        private final char[] buffer = new char[64 * 1024];
+        private final StringBuilder text = new StringBuilder();
+        private final ValueInterner interner = new ValueInterner();
+        private int position;
+        private int limit;
+        private long line = 1;
+        private boolean skipping;
+
+        private JsonParser(Reader reader, ReadOptions options) {
+            this.reader = reader;
+            this.options = options;
+        }
+
+        /**
+         * @param keep false - объект только пропускается, значения не собираются
+         * @return строка или null, если объект пропущен или не прошёл фильтры
+         */
+        Map<String, String> readRow(boolean keep) throws IOException {
+            if (peekSignificant() != '{') throw error("Object expected");
+            Map<String, String> row = new LinkedHashMap<>();
+            skipping = !keep;
+            readValue("", row);
+            if (!keep || !options.accepts(row::get)) return null;
+            if (options.hasFilters()) row.keySet().removeIf(column -> !options.includes(column));
+            return row;
+        }
+
+        private void readValue(String key, Map<String, String> row) throws IOException {
+            int c = peekSignificant();
+            switch (c) {
+                case '{' -> readObject(key, row);
+                case '[' -> readArray(key, row);
+                case '"' -> {
+                    read();
+                    if (!skipping && options.needs(key)) {
+                        row.put(key, readString());
+                    } else {
+                        skipString();
+                    }
+                }
+                case -1 -> throw error("Unexpected end of input");
+                default -> {
+                    String literal = readLiteral();
+                    if (!skipping && options.needs(key)) row.put(key, literal.equals("null") ? "" : literal);
+                }
+            }
+        }
+
+        private void readObject(String prefix, Map<String, String> row) throws IOException {
+            expect('{');
+            if (peekSignificant() == '}') {
+                read();
+                return;
+            }
+            while (true) {
+                if (nextSignificant() != '"') throw error("Field name expected");
+                String name = readString();
+                if (nextSignificant() != ':') throw error("':' expected");
+                readValue(prefix.isEmpty() ? name : interner.intern(prefix + "." + name), row);
+                int next = nextSignificant();
+                if (next == '}') return;
+                if (next != ',') throw error("',' or '}' expected");
+            }
+        }
+
+        private void readArray(String prefix, Map<String, String> row) throws IOException {
+            expect('[');
+            if (peekSignificant() == ']') {
+                read();
+                return;
+            }
+            for (int index = 0; ; index++) {
+                readValue(interner.intern(prefix.isEmpty() ? Integer.toString(index) : prefix + "." + index), row);
+                int next = nextSignificant();
+                if (next == ']') return;
+                if (next != ',') throw error("',' or ']' expected");
+            }
+        }
+
+        private String readString() throws IOException {
+            text.setLength(0);
+            while (true) {
+                int c = read();
+                if (c == -1) throw error("Unterminated string");
+                if (c == '"') return interner.intern(text);
+                if (c != '\\') {
+                    text.append((char) c);
+                    continue;
+                }
+                int escaped = read();
+                switch (escaped) {
+                    case '"', '\\', '/' -> text.append((char) escaped);
+                    case 'b' -> text.append('\b');
+                    case 'f' -> text.append('\f');
+                    case 'n' -> text.append('\n');
+                    case 'r' -> text.append('\r');
+                    case 't' -> text.append('\t');
+                    case 'u' -> {
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) throw error("Invalid unicode escape");
+                            code = code * 16 + digit;
+                        }
+                        text.append((char) code);
+                    }
+                    default -> throw error("Invalid escape sequence");
+                }
+            }
+        }
+
+        private void skipString() throws IOException {
+            while (true) {
+                int c = read();
+                if (c == -1) throw error("Unterminated string");
+                if (c == '"') return;
+                if (c == '\\' && read() == -1) throw error("Unterminated string");
+            }
+        }
+
+        private String readLiteral() throws IOException {
+            text.setLength(0);
+            while (true) {
+                int c = peek();
+                if (c == -1 || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) break;
+                text.append((char) read());
+            }
+            String literal = interner.intern(text);
+            if (!literal.equals("true") && !literal.equals("false") && !literal.equals("null")
+                    && !NUMBER.matcher(literal).matches()) {
+                throw error("Unexpected literal '" + literal + "'");
+            }
+            return literal;
+        }
+
+        void skipBom() throws IOException {
+            if (peek() == '\uFEFF') read();
+        }
+
+        void expect(char expected) throws IOException {
+            if (nextSignificant() != expected) throw error("'" + expected + "' expected");
+        }
+
+        int nextSignificant() throws IOException {
+            peekSignificant();
+            return read();
+        }
+
+        int peekSignificant() throws IOException {
+            while (true) {
+                int c = peek();
+                if (c == -1 || !Character.isWhitespace(c)) return c;
+                read();
+            }
+        }
+
+        private int peek() throws IOException {
+            if (position == limit && !fill()) return -1;
+            return buffer[position];
+        }
+
+        private int read() throws IOException {
+            if (position == limit && !fill()) return -1;
+            char c = buffer[position++];
+            if (c == '\n') line++;
+            return c;
+        }
+
+        private boolean fill() throws IOException {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return false;
+            }
+            return true;
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " at line " + line);
+        }
+    }
+}
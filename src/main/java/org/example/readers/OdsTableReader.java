@@ -1,22 +1,26 @@
 package org.example.readers;
 
 import org.example.interfaces.TableReader;
+import org.example.metrics.GenerationMetrics;
 import org.odftoolkit.odfdom.doc.OdfSpreadsheetDocument;
 import org.odftoolkit.odfdom.doc.table.OdfTable;
+import org.odftoolkit.odfdom.doc.table.OdfTableCell;
 import org.odftoolkit.odfdom.doc.table.OdfTableRow;
 
 import java.io.File;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class OdsTableReader implements TableReader {
     @Override
-    public List<Map<String, String>> read(File file) {
-        List<Map<String, String>> result = new ArrayList<>();
+    public void forEachRow(File file, ReadOptions options, Consumer<Map<String, String>> consumer) {
+        long rowsRead = 0;
+
         try (OdfSpreadsheetDocument document = OdfSpreadsheetDocument.loadDocument(file)) {
             OdfTable table = document.getTableList().get(0); // первая таблица
             List<OdfTableRow> rows = table.getRowList();
 
-            if (rows.isEmpty()) return result;
+            if (rows.isEmpty()) return;
 
             // заголовки
             OdfTableRow headerRow = rows.get(0);
@@ -26,21 +30,55 @@ public class OdsTableReader implements TableReader {
                 headers.add(headerRow.getCellByIndex(i).getDisplayText());
             }
 
-            // строки
-            for (int r = 1; r < rows.size(); r++) {
+            // проекция: ячейки остальных колонок не читаются
+            options.checkFilterColumns(headers);
+            ValueInterner interner = new ValueInterner();
+            List<Integer> columns = new ArrayList<>();
+            for (int c = 0; c < cellCount; c++) {
+                if (options.includes(headers.get(c))) columns.add(c);
+            }
+
+            // строки: номер строки данных совпадает с индексом в списке строк
+            for (int r = (int) Math.min(options.getFirstRow(), rows.size()); r < rows.size() && r <= options.getLastRow(); r++) {
                 OdfTableRow row = rows.get(r);
+                if (options.hasFilters()
+                        && !options.accepts(column -> cellValue(row.getCellByIndex(headers.indexOf(column))))) {
+                    continue;
+                }
                 Map<String, String> map = new LinkedHashMap<>();
-                for (int c = 0; c < cellCount; c++) {
+                for (int c : columns) {
                     String header = headers.get(c);
-                    String value = row.getCellByIndex(c).getDisplayText();
+                    String value = interner.intern(cellValue(row.getCellByIndex(c)));
                     map.put(header, value);
                 }
-                result.add(map);
+                consumer.accept(map);
+                rowsRead++;
             }
         } catch (Exception e) {
             throw new RuntimeException("ODS reading error", e);
+        } finally {
+            GenerationMetrics.get().rowsRead(rowsRead);
         }
+    }
 
-        return result;
+    /**
+     * Числа, даты и логические значения берутся из значения ячейки, а не из отображаемого текста,
+     * поэтому не зависят от формата ячейки и локали документа - как в XLSX.
+     */
+    private static String cellValue(OdfTableCell cell) {
+        String type = cell.getValueType();
+        if (type == null) return cell.getDisplayText();
+        Object value = switch (type) {
+            case "float" -> cell.getDoubleValue();
+            case "currency" -> cell.getCurrencyValue();
+            case "percentage" -> cell.getPercentageValue();
+            case "date" -> cell.getDateValue();
+            case "boolean" -> cell.getBooleanValue();
+            default -> null;
+        };
+        if (value instanceof Double number) return CellFormats.formatNumber(number);
+        if (value instanceof Calendar date) return CellFormats.formatDate(date.getTime());
+        if (value instanceof Boolean flag) return flag.toString();
+        return cell.getDisplayText();
     }
 }
@@ -0,0 +1,148 @@
+package org.example.readers;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Параметры чтения таблицы, которые читатель применяет прямо при разборе.
+ * Колонки вне проекции не форматируются, не вычисляются и не попадают в строки.
+ * Строки вне диапазона и не прошедшие фильтры отбрасываются до сборки строки.
+ * Номера строк считаются с 1 по строкам данных, без строки заголовков.
+ */
+public final class ReadOptions {
+
+    public static final ReadOptions ALL = new ReadOptions(null, 1, Long.MAX_VALUE, List.of());
+
+    private final Set<String> columns;
+    private final long firstRow;
+    private final long lastRow;
+    private final List<RowFilter> filters;
+
+    private ReadOptions(Set<String> columns, long firstRow, long lastRow, List<RowFilter> filters) {
+        this.columns = columns;
+        this.firstRow = firstRow;
+        this.lastRow = lastRow;
+        this.filters = filters;
+    }
+
+    /**
+     * @param columns колонки, которые нужно прочитать; остальные пропускаются
+     */
+    public static ReadOptions columns(Collection<String> columns) {
+        return ALL.withColumns(columns);
+    }
+
+    public ReadOptions withColumns(Collection<String> columns) {
+        Set<String> projection = columns == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(columns));
+        return new ReadOptions(projection, firstRow, lastRow, filters);
+    }
+
+    /**
+     * @param firstRow номер первой строки данных, начиная с 1
+     * @param lastRow  номер последней строки данных включительно
+     */
+    public ReadOptions withRange(long firstRow, long lastRow) {
+        if (firstRow < 1 || lastRow < firstRow) {
+            throw new IllegalArgumentException("Invalid row range: " + firstRow + "-" + lastRow);
+        }
+        return new ReadOptions(columns, firstRow, lastRow, filters);
+    }
+
+    /**
+     * Добавляет фильтр; строка читается, только если проходит все фильтры.
+     */
+    public ReadOptions where(RowFilter filter) {
+        List<RowFilter> combined = new ArrayList<>(filters);
+        combined.add(filter);
+        return new ReadOptions(columns, firstRow, lastRow, List.copyOf(combined));
+    }
+
+    /**
+     * @return true, если колонка должна попасть в строку
+     */
+    public boolean includes(String column) {
+        return columns == null || columns.contains(column);
+    }
+
+    /**
+     * @return true, если значение колонки нужно прочитать: для строки или для проверки фильтров
+     */
+    public boolean needs(String column) {
+        if (includes(column)) return true;
+        for (RowFilter filter : filters) {
+            if (filter.getColumn().equals(column)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param rowNumber номер строки данных, начиная с 1
+     */
+    public boolean inRange(long rowNumber) {
+        return rowNumber >= firstRow && rowNumber <= lastRow;
+    }
+
+    public boolean hasFilters() {
+        return !filters.isEmpty();
+    }
+
+    /**
+     * @param values значение колонки по её имени
+     */
+    public boolean accepts(Function<String, String> values) {
+        for (RowFilter filter : filters) {
+            if (!filter.test(values.apply(filter.getColumn()))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, что все колонки фильтров есть в таблице.
+     */
+    public void checkFilterColumns(Collection<String> headers) {
+        for (RowFilter filter : filters) {
+            if (!headers.contains(filter.getColumn())) {
+                throw new IllegalArgumentException("Unknown filter column: " + filter.getColumn());
+            }
+        }
+    }
+
+    /**
+     * @return колонки проекции или null, если читаются все колонки
+     */
+    public Set<String> getColumns() {
+        return columns;
+    }
+
+    public long getFirstRow() {
+        return firstRow;
+    }
+
+    public long getLastRow() {
+        return lastRow;
+    }
+
+    public List<RowFilter> getFilters() {
+        return filters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ReadOptions other)) return false;
+        return Objects.equals(columns, other.columns) && firstRow == other.firstRow && lastRow == other.lastRow
+                && filters.equals(other.filters);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(columns, firstRow, lastRow, filters);
+    }
+
+    @Override
+    public String toString() {
+        return "ReadOptions{columns=" + (columns == null ? "*" : new TreeSet<>(columns))
+                + ", rows=" + firstRow + "-" + (lastRow == Long.MAX_VALUE ? "*" : lastRow)
+                + ", filters=" + filters + "}";
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.readers;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Условие на значение одной колонки, проверяемое читателем до сборки строки.
+ */
+public final class RowFilter {
+
+    public enum Kind { EQUALS, IN, REGEX }
+
+    private final String column;
+    private final Kind kind;
+    private final List<String> values;
+    private final Pattern pattern;
+
+    private RowFilter(String column, Kind kind, List<String> values) {
+        this.column = Objects.requireNonNull(column, "column");
+        this.kind = kind;
+        this.values = List.copyOf(values);
+        this.pattern = kind == Kind.REGEX ? Pattern.compile(values.get(0)) : null;
+    }
+
+    public static RowFilter equalsTo(String column, String value) {
+        return new RowFilter(column, Kind.EQUALS, List.of(value));
+    }
+
+    public static RowFilter in(String column, Collection<String> values) {
+        return new RowFilter(column, Kind.IN, new ArrayList<>(new LinkedHashSet<>(values)));
+    }
+
+    /**
+     * Значение колонки должно целиком соответствовать регулярному выражению.
+     */
+    public static RowFilter regex(String column, String regex) {
+        return new RowFilter(column, Kind.REGEX, List.of(regex));
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public List<String> getValues() {
+        return values;
+    }
+
+    public boolean test(String value) {
+        if (value == null) value = "";
+        return switch (kind) {
+            case EQUALS -> values.get(0).equals(value);
+            case IN -> values.contains(value);
+            case REGEX -> pattern.matcher(value).matches();
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RowFilter other)) return false;
+        return column.equals(other.column) && kind == other.kind && values.equals(other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(column, kind, values);
+    }
+
+    @Override
+    public String toString() {
+        return column + " " + kind + " " + values;
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.readers;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Ограниченная таблица повторяющихся значений ячеек на время одного чтения таблицы.
+ * Равные значения (город, отдел, подписант, даты) возвращаются одним экземпляром строки,
+ * поэтому строки таблицы в памяти ссылаются на общие объекты.
+ * <p>
+ * Таблица прямого отображения: при коллизии новое значение вытесняет старое, размер памяти постоянен.
+ * Длинные значения не кэшируются - они редко повторяются. Экземпляр не потокобезопасен.
+ */
+public final class ValueInterner {
+
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_LENGTH = 64;
+
+    private final String[] values;
+    private final byte[][] encodedKeys;
+    private final String[] encodedValues;
+    private final int mask;
+
+    public ValueInterner() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity число ячеек таблицы, округляется вверх до степени двойки
+     */
+    public ValueInterner(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.values = new String[size];
+        this.encodedKeys = new byte[size][];
+        this.encodedValues = new String[size];
+        this.mask = size - 1;
+    }
+
+    public String intern(String value) {
+        if (value == null || value.isEmpty()) return "";
+        if (value.length() > MAX_LENGTH) return value;
+        int slot = spread(value.hashCode()) & mask;
+        String cached = values[slot];
+        if (value.equals(cached)) return cached;
+        values[slot] = value;
+        return value;
+    }
+
+    /**
+     * Строка создаётся только если такого значения ещё нет в таблице.
+     */
+    public String intern(CharSequence chars) {
+        int length = chars.length();
+        if (length == 0) return "";
+        if (length > MAX_LENGTH) return chars.toString();
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        int slot = spread(hash) & mask;
+        String cached = values[slot];
+        if (cached != null && cached.contentEquals(chars)) return cached;
+        String value = chars.toString();
+        values[slot] = value;
+        return value;
+    }
+
+    /**
+     * Значение сравнивается по байтам, поэтому повторяющиеся значения не декодируются повторно.
+     */
+    public String intern(byte[] bytes, int offset, int length, Charset charset) {
+        if (length == 0) return "";
+        if (length > MAX_LENGTH) return new String(bytes, offset, length, charset);
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = spread(hash) & mask;
+        byte[] key = encodedKeys[slot];
+        if (key != null && Arrays.equals(key, 0, key.length, bytes, offset, offset + length)) {
+            return encodedValues[slot];
+        }
+        String value = new String(bytes, offset, length, charset);
+        encodedKeys[slot] = Arrays.copyOfRange(bytes, offset, offset + length);
+        encodedValues[slot] = value;
+        return value;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,72 +1,116 @@
 package org.example.readers;
 
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
 import org.example.interfaces.TableReader;
+import org.example.metrics.GenerationMetrics;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class XlsxTableReader implements TableReader {
     @Override
-    public List<Map<String, String>> read(File file) {
-        List<Map<String, String>> result = new ArrayList<>();
+    public void forEachRow(File file, ReadOptions options, Consumer<Map<String, String>> consumer) {
+        long rowsRead = 0;
 
         try (FileInputStream fis = new FileInputStream(file);
-             Workbook workbook = new XSSFWorkbook(fis)) {
+             XSSFWorkbook workbook = new XSSFWorkbook(fis)) {
 
             Sheet sheet = workbook.getSheetAt(0);
             Iterator<Row> rowIterator = sheet.iterator();
 
-            if (!rowIterator.hasNext()) return result;
+            if (!rowIterator.hasNext()) return;
+
+            CellValues cellValues = new CellValues(workbook);
 
             // заголовки
             List<String> headers = new ArrayList<>();
             Row headerRow = rowIterator.next();
             for (Cell cell : headerRow) {
-                headers.add(getCellValueAsString(cell));
+                headers.add(cellValues.toString(cell));
+            }
+
+            // проекция: ячейки остальных колонок не читаются и не вычисляются
+            options.checkFilterColumns(headers);
+            List<Integer> columns = new ArrayList<>();
+            for (int i = 0; i < headers.size(); i++) {
+                if (options.includes(headers.get(i))) columns.add(i);
             }
 
             // строки
             while (rowIterator.hasNext()) {
                 Row row = rowIterator.next();
+                long rowNumber = row.getRowNum() - headerRow.getRowNum();
+                if (rowNumber > options.getLastRow()) break;
+                if (!options.inRange(rowNumber)) continue;
+                if (options.hasFilters() && !options.accepts(column -> cellValues.toString(
+                        row.getCell(headers.indexOf(column), Row.MissingCellPolicy.CREATE_NULL_AS_BLANK)))) {
+                    continue;
+                }
+
                 Map<String, String> rowMap = new LinkedHashMap<>();
-                for (int i = 0; i < headers.size(); i++) {
+                for (int i : columns) {
                     Cell cell = row.getCell(i, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-                    rowMap.put(headers.get(i), getCellValueAsString(cell));
+                    rowMap.put(headers.get(i), cellValues.toString(cell));
                 }
-                result.add(rowMap);
+                consumer.accept(rowMap);
+                rowsRead++;
             }
 
         } catch (Exception e) {
             throw new RuntimeException("XLSX reading error", e);
+        } finally {
+            GenerationMetrics.get().rowsRead(rowsRead);
         }
-
-        return result;
     }
 
-    private String getCellValueAsString(Cell cell) {
-        return switch (cell.getCellType()) {
-            case STRING -> cell.getStringCellValue();
-            case NUMERIC -> {
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    Date date = cell.getDateCellValue();
-                    SimpleDateFormat sdf = new SimpleDateFormat("dd.MM.yyyy");
-                    yield sdf.format(date);
+    /**
+     * Преобразует ячейки в строки в рамках одного чтения. Строки из таблицы общих строк XLSX
+     * кэшируются по индексу, остальные значения проходят через ValueInterner,
+     * поэтому повторяющиеся значения разделяют один экземпляр.
+     */
+    private static class CellValues {
+        private final FormulaEvaluator evaluator;
+        private final ValueInterner interner = new ValueInterner();
+        private final String[] sharedStrings;
+
+        private CellValues(XSSFWorkbook workbook) {
+            this.evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+            this.sharedStrings = new String[Math.max(0, workbook.getSharedStringSource().getUniqueCount())];
+        }
+
+        String toString(Cell cell) {
+            return switch (cell.getCellType()) {
+                case STRING -> getStringValue(cell);
+                case NUMERIC -> {
+                    if (DateUtil.isCellDateFormatted(cell)) {
+                        yield interner.intern(CellFormats.formatDate(cell.getLocalDateTimeCellValue()));
+                    }
+                    yield interner.intern(CellFormats.formatNumber(cell.getNumericCellValue()));
                 }
-                double value = cell.getNumericCellValue();
-                yield (value == Math.floor(value)) ? Long.toString((long) value) : Double.toString(value);
-            }
-            case BOOLEAN -> Boolean.toString(cell.getBooleanCellValue());
-            case FORMULA -> getCellValueAsString(evaluateFormula(cell));
-            default -> "";
-        };
-    }
+                case BOOLEAN -> Boolean.toString(cell.getBooleanCellValue());
+                case FORMULA -> toString(evaluator.evaluateInCell(cell));
+                default -> "";
+            };
+        }
 
-    private Cell evaluateFormula(Cell cell) {
-        FormulaEvaluator evaluator = cell.getSheet().getWorkbook().getCreationHelper().createFormulaEvaluator();
-        return evaluator.evaluateInCell(cell);
+        private String getStringValue(Cell cell) {
+            if (cell instanceof XSSFCell xssfCell && xssfCell.getCTCell().getT() == STCellType.S) {
+                int index = Integer.parseInt(xssfCell.getCTCell().getV());
+                if (index >= 0 && index < sharedStrings.length) {
+                    String value = sharedStrings[index];
+                    if (value == null) {
+                        value = interner.intern(cell.getStringCellValue());
+                        sharedStrings[index] = value;
+                    }
+                    return value;
+                }
+            }
+            return interner.intern(cell.getStringCellValue());
+        }
     }
 }
@@ -0,0 +1,111 @@
+package org.example.sinks;
+
+import org.example.interfaces.OutputSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Записывает документы файлами в папку. Документ уже целиком собран в памяти, поэтому
+ * записывается одним вызовом FileChannel без промежуточных буферов потока.
+ * Частота fsync задаётся {@link FsyncPolicy}: при fsync пачкой запоминаются только пути,
+ * файлы заново открываются для сброса, поэтому число открытых файлов не зависит от размера пачки.
+ * Документ не перезаписывает существующий файл: совпадение путей означает ошибку схемы именования.
+ */
+public class DirectorySink implements OutputSink {
+
+    private final Path root;
+    private final FsyncPolicy fsync;
+    // файлы, ожидающие fsync пачкой
+    private final List<Path> pending = new ArrayList<>();
+
+    public DirectorySink(Path root) throws IOException {
+        this(root, FsyncPolicy.NEVER);
+    }
+
+    /**
+     * @throws IOException если папку не удалось создать
+     */
+    public DirectorySink(Path root, FsyncPolicy fsync) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.fsync = fsync;
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public void write(String path, byte[] content) throws IOException {
+        Path file = resolve(path);
+        Path parent = file.getParent();
+        if (!Files.isDirectory(parent)) Files.createDirectories(parent);
+
+        int interval = fsync.getInterval();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (interval == 1) channel.force(false);
+        } catch (FileAlreadyExistsException e) {
+            throw new IOException("Document already exists: " + path, e);
+        }
+
+        if (interval > 1) {
+            List<Path> batch = null;
+            synchronized (pending) {
+                pending.add(file);
+                if (pending.size() >= interval) {
+                    batch = new ArrayList<>(pending);
+                    pending.clear();
+                }
+            }
+            if (batch != null) force(batch);
+        }
+    }
+
+    /**
+     * @throws IOException если путь выходит за пределы папки
+     */
+    private Path resolve(String path) throws IOException {
+        Path file = root.resolve(path).normalize();
+        if (!file.startsWith(root) || file.equals(root)) throw new IOException("Invalid document path: " + path);
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        List<Path> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        force(batch);
+    }
+
+    /**
+     * Сбрасывает на диск все файлы пачки по одному, даже если сброс одного из них не удался.
+     */
+    private static void force(List<Path> batch) throws IOException {
+        IOException failure = null;
+        for (Path file : batch) {
+            // на Windows сброс требует открытия на запись; WRITE без TRUNCATE_EXISTING содержимое не меняет
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.sinks;
+
+/**
+ * Когда {@link DirectorySink} принудительно сбрасывает записанные документы на диск.
+ * Чем реже fsync, тем выше скорость записи и тем больше документов может потеряться при сбое питания.
+ */
+public final class FsyncPolicy {
+
+    /**
+     * Без fsync: данные сбрасывает операционная система.
+     */
+    public static final FsyncPolicy NEVER = new FsyncPolicy(0);
+
+    /**
+     * fsync каждого документа до возврата из write.
+     */
+    public static final FsyncPolicy EVERY_DOCUMENT = new FsyncPolicy(1);
+
+    private final int interval;
+
+    private FsyncPolicy(int interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * fsync пачкой после каждых n документов и при закрытии приёмника.
+     */
+    public static FsyncPolicy every(int documents) {
+        if (documents < 1) throw new IllegalArgumentException("Fsync interval must be positive");
+        return documents == 1 ? EVERY_DOCUMENT : new FsyncPolicy(documents);
+    }
+
+    /**
+     * @return число документов между fsync или 0, если fsync не выполняется
+     */
+    public int getInterval() {
+        return interval;
+    }
+}
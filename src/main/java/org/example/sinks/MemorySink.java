@@ -0,0 +1,33 @@
+package org.example.sinks;
+
+import org.example.interfaces.OutputSink;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Хранит документы в памяти в порядке записи: для предпросмотра, отправки по сети и тестов.
+ */
+public class MemorySink implements OutputSink {
+
+    private final Map<String, byte[]> documents = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    @Override
+    public void write(String path, byte[] content) {
+        documents.put(path, content);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return документы по пути; изменения приёмника после вызова в копии не видны
+     */
+    public Map<String, byte[]> getDocuments() {
+        synchronized (documents) {
+            return new LinkedHashMap<>(documents);
+        }
+    }
+}
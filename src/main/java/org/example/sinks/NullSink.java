@@ -0,0 +1,33 @@
+package org.example.sinks;
+
+import org.example.interfaces.OutputSink;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отбрасывает документы, считая только их число и объём. Нужен для замера скорости рендеринга
+ * без влияния диска.
+ */
+public class NullSink implements OutputSink {
+
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    @Override
+    public void write(String path, byte[] content) {
+        documents.incrementAndGet();
+        bytes.addAndGet(content.length);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public long getDocuments() {
+        return documents.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+}
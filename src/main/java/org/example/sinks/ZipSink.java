@@ -0,0 +1,50 @@
+package org.example.sinks;
+
+import org.example.interfaces.OutputSink;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Записывает все документы в один ZIP-архив. DOCX и ODT уже сжаты, поэтому документы
+ * кладутся в архив без повторного сжатия.
+ */
+public class ZipSink implements OutputSink {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final ZipOutputStream zip;
+
+    /**
+     * @throws IOException если файл архива не удалось создать
+     */
+    public ZipSink(Path archive) throws IOException {
+        Path parent = archive.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(archive), BUFFER_SIZE));
+    }
+
+    @Override
+    public synchronized void write(String path, byte[] content) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ZipEntry entry = new ZipEntry(path);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        zip.close();
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.unit.cache;
+
+import org.example.cache.CachingTableReader;
+import org.example.cache.TableCache;
+import org.example.interfaces.TableReader;
+import org.example.readers.ReadOptions;
+import org.example.readers.RowFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CachingTableReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Должен читать повторно из кэша без разбора исходного файла")
+    void shouldServeRepeatedReadFromCache() throws IOException {
+        // Given
+        File table = source("table.xlsx", "v1");
+        AtomicInteger parses = new AtomicInteger();
+        TableReader reader = new CachingTableReader(rows(1000, parses), cache(Long.MAX_VALUE));
+
+        // When
+        List<Map<String, String>> first = reader.read(table);
+        List<Map<String, String>> second = reader.read(table);
+
+        // Then
+        assertThat(parses).hasValue(1);
+        assertThat(second).isEqualTo(first).hasSize(1000);
+        assertThat(second.get(999)).containsEntry("id", "999").containsEntry("city", "Рим").containsEntry("note", "");
+    }
+
+    @Test
+    @DisplayName("Должен применять проекцию, диапазон и фильтр к записи кэша")
+    void shouldApplyOptionsWhenScanningCache() throws IOException {
+        // Given
+        File table = source("table.ods", "v1");
+        TableReader reader = new CachingTableReader(rows(1000, new AtomicInteger()), cache(Long.MAX_VALUE));
+        ReadOptions options = ReadOptions.columns(List.of("id"))
+                .withRange(11, 20)
+                .where(RowFilter.equalsTo("city", "Москва"));
+
+        // When
+        List<Map<String, String>> uncached = reader.read(table, options);
+        List<Map<String, String>> cached = reader.read(table, options);
+
+        // Then
+        assertThat(uncached).containsExactly(Map.of("id", "10"), Map.of("id", "12"), Map.of("id", "14"),
+                Map.of("id", "16"), Map.of("id", "18"));
+        assertThat(cached).isEqualTo(uncached);
+    }
+
+    @Test
+    @DisplayName("Должен разбирать файл заново после изменения его содержимого")
+    void shouldMissCacheWhenContentChanges() throws IOException {
+        // Given
+        File table = source("table.xlsx", "v1");
+        AtomicInteger parses = new AtomicInteger();
+        TableReader reader = new CachingTableReader(rows(10, parses), cache(Long.MAX_VALUE));
+        reader.read(table);
+
+        // When
+        Files.writeString(table.toPath(), "v2");
+        reader.read(table);
+
+        // Then
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Должен находить запись по пути, размеру и времени изменения давно изменённого файла")
+    void shouldFindEntryByFileAttributesWithoutReadingOldFile() throws IOException {
+        // Given
+        File table = source("table.xlsx", "v1");
+        FileTime modified = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+        Files.setLastModifiedTime(table.toPath(), modified);
+        AtomicInteger parses = new AtomicInteger();
+        TableReader reader = new CachingTableReader(rows(10, parses), cache(Long.MAX_VALUE));
+        reader.read(table);
+
+        // When - содержимое изменено без изменения размера и времени изменения
+        Files.writeString(table.toPath(), "v2");
+        Files.setLastModifiedTime(table.toPath(), modified);
+        reader.read(table);
+
+        // Then
+        assertThat(parses).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Должен читать большой файл с параметрами вызывающего, не собирая таблицу для кэша")
+    void shouldStreamLargeFileWithCallerOptions() throws IOException {
+        // Given
+        File table = source("large.xlsx", "x".repeat(2000));
+        AtomicInteger parses = new AtomicInteger();
+        List<ReadOptions> received = new ArrayList<>();
+        TableReader counted = rows(10, parses);
+        TableReader delegate = (file, options, consumer) -> {
+            received.add(options);
+            counted.forEachRow(file, options, consumer);
+        };
+        TableReader reader = new CachingTableReader(delegate, cache(Long.MAX_VALUE), 1000);
+        ReadOptions options = ReadOptions.columns(List.of("id"));
+
+        // When
+        reader.read(table, options);
+        reader.read(table, options);
+
+        // Then
+        assertThat(received).containsExactly(options, options);
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Должен отбрасывать таблицу, превысившую предел во время чтения, и выдавать все строки")
+    void shouldDropTableExceedingLimitWhileReading() throws IOException {
+        // Given
+        File table = source("table.xlsx", "v1");
+        AtomicInteger parses = new AtomicInteger();
+        TableReader reader = new CachingTableReader(rows(5000, parses), cache(Long.MAX_VALUE), 10_000);
+
+        // When
+        List<Map<String, String>> first = reader.read(table);
+        List<Map<String, String>> second = reader.read(table);
+
+        // Then
+        assertThat(first).hasSize(5000).isEqualTo(second);
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Должен ограничивать размер кэша на диске, удаляя давно не использованные записи")
+    void shouldEvictLeastRecentlyUsedEntries() throws IOException {
+        // Given
+        TableCache cache = cache(60_000);
+        TableReader reader = new CachingTableReader(rows(2000, new AtomicInteger()), cache);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            reader.read(source("table" + i + ".xlsx", "content " + i));
+        }
+
+        // Then
+        long total;
+        try (var files = Files.list(cache.getDirectory())) {
+            total = files.mapToLong(path -> path.toFile().length()).sum();
+        }
+        assertThat(total).isPositive().isLessThanOrEqualTo(60_000);
+        assertThat(cache.getDirectory().toFile().list()).hasSizeBetween(1, 2);
+    }
+
+    private TableCache cache(long maxBytes) {
+        return new TableCache(tempDir.resolve("cache"), maxBytes);
+    }
+
+    private File source(String name, String content) throws IOException {
+        Path path = tempDir.resolve(name);
+        Files.writeString(path, content);
+        return path.toFile();
+    }
+
+    /**
+     * Таблица с тремя колонками; более 255 уникальных значений проверяют двухбайтовые номера словаря.
+     */
+    private static TableReader rows(int count, AtomicInteger parses) {
+        return (file, options, consumer) -> {
+            parses.incrementAndGet();
+            for (int i = 0; i < count; i++) {
+                Map<String, String> row = new LinkedHashMap<>();
+                row.put("id", Integer.toString(i));
+                row.put("city", i % 2 == 0 ? "Москва" : "Рим");
+                row.put("note", "");
+                consumer.accept(row);
+            }
+        };
+    }
+}
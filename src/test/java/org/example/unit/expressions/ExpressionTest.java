@@ -0,0 +1,113 @@
+package org.example.unit.expressions;
+
+import org.example.expressions.Expression;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ExpressionTest {
+
+    private static final Map<String, String> ROW = Map.of(
+            "PRICE", "1000.50",
+            "QTY", "3",
+            "NAME", "  Иванов ",
+            "DATE", "30.01.2024",
+            "Дата оплаты", "2024-02-10",
+            "EMPTY", "");
+
+    @Test
+    @DisplayName("Должен вычислять арифметику и строковые функции")
+    void shouldEvaluateArithmeticAndFunctions() {
+        assertThat(evaluate("PRICE*QTY")).isEqualTo("3001.5");
+        assertThat(evaluate("ROUND(PRICE / QTY, 2)")).isEqualTo("333.5");
+        assertThat(evaluate("-QTY + 10 % 4")).isEqualTo("-1");
+        assertThat(evaluate("UPPER(TRIM(NAME))")).isEqualTo("ИВАНОВ");
+        assertThat(evaluate("LEFT(TRIM(NAME), 3) & '.'")).isEqualTo("Ива.");
+        assertThat(evaluate("EMPTY + QTY")).isEqualTo("3");
+    }
+
+    @Test
+    @DisplayName("Должен сдвигать даты на длительность и считать разность дат")
+    void shouldShiftDates() {
+        assertThat(evaluate("DATE+30d")).isEqualTo("29.02.2024");
+        assertThat(evaluate("DATE + 1m")).isEqualTo("29.02.2024");
+        assertThat(evaluate("DATE - 1y")).isEqualTo("30.01.2023");
+        assertThat(evaluate("`Дата оплаты` - DATE")).isEqualTo("11");
+    }
+
+    @Test
+    @DisplayName("Должен сравнивать значения и выбирать ветку IF")
+    void shouldEvaluateConditions() {
+        assertThat(evaluate("IF(QTY >= 3, 'опт', 'розница')")).isEqualTo("опт");
+        assertThat(evaluate("IF(AND(PRICE > 1000, NOT(EMPTY)), 'да')")).isEqualTo("да");
+        assertThat(evaluate("QTY <> 3")).isEqualTo("FALSE");
+    }
+
+    @Test
+    @DisplayName("Должен считать обычными колонками имена без операторов и с некорректным синтаксисом")
+    void shouldTreatPlainNamesAsColumns() {
+        assertThat(Expression.compile("NAME")).isNull();
+        assertThat(Expression.compile("customer.name")).isNull();
+        assertThat(Expression.compile("Кол-во")).isNull();
+        assertThat(Expression.compile("Дата рождения")).isNull();
+        assertThat(Expression.compile("Сумма (руб)")).isNull();
+        assertThat(Expression.compile("SUM(AMOUNT)")).isNull();
+        assertThat(Expression.compile("AMOUNT|#,##0.00")).isNull();
+    }
+
+    @Test
+    @DisplayName("Должен считать выражением только плейсхолдер, помеченный знаком =")
+    void shouldCompileOnlyMarkedPlaceholders() {
+        assertThat(Expression.placeholder("ИНН/КПП")).isNull();
+        assertThat(Expression.placeholder("PRICE*QTY")).isNull();
+        assertThat(Expression.placeholder("UPPR(NAME)")).isNull();
+        assertThat(Expression.placeholder("= PRICE * QTY").evaluate(ROW)).isEqualTo(evaluate("PRICE * QTY"));
+        assertThatThrownBy(() -> Expression.placeholder("=Сумма (руб)"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Сумма (руб)");
+    }
+
+    @Test
+    @DisplayName("Должен считать условие без знака = именем колонки")
+    void shouldTreatUnmarkedConditionAsColumn() {
+        // Given
+        Map<String, String> row = Map.of("ИНН/КПП", "7701/7701", "QTY", "3", "PAID", "0");
+
+        // Then
+        assertThat(Expression.condition("ИНН/КПП").test(row)).isTrue();
+        assertThat(Expression.condition(" PAID ").test(row)).isFalse();
+        assertThat(Expression.condition("QTY > 3").test(row)).isFalse();
+        assertThat(Expression.condition("=QTY > 2").test(row)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Должен сообщать об ошибке в выражении при компиляции")
+    void shouldRejectUnknownFunctionAtCompileTime() {
+        assertThatThrownBy(() -> Expression.compile("UPPR(NAME)"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("UPPR");
+        assertThatThrownBy(() -> Expression.compile("LEFT(NAME)"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("LEFT");
+    }
+
+    @Test
+    @DisplayName("Должен сообщать колонки выражения и ошибку вычисления")
+    void shouldReportColumnsAndEvaluationErrors() {
+        Expression expression = Expression.compile("PRICE * QTY + `Дата оплаты`");
+
+        assertThat(expression.getColumns()).containsExactly("PRICE", "QTY", "Дата оплаты");
+        assertThatThrownBy(() -> expression.evaluate(ROW))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("[PRICE * QTY + `Дата оплаты`]");
+    }
+
+    private static String evaluate(String text) {
+        Expression expression = Expression.compile(text);
+        assertThat(expression).as(text).isNotNull();
+        return expression.evaluate(ROW);
+    }
+}
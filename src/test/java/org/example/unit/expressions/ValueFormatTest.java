@@ -0,0 +1,91 @@
+package org.example.unit.expressions;
+
+import org.example.expressions.ValueFormat;
+import org.example.expressions.Values;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ValueFormatTest {
+
+    @Test
+    @DisplayName("Должен форматировать числа по шаблону и локали")
+    void shouldFormatNumbers() {
+        ValueFormat ru = ValueFormat.of("#,##0.00", "ru");
+        ValueFormat en = ValueFormat.of("#,##0.00", "en");
+
+        assertThat(ru.format("1234567.891")).isEqualTo("1 234 567,89");
+        assertThat(en.format(new BigDecimal("1234.5"))).isEqualTo("1,234.50");
+        assertThat(en.format("0.125")).isEqualTo("0.13");
+    }
+
+    @Test
+    @DisplayName("Должен форматировать даты с названиями месяцев локали")
+    void shouldFormatDates() {
+        ValueFormat it = ValueFormat.of("d MMMM yyyy", "it");
+
+        assertThat(it.format("05.03.2024")).isEqualTo("5 marzo 2024");
+        assertThat(it.format("2024-03-05")).isEqualTo("5 marzo 2024");
+        assertThat(ValueFormat.of("d MMMM yyyy", "ru").format(LocalDate.of(2024, 3, 5))).isEqualTo("5 марта 2024");
+    }
+
+    @Test
+    @DisplayName("Должен выводить как есть значения, которые не являются числом или датой")
+    void shouldKeepUnparsableValues() {
+        assertThat(ValueFormat.of("#,##0.00", "ru").format("нет данных")).isEqualTo("нет данных");
+        assertThat(ValueFormat.of("dd/MM/yyyy", "en").format("")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Должен разбирать числа в виде локали только при явно указанной локали")
+    void shouldParseLocalizedNumbersOnlyForExplicitLocale() {
+        ValueFormat en = ValueFormat.of("#,##0.00", "en");
+        ValueFormat de = ValueFormat.of("#,##0.00", "de");
+
+        assertThat(en.format("1,234")).isEqualTo("1,234.00");
+        assertThat(de.format("1.234,56")).isEqualTo("1.234,56");
+        assertThat(ValueFormat.of("#,##0.00", "ru").parse("1 000,50")).isEqualTo(new BigDecimal("1000.50"));
+        assertThat(en.format("1.234,56")).isEqualTo("1.234,56");
+        assertThat(ValueFormat.of("#,##0.00", null).format("1,234")).isEqualTo("1,234");
+        assertThat(Values.toNumber("1,234")).isNull();
+        assertThat(Values.toNumber("-1500.5")).isEqualTo(new BigDecimal("-1500.5"));
+    }
+
+    @Test
+    @DisplayName("Должен выводить время ячеек с датой и временем")
+    void shouldFormatDateTimes() {
+        ValueFormat format = ValueFormat.of("dd.MM.yyyy HH:mm", "ru");
+
+        assertThat(format.format("05.03.2024 18:30:00")).isEqualTo("05.03.2024 18:30");
+        assertThat(format.format("2024-03-05T09:15:00")).isEqualTo("05.03.2024 09:15");
+        assertThat(format.format("05.03.2024")).isEqualTo("05.03.2024 00:00");
+        assertThat(ValueFormat.of("d MMMM yyyy", "it").format("05.03.2024 18:30:00")).isEqualTo("5 marzo 2024");
+        assertThat(Values.toDate("05.03.2024 18:30:00")).isEqualTo(LocalDate.of(2024, 3, 5));
+    }
+
+    @Test
+    @DisplayName("Должен распознавать только шаблоны чисел и дат")
+    void shouldRecognizePatterns() {
+        assertThat(ValueFormat.isPattern("#,##0.00")).isTrue();
+        assertThat(ValueFormat.isPattern("d MMMM yyyy")).isTrue();
+        assertThat(ValueFormat.isPattern("HH:mm")).isTrue();
+        assertThat(ValueFormat.isPattern("dd 'de' MMMM")).isTrue();
+        assertThat(ValueFormat.isPattern("Нет")).isFalse();
+        assertThat(ValueFormat.isPattern("B")).isFalse();
+        assertThat(ValueFormat.isPattern("Yes")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Должен кэшировать формат и отклонять некорректные шаблоны")
+    void shouldCacheAndValidateFormats() {
+        assertThat(ValueFormat.of("0.0", "it")).isSameAs(ValueFormat.of("0.0", "it"));
+        assertThatThrownBy(() -> ValueFormat.of("dd MMMMMM yyyy", "ru"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ValueFormat.of("#,##0.00", "123"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -110,7 +110,13 @@ class TableReaderFactoryTest {
             "data.XLSX, org.example.readers.XlsxTableReader",
             "data.ODS, org.example.readers.OdsTableReader",
             "Таблица данных.xlsx, org.example.readers.XlsxTableReader",
-            "Данные.ods, org.example.readers.OdsTableReader"
+            "Данные.ods, org.example.readers.OdsTableReader",
+            "export.CSV, org.example.readers.CsvTableReader",
+            "export.tsv, org.example.readers.CsvTableReader",
+            "mailing.jdbc, org.example.readers.JdbcTableReader",
+            "events.ndjson, org.example.readers.JsonTableReader",
+            "events.JSONL, org.example.readers.JsonTableReader",
+            "export.json, org.example.readers.JsonTableReader"
     })
     @DisplayName("Должен корректно обрабатывать разные регистры и имена файлов")
     void shouldHandleDifferentCasesAndFileNames(String fileName, String expectedClassName) {
@@ -128,7 +134,7 @@ class TableReaderFactoryTest {
     @DisplayName("Должен выбрасывать исключение для неподдерживаемых форматов")
     void shouldThrowExceptionForUnsupportedFormats() {
         // Given
-        File unsupportedFile = new File("data.csv");
+        File unsupportedFile = new File("data.txt");
 
         // When & Then
         assertThatThrownBy(() -> TableReaderFactory.fromFile(unsupportedFile))
@@ -0,0 +1,81 @@
+package org.example.unit.metrics;
+
+import org.example.metrics.LatencyHistogram;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    private LatencyHistogram histogram;
+
+    @BeforeEach
+    void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    @DisplayName("Должен возвращать 0 для пустой гистограммы")
+    void shouldReturnZeroWhenEmpty() {
+        assertThat(histogram.count()).isZero();
+        assertThat(histogram.percentileMillis(0.99)).isZero();
+    }
+
+    @Test
+    @DisplayName("Должен оценивать перцентили с погрешностью не более 12.5%")
+    void shouldEstimatePercentilesWithinBucketPrecision() {
+        // Given - задержки от 1 до 1000 мс
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        // Then
+        assertThat(histogram.count()).isEqualTo(1000);
+        assertThat(histogram.percentileMillis(0.50)).isBetween(500.0, 500.0 * 1.125);
+        assertThat(histogram.percentileMillis(0.95)).isBetween(950.0, 950.0 * 1.125);
+        assertThat(histogram.percentileMillis(0.99)).isBetween(990.0, 990.0 * 1.125);
+    }
+
+    @Test
+    @DisplayName("Должен корректно считать записи из параллельных потоков")
+    void shouldCountConcurrentRecords() throws InterruptedException {
+        // Given
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.recordNanos(i * 1_000L);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // When
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        assertThat(histogram.count()).isEqualTo(80_000);
+    }
+
+    @Test
+    @DisplayName("Должен обнулять счётчики при сбросе")
+    void shouldClearOnReset() {
+        // Given
+        histogram.recordNanos(1_000_000);
+
+        // When
+        histogram.reset();
+
+        // Then
+        assertThat(histogram.count()).isZero();
+    }
+}
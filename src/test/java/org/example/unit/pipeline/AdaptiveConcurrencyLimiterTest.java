@@ -0,0 +1,115 @@
+package org.example.unit.pipeline;
+
+import org.example.pipeline.AdaptiveConcurrencyLimiter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    @DisplayName("Должен уменьшать лимит вдвое при заполненной куче")
+    void shouldHalveLimitUnderHeapPressure() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 16, false, () -> 0.9);
+
+        // When
+        limiter.adjust();
+        limiter.adjust();
+
+        // Then
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Не должен опускать лимит ниже минимального")
+    void shouldNotGoBelowMinimum() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 4, false, () -> 0.99);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            limiter.adjust();
+        }
+
+        // Then
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Должен постепенно увеличивать лимит при свободной куче")
+    void shouldGrowLimitWhenHeapIsFree() {
+        // Given
+        AtomicReference<Double> usage = new AtomicReference<>(0.95);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 8, false, usage::get);
+        limiter.adjust();
+        limiter.adjust();
+        assertThat(limiter.getLimit()).isEqualTo(2);
+
+        // When
+        usage.set(0.3);
+        limiter.adjust();
+        limiter.adjust();
+        limiter.adjust();
+
+        // Then
+        assertThat(limiter.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Должен поднимать лимит выше начального до максимума")
+    void shouldGrowAboveInitialLimit() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 2, 4, false, () -> 0.3);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            limiter.adjust();
+        }
+
+        // Then
+        assertThat(limiter.getLimit()).isEqualTo(4);
+        assertThatThrownBy(() -> new AdaptiveConcurrencyLimiter(1, 5, 4, false, () -> 0.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Должен блокировать захват сверх лимита до освобождения")
+    void shouldBlockAcquireAboveLimit() throws InterruptedException {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, false, () -> 0.0);
+        limiter.acquire();
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // When
+        waiter.start();
+
+        // Then
+        assertThat(acquired.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        limiter.release();
+        assertThat(acquired.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Должен запускаться и останавливаться на куче текущей JVM")
+    void shouldStartAndCloseOnRealHeap() {
+        try (AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.forHeap(2, 4, true)) {
+            limiter.adjust();
+            assertThat(limiter.getLimit()).isBetween(1, 4);
+        }
+    }
+}
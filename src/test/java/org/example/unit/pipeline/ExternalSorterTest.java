@@ -0,0 +1,72 @@
+package org.example.unit.pipeline;
+
+import org.example.pipeline.ExternalSorter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ExternalSorterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Должен сортировать в памяти, если строки помещаются в бюджет")
+    void shouldSortInMemoryWithinBudget() throws IOException {
+        // Given
+        List<Map<String, String>> sorted = new ArrayList<>();
+
+        // When
+        try (ExternalSorter sorter = new ExternalSorter(List.of("city"), 1 << 20, tempDir)) {
+            sorter.accept(Map.of("city", "Рим", "name", "Марко"));
+            sorter.accept(Map.of("city", "Москва", "name", "Иван"));
+            sorter.forEachSorted(sorted::add);
+
+            // Then
+            assertThat(sorter.getRunCount()).isZero();
+        }
+        assertThat(sorted).extracting(row -> row.get("city")).containsExactly("Москва", "Рим");
+    }
+
+    @Test
+    @DisplayName("Должен сбрасывать порции на диск и устойчиво сливать их")
+    void shouldSpillRunsAndMergeStably() throws IOException {
+        // Given - бюджет на несколько строк, порций больше ширины одного слияния
+        int rowCount = 20_000;
+        List<Map<String, String>> sorted = new ArrayList<>();
+
+        // When
+        try (ExternalSorter sorter = new ExternalSorter(List.of("group", "sub"), 20_000, tempDir)) {
+            for (int i = 0; i < rowCount; i++) {
+                sorter.accept(Map.of("group", "g" + (i * 7919 % 97), "sub", "", "seq", Integer.toString(i)));
+            }
+            assertThat(sorter.getRunCount()).isGreaterThan(64);
+            sorter.forEachSorted(sorted::add);
+        }
+
+        // Then
+        assertThat(sorted).hasSize(rowCount);
+        for (int i = 1; i < rowCount; i++) {
+            Map<String, String> previous = sorted.get(i - 1);
+            Map<String, String> current = sorted.get(i);
+            int order = previous.get("group").compareTo(current.get("group"));
+            assertThat(order).isLessThanOrEqualTo(0);
+            if (order == 0) {
+                assertThat(Integer.parseInt(previous.get("seq"))).isLessThan(Integer.parseInt(current.get("seq")));
+            }
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+}
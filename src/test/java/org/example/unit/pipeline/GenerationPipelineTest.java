@@ -0,0 +1,410 @@
+package org.example.unit.pipeline;
+
+import org.example.interfaces.NamingScheme;
+import org.example.interfaces.OutputSink;
+import org.example.interfaces.PreparedTemplate;
+import org.example.interfaces.TableReader;
+import org.example.pipeline.AdaptiveConcurrencyLimiter;
+import org.example.pipeline.DocumentPlan;
+import org.example.pipeline.FanOutPlan;
+import org.example.pipeline.GenerationPipeline;
+import org.example.readers.ReadOptions;
+import org.example.sinks.MemorySink;
+import org.example.sinks.NullSink;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+
+class GenerationPipelineTest {
+
+    private static final PreparedTemplate ECHO_TEMPLATE = new PreparedTemplate() {
+        @Override
+        public String getExtension() {
+            return ".txt";
+        }
+
+        @Override
+        public void render(Map<String, String> row, OutputStream out) throws IOException {
+            out.write(row.get("name").getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Set<String> getPlaceholders() {
+            return Set.of("name");
+        }
+    };
+
+    @Test
+    @DisplayName("Должен генерировать документ для каждой строки с сохранением нумерации")
+    void shouldGenerateDocumentForEachRow(@TempDir Path tempDir) throws IOException {
+        // Given
+        TableReader reader = rows(500);
+        GenerationPipeline pipeline = new GenerationPipeline(4, 8);
+
+        // When
+        int written = pipeline.run(reader, new File("table.xlsx"), ECHO_TEMPLATE, tempDir.toFile());
+
+        // Then
+        assertThat(written).isEqualTo(500);
+        assertThat(tempDir.toFile().listFiles()).hasSize(500);
+        assertThat(Files.readString(tempDir.resolve("document_1.txt"))).isEqualTo("row-0");
+        assertThat(Files.readString(tempDir.resolve("document_500.txt"))).isEqualTo("row-499");
+        assertThat(pipeline.getQueueDepths()).containsEntry("render", 0).containsEntry("write", 0);
+    }
+
+    @Test
+    @DisplayName("Должен строить документы нескольких шаблонов за один проход с группировкой по строкам")
+    void shouldFanOutTemplatesGroupedPerRow(@TempDir Path tempDir) throws IOException {
+        // Given
+        AtomicInteger reads = new AtomicInteger();
+        FanOutPlan plan = new FanOutPlan(templates(), FanOutPlan.Grouping.PER_ROW);
+
+        // When
+        int written = new GenerationPipeline(3, 4).run(counting(rows(20), reads), new File("table.xlsx"),
+                ReadOptions.ALL, plan, tempDir.toFile());
+
+        // Then
+        assertThat(reads).hasValue(1);
+        assertThat(written).isEqualTo(60);
+        assertThat(Files.readString(tempDir.resolve("document_1/letter.txt"))).isEqualTo("row-0");
+        assertThat(Files.readString(tempDir.resolve("document_20/invoice.csv"))).isEqualTo("row-19");
+        assertThat(tempDir.resolve("document_7/act.txt")).exists();
+    }
+
+    @Test
+    @DisplayName("Должен группировать документы нескольких шаблонов по шаблонам")
+    void shouldFanOutTemplatesGroupedPerTemplate(@TempDir Path tempDir) throws IOException {
+        // Given
+        FanOutPlan plan = new FanOutPlan(templates(), FanOutPlan.Grouping.PER_TEMPLATE);
+
+        // When
+        new GenerationPipeline(2, 2).run(rows(5), new File("table.xlsx"), ReadOptions.ALL, plan, tempDir.toFile());
+
+        // Then
+        assertThat(tempDir.resolve("letter").toFile().list()).hasSize(5);
+        assertThat(Files.readString(tempDir.resolve("invoice/document_5.csv"))).isEqualTo("row-4");
+        assertThat(plan.getColumns()).containsExactly("name");
+    }
+
+    @Test
+    @DisplayName("Должен пробрасывать ошибку рендеринга и останавливать конвейер")
+    void shouldPropagateRenderFailure(@TempDir Path tempDir) {
+        // Given
+        PreparedTemplate failing = new PreparedTemplate() {
+            @Override
+            public String getExtension() {
+                return ".txt";
+            }
+
+            @Override
+            public void render(Map<String, String> row, OutputStream out) throws IOException {
+                if (row.get("name").equals("row-100")) throw new IOException("broken row");
+                out.write(1);
+            }
+
+            @Override
+            public Set<String> getPlaceholders() {
+                return Set.of("name");
+            }
+        };
+        GenerationPipeline pipeline = new GenerationPipeline(2, 4);
+
+        // When & Then
+        assertThatThrownBy(() -> pipeline.run(rows(10_000), new File("table.xlsx"), failing, tempDir.toFile()))
+                .isInstanceOf(IOException.class)
+                .hasMessage("broken row");
+    }
+
+    @Test
+    @DisplayName("Не должен писать документы после выхода из run при ошибке")
+    void shouldStopWritingBeforeReturningOnFailure() throws InterruptedException {
+        // Given
+        CountDownLatch failed = new CountDownLatch(1);
+        AtomicBoolean returned = new AtomicBoolean();
+        AtomicInteger lateWrites = new AtomicInteger();
+        OutputSink slowSink = new OutputSink() {
+            @Override
+            public void write(String path, byte[] content) {
+                // запись в файл не прерывается по interrupt: первая запись заканчивается уже после ошибки рендеринга
+                while (failed.getCount() > 0) {
+                    Thread.onSpinWait();
+                }
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+                if (returned.get()) lateWrites.incrementAndGet();
+            }
+
+            @Override
+            public void close() {}
+        };
+        PreparedTemplate failing = new PreparedTemplate() {
+            @Override
+            public String getExtension() {
+                return ".txt";
+            }
+
+            @Override
+            public void render(Map<String, String> row, OutputStream out) throws IOException {
+                if (row.get("name").equals("row-1")) {
+                    failed.countDown();
+                    throw new IOException("broken row");
+                }
+                out.write(1);
+            }
+
+            @Override
+            public Set<String> getPlaceholders() {
+                return Set.of("name");
+            }
+        };
+        GenerationPipeline pipeline = new GenerationPipeline(1, 4);
+
+        // When
+        assertThatThrownBy(() -> pipeline.run(rows(10), new File("table.xlsx"), ReadOptions.ALL, null,
+                DocumentPlan.single(failing), slowSink))
+                .isInstanceOf(IOException.class)
+                .hasMessage("broken row");
+        returned.set(true);
+        Thread.sleep(300);
+
+        // Then
+        assertThat(lateWrites).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("Должен дожидаться остановки записи при прерывании вызывающего потока")
+    void shouldStopWritingBeforeReturningOnInterrupt() throws InterruptedException {
+        // Given
+        CountDownLatch writing = new CountDownLatch(1);
+        AtomicBoolean returned = new AtomicBoolean();
+        AtomicInteger lateWrites = new AtomicInteger();
+        OutputSink slowSink = new OutputSink() {
+            @Override
+            public void write(String path, byte[] content) {
+                writing.countDown();
+                // запись в файл не прерывается по interrupt
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+                if (returned.get()) lateWrites.incrementAndGet();
+            }
+
+            @Override
+            public void close() {}
+        };
+        GenerationPipeline pipeline = new GenerationPipeline(1, 4);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread runner = new Thread(() -> {
+            try {
+                pipeline.run(rows(100), new File("table.xlsx"), ReadOptions.ALL, null,
+                        DocumentPlan.single(ECHO_TEMPLATE), slowSink);
+            } catch (Throwable e) {
+                failure.set(e);
+            } finally {
+                returned.set(true);
+            }
+        });
+
+        // When
+        runner.start();
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        runner.interrupt();
+        runner.join(5_000);
+        Thread.sleep(300);
+
+        // Then
+        assertThat(failure.get()).isInstanceOf(InterruptedIOException.class);
+        assertThat(lateWrites).hasValue(0);
+    }
+
+    @Test
+    @DisplayName("Должен создавать выходную директорию для пустой таблицы")
+    void shouldHandleEmptyTable(@TempDir Path tempDir) throws IOException {
+        // Given
+        File targetDir = tempDir.resolve("out").toFile();
+
+        // When
+        int written = new GenerationPipeline(3, 2).run(rows(0), new File("table.xlsx"), ECHO_TEMPLATE, targetDir);
+
+        // Then
+        assertThat(written).isZero();
+        assertThat(targetDir).exists().isDirectory().isEmptyDirectory();
+    }
+
+    @Test
+    @DisplayName("Должен писать документы в приёмник с именами по колонке")
+    void shouldWriteDocumentsToSink() throws IOException {
+        // Given
+        MemorySink sink = new MemorySink();
+        DocumentPlan plan = DocumentPlan.single(ECHO_TEMPLATE, NamingScheme.column("name", NamingScheme.sequential("doc_")));
+
+        // When
+        int written = new GenerationPipeline(3, 2).run(rows(3), new File("table.xlsx"), ReadOptions.ALL, null, plan, sink);
+
+        // Then
+        assertThat(written).isEqualTo(3);
+        assertThat(sink.getDocuments()).containsOnlyKeys("row-0.txt", "row-1.txt", "row-2.txt");
+        assertThat(new String(sink.getDocuments().get("row-2.txt"), StandardCharsets.UTF_8)).isEqualTo("row-2");
+    }
+
+    @Test
+    @DisplayName("Должен выдавать одинаковые имена по колонке при любом порядке работы потоков")
+    void shouldNameDuplicatesInRowOrder() throws IOException {
+        // Given
+        PreparedTemplate idTemplate = new PreparedTemplate() {
+            @Override
+            public String getExtension() {
+                return ".txt";
+            }
+
+            @Override
+            public void render(Map<String, String> row, OutputStream out) throws IOException {
+                out.write(row.get("id").getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public Set<String> getPlaceholders() {
+                return Set.of("id");
+            }
+        };
+        TableReader reader = (file, options, consumer) -> {
+            for (int i = 0; i < 200; i++) {
+                consumer.accept(Map.of("name", "Иванов", "id", Integer.toString(i)));
+            }
+        };
+        MemorySink sink = new MemorySink();
+
+        // When
+        new GenerationPipeline(8, 4).run(reader, new File("table.xlsx"), ReadOptions.ALL, null,
+                DocumentPlan.single(idTemplate, NamingScheme.column("name", NamingScheme.sequential("doc_"))), sink);
+
+        // Then
+        assertThat(sink.getDocuments()).hasSize(200);
+        assertThat(new String(sink.getDocuments().get("Иванов.txt"), StandardCharsets.UTF_8)).isEqualTo("0");
+        assertThat(new String(sink.getDocuments().get("Иванов (2).txt"), StandardCharsets.UTF_8)).isEqualTo("1");
+        assertThat(new String(sink.getDocuments().get("Иванов (200).txt"), StandardCharsets.UTF_8)).isEqualTo("199");
+    }
+
+    @Test
+    @DisplayName("Должен отбрасывать документы в пустой приёмник при замере рендеринга")
+    void shouldDiscardDocumentsInNullSink() throws IOException {
+        // Given
+        NullSink sink = new NullSink();
+
+        // When
+        int written = new GenerationPipeline(4, 8).run(rows(1000), new File("table.xlsx"), ReadOptions.ALL, null,
+                DocumentPlan.single(ECHO_TEMPLATE), sink);
+
+        // Then
+        assertThat(written).isEqualTo(1000);
+        assertThat(sink.getDocuments()).isEqualTo(1000);
+    }
+
+    @Test
+    @DisplayName("Должен запускать потоки рендеринга до максимального лимита ограничителя")
+    void shouldRenderUpToLimiterMaximum() throws IOException {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, 4, false, () -> 0.0);
+        CountDownLatch allStarted = new CountDownLatch(4);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        PreparedTemplate slow = new PreparedTemplate() {
+            @Override
+            public String getExtension() {
+                return ".txt";
+            }
+
+            @Override
+            public void render(Map<String, String> row, OutputStream out) throws IOException {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                allStarted.countDown();
+                try {
+                    allStarted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                } finally {
+                    active.decrementAndGet();
+                }
+            }
+
+            @Override
+            public Set<String> getPlaceholders() {
+                return Set.of();
+            }
+        };
+
+        // When
+        int written = new GenerationPipeline(1, 8, limiter).run(rows(8), new File("table.xlsx"), ReadOptions.ALL,
+                null, DocumentPlan.single(slow), new NullSink());
+
+        // Then
+        assertThat(written).isEqualTo(8);
+        assertThat(maxActive).hasValue(4);
+    }
+
+    @Test
+    @DisplayName("Должен отклонять некорректные параметры конвейера")
+    void shouldRejectInvalidParameters() {
+        assertThatThrownBy(() -> new GenerationPipeline(0, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GenerationPipeline(1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Map<String, PreparedTemplate> templates() {
+        Map<String, PreparedTemplate> templates = new LinkedHashMap<>();
+        templates.put("letter", ECHO_TEMPLATE);
+        templates.put("act", ECHO_TEMPLATE);
+        templates.put("invoice", new PreparedTemplate() {
+            @Override
+            public String getExtension() {
+                return ".csv";
+            }
+
+            @Override
+            public void render(Map<String, String> row, OutputStream out) throws IOException {
+                ECHO_TEMPLATE.render(row, out);
+            }
+
+            @Override
+            public Set<String> getPlaceholders() {
+                return Set.of("name");
+            }
+        });
+        return templates;
+    }
+
+    private static TableReader counting(TableReader reader, AtomicInteger reads) {
+        return (file, options, consumer) -> {
+            reads.incrementAndGet();
+            reader.forEachRow(file, options, consumer);
+        };
+    }
+
+    private static TableReader rows(int count) {
+        return (file, options, consumer) -> {
+            for (int i = 0; i < count; i++) {
+                consumer.accept(Map.of("name", "row-" + i));
+            }
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.unit.pipeline;
+
+import org.example.interfaces.TableReader;
+import org.example.pipeline.EnrichingTableReader;
+import org.example.pipeline.LookupIndex;
+import org.example.readers.CsvTableReader;
+import org.example.readers.JsonTableReader;
+import org.example.readers.ReadOptions;
+import org.example.readers.RowFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LookupIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Должен дополнять строки колонками справочника по ключу")
+    void shouldEnrichRowsFromLookupTable() throws IOException {
+        // Given
+        File orders = write("orders.csv", "ORDER,CUSTOMER_ID\n1,42\n2,7\n3, 42 \n");
+        File customers = write("customers.csv", "ID,BANK_NAME,CITY\n42,Сбербанк,Москва\n42,Дубль,Рим\n");
+        LookupIndex index = LookupIndex.load(new CsvTableReader(), customers, "CUSTOMER_ID", "ID", null);
+
+        // When
+        List<Map<String, String>> rows = new EnrichingTableReader(new CsvTableReader(), List.of(index)).read(orders);
+
+        // Then
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.getColumns()).containsExactly("BANK_NAME", "CITY");
+        assertThat(rows).hasSize(3);
+        assertThat(rows.get(0)).containsEntry("BANK_NAME", "Сбербанк").containsEntry("CITY", "Москва");
+        assertThat(rows.get(1)).doesNotContainKey("BANK_NAME");
+        assertThat(rows.get(2)).containsEntry("BANK_NAME", "Сбербанк");
+    }
+
+    @Test
+    @DisplayName("Должен применять проекцию и фильтры по колонкам справочника после соединения")
+    void shouldApplyProjectionAndJoinedFilters() throws IOException {
+        // Given
+        File orders = write("orders.csv", "ORDER,CUSTOMER_ID,NOTE\n1,42,a\n2,7,b\n3,8,c\n");
+        File customers = write("customers.csv", "ID,BANK_NAME,CITY\n42,Сбербанк,Москва\n7,Интеза,Рим\n");
+        LookupIndex index = LookupIndex.load(new CsvTableReader(), customers, "CUSTOMER_ID", "ID",
+                List.of("ORDER", "BANK_NAME"));
+        ReadOptions options = ReadOptions.columns(List.of("ORDER", "BANK_NAME"))
+                .where(RowFilter.in("BANK_NAME", List.of("Интеза")));
+
+        // When
+        List<Map<String, String>> rows = new EnrichingTableReader(new CsvTableReader(), List.of(index))
+                .read(orders, options);
+
+        // Then
+        assertThat(index.getColumns()).containsExactly("BANK_NAME");
+        assertThat(rows).containsExactly(Map.of("ORDER", "2", "CUSTOMER_ID", "7", "BANK_NAME", "Интеза"));
+    }
+
+    @Test
+    @DisplayName("Должен сохранять колонку основной таблицы, если ключ не найден в справочнике")
+    void shouldKeepMainColumnOnLookupMiss() throws IOException {
+        // Given - читатель основной таблицы выдаёт неизменяемые строки
+        File customers = write("customers.csv", "ID,CITY\n42,Москва\n");
+        LookupIndex index = LookupIndex.load(new CsvTableReader(), customers, "CUSTOMER_ID", "ID", null);
+        TableReader orders = (file, options, consumer) -> {
+            assertThat(options.getColumns()).contains("CITY", "CUSTOMER_ID");
+            consumer.accept(Map.of("ORDER", "1", "CUSTOMER_ID", "42", "CITY", "Рим"));
+            consumer.accept(Map.of("ORDER", "2", "CUSTOMER_ID", "7", "CITY", "Париж"));
+        };
+
+        // When
+        List<Map<String, String>> rows = new EnrichingTableReader(orders, List.of(index))
+                .read(customers, ReadOptions.columns(List.of("ORDER", "CITY")));
+
+        // Then
+        assertThat(rows).extracting(row -> row.get("CITY")).containsExactly("Москва", "Париж");
+    }
+
+    @Test
+    @DisplayName("Должен сообщать об отсутствующей колонке ключа справочника")
+    void shouldRejectUnknownKeyColumn() throws IOException {
+        // Given
+        File customers = write("customers.csv", "ID,BANK_NAME\n42,Сбербанк\n");
+
+        // When & Then
+        assertThatThrownBy(() -> LookupIndex.load(new CsvTableReader(), customers, "CUSTOMER_ID", "CODE", null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unknown lookup key column: CODE");
+    }
+
+    @Test
+    @DisplayName("Должен собирать колонки справочника из всех строк, а не только из первой")
+    void shouldCollectColumnsFromAllRows() throws IOException {
+        // Given
+        File customers = write("customers.ndjson", """
+                {"ID": "42", "BANK_NAME": "Сбербанк"}
+                {"ID": "7", "BANK_NAME": "Интеза", "CITY": "Рим"}
+                {"CITY": "Париж"}
+                """);
+
+        // When
+        LookupIndex index = LookupIndex.load(new JsonTableReader(), customers, "CUSTOMER_ID", "ID", null);
+
+        // Then
+        assertThat(index.getColumns()).containsExactly("BANK_NAME", "CITY");
+        assertThat(index.get("7", "CITY")).isEqualTo("Рим");
+        assertThat(index.get("42", "CITY")).isEmpty();
+        assertThat(index.get("42", "BANK_NAME")).isEqualTo("Сбербанк");
+    }
+
+    private File write(String name, String content) throws IOException {
+        Path path = tempDir.resolve(name);
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path.toFile();
+    }
+}
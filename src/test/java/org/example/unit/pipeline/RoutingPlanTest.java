@@ -0,0 +1,114 @@
+package org.example.unit.pipeline;
+
+import org.example.interfaces.PreparedTemplate;
+import org.example.pipeline.GenerationPipeline;
+import org.example.pipeline.RoutingPlan;
+import org.example.readers.ReadOptions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RoutingPlanTest {
+
+    @Test
+    @DisplayName("Должен выбирать шаблон строки по значению колонки-селектора")
+    void shouldRouteRowsBySelectorColumn(@TempDir Path tempDir) throws IOException {
+        // Given
+        RoutingPlan plan = new RoutingPlan("LANG", templates());
+        List<Map<String, String>> rows = List.of(
+                Map.of("LANG", "ru", "name", "Анна"),
+                Map.of("LANG", "EN", "name", "John"),
+                Map.of("LANG", "it.odt", "name", "Marco"));
+
+        // When
+        int written = new GenerationPipeline(2, 2).run((file, options, consumer) -> rows.forEach(consumer),
+                new File("table.xlsx"), ReadOptions.ALL, plan, tempDir.toFile());
+
+        // Then
+        assertThat(written).isEqualTo(3);
+        assertThat(Files.readString(tempDir.resolve("document_1.docx"))).isEqualTo("ru.docx:Анна");
+        assertThat(Files.readString(tempDir.resolve("document_2.docx"))).isEqualTo("en.docx:John");
+        assertThat(Files.readString(tempDir.resolve("document_3.odt"))).isEqualTo("it.odt:Marco");
+    }
+
+    @Test
+    @DisplayName("Должен читать колонку-селектор и плейсхолдеры всех шаблонов")
+    void shouldProjectSelectorAndPlaceholders() throws IOException {
+        assertThat(new RoutingPlan("LANG", templates()).getColumns()).containsExactlyInAnyOrder("LANG", "name");
+    }
+
+    @Test
+    @DisplayName("Должен пропускать и считать строки без подходящего шаблона, не останавливая пакет")
+    void shouldSkipRowsWithUnknownSelectorValue(@TempDir Path tempDir) throws IOException {
+        // Given
+        RoutingPlan plan = new RoutingPlan("LANG", templates());
+        List<Map<String, String>> rows = List.of(
+                Map.of("LANG", "de", "name", "Hans"),
+                Map.of("LANG", "ru", "name", "Анна"),
+                Map.of("name", "Без языка"));
+
+        // When
+        int written = new GenerationPipeline(2, 2).run((file, options, consumer) -> rows.forEach(consumer),
+                new File("table.xlsx"), ReadOptions.ALL, plan, tempDir.toFile());
+
+        // Then
+        assertThat(written).isEqualTo(1);
+        assertThat(plan.getSkippedRows()).isEqualTo(2);
+        assertThat(Files.readString(tempDir.resolve("document_2.docx"))).isEqualTo("ru.docx:Анна");
+    }
+
+    @Test
+    @DisplayName("Должен выбирать только шаблоны, на которые ссылаются значения селектора")
+    void shouldSelectReferencedTemplates() {
+        // Given
+        Map<String, String> library = new LinkedHashMap<>();
+        for (String name : List.of("ru.docx", "en.docx", "it.odt", "it.docx", "unused.docx")) {
+            library.put(name, name);
+        }
+        List<String> values = List.of("EN", "it.odt", "it", "de", "ru.docx");
+
+        // When & Then
+        assertThat(RoutingPlan.select(library, values).keySet()).containsExactly("ru.docx", "en.docx", "it.odt");
+        assertThat(RoutingPlan.unmatched(library.keySet(), values)).containsExactly("it", "de");
+    }
+
+    private static Map<String, PreparedTemplate> templates() {
+        Map<String, PreparedTemplate> templates = new LinkedHashMap<>();
+        for (String name : List.of("ru.docx", "en.docx", "it.odt")) {
+            templates.put(name, named(name));
+        }
+        return templates;
+    }
+
+    private static PreparedTemplate named(String name) {
+        return new PreparedTemplate() {
+            @Override
+            public String getExtension() {
+                return name.substring(name.lastIndexOf('.'));
+            }
+
+            @Override
+            public void render(Map<String, String> row, OutputStream out) throws IOException {
+                out.write((name + ":" + row.get("name")).getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public Set<String> getPlaceholders() {
+                return Set.of("name");
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.unit.pipeline;
+
+import org.example.pipeline.Aggregate;
+import org.example.pipeline.GroupBy;
+import org.example.pipeline.RowGrouper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RowGrouperTest {
+
+    @Test
+    @DisplayName("Должен объединять идущие подряд строки с одинаковым ключом и считать агрегаты")
+    void shouldGroupConsecutiveRowsAndComputeAggregates() {
+        // Given
+        GroupBy groupBy = new GroupBy(List.of("order"),
+                Aggregate.parseAll(List.of("SUM(amount)", "COUNT()", "MAX(amount)", "item")));
+        List<Map<String, String>> masters = new ArrayList<>();
+        List<List<Map<String, String>>> groups = new ArrayList<>();
+        RowGrouper grouper = new RowGrouper(groupBy, (master, details) -> {
+            masters.add(master);
+            groups.add(details);
+        });
+
+        // When
+        grouper.accept(Map.of("order", "1", "item", "Стол", "amount", "1000.50"));
+        grouper.accept(Map.of("order", "1", "item", "Стул", "amount", "99.5"));
+        grouper.accept(Map.of("order", "2", "item", "Шкаф", "amount", "300"));
+        grouper.finish();
+
+        // Then
+        assertThat(groups).hasSize(2);
+        assertThat(groups.get(0)).hasSize(2);
+        assertThat(masters.get(0))
+                .containsEntry("item", "Стол")
+                .containsEntry("SUM(amount)", "1100")
+                .containsEntry("COUNT()", "2")
+                .containsEntry("MAX(amount)", "1000.5");
+        assertThat(masters.get(1)).containsEntry("SUM(amount)", "300").containsEntry("COUNT()", "1");
+    }
+
+    @Test
+    @DisplayName("Должен отклонять вход, не отсортированный по ключу")
+    void shouldRejectUnsortedInput() {
+        // Given
+        RowGrouper grouper = new RowGrouper(GroupBy.of("order"), (master, details) -> {});
+        grouper.accept(Map.of("order", "1"));
+        grouper.accept(Map.of("order", "2"));
+
+        // When & Then
+        assertThatThrownBy(() -> grouper.accept(Map.of("order", "1")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("not sorted");
+    }
+
+    @Test
+    @DisplayName("Должен распознавать только агрегатные плейсхолдеры")
+    void shouldParseOnlyAggregatePlaceholders() {
+        assertThat(Aggregate.parse("sum( amount )").getColumn()).isEqualTo("amount");
+        assertThat(Aggregate.parse("SUMMARY")).isNull();
+        assertThat(Aggregate.parse("AVG()")).isNull();
+        assertThat(Aggregate.sourceColumns(List.of("name", "SUM(amount)", "COUNT()")))
+                .containsExactly("name", "amount");
+    }
+}
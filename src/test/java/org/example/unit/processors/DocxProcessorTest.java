@@ -1,18 +1,37 @@
 package org.example.unit.processors;
 
+import org.apache.poi.wp.usermodel.HeaderFooterType;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFFootnote;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFPicture;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.xmlbeans.XmlException;
+import org.example.Utils;
+import org.example.interfaces.PreparedTemplate;
+import org.example.metrics.GenerationMetrics;
 import org.example.processors.DocxProcessor;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mockStatic;
 
 class DocxProcessorTest {
 
@@ -42,6 +61,21 @@ class DocxProcessorTest {
                 .containsExactlyInAnyOrder("name", "date", "amount");
     }
 
+    @Test
+    @DisplayName("Должен учитывать подготовку шаблона в метриках отдельно от рендеринга")
+    void shouldRecordTemplatePreparation() throws IOException {
+        // Given
+        GenerationMetrics metrics = GenerationMetrics.get();
+        long prepared = metrics.getTemplatesPrepared();
+
+        // When
+        processor.prepare(templateFile);
+
+        // Then
+        assertThat(metrics.getTemplatesPrepared()).isEqualTo(prepared + 1);
+        assertThat(metrics.getPrepareLatencyP99Millis()).isPositive();
+    }
+
     @Test
     @DisplayName("Должен обрабатывать пустой документ без ошибок")
     void shouldHandleEmptyDocumentWithoutErrors(@TempDir Path tempDir) throws IOException {
@@ -181,6 +215,363 @@ class DocxProcessorTest {
                 .isFile();
     }
 
+    @Test
+    @DisplayName("Должен размножать строку таблицы с [#EACH] по строкам группы")
+    void shouldRepeatTableRowForEachDetail(@TempDir Path tempDir) throws IOException {
+        // Given
+        File invoice = tempDir.resolve("invoice.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream fos = new FileOutputStream(invoice)) {
+            document.createParagraph().createRun().setText("Счёт [number]");
+            XWPFTable table = document.createTable(3, 2);
+            table.getRow(0).getCell(0).setText("Товар");
+            table.getRow(0).getCell(1).setText("Сумма");
+            table.getRow(1).getCell(0).setText("[#EACH][item]");
+            table.getRow(1).getCell(1).setText("[amount]");
+            table.getRow(2).getCell(0).setText("Итого");
+            table.getRow(2).getCell(1).setText("[SUM(amount)]");
+            document.write(fos);
+        }
+        PreparedTemplate template = processor.prepare(invoice);
+        Map<String, String> master = Map.of("number", "42", "item", "Стол", "amount", "100", "SUM(amount)", "150");
+        List<Map<String, String>> details = List.of(
+                Map.of("number", "42", "item", "Стол", "amount", "100"),
+                Map.of("number", "42", "item", "Стул", "amount", "50"));
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(master, details, out);
+
+        // Then
+        assertThat(template.hasRepeatingRegions()).isTrue();
+        assertThat(template.getPlaceholders()).containsExactlyInAnyOrder("number", "item", "amount", "SUM(amount)");
+        try (XWPFDocument result = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+            XWPFTable table = result.getTables().get(0);
+            assertThat(table.getRows()).hasSize(4);
+            assertThat(table.getRow(1).getCell(0).getText()).isEqualTo("Стол");
+            assertThat(table.getRow(2).getCell(0).getText()).isEqualTo("Стул");
+            assertThat(table.getRow(2).getCell(1).getText()).isEqualTo("50");
+            assertThat(table.getRow(3).getCell(1).getText()).isEqualTo("150");
+            assertThat(result.getParagraphs().get(0).getText()).isEqualTo("Счёт 42");
+        }
+    }
+
+    @Test
+    @DisplayName("Должен вычислять выражения в плейсхолдерах и читать только их колонки")
+    void shouldEvaluateExpressionPlaceholders(@TempDir Path tempDir) throws IOException {
+        // Given
+        File invoice = tempDir.resolve("total.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream fos = new FileOutputStream(invoice)) {
+            document.createParagraph().createRun().setText("[=UPPER(name)]: [=price*qty] до [=date+30d]");
+            document.write(fos);
+        }
+        PreparedTemplate template = processor.prepare(invoice);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(Map.of("name", "Стол", "price", "12.5", "qty", "4", "date", "01.03.2024"), out);
+
+        // Then
+        assertThat(template.getColumns()).contains("name", "price", "qty", "date");
+        try (XWPFDocument result = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+            assertThat(result.getParagraphs().get(0).getText()).isEqualTo("СТОЛ: 50 до 31.03.2024");
+        }
+    }
+
+    @Test
+    @DisplayName("Должен применять директивы формата к колонкам и выражениям")
+    void shouldApplyFormatDirectives(@TempDir Path tempDir) throws IOException {
+        // Given
+        File invoice = tempDir.resolve("formatted.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream fos = new FileOutputStream(invoice)) {
+            document.createParagraph().createRun().setText("[DATE|d MMMM yyyy HH:mm|it]: [=AMOUNT*2|#,##0.00|en] [Да|Нет]");
+            document.write(fos);
+        }
+        PreparedTemplate template = processor.prepare(invoice);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(Map.of("DATE", "05.03.2024 18:30:00", "AMOUNT", "1500.25", "Да|Нет", "да"), out);
+
+        // Then
+        assertThat(template.getColumns()).contains("DATE", "AMOUNT", "Да|Нет");
+        assertThat(paragraphTexts(out)).containsExactly("5 marzo 2024 18:30: 3,000.50 да");
+    }
+
+    @Test
+    @DisplayName("Должен вставлять изображение по пути из колонки")
+    void shouldInsertImageFromColumnPath(@TempDir Path tempDir) throws IOException {
+        // Given
+        BufferedImage signature = new BufferedImage(400, 100, BufferedImage.TYPE_INT_RGB);
+        ImageIO.write(signature, "png", tempDir.resolve("signature.png").toFile());
+        File letter = tempDir.resolve("signed.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream fos = new FileOutputStream(letter)) {
+            document.createParagraph().createRun().setText("Подпись: [IMG:SIGNATURE|40]");
+            document.write(fos);
+        }
+        PreparedTemplate template = processor.prepare(letter);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(Map.of("SIGNATURE", "signature.png"), out);
+
+        // Then
+        assertThat(template.getColumns()).contains("SIGNATURE");
+        try (XWPFDocument result = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+            XWPFParagraph paragraph = result.getParagraphs().get(0);
+            assertThat(paragraph.getText()).isEqualTo("Подпись: ");
+            List<XWPFPicture> pictures = paragraph.getRuns().get(1).getEmbeddedPictures();
+            assertThat(pictures).hasSize(1);
+            // 40 мм по ширине, высота по пропорциям изображения
+            assertThat(pictures.get(0).getWidth()).isCloseTo(40 / 25.4 * 72, within(0.5));
+            assertThat(pictures.get(0).getDepth()).isCloseTo(10 / 25.4 * 72, within(0.5));
+        }
+    }
+
+    @Test
+    @DisplayName("Должен заменять плейсхолдеры в колонтитулах, сносках и вложенных таблицах")
+    void shouldReplaceInHeadersFootersFootnotesAndNestedTables(@TempDir Path tempDir) throws IOException {
+        // Given
+        File contract = tempDir.resolve("contract.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream fos = new FileOutputStream(contract)) {
+            document.createHeader(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("Договор [number]");
+            document.createFooter(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("Страница [page]");
+            document.createFootnotes();
+            XWPFFootnote footnote = document.createFootnote();
+            footnote.createParagraph().createRun().setText("Ссылка на [law]");
+            XWPFTableCell cell = document.createTable(1, 1).getRow(0).getCell(0);
+            XWPFTable nested = cell.insertNewTbl(cell.getParagraphArray(0).getCTP().newCursor());
+            nested.createRow().createCell().setText("Вложено: [name]");
+            document.write(fos);
+        }
+        PreparedTemplate template = processor.prepare(contract);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(Map.of("number", "17", "page", "1", "law", "ГК РФ", "name", "Иванов"), out);
+
+        // Then
+        assertThat(template.getPlaceholders()).containsExactlyInAnyOrder("number", "page", "law", "name");
+        try (XWPFDocument result = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+            assertThat(result.getHeaderList().get(0).getText()).contains("Договор 17");
+            assertThat(result.getFooterList().get(0).getText()).contains("Страница 1");
+            assertThat(result.getFootnotes().get(0).getParagraphs().get(0).getText()).isEqualTo("Ссылка на ГК РФ");
+            XWPFTable nestedTable = result.getTables().get(0).getRow(0).getCell(0).getTables().get(0);
+            assertThat(nestedTable.getText()).contains("Вложено: Иванов");
+        }
+    }
+
+    @Test
+    @DisplayName("Должен заменять плейсхолдеры в надписях, сохраняя саму надпись")
+    void shouldReplaceInTextBoxes(@TempDir Path tempDir) throws IOException, XmlException {
+        // Given
+        File form = tempDir.resolve("form.docx").toFile();
+        String content = "<xml-fragment xmlns:w='http://schemas.openxmlformats.org/wordprocessingml/2006/main'"
+                + " xmlns:v='urn:schemas-microsoft-com:vml'><w:r><w:t>Номер [number]</w:t></w:r>"
+                + "<w:r><w:pict><v:shape><v:textbox><w:txbxContent><w:p><w:r><w:t>Отметка: [mark]</w:t></w:r></w:p>"
+                + "</w:txbxContent></v:textbox></v:shape></w:pict></w:r></xml-fragment>";
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream fos = new FileOutputStream(form)) {
+            document.createParagraph().getCTP().set(CTP.Factory.parse(content));
+            document.write(fos);
+        }
+        PreparedTemplate template = processor.prepare(form);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(Map.of("number", "5", "mark", "принято"), out);
+
+        // Then
+        assertThat(template.getPlaceholders()).containsExactlyInAnyOrder("number", "mark");
+        try (XWPFDocument result = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+            String xml = result.getParagraphs().get(0).getCTP().xmlText();
+            assertThat(xml).contains("Номер 5", "Отметка: принято", "txbxContent");
+        }
+    }
+
+    @Test
+    @DisplayName("Должен включать ветвь условного блока по значению строки")
+    void shouldKeepOnlySelectedConditionalBranch(@TempDir Path tempDir) throws IOException {
+        // Given
+        File letter = tempDir.resolve("letter.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream fos = new FileOutputStream(letter)) {
+            for (String text : List.of("Уважаемый [name]", "[#IF =debt > 0]", "Долг: [debt]",
+                    "[#ELSE]", "Задолженности нет", "[/IF]", "С уважением")) {
+                document.createParagraph().createRun().setText(text);
+            }
+            document.write(fos);
+        }
+        PreparedTemplate template = processor.prepare(letter);
+
+        // When
+        ByteArrayOutputStream withDebt = new ByteArrayOutputStream();
+        template.render(Map.of("name", "Иван", "debt", "150"), withDebt);
+        ByteArrayOutputStream withoutDebt = new ByteArrayOutputStream();
+        template.render(Map.of("name", "Пётр", "debt", "0"), withoutDebt);
+
+        // Then
+        assertThat(template.getPlaceholders()).containsExactlyInAnyOrder("name", "debt");
+        assertThat(paragraphTexts(withDebt)).containsExactly("Уважаемый Иван", "Долг: 150", "С уважением");
+        assertThat(paragraphTexts(withoutDebt)).containsExactly("Уважаемый Пётр", "Задолженности нет", "С уважением");
+    }
+
+    @Test
+    @DisplayName("Должен убирать строки таблицы при ложном условии")
+    void shouldDropTableRowsWhenConditionIsFalse(@TempDir Path tempDir) throws IOException {
+        // Given
+        File invoice = tempDir.resolve("invoice.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream fos = new FileOutputStream(invoice)) {
+            XWPFTable table = document.createTable(4, 1);
+            List<String> rows = List.of("Итого: [total]", "[#IF discount]", "Скидка: [discount]", "[/IF]");
+            for (int i = 0; i < rows.size(); i++) {
+                table.getRow(i).getCell(0).setText(rows.get(i));
+            }
+            document.write(fos);
+        }
+        PreparedTemplate template = processor.prepare(invoice);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(Map.of("total", "100", "discount", ""), out);
+
+        // Then
+        try (XWPFDocument result = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+            XWPFTable table = result.getTables().get(0);
+            assertThat(table.getRows()).hasSize(1);
+            assertThat(table.getRow(0).getCell(0).getText()).isEqualTo("Итого: 100");
+        }
+    }
+
+    @Test
+    @DisplayName("Должен заполнять элементы после убранной ветви в общем варианте шаблона")
+    void shouldFillElementsAfterDroppedBranch(@TempDir Path tempDir) throws IOException {
+        // Given
+        File letter = tempDir.resolve("vip.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream fos = new FileOutputStream(letter)) {
+            for (String text : List.of("[#IF vip]", "VIP [name]", "[/IF]")) {
+                document.createParagraph().createRun().setText(text);
+            }
+            document.createTable(1, 1).getRow(0).getCell(0).setText("Клиент: [name]");
+            document.createParagraph().createRun().setText("Итог [total]");
+            document.write(fos);
+        }
+        PreparedTemplate template = processor.prepare(letter);
+
+        // When
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        template.render(Map.of("name", "Иван", "vip", "", "total", "10"), first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        template.render(Map.of("name", "Пётр", "vip", "", "total", "20"), second);
+        ByteArrayOutputStream vip = new ByteArrayOutputStream();
+        template.render(Map.of("name", "Анна", "vip", "1", "total", "30"), vip);
+
+        // Then
+        assertThat(paragraphTexts(first)).containsExactly("Итог 10");
+        assertThat(paragraphTexts(second)).containsExactly("Итог 20");
+        assertThat(paragraphTexts(vip)).containsExactly("VIP Анна", "Итог 30");
+        try (XWPFDocument result = new XWPFDocument(new ByteArrayInputStream(second.toByteArray()))) {
+            assertThat(result.getTables().get(0).getRow(0).getCell(0).getText()).isEqualTo("Клиент: Пётр");
+        }
+    }
+
+    @Test
+    @DisplayName("Должен склеивать плейсхолдер, разбитый отметками правописания, при нормализации шаблона")
+    void shouldNormalizeSplitPlaceholder(@TempDir Path tempDir) throws IOException, XmlException {
+        // Given
+        File source = tempDir.resolve("source.docx").toFile();
+        File normalized = tempDir.resolve("normalized.docx").toFile();
+        String content = "<xml-fragment xmlns:w='http://schemas.openxmlformats.org/wordprocessingml/2006/main'"
+                + " w:rsidR='00A1' w:rsidRDefault='00A1'>"
+                + "<w:r w:rsidR='00B2'><w:rPr><w:b/></w:rPr><w:t xml:space='preserve'>ФИО: </w:t></w:r>"
+                + "<w:proofErr w:type='spellStart'/>"
+                + "<w:r w:rsidR='00C3'><w:rPr><w:b/></w:rPr><w:t>[FULL</w:t></w:r>"
+                + "<w:r w:rsidR='00D4'><w:rPr><w:b/></w:rPr><w:t>_NAME]</w:t></w:r>"
+                + "<w:proofErr w:type='spellEnd'/>"
+                + "<w:r><w:rPr><w:i/></w:rPr><w:t xml:space='preserve'> (подпись)</w:t></w:r></xml-fragment>";
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream fos = new FileOutputStream(source)) {
+            document.createParagraph().getCTP().set(CTP.Factory.parse(content));
+            document.write(fos);
+        }
+
+        // When
+        processor.normalize(source, normalized);
+
+        // Then
+        try (XWPFDocument result = new XWPFDocument(new FileInputStream(normalized))) {
+            XWPFParagraph paragraph = result.getParagraphs().get(0);
+            assertThat(paragraph.getRuns()).extracting(XWPFRun::text)
+                    .containsExactly("ФИО: [FULL_NAME]", " (подпись)");
+            assertThat(paragraph.getCTP().xmlText()).doesNotContain("proofErr", "rsid");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        processor.prepare(normalized).render(Map.of("FULL_NAME", "Иванов И.И."), out);
+        try (XWPFDocument result = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+            List<XWPFRun> runs = result.getParagraphs().get(0).getRuns();
+            assertThat(runs).extracting(XWPFRun::text).containsExactly("ФИО: Иванов И.И.", " (подпись)");
+            // текст заменён внутри прогонов, оформление каждого прогона сохранено
+            assertThat(runs.get(0).isBold()).isTrue();
+            assertThat(runs.get(1).isItalic()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Должен возвращать плейсхолдеры в порядке появления в документе")
+    void shouldExtractPlaceholdersInDocumentOrder(@TempDir Path tempDir) throws IOException {
+        // Given
+        File form = tempDir.resolve("form.docx").toFile();
+        try (XWPFDocument document = new XWPFDocument();
+             FileOutputStream fos = new FileOutputStream(form)) {
+            document.createHeader(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("[COMPANY]");
+            XWPFParagraph paragraph = document.createParagraph();
+            paragraph.createRun().setText("[ZIP] [CI");
+            paragraph.createRun().setText("TY]");
+            document.createTable(1, 1).getRow(0).getCell(0).setText("[#EACH][ITEM]");
+            document.createParagraph().createRun().setText("[AMOUNT] [ZIP]");
+            document.write(fos);
+        }
+
+        // When
+        Set<String> placeholders = processor.extractPlaceholders(form);
+
+        // Then
+        assertThat(placeholders).containsExactly("ZIP", "CITY", "ITEM", "AMOUNT", "COMPANY");
+    }
+
+    @Test
+    @DisplayName("Должен заполнять один документ значениями из диалога по полям подготовленного шаблона")
+    void shouldGenerateSingleDocumentFromDialogValues(@TempDir Path tempDir) throws IOException {
+        // Given
+        File target = tempDir.resolve("out").resolve("single.docx").toFile();
+        try (MockedStatic<Utils> utils = mockStatic(Utils.class)) {
+            utils.when(() -> Utils.collectUserInputGUI(anySet()))
+                    .thenReturn(Map.of("name", "Иван", "date", "01.02.2024", "amount", "100"));
+
+            // When
+            processor.generateSingleDocument(templateFile, target);
+
+            // Then
+            utils.verify(() -> Utils.collectUserInputGUI(Set.of("name", "date", "amount")));
+        }
+        try (XWPFDocument result = new XWPFDocument(new FileInputStream(target))) {
+            assertThat(result.getParagraphs()).extracting(XWPFParagraph::getText)
+                    .containsExactly("Имя: Иван", "Дата: 01.02.2024", "Сумма: 100 руб.");
+        }
+    }
+
+    private static List<String> paragraphTexts(ByteArrayOutputStream out) throws IOException {
+        try (XWPFDocument result = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+            return result.getParagraphs().stream().map(XWPFParagraph::getText).toList();
+        }
+    }
+
     /**
      * Создает тестовый DOCX шаблон с плейсхолдерами
      */
@@ -1,24 +1,41 @@
 package org.example.unit.processors;
 
+import org.example.Utils;
+import org.example.interfaces.PreparedTemplate;
 import org.example.interfaces.TemplateProcessor;
 import org.example.processors.OdtProcessor;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.MockedStatic;
 import org.odftoolkit.odfdom.doc.OdfTextDocument;
-import org.odftoolkit.odfdom.dom.OdfContentDom;
-import org.w3c.dom.Node;
+import org.odftoolkit.odfdom.doc.table.OdfTable;
+import org.odftoolkit.odfdom.dom.element.text.TextPElement;
 import org.w3c.dom.NodeList;
 
+import javax.imageio.ImageIO;
+import javax.xml.stream.XMLStreamException;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.*;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mockStatic;
 
 class OdtProcessorTest {
 
@@ -42,29 +59,14 @@ class OdtProcessorTest {
         List<Map<String, String>> tableData = Arrays.asList(
                 Map.of("name", "John", "age", "25")
         );
+        createTemplate("Hello [name]");
 
-        // Mock ODT document and dependencies
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            OdfTextDocument mockDocument = mock(OdfTextDocument.class);
-            OdfContentDom mockContentDom = mock(OdfContentDom.class);
-            NodeList mockParagraphs = mock(NodeList.class);
-            NodeList mockCells = mock(NodeList.class);
-
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenReturn(mockDocument);
-            doReturn(mockContentDom).when(mockDocument).getContentDom();
-            when(mockContentDom.getElementsByTagName("text:p")).thenReturn(mockParagraphs);
-            when(mockContentDom.getElementsByTagName("table:table-cell")).thenReturn(mockCells);
-            when(mockParagraphs.getLength()).thenReturn(0);
-            when(mockCells.getLength()).thenReturn(0);
-            doNothing().when(mockDocument).save(any(File.class));
+        // When
+        processor.process(templateFile, tableData, targetDir);
 
-            // When
-            processor.process(templateFile, tableData, targetDir);
-
-            // Then
-            assertThat(targetDir).exists().isDirectory();
-        }
+        // Then
+        assertThat(targetDir).exists().isDirectory();
+        assertThat(targetDir.listFiles()).hasSize(1);
     }
 
     @Test
@@ -73,32 +75,13 @@ class OdtProcessorTest {
         List<Map<String, String>> tableData = Arrays.asList(
                 Map.of("name", "John", "age", "25")
         );
+        createTemplate("Hello [name], you are [age] years old.");
 
-        // Mock ODT document and dependencies
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            OdfTextDocument mockDocument = mock(OdfTextDocument.class);
-            OdfContentDom mockContentDom = mock(OdfContentDom.class);
-            NodeList mockParagraphs = mock(NodeList.class);
-            NodeList mockCells = mock(NodeList.class);
-            Node mockParagraph = mock(Node.class);
-
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenReturn(mockDocument);
-            doReturn(mockContentDom).when(mockDocument).getContentDom();
-            when(mockContentDom.getElementsByTagName("text:p")).thenReturn(mockParagraphs);
-            when(mockContentDom.getElementsByTagName("table:table-cell")).thenReturn(mockCells);
-            when(mockParagraphs.getLength()).thenReturn(1);
-            when(mockParagraphs.item(0)).thenReturn(mockParagraph);
-            when(mockParagraph.getTextContent()).thenReturn("Hello [name], you are [age] years old.");
-            when(mockCells.getLength()).thenReturn(0);
-            doNothing().when(mockDocument).save(any(File.class));
-
-            // When
-            processor.process(templateFile, tableData, targetDir);
+        // When
+        processor.process(templateFile, tableData, targetDir);
 
-            // Then
-            verify(mockParagraph).setTextContent("Hello John, you are 25 years old.");
-        }
+        // Then
+        assertThat(paragraphTexts(singleOutput())).contains("Hello John, you are 25 years old.");
     }
 
     @Test
@@ -107,39 +90,17 @@ class OdtProcessorTest {
         List<Map<String, String>> tableData = Arrays.asList(
                 Map.of("name", "John", "city", "New York")
         );
+        try (OdfTextDocument document = OdfTextDocument.newTextDocument()) {
+            OdfTable table = OdfTable.newTable(document, 1, 1);
+            table.getCellByPosition(0, 0).setStringValue("Name: [name], City: [city]");
+            document.save(templateFile);
+        }
 
-        // Mock ODT document and dependencies
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            OdfTextDocument mockDocument = mock(OdfTextDocument.class);
-            OdfContentDom mockContentDom = mock(OdfContentDom.class);
-            NodeList mockParagraphs = mock(NodeList.class);
-            NodeList mockCells = mock(NodeList.class);
-            NodeList mockCellChildren = mock(NodeList.class);
-            Node mockCell = mock(Node.class);
-            Node mockCellParagraph = mock(Node.class);
-
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenReturn(mockDocument);
-            doReturn(mockContentDom).when(mockDocument).getContentDom();
-            when(mockContentDom.getElementsByTagName("text:p")).thenReturn(mockParagraphs);
-            when(mockContentDom.getElementsByTagName("table:table-cell")).thenReturn(mockCells);
-            when(mockParagraphs.getLength()).thenReturn(0);
-            when(mockCells.getLength()).thenReturn(1);
-            when(mockCells.item(0)).thenReturn(mockCell);
-            when(mockCell.getChildNodes()).thenReturn(mockCellChildren);
-            when(mockCellChildren.getLength()).thenReturn(1);
-            when(mockCellChildren.item(0)).thenReturn(mockCellParagraph);
-            when(mockCellParagraph.getNodeType()).thenReturn(Node.ELEMENT_NODE);
-            when(mockCellParagraph.getNodeName()).thenReturn("text:p");
-            when(mockCellParagraph.getTextContent()).thenReturn("Name: [name], City: [city]");
-            doNothing().when(mockDocument).save(any(File.class));
+        // When
+        processor.process(templateFile, tableData, targetDir);
 
-            // When
-            processor.process(templateFile, tableData, targetDir);
-
-            // Then
-            verify(mockCellParagraph).setTextContent("Name: John, City: New York");
-        }
+        // Then
+        assertThat(paragraphTexts(singleOutput())).contains("Name: John, City: New York");
     }
 
     @Test
@@ -163,32 +124,13 @@ class OdtProcessorTest {
         List<Map<String, String>> tableData = Arrays.asList(
                 Map.of("name", "John") // missing "age" key
         );
+        createTemplate("Hello [name], you are [age] years old.");
 
-        // Mock ODT document and dependencies
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            OdfTextDocument mockDocument = mock(OdfTextDocument.class);
-            OdfContentDom mockContentDom = mock(OdfContentDom.class);
-            NodeList mockParagraphs = mock(NodeList.class);
-            NodeList mockCells = mock(NodeList.class);
-            Node mockParagraph = mock(Node.class);
-
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenReturn(mockDocument);
-            doReturn(mockContentDom).when(mockDocument).getContentDom();
-            when(mockContentDom.getElementsByTagName("text:p")).thenReturn(mockParagraphs);
-            when(mockContentDom.getElementsByTagName("table:table-cell")).thenReturn(mockCells);
-            when(mockParagraphs.getLength()).thenReturn(1);
-            when(mockParagraphs.item(0)).thenReturn(mockParagraph);
-            when(mockParagraph.getTextContent()).thenReturn("Hello [name], you are [age] years old.");
-            when(mockCells.getLength()).thenReturn(0);
-            doNothing().when(mockDocument).save(any(File.class));
-
-            // When
-            processor.process(templateFile, tableData, targetDir);
+        // When
+        processor.process(templateFile, tableData, targetDir);
 
-            // Then - missing placeholder should be replaced with empty string
-            verify(mockParagraph).setTextContent("Hello John, you are  years old.");
-        }
+        // Then - missing placeholder should be replaced with empty string
+        assertThat(paragraphTexts(singleOutput())).contains("Hello John, you are  years old.");
     }
 
     @Test
@@ -197,19 +139,14 @@ class OdtProcessorTest {
         List<Map<String, String>> tableData = Arrays.asList(
                 Map.of("name", "John")
         );
+        Files.writeString(templateFile.toPath(), "not an odt package");
 
-        // Mock ODT document loading to throw exception
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenThrow(new RuntimeException("Failed to load document"));
+        // When & Then
+        IOException exception = assertThrows(IOException.class,
+                () -> processor.process(templateFile, tableData, targetDir));
 
-            // When & Then
-            IOException exception = assertThrows(IOException.class,
-                    () -> processor.process(templateFile, tableData, targetDir));
-
-            assertThat(exception.getMessage()).contains("Ошибка обработки документа ODT");
-            assertThat(exception.getCause()).isInstanceOf(RuntimeException.class);
-        }
+        assertThat(exception.getMessage()).contains("ODT document processing error");
+        assertThat(exception.getCause()).isInstanceOf(IOException.class);
     }
 
     @Test
@@ -218,153 +155,160 @@ class OdtProcessorTest {
         List<Map<String, String>> tableData = Arrays.asList(
                 Map.of("name", "John")
         );
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(templateFile))) {
+            zip.putNextEntry(new ZipEntry("content.xml"));
+            zip.write("<office:document-content>[name]".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
 
-        // Mock ODT document and make getContentDom throw exception
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            OdfTextDocument mockDocument = mock(OdfTextDocument.class);
+        // When & Then
+        IOException exception = assertThrows(IOException.class,
+                () -> processor.process(templateFile, tableData, targetDir));
 
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenReturn(mockDocument);
-            doThrow(new org.xml.sax.SAXException("Failed to get content DOM"))
-                    .when(mockDocument).getContentDom();
+        assertThat(exception.getMessage()).contains("ODT document processing error");
+        assertThat(exception.getCause()).hasRootCauseInstanceOf(XMLStreamException.class);
+    }
 
-            // When & Then
-            IOException exception = assertThrows(IOException.class,
-                    () -> processor.process(templateFile, tableData, targetDir));
+    @Test
+    @DisplayName("Должен заменять плейсхолдер, сохраняя оформление фрагментов text:span")
+    void shouldKeepSpansWhenReplacingPlaceholders() throws Exception {
+        // Given
+        try (OdfTextDocument document = OdfTextDocument.newTextDocument()) {
+            TextPElement paragraph = document.newParagraph("Dear ");
+            paragraph.newTextSpanElement().setTextContent("[name]");
+            paragraph.appendChild(paragraph.getOwnerDocument().createTextNode(", welcome"));
+            document.save(templateFile);
+        }
 
-            assertThat(exception.getMessage()).contains("Ошибка обработки документа ODT");
-            assertThat(exception.getCause()).isInstanceOf(org.xml.sax.SAXException.class);
+        // When
+        processor.process(templateFile, List.of(Map.of("name", "John")), targetDir);
+
+        // Then
+        try (OdfTextDocument result = OdfTextDocument.loadDocument(singleOutput())) {
+            NodeList spans = result.getContentDom().getElementsByTagName("text:span");
+            assertThat(spans.getLength()).isEqualTo(1);
+            assertThat(spans.item(0).getTextContent()).isEqualTo("John");
         }
+        assertThat(paragraphTexts(singleOutput())).contains("Dear John, welcome");
     }
 
     @Test
-    void testExtractPlaceholdersFromParagraphs() throws Exception {
+    @DisplayName("Должен заменять плейсхолдер, разбитый на несколько text:span")
+    void shouldReplacePlaceholderSplitAcrossSpans() throws Exception {
         // Given
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            OdfTextDocument mockDocument = mock(OdfTextDocument.class);
-            OdfContentDom mockContentDom = mock(OdfContentDom.class);
-            NodeList mockParagraphs = mock(NodeList.class);
-            NodeList mockCells = mock(NodeList.class);
-            Node mockParagraph1 = mock(Node.class);
-            Node mockParagraph2 = mock(Node.class);
-
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenReturn(mockDocument);
-            doReturn(mockContentDom).when(mockDocument).getContentDom();
-            when(mockContentDom.getElementsByTagName("text:p")).thenReturn(mockParagraphs);
-            when(mockContentDom.getElementsByTagName("table:table-cell")).thenReturn(mockCells);
-            when(mockParagraphs.getLength()).thenReturn(2);
-            when(mockParagraphs.item(0)).thenReturn(mockParagraph1);
-            when(mockParagraphs.item(1)).thenReturn(mockParagraph2);
-            when(mockParagraph1.getTextContent()).thenReturn("Hello [name], your age is [age]");
-            when(mockParagraph2.getTextContent()).thenReturn("Your city is [city] and country is [country]");
-            when(mockCells.getLength()).thenReturn(0);
+        try (OdfTextDocument document = OdfTextDocument.newTextDocument()) {
+            TextPElement paragraph = document.newParagraph("Total: [");
+            paragraph.newTextSpanElement().setTextContent("amo");
+            paragraph.newTextSpanElement().setTextContent("unt] EUR");
+            document.save(templateFile);
+        }
 
-            // When
-            Set<String> placeholders = processor.extractPlaceholders(templateFile);
+        // When
+        processor.process(templateFile, List.of(Map.of("amount", "42")), targetDir);
 
-            // Then
-            assertThat(placeholders).containsExactlyInAnyOrder("name", "age", "city", "country");
+        // Then
+        assertThat(paragraphTexts(singleOutput())).contains("Total: 42 EUR");
+        try (OdfTextDocument result = OdfTextDocument.loadDocument(singleOutput())) {
+            NodeList spans = result.getContentDom().getElementsByTagName("text:span");
+            assertThat(spans.getLength()).isEqualTo(2);
+            assertThat(spans.item(1).getTextContent()).isEqualTo(" EUR");
         }
     }
 
     @Test
-    void testExtractPlaceholdersFromTableCells() throws Exception {
+    @DisplayName("Должен размножать строку таблицы с [#EACH] по строкам группы")
+    void shouldExpandRepeatingRegion() throws Exception {
         // Given
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            OdfTextDocument mockDocument = mock(OdfTextDocument.class);
-            OdfContentDom mockContentDom = mock(OdfContentDom.class);
-            NodeList mockParagraphs = mock(NodeList.class);
-            NodeList mockCells = mock(NodeList.class);
-            NodeList mockCellChildren = mock(NodeList.class);
-            Node mockCell = mock(Node.class);
-            Node mockCellParagraph = mock(Node.class);
-
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenReturn(mockDocument);
-            doReturn(mockContentDom).when(mockDocument).getContentDom();
-            when(mockContentDom.getElementsByTagName("text:p")).thenReturn(mockParagraphs);
-            when(mockContentDom.getElementsByTagName("table:table-cell")).thenReturn(mockCells);
-            when(mockParagraphs.getLength()).thenReturn(0);
-            when(mockCells.getLength()).thenReturn(1);
-            when(mockCells.item(0)).thenReturn(mockCell);
-            when(mockCell.getChildNodes()).thenReturn(mockCellChildren);
-            when(mockCellChildren.getLength()).thenReturn(1);
-            when(mockCellChildren.item(0)).thenReturn(mockCellParagraph);
-            when(mockCellParagraph.getNodeType()).thenReturn(Node.ELEMENT_NODE);
-            when(mockCellParagraph.getNodeName()).thenReturn("text:p");
-            when(mockCellParagraph.getTextContent()).thenReturn("Employee: [employee_name] works in [department]");
+        try (OdfTextDocument document = OdfTextDocument.newTextDocument()) {
+            document.newParagraph("Order [order]");
+            OdfTable table = OdfTable.newTable(document, 1, 2);
+            table.getCellByPosition(0, 0).setStringValue("[#EACH][item]");
+            table.getCellByPosition(1, 0).setStringValue("[qty]");
+            document.save(templateFile);
+        }
+        PreparedTemplate template = processor.prepare(templateFile);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
 
-            // When
-            Set<String> placeholders = processor.extractPlaceholders(templateFile);
+        // When
+        template.render(Map.of("order", "7"), List.of(
+                Map.of("item", "Pen", "qty", "2"),
+                Map.of("item", "Ink", "qty", "5")), out);
 
-            // Then
-            assertThat(placeholders).containsExactlyInAnyOrder("employee_name", "department");
+        // Then
+        assertThat(template.hasRepeatingRegions()).isTrue();
+        File result = new File(tempDir, "result.odt");
+        Files.write(result.toPath(), out.toByteArray());
+        assertThat(paragraphTexts(result)).contains("Order 7", "Pen", "2", "Ink", "5");
+    }
+
+    @Test
+    void testExtractPlaceholdersFromParagraphs() throws Exception {
+        // Given
+        createTemplate("Hello [name], your age is [age]", "Your city is [city] and country is [country]");
+
+        // When
+        Set<String> placeholders = processor.extractPlaceholders(templateFile);
+
+        // Then
+        assertThat(placeholders).containsExactlyInAnyOrder("name", "age", "city", "country");
+    }
+
+    @Test
+    void testExtractPlaceholdersFromTableCells() throws Exception {
+        // Given
+        try (OdfTextDocument document = OdfTextDocument.newTextDocument()) {
+            OdfTable table = OdfTable.newTable(document, 1, 1);
+            table.getCellByPosition(0, 0).setStringValue("Employee: [employee_name] works in [department]");
+            document.save(templateFile);
         }
+
+        // When
+        Set<String> placeholders = processor.extractPlaceholders(templateFile);
+
+        // Then
+        assertThat(placeholders).containsExactlyInAnyOrder("employee_name", "department");
     }
 
     @Test
     void testExtractPlaceholdersReturnsEmptySetWhenNoPlaceholders() throws Exception {
         // Given
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            OdfTextDocument mockDocument = mock(OdfTextDocument.class);
-            OdfContentDom mockContentDom = mock(OdfContentDom.class);
-            NodeList mockParagraphs = mock(NodeList.class);
-            NodeList mockCells = mock(NodeList.class);
-            Node mockParagraph = mock(Node.class);
-
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenReturn(mockDocument);
-            doReturn(mockContentDom).when(mockDocument).getContentDom();
-            when(mockContentDom.getElementsByTagName("text:p")).thenReturn(mockParagraphs);
-            when(mockContentDom.getElementsByTagName("table:table-cell")).thenReturn(mockCells);
-            when(mockParagraphs.getLength()).thenReturn(1);
-            when(mockParagraphs.item(0)).thenReturn(mockParagraph);
-            when(mockParagraph.getTextContent()).thenReturn("This is plain text without placeholders");
-            when(mockCells.getLength()).thenReturn(0);
+        createTemplate("This is plain text without placeholders");
 
-            // When
-            Set<String> placeholders = processor.extractPlaceholders(templateFile);
+        // When
+        Set<String> placeholders = processor.extractPlaceholders(templateFile);
 
-            // Then
-            assertThat(placeholders).isEmpty();
-        }
+        // Then
+        assertThat(placeholders).isEmpty();
     }
 
     @Test
     void testExtractPlaceholdersThrowsIOExceptionOnFailure() throws Exception {
         // Given
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenThrow(new RuntimeException("Failed to load document"));
+        Files.writeString(templateFile.toPath(), "not an odt package");
 
-            // When & Then
-            IOException exception = assertThrows(IOException.class,
-                    () -> processor.extractPlaceholders(templateFile));
+        // When & Then
+        IOException exception = assertThrows(IOException.class,
+                () -> processor.extractPlaceholders(templateFile));
 
-            assertThat(exception.getMessage()).contains("Ошибка извлечения плейсхолдеров");
-            assertThat(exception.getCause()).isInstanceOf(RuntimeException.class);
-        }
+        assertThat(exception.getMessage()).contains("Placeholders extraction error");
+        assertThat(exception.getCause()).isInstanceOf(IOException.class);
     }
 
     @Test
     void testExtractPlaceholdersThrowsIOExceptionOnContentDomFailure() throws Exception {
         // Given
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            OdfTextDocument mockDocument = mock(OdfTextDocument.class);
-
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenReturn(mockDocument);
-            doThrow(new org.xml.sax.SAXException("Failed to get content DOM"))
-                    .when(mockDocument).getContentDom();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(templateFile))) {
+            zip.putNextEntry(new ZipEntry("content.xml"));
+            zip.write("<office:document-content>[name]".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
 
-            // When & Then
-            IOException exception = assertThrows(IOException.class,
-                    () -> processor.extractPlaceholders(templateFile));
+        // When & Then
+        IOException exception = assertThrows(IOException.class,
+                () -> processor.extractPlaceholders(templateFile));
 
-            assertThat(exception.getMessage()).contains("Ошибка извлечения плейсхолдеров");
-            assertThat(exception.getCause()).isInstanceOf(org.xml.sax.SAXException.class);
-        }
+        assertThat(exception.getMessage()).contains("Placeholders extraction error");
+        assertThat(exception.getCause()).isInstanceOf(XMLStreamException.class);
     }
 
     @Test
@@ -376,29 +320,202 @@ class OdtProcessorTest {
     @Test
     void testExtractPlaceholdersHandlesDuplicatePlaceholders() throws Exception {
         // Given
-        try (MockedStatic<OdfTextDocument> mockedStatic = mockStatic(OdfTextDocument.class)) {
-            OdfTextDocument mockDocument = mock(OdfTextDocument.class);
-            OdfContentDom mockContentDom = mock(OdfContentDom.class);
-            NodeList mockParagraphs = mock(NodeList.class);
-            NodeList mockCells = mock(NodeList.class);
-            Node mockParagraph = mock(Node.class);
-
-            mockedStatic.when(() -> OdfTextDocument.loadDocument(templateFile))
-                    .thenReturn(mockDocument);
-            doReturn(mockContentDom).when(mockDocument).getContentDom();
-            when(mockContentDom.getElementsByTagName("text:p")).thenReturn(mockParagraphs);
-            when(mockContentDom.getElementsByTagName("table:table-cell")).thenReturn(mockCells);
-            when(mockParagraphs.getLength()).thenReturn(1);
-            when(mockParagraphs.item(0)).thenReturn(mockParagraph);
-            when(mockParagraph.getTextContent()).thenReturn("[name] is great, [name] is awesome, [age] is fine");
-            when(mockCells.getLength()).thenReturn(0);
+        createTemplate("[name] is great, [name] is awesome, [age] is fine");
+
+        // When
+        Set<String> placeholders = processor.extractPlaceholders(templateFile);
+
+        // Then - Set should contain unique placeholders only
+        assertThat(placeholders).containsExactlyInAnyOrder("name", "age");
+        assertThat(placeholders).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Должен возвращать плейсхолдеры в порядке появления в документе, включая разбитые на text:span")
+    void shouldExtractPlaceholdersInDocumentOrder() throws Exception {
+        // Given
+        try (OdfTextDocument document = OdfTextDocument.newTextDocument()) {
+            document.newParagraph("[ZIP] [CITY]");
+            TextPElement paragraph = document.newParagraph("[STR");
+            paragraph.newTextSpanElement().setTextContent("EET]");
+            OdfTable table = OdfTable.newTable(document, 1, 1);
+            table.getCellByPosition(0, 0).setStringValue("[#EACH][ITEM] [/EACH]");
+            document.newParagraph("[AMOUNT] [CITY]");
+            document.save(templateFile);
+        }
+
+        // When
+        Set<String> placeholders = processor.extractPlaceholders(templateFile);
+
+        // Then
+        assertThat(placeholders).containsExactly("ZIP", "CITY", "STREET", "ITEM", "AMOUNT");
+    }
+
+    @Test
+    @DisplayName("Должен заполнять один документ значениями из диалога по полям подготовленного шаблона")
+    void shouldGenerateSingleDocumentFromDialogValues() throws Exception {
+        // Given
+        createTemplate("Hello [name]", "[#IF vip]", "Welcome back", "[/IF]");
+        File target = new File(targetDir, "single.odt");
+        try (MockedStatic<Utils> utils = mockStatic(Utils.class)) {
+            utils.when(() -> Utils.collectUserInputGUI(anySet())).thenReturn(Map.of("name", "John", "vip", ""));
 
             // When
-            Set<String> placeholders = processor.extractPlaceholders(templateFile);
+            processor.generateSingleDocument(templateFile, target);
+
+            // Then
+            utils.verify(() -> Utils.collectUserInputGUI(Set.of("name", "vip")));
+        }
+        assertThat(paragraphTexts(target)).contains("Hello John").doesNotContain("Welcome back", "[#IF vip]");
+    }
+
+    @Test
+    @DisplayName("Должен брать изображение из папки таблицы и не совпадать по имени с частями шаблона")
+    void shouldNotReuseTemplatePictureName() throws Exception {
+        // Given
+        File data = new File(tempDir, "data");
+        assertTrue(data.mkdir());
+        ImageIO.write(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB), "png", new File(data, "photo.png"));
+        byte[] photo = Files.readAllBytes(new File(data, "photo.png").toPath());
+        createTemplate("Фото: [IMG:PHOTO|20]");
+        Map<String, String> row = Map.of("PHOTO", "photo.png");
+        String generatedName = pictureHref(render(processor.prepare(templateFile, data.toPath()), row));
+
+        // шаблон, сохранённый из созданного документа, уже содержит изображение с тем же именем
+        File saved = new File(tempDir, "saved.odt");
+        try (ZipFile source = new ZipFile(templateFile);
+             ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(saved))) {
+            for (ZipEntry entry : Collections.list(source.entries())) {
+                zip.putNextEntry(new ZipEntry(entry.getName()));
+                zip.write(source.getInputStream(entry).readAllBytes());
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry(generatedName));
+            zip.write("old picture".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+
+        // When
+        Map<String, byte[]> parts = render(processor.prepare(saved, data.toPath()), row);
+
+        // Then
+        String href = pictureHref(parts);
+        assertThat(href).isNotEqualTo(generatedName);
+        assertThat(parts.get(href)).isEqualTo(photo);
+        assertThat(new String(parts.get(generatedName), StandardCharsets.UTF_8)).isEqualTo("old picture");
+        assertThat(new String(parts.get("META-INF/manifest.xml"), StandardCharsets.UTF_8)).contains(href);
+    }
+
+    @Test
+    @DisplayName("Должен записывать mimetype первым без сжатия и копировать остальные части шаблона")
+    void shouldCopyStaticPartsOfTemplate() throws Exception {
+        // Given
+        createTemplate("Имя: [NAME]");
+        PreparedTemplate template = processor.prepare(templateFile);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(Map.of("NAME", "Анна"), out);
+
+        // Then
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+             ZipFile source = new ZipFile(templateFile)) {
+            ZipEntry first = zip.getNextEntry();
+            assertThat(first.getName()).isEqualTo("mimetype");
+            assertThat(first.getMethod()).isEqualTo(ZipEntry.STORED);
+            for (ZipEntry entry = first; entry != null; entry = zip.getNextEntry()) {
+                byte[] data = zip.readAllBytes();
+                if (entry.getName().equals("content.xml")) continue;
+                assertThat(data).as(entry.getName())
+                        .isEqualTo(source.getInputStream(source.getEntry(entry.getName())).readAllBytes());
+            }
+        }
+        assertThat(render(template, Map.of("NAME", "Анна")).get("content.xml"))
+                .asString(StandardCharsets.UTF_8).contains("Имя: Анна");
+    }
+
+    @Test
+    @DisplayName("Должен разбирать параграф текстового поля отдельно от параграфа, в котором оно закреплено")
+    void shouldNotJoinTextBoxParagraphIntoOuterParagraph() throws Exception {
+        // Given - текстовое поле закреплено внутри плейсхолдера [A]
+        createTemplate("MARK");
+        replaceContent("MARK", "[A<draw:frame draw:name=\"box\" svg:width=\"2cm\" svg:height=\"1cm\">"
+                + "<draw:text-box><text:p>[B]</text:p></draw:text-box></draw:frame>]");
+        PreparedTemplate template = processor.prepare(templateFile);
+
+        // When
+        String content = new String(render(template, Map.of("A", "один", "B", "два")).get("content.xml"),
+                StandardCharsets.UTF_8);
+
+        // Then
+        assertThat(template.getPlaceholders()).containsExactly("A", "B");
+        assertThat(content).contains("<text:p>два</text:p>").doesNotContain("[A").doesNotContain("[B]");
+        assertThat(content.indexOf("один")).isLessThan(content.indexOf("<draw:frame"));
+    }
+
+    private static Map<String, byte[]> render(PreparedTemplate template, Map<String, String> row) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(row, out);
+        Map<String, byte[]> parts = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                parts.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return parts;
+    }
+
+    private static String pictureHref(Map<String, byte[]> parts) {
+        Matcher matcher = Pattern.compile("href=\"(Pictures/[^\"]+)\"")
+                .matcher(new String(parts.get("content.xml"), StandardCharsets.UTF_8));
+        assertTrue(matcher.find());
+        return matcher.group(1);
+    }
+
+    private void createTemplate(String... paragraphs) throws Exception {
+        try (OdfTextDocument document = OdfTextDocument.newTextDocument()) {
+            for (String paragraph : paragraphs) {
+                document.newParagraph(paragraph);
+            }
+            document.save(templateFile);
+        }
+    }
+
+    /**
+     * Заменяет текст в content.xml шаблона разметкой.
+     */
+    private void replaceContent(String text, String markup) throws IOException {
+        Map<String, byte[]> parts = new LinkedHashMap<>();
+        try (ZipFile source = new ZipFile(templateFile)) {
+            for (ZipEntry entry : Collections.list(source.entries())) {
+                parts.put(entry.getName(), source.getInputStream(entry).readAllBytes());
+            }
+        }
+        String content = new String(parts.get("content.xml"), StandardCharsets.UTF_8);
+        parts.put("content.xml", content.replace(text, markup).getBytes(StandardCharsets.UTF_8));
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(templateFile))) {
+            for (Map.Entry<String, byte[]> part : parts.entrySet()) {
+                zip.putNextEntry(new ZipEntry(part.getKey()));
+                zip.write(part.getValue());
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private File singleOutput() {
+        File[] files = targetDir.listFiles();
+        assertThat(files).hasSize(1);
+        return files[0];
+    }
 
-            // Then - Set should contain unique placeholders only
-            assertThat(placeholders).containsExactlyInAnyOrder("name", "age");
-            assertThat(placeholders).hasSize(2);
+    private static List<String> paragraphTexts(File file) throws Exception {
+        try (OdfTextDocument document = OdfTextDocument.loadDocument(file)) {
+            NodeList paragraphs = document.getContentDom().getElementsByTagName("text:p");
+            List<String> texts = new ArrayList<>();
+            for (int i = 0; i < paragraphs.getLength(); i++) {
+                texts.add(paragraphs.item(i).getTextContent());
+            }
+            return texts;
         }
     }
-}
\ No newline at end of file
+}
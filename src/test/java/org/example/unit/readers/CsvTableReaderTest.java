@@ -0,0 +1,258 @@
+package org.example.unit.readers;
+
+import org.example.readers.CsvTableReader;
+import org.example.readers.ReadOptions;
+import org.example.readers.RowFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CsvTableReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Должен читать простой CSV с заголовками")
+    void shouldReadSimpleCsv() throws IOException {
+        // Given
+        File file = write("simple.csv", "Имя,Город\r\nИванов,Москва\r\nПетров,Рим\r\n", StandardCharsets.UTF_8);
+
+        // When
+        List<Map<String, String>> data = new CsvTableReader(',', StandardCharsets.UTF_8).read(file);
+
+        // Then
+        assertThat(data).hasSize(2);
+        assertThat(data.get(0)).containsEntry("Имя", "Иванов").containsEntry("Город", "Москва");
+        assertThat(data.get(1)).containsEntry("Имя", "Петров").containsEntry("Город", "Рим");
+    }
+
+    @Test
+    @DisplayName("Должен обрабатывать кавычки по RFC 4180")
+    void shouldHandleQuotedFields() throws IOException {
+        // Given
+        File file = write("quoted.csv",
+                "name,comment\n\"Smith, John\",\"said \"\"hi\"\"\nand left\"\nplain,\"\"\n", StandardCharsets.UTF_8);
+
+        // When
+        List<Map<String, String>> data = new CsvTableReader(',', StandardCharsets.UTF_8).read(file);
+
+        // Then
+        assertThat(data).hasSize(2);
+        assertThat(data.get(0))
+                .containsEntry("name", "Smith, John")
+                .containsEntry("comment", "said \"hi\"\nand left");
+        assertThat(data.get(1)).containsEntry("name", "plain").containsEntry("comment", "");
+    }
+
+    @Test
+    @DisplayName("Должен заполнять недостающие колонки пустыми строками")
+    void shouldFillMissingColumns() throws IOException {
+        // Given
+        File file = write("short.csv", "a,b,c\n1,2\n4,5,\n", StandardCharsets.UTF_8);
+
+        // When
+        List<Map<String, String>> data = new CsvTableReader(',', StandardCharsets.UTF_8).read(file);
+
+        // Then
+        assertThat(data.get(0)).containsEntry("a", "1").containsEntry("b", "2").containsEntry("c", "");
+        assertThat(data.get(1)).containsEntry("a", "4").containsEntry("b", "5").containsEntry("c", "");
+    }
+
+    @Test
+    @DisplayName("Должен читать TSV и кодировку windows-1251")
+    void shouldReadTsvInCustomCharset() throws IOException {
+        // Given
+        Charset cp1251 = Charset.forName("windows-1251");
+        File file = write("data.tsv", "ФИО\tСумма\nСидоров С.С.\t1 000,50\n", cp1251);
+
+        // When
+        List<Map<String, String>> data = new CsvTableReader('\t', cp1251).read(file);
+
+        // Then
+        assertThat(data).containsExactly(Map.of("ФИО", "Сидоров С.С.", "Сумма", "1 000,50"));
+    }
+
+    @Test
+    @DisplayName("Должен определять разделитель и пропускать BOM")
+    void shouldDetectDelimiterAndSkipBom() throws IOException {
+        // Given
+        File file = write("excel.csv", "\uFEFFИмя;Дата\nАнна;01.02.2024\n", StandardCharsets.UTF_8);
+
+        // When
+        List<Map<String, String>> data = new CsvTableReader().read(file);
+
+        // Then
+        assertThat(data).containsExactly(Map.of("Имя", "Анна", "Дата", "01.02.2024"));
+    }
+
+    @Test
+    @DisplayName("Должен сохранять порядок строк при параллельном разборе большого файла")
+    void shouldKeepRowOrderWhenParsingInParallel() throws IOException {
+        // Given - файл больше нескольких сегментов, с многострочными значениями
+        File file = tempDir.resolve("large.csv").toFile();
+        int rowCount = 300_000;
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("id,text\n");
+            for (int i = 0; i < rowCount; i++) {
+                writer.write(i + ",\"line one\nline, two " + i + "\"\n");
+            }
+        }
+
+        // When
+        List<Map<String, String>> data = new ArrayList<>();
+        new CsvTableReader(',', StandardCharsets.UTF_8, 4).forEachRow(file, data::add);
+
+        // Then
+        assertThat(data).hasSize(rowCount);
+        for (int i = 0; i < rowCount; i += 997) {
+            assertThat(data.get(i))
+                    .containsEntry("id", Integer.toString(i))
+                    .containsEntry("text", "line one\nline, two " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Должен находить границы сегментов внутри многострочных значений длиннее сегмента")
+    void shouldResynchronizeSegmentsInsideLongQuotedValues() throws IOException {
+        // Given - внутри длинного значения нет кавычек, поэтому начало сегмента в нём угадывается неверно
+        File file = tempDir.resolve("long-values.csv").toFile();
+        String longValue = "line\n".repeat(2_000_000);
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("id,text\n");
+            for (int i = 0; i < 3; i++) {
+                writer.write(i + ",\"" + longValue + "\"\n" + i + ",short\n");
+            }
+        }
+
+        // When
+        List<Map<String, String>> data = new ArrayList<>();
+        new CsvTableReader(',', StandardCharsets.UTF_8, 4).forEachRow(file, data::add);
+
+        // Then
+        assertThat(data).hasSize(6);
+        for (int i = 0; i < 3; i++) {
+            assertThat(data.get(2 * i)).containsEntry("id", Integer.toString(i)).containsEntry("text", longValue);
+            assertThat(data.get(2 * i + 1)).containsEntry("id", Integer.toString(i)).containsEntry("text", "short");
+        }
+    }
+
+    @Test
+    @DisplayName("Должен сохранять пустые записи и пропускать только пустую строку в конце файла")
+    void shouldKeepBlankRecords() throws IOException {
+        // Given
+        File file = write("single.csv", "name\nA\n\nB\n\n", StandardCharsets.UTF_8);
+        CsvTableReader reader = new CsvTableReader(',', StandardCharsets.UTF_8);
+
+        // When
+        List<Map<String, String>> data = reader.read(file);
+        List<Map<String, String>> third = reader.read(file, ReadOptions.ALL.withRange(3, 3));
+
+        // Then
+        assertThat(data).containsExactly(Map.of("name", "A"), Map.of("name", ""), Map.of("name", "B"));
+        assertThat(third).containsExactly(Map.of("name", "B"));
+    }
+
+    @Test
+    @DisplayName("Должен читать только колонки из проекции")
+    void shouldReadOnlyProjectedColumns() throws IOException {
+        // Given
+        File file = write("wide.csv", "a,b,c,d\n1,2,3,4\n,,,\n5,6\n", StandardCharsets.UTF_8);
+
+        // When
+        List<Map<String, String>> data = new CsvTableReader(',', StandardCharsets.UTF_8)
+                .read(file, ReadOptions.columns(List.of("b", "d")));
+
+        // Then
+        assertThat(data).containsExactly(
+                Map.of("b", "2", "d", "4"),
+                Map.of("b", "", "d", ""),
+                Map.of("b", "6", "d", ""));
+    }
+
+    @Test
+    @DisplayName("Должен применять диапазон строк и фильтр при параллельном разборе")
+    void shouldApplyRangeAndFilterWhenParsingInParallel() throws IOException {
+        // Given
+        File file = tempDir.resolve("statuses.csv").toFile();
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("id,status,text\n");
+            for (int i = 1; i <= 400_000; i++) {
+                writer.write(i + "," + (i % 3 == 0 ? "NEW" : "DONE") + ",\"text " + i + "\"\n");
+            }
+        }
+        ReadOptions options = ReadOptions.columns(List.of("id"))
+                .withRange(100_001, 200_000)
+                .where(RowFilter.equalsTo("status", "NEW"));
+
+        // When
+        List<Map<String, String>> data = new CsvTableReader(',', StandardCharsets.UTF_8, 4).read(file, options);
+
+        // Then
+        assertThat(data).hasSize(33_333);
+        assertThat(data.get(0)).containsExactly(entry("id", "100002"));
+        assertThat(data.get(data.size() - 1)).containsExactly(entry("id", "199998"));
+    }
+
+    @Test
+    @DisplayName("Должен отклонять фильтр по несуществующей колонке")
+    void shouldRejectFilterOnUnknownColumn() throws IOException {
+        // Given
+        File file = write("plain.csv", "a,b\n1,2\n", StandardCharsets.UTF_8);
+        ReadOptions options = ReadOptions.ALL.where(RowFilter.in("c", List.of("1")));
+
+        // When & Then
+        assertThatThrownBy(() -> new CsvTableReader().read(file, options))
+                .isInstanceOf(RuntimeException.class)
+                .hasRootCauseMessage("Unknown filter column: c");
+    }
+
+    @Test
+    @DisplayName("Должен использовать один экземпляр строки для повторяющихся значений")
+    void shouldShareInstancesOfRepeatedValues() throws IOException {
+        // Given
+        File file = write("cities.csv", "name,city\nАнна,Москва\nИван,Москва\n", StandardCharsets.UTF_8);
+
+        // When
+        List<Map<String, String>> data = new CsvTableReader().read(file);
+
+        // Then
+        assertThat(data.get(1).get("city")).isSameAs(data.get(0).get("city"));
+    }
+
+    @Test
+    @DisplayName("Должен возвращать пустой список для пустого файла")
+    void shouldReturnEmptyListForEmptyFile() throws IOException {
+        // Given
+        File file = write("empty.csv", "", StandardCharsets.UTF_8);
+
+        // When & Then
+        assertThat(new CsvTableReader().read(file)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Должен отклонять кодировки, несовместимые с ASCII")
+    void shouldRejectNonAsciiCompatibleCharset() {
+        assertThatThrownBy(() -> new CsvTableReader(',', StandardCharsets.UTF_16))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private File write(String name, String content, Charset charset) throws IOException {
+        Path path = tempDir.resolve(name);
+        Files.write(path, content.getBytes(charset));
+        return path.toFile();
+    }
+}
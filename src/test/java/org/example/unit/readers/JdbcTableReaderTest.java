@@ -0,0 +1,114 @@
+package org.example.unit.readers;
+
+import org.example.readers.JdbcTableReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class JdbcTableReaderTest {
+
+    private static final String URL = "jdbc:h2:mem:mailing;DB_CLOSE_DELAY=-1";
+
+    private Connection keepAlive;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        keepAlive = DriverManager.getConnection(URL);
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE clients (id INT, full_name VARCHAR(100), birth DATE, amount DECIMAL(10,2), note VARCHAR(10))");
+            statement.execute("INSERT INTO clients VALUES (1, 'Иванов И.И.', DATE '1990-03-15', 1500.50, NULL)");
+            statement.execute("INSERT INTO clients VALUES (2, 'Петров П.П.', DATE '1985-12-01', 200.00, 'vip')");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        keepAlive.close();
+    }
+
+    @Test
+    @DisplayName("Должен читать строки результата с метками колонок в качестве ключей")
+    void shouldReadRowsUsingColumnLabels() {
+        // Given
+        JdbcTableReader reader = new JdbcTableReader(URL,
+                "SELECT full_name AS \"FULL_NAME\", birth AS \"DATE\", amount AS \"AMOUNT\", note AS \"NOTE\" FROM clients ORDER BY id");
+
+        // When
+        List<Map<String, String>> data = reader.read(null);
+
+        // Then
+        assertThat(data).hasSize(2);
+        assertThat(data.get(0))
+                .containsEntry("FULL_NAME", "Иванов И.И.")
+                .containsEntry("DATE", "15.03.1990")
+                .containsEntry("AMOUNT", "1500.5")
+                .containsEntry("NOTE", "");
+        assertThat(data.get(1))
+                .containsEntry("AMOUNT", "200")
+                .containsEntry("NOTE", "vip");
+    }
+
+    @Test
+    @DisplayName("Должен отдавать строки потребителю по мере чтения")
+    void shouldStreamRows() {
+        // Given
+        JdbcTableReader reader = new JdbcTableReader(URL, "SELECT X AS \"N\" FROM SYSTEM_RANGE(1, 5000)");
+        List<String> values = new ArrayList<>();
+
+        // When
+        reader.forEachRow(null, row -> values.add(row.get("N")));
+
+        // Then
+        assertThat(values).hasSize(5000).startsWith("1", "2").endsWith("5000");
+    }
+
+    @Test
+    @DisplayName("Должен читать параметры подключения из файла-описания")
+    void shouldReadDescriptorFile(@TempDir Path tempDir) throws IOException {
+        // Given
+        File descriptor = tempDir.resolve("mailing.jdbc").toFile();
+        Files.writeString(descriptor.toPath(), """
+                url=jdbc:h2:mem:mailing
+                query=SELECT full_name AS "NAME" FROM clients WHERE id = 2
+                fetchSize=10
+                """, StandardCharsets.UTF_8);
+
+        // When
+        List<Map<String, String>> data = new JdbcTableReader().read(descriptor);
+
+        // Then
+        assertThat(data).containsExactly(Map.of("NAME", "Петров П.П."));
+    }
+
+    @Test
+    @DisplayName("Должен выбрасывать исключение при ошибке запроса")
+    void shouldThrowOnInvalidQuery() {
+        // Given
+        JdbcTableReader reader = new JdbcTableReader(URL, "SELECT * FROM missing_table");
+
+        // When & Then
+        assertThatThrownBy(() -> reader.read(null))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("JDBC reading error");
+    }
+}
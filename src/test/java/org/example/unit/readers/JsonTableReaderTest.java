@@ -0,0 +1,156 @@
+package org.example.unit.readers;
+
+import org.example.readers.JsonTableReader;
+import org.example.readers.ReadOptions;
+import org.example.readers.RowFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class JsonTableReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JsonTableReader reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = new JsonTableReader();
+    }
+
+    @Test
+    @DisplayName("Должен читать NDJSON по объекту на строку")
+    void shouldReadNdjson() throws IOException {
+        // Given
+        File file = write("rows.ndjson", """
+                {"name": "Иванов", "amount": 1500.5, "active": true}
+                {"name": "Петров", "amount": 200, "active": false, "note": null}
+                """);
+
+        // When
+        List<Map<String, String>> data = reader.read(file);
+
+        // Then
+        assertThat(data).hasSize(2);
+        assertThat(data.get(0))
+                .containsEntry("name", "Иванов")
+                .containsEntry("amount", "1500.5")
+                .containsEntry("active", "true");
+        assertThat(data.get(1))
+                .containsEntry("amount", "200")
+                .containsEntry("note", "");
+    }
+
+    @Test
+    @DisplayName("Должен читать JSON-массив объектов верхнего уровня")
+    void shouldReadTopLevelArray() throws IOException {
+        // Given
+        File file = write("rows.json", "[ {\"id\": 1}, {\"id\": 2},\n {\"id\": 3} ]");
+
+        // When
+        List<Map<String, String>> data = reader.read(file);
+
+        // Then
+        assertThat(data).extracting(row -> row.get("id")).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    @DisplayName("Должен разворачивать вложенные поля в ключи через точку")
+    void shouldFlattenNestedFields() throws IOException {
+        // Given
+        File file = write("nested.ndjson",
+                "{\"customer\": {\"name\": \"ООО Ромашка\", \"address\": {\"city\": \"Рим\"}}, \"phones\": [\"1\", \"2\"]}\n");
+
+        // When
+        List<Map<String, String>> data = reader.read(file);
+
+        // Then
+        assertThat(data.get(0))
+                .containsEntry("customer.name", "ООО Ромашка")
+                .containsEntry("customer.address.city", "Рим")
+                .containsEntry("phones.0", "1")
+                .containsEntry("phones.1", "2");
+    }
+
+    @Test
+    @DisplayName("Должен пропускать поля вне проекции")
+    void shouldSkipFieldsOutsideProjection() throws IOException {
+        // Given
+        File file = write("wide.ndjson",
+                "{\"id\": 7, \"comment\": \"long \\\"text\\\"\", \"customer\": {\"name\": \"Рим\", \"inn\": 1}}\n");
+
+        // When
+        List<Map<String, String>> data = reader.read(file, ReadOptions.columns(List.of("id", "customer.name")));
+
+        // Then
+        assertThat(data).containsExactly(Map.of("id", "7", "customer.name", "Рим"));
+    }
+
+    @Test
+    @DisplayName("Должен применять диапазон строк и фильтр по регулярному выражению")
+    void shouldApplyRangeAndRegexFilter() throws IOException {
+        // Given
+        File file = write("range.json", """
+                [{"n": 1, "code": "A-1"}, {"n": 2, "code": "B-2"}, {"n": 3, "code": "A-3"},
+                 {"n": 4, "code": "A-4"}, {"n": 5, "code": "A-5"}]
+                """);
+        ReadOptions options = ReadOptions.columns(List.of("n")).withRange(2, 4).where(RowFilter.regex("code", "A-\\d"));
+
+        // When
+        List<Map<String, String>> data = reader.read(file, options);
+
+        // Then
+        assertThat(data).containsExactly(Map.of("n", "3"), Map.of("n", "4"));
+    }
+
+    @Test
+    @DisplayName("Должен обрабатывать экранированные символы")
+    void shouldDecodeEscapes() throws IOException {
+        // Given
+        File file = write("escapes.ndjson", "{\"text\": \"a\\\"b\\\\c\\n\\u0416\"}");
+
+        // When
+        List<Map<String, String>> data = reader.read(file);
+
+        // Then
+        assertThat(data.get(0)).containsEntry("text", "a\"b\\c\nЖ");
+    }
+
+    @Test
+    @DisplayName("Должен возвращать пустой список для пустого файла и пустого массива")
+    void shouldHandleEmptyInput() throws IOException {
+        assertThat(reader.read(write("empty.ndjson", "  \n"))).isEmpty();
+        assertThat(reader.read(write("empty.json", "[ ]"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Должен сообщать номер строки при ошибке разбора")
+    void shouldReportLineOfSyntaxError() throws IOException {
+        // Given
+        File file = write("broken.ndjson", "{\"a\": 1}\n{\"a\": tru}\n");
+
+        // When & Then
+        assertThatThrownBy(() -> reader.read(file))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("JSON reading error")
+                .hasRootCauseMessage("Unexpected literal 'tru' at line 2");
+    }
+
+    private File write(String name, String content) throws IOException {
+        Path path = tempDir.resolve(name);
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+        return path.toFile();
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.unit.readers;
+
+import org.example.readers.ValueInterner;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ValueInternerTest {
+
+    @Test
+    @DisplayName("Должен возвращать один экземпляр для равных значений")
+    void shouldReturnSameInstanceForEqualValues() {
+        // Given
+        ValueInterner interner = new ValueInterner();
+        String first = new String("Москва");
+
+        // When
+        String fromString = interner.intern(first);
+        String fromBuilder = interner.intern(new StringBuilder("Моск").append("ва"));
+
+        // Then
+        assertThat(fromString).isSameAs(first);
+        assertThat(fromBuilder).isSameAs(first);
+    }
+
+    @Test
+    @DisplayName("Должен декодировать повторяющиеся байты один раз")
+    void shouldDecodeRepeatedBytesOnce() {
+        // Given
+        ValueInterner interner = new ValueInterner();
+        byte[] bytes = "xx01.02.2024yy".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        String first = interner.intern(bytes, 2, 10, StandardCharsets.UTF_8);
+        String second = interner.intern(bytes.clone(), 2, 10, StandardCharsets.UTF_8);
+
+        // Then
+        assertThat(first).isEqualTo("01.02.2024");
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    @DisplayName("Должен вытеснять значения при коллизии, сохраняя корректность")
+    void shouldStayCorrectWhenSlotsAreEvicted() {
+        // Given
+        ValueInterner interner = new ValueInterner(1);
+
+        // When & Then
+        assertThat(interner.intern("a")).isEqualTo("a");
+        assertThat(interner.intern("b")).isEqualTo("b");
+        assertThat(interner.intern(new StringBuilder("a"))).isEqualTo("a");
+        assertThat(interner.intern("")).isEmpty();
+    }
+}
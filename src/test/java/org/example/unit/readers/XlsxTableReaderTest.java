@@ -2,6 +2,8 @@ package org.example.unit.readers;
 
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.example.readers.ReadOptions;
+import org.example.readers.RowFilter;
 import org.example.readers.XlsxTableReader;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -13,6 +15,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Date;
 import java.util.List;
@@ -54,6 +57,41 @@ class XlsxTableReaderTest {
                 .containsEntry("Зарплата", "45000");
     }
 
+    @Test
+    @DisplayName("Должен читать только колонки из проекции")
+    void shouldReadOnlyProjectedColumns() {
+        // When
+        List<Map<String, String>> data = reader.read(testFile, ReadOptions.columns(List.of("Имя", "Зарплата")));
+
+        // Then
+        assertThat(data).containsExactly(
+                Map.of("Имя", "Иванов Иван", "Зарплата", "50000"),
+                Map.of("Имя", "Петрова Анна", "Зарплата", "45000"));
+    }
+
+    @Test
+    @DisplayName("Должен отбирать строки по фильтру на колонку вне проекции")
+    void shouldFilterByColumnOutsideProjection() {
+        // Given
+        ReadOptions options = ReadOptions.columns(List.of("Имя")).where(RowFilter.equalsTo("Должность", "Бухгалтер"));
+
+        // When
+        List<Map<String, String>> data = reader.read(testFile, options);
+
+        // Then
+        assertThat(data).containsExactly(Map.of("Имя", "Петрова Анна"));
+    }
+
+    @Test
+    @DisplayName("Должен читать только строки из диапазона")
+    void shouldReadOnlyRowsInRange() {
+        // When
+        List<Map<String, String>> data = reader.read(testFile, ReadOptions.ALL.withRange(2, 10));
+
+        // Then
+        assertThat(data).extracting(row -> row.get("Имя")).containsExactly("Петрова Анна");
+    }
+
     @Test
     @DisplayName("Должен правильно форматировать даты")
     void shouldFormatDatesCorrectly(@TempDir Path tempDir) throws IOException {
@@ -67,7 +105,8 @@ class XlsxTableReaderTest {
         assertThat(data).hasSize(1);
         assertThat(data.get(0))
                 .containsEntry("ФИО", "Сидоров С.С.")
-                .containsEntry("Дата рождения", "15.03.1990");
+                .containsEntry("Дата рождения", "15.03.1990")
+                .containsEntry("Приём", "05.03.2024 18:30:00");
     }
 
     @Test
@@ -197,6 +236,7 @@ class XlsxTableReaderTest {
             Row headerRow = sheet.createRow(0);
             headerRow.createCell(0).setCellValue("ФИО");
             headerRow.createCell(1).setCellValue("Дата рождения");
+            headerRow.createCell(2).setCellValue("Приём");
 
             // Данные с датой
             Row dataRow = sheet.createRow(1);
@@ -213,6 +253,12 @@ class XlsxTableReaderTest {
             dateStyle.setDataFormat(createHelper.createDataFormat().getFormat("dd.MM.yyyy"));
             dateCell.setCellStyle(dateStyle);
 
+            Cell visitCell = dataRow.createCell(2);
+            visitCell.setCellValue(LocalDateTime.of(2024, 3, 5, 18, 30));
+            CellStyle dateTimeStyle = workbook.createCellStyle();
+            dateTimeStyle.setDataFormat(createHelper.createDataFormat().getFormat("dd.MM.yyyy hh:mm"));
+            visitCell.setCellStyle(dateTimeStyle);
+
             workbook.write(fos);
         }
 
@@ -0,0 +1,129 @@
+package org.example.unit.sinks;
+
+import org.example.interfaces.NamingScheme;
+import org.example.sinks.DirectorySink;
+import org.example.sinks.FsyncPolicy;
+import org.example.sinks.MemorySink;
+import org.example.sinks.NullSink;
+import org.example.sinks.ZipSink;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.assertj.core.api.Assertions.*;
+
+class OutputSinkTest {
+
+    @Test
+    @DisplayName("Должен записывать документы во вложенные папки с fsync пачками и не перезаписывать файлы")
+    void shouldWriteFilesToDirectory(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path root = tempDir.resolve("out");
+
+        // When
+        try (DirectorySink sink = new DirectorySink(root, FsyncPolicy.every(2))) {
+            sink.write("letter/document_1.docx", bytes("first"));
+            sink.write("letter/document_2.docx", bytes("second"));
+            sink.write("document_3.docx", bytes("third"));
+            assertThatThrownBy(() -> sink.write("document_3.docx", bytes("3")))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("already exists");
+        }
+
+        // Then
+        assertThat(Files.readString(root.resolve("letter/document_1.docx"))).isEqualTo("first");
+        assertThat(Files.readString(root.resolve("letter/document_2.docx"))).isEqualTo("second");
+        assertThat(Files.readString(root.resolve("document_3.docx"))).isEqualTo("third");
+    }
+
+    @Test
+    @DisplayName("Должен отклонять пути за пределами папки и некорректный интервал fsync")
+    void shouldRejectPathsOutsideDirectory(@TempDir Path tempDir) throws IOException {
+        try (DirectorySink sink = new DirectorySink(tempDir.resolve("out"), FsyncPolicy.EVERY_DOCUMENT)) {
+            assertThatThrownBy(() -> sink.write("../escape.docx", bytes("x")))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("../escape.docx");
+        }
+        assertThat(tempDir.resolve("escape.docx")).doesNotExist();
+        assertThatThrownBy(() -> FsyncPolicy.every(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Должен складывать документы в ZIP-архив без повторного сжатия")
+    void shouldWriteDocumentsToZip(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path archive = tempDir.resolve("result.zip");
+
+        // When
+        try (ZipSink sink = new ZipSink(archive)) {
+            sink.write("document_1.odt", bytes("first"));
+            sink.write("act/document_2.odt", bytes("second"));
+        }
+
+        // Then
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertThat(Collections.list(zip.entries())).extracting(ZipEntry::getName)
+                    .containsExactly("document_1.odt", "act/document_2.odt");
+            ZipEntry entry = zip.getEntry("act/document_2.odt");
+            assertThat(entry.getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(new String(zip.getInputStream(entry).readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("second");
+        }
+    }
+
+    @Test
+    @DisplayName("Должен хранить документы в памяти и считать отброшенные документы")
+    void shouldKeepDocumentsInMemoryAndCountDiscarded() {
+        // Given
+        MemorySink memory = new MemorySink();
+        NullSink discard = new NullSink();
+
+        // When
+        for (String name : List.of("b.docx", "a.docx")) {
+            memory.write(name, bytes(name));
+            discard.write(name, bytes(name));
+        }
+
+        // Then
+        assertThat(memory.getDocuments()).containsOnlyKeys("b.docx", "a.docx");
+        assertThat(memory.getDocuments().keySet()).containsExactly("b.docx", "a.docx");
+        assertThat(discard.getDocuments()).isEqualTo(2);
+        assertThat(discard.getBytes()).isEqualTo(12);
+    }
+
+    @Test
+    @DisplayName("Должен строить безопасные уникальные имена по значению колонки")
+    void shouldNameDocumentsByColumn() {
+        // Given
+        NamingScheme naming = NamingScheme.column("NAME", NamingScheme.sequential("document_"));
+
+        // When
+        List<String> names = List.of(
+                naming.name(0, Map.of("NAME", "Иванов")),
+                naming.name(1, Map.of("NAME", "иванов")),
+                naming.name(2, Map.of("NAME", "ООО \"Ромашка\" / филиал")),
+                naming.name(3, Map.of("NAME", " ")),
+                naming.name(4, new HashMap<>()),
+                naming.name(5, Map.of("NAME", "..")),
+                naming.name(6, Map.of("NAME", "Иванов (2)")),
+                naming.name(7, Map.of("NAME", "Иванов")));
+
+        // Then
+        assertThat(names).containsExactly("Иванов", "иванов (2)", "ООО _Ромашка_ _ филиал", "document_4",
+                "document_5", "document_6", "Иванов (2) (2)", "Иванов (3)");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}